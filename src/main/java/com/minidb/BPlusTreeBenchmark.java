@@ -0,0 +1,86 @@
+package com.minidb;
+
+import com.minidb.storage.index.BPlusTree;
+
+import java.util.*;
+
+/**
+ * Microbenchmark: B+tree point lookups across fanouts, with a boxed
+ * TreeMap as the baseline.
+ *
+ * Run: java -cp target/classes com.minidb.BPlusTreeBenchmark
+ */
+public class BPlusTreeBenchmark {
+    private static final int KEYS = 1_000_000;
+    private static final int LOOKUPS = 2_000_000;
+    private static final int ROUNDS = 5; // Earlier rounds warm up the JIT
+    private static final int[] FANOUTS = {16, 64, 128, BPlusTree.MAX_FANOUT};
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("=== B+tree lookup benchmark ===");
+        System.out.println(KEYS + " keys, " + LOOKUPS + " random lookups, " + ROUNDS + " rounds\n");
+
+        Random random = new Random(42);
+        int[] keys = new int[KEYS];
+        List<byte[]> values = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i * 2; // Odd keys miss
+            values.add(intToBytes(i));
+        }
+        int[] probes = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = random.nextInt(KEYS * 2);
+        }
+
+        TreeMap<Integer, byte[]> treeMap = new TreeMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            treeMap.put(keys[i], values.get(i));
+        }
+
+        List<BPlusTree> trees = new ArrayList<>();
+        for (int fanout : FANOUTS) {
+            BPlusTree tree = new BPlusTree(1, fanout);
+            tree.bulkLoad(keys, values);
+            trees.add(tree);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            boolean last = round == ROUNDS;
+
+            measure("lookup: TreeMap<Integer, byte[]>", last, () -> {
+                for (int probe : probes) {
+                    byte[] value = treeMap.get(probe);
+                    if (value != null) sink += value[3];
+                }
+            });
+
+            for (int i = 0; i < FANOUTS.length; i++) {
+                BPlusTree tree = trees.get(i);
+                measure("lookup: BPlusTree fanout " + FANOUTS[i] + " (" + tree.getPageCount() + " pages)",
+                        last, () -> {
+                    for (int probe : probes) {
+                        byte[] value = tree.search(probe);
+                        if (value != null) sink += value[3];
+                    }
+                });
+            }
+        }
+
+        if (sink == 42) System.out.println(); // Keep the lookups live
+    }
+
+    private static byte[] intToBytes(int value) {
+        return new byte[]{(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
+    }
+
+    private static void measure(String name, boolean report, Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-48s %8.1f ns/lookup%n", name, (double) elapsed / LOOKUPS);
+        }
+    }
+}
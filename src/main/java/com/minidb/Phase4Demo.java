@@ -6,6 +6,7 @@ import com.minidb.transaction.TransactionManager;
 import com.minidb.recovery.RecoveryManager;
 import com.minidb.storage.buffer.BufferPool;
 import com.minidb.storage.page.PageManager;
+import com.minidb.storage.table.VacuumWorker;
 import com.minidb.transaction.wal.WALManager;
 import com.minidb.transaction.lock.LockManager;
 
@@ -28,6 +29,10 @@ public class Phase4Demo {
         Executor executor = new Executor(txnManager);
         RecoveryManager recoveryManager = new RecoveryManager(walManager, bufferPool);
 
+        // Reclaim space left by deletes and updates in the background
+        VacuumWorker vacuum = new VacuumWorker(executor::getTables);
+        vacuum.start();
+
         System.out.println("✓ Components initialized\n");
 
         // Start server
@@ -0,0 +1,113 @@
+package com.minidb;
+
+import com.minidb.storage.table.Record;
+import com.minidb.storage.table.RecordEncoder;
+import com.minidb.storage.table.Table;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Microbenchmark: heap allocation of Record vs RecordEncoder/RecordDecoder
+ * on the encode, table insert and filter (scan) paths.
+ *
+ * Run: java -cp target/classes com.minidb.RecordEncodingBenchmark
+ */
+public class RecordEncodingBenchmark {
+    private static final int ROWS = 200_000;
+    private static final int INSERT_ROWS = 20_000; // Inserts look for room from the first page
+    private static final int FIELDS = 4;
+    private static final int ROUNDS = 5; // Earlier rounds warm up the JIT
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final String[] NAMES = new String[1024];
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.println("=== Record encoding benchmark ===");
+        System.out.println(ROWS + " rows x " + FIELDS + " fields, " + ROUNDS + " rounds\n");
+
+        for (int i = 0; i < NAMES.length; i++) {
+            NAMES[i] = "user-" + i;
+        }
+
+        Table table = new Table("bench", false);
+        RecordEncoder encoder = new RecordEncoder();
+        for (int i = 0; i < ROWS; i++) {
+            table.insertRecord(encodeRow(encoder, i));
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            boolean last = round == ROUNDS;
+
+            measure("encode: Record.addField + serialize", last, ROWS, () -> {
+                for (int i = 0; i < ROWS; i++) {
+                    Record record = new Record();
+                    record.addField(i);
+                    record.addField((long) i * 31);
+                    record.addField(NAMES[i & 1023]);
+                    record.addField(i % 100);
+                    sink += record.serialize().length;
+                }
+            });
+
+            measure("encode: RecordEncoder", last, ROWS, () -> {
+                for (int i = 0; i < ROWS; i++) {
+                    sink += encodeRow(encoder, i).length();
+                }
+            });
+
+            // Fresh tables each round; page allocation counts towards both
+            Table recordTable = new Table("insert-record", true);
+            measure("insert: Table.insertRecord(Record)", last, INSERT_ROWS, () -> {
+                for (int i = 0; i < INSERT_ROWS; i++) {
+                    Record record = new Record();
+                    record.addField(i);
+                    record.addField((long) i * 31);
+                    record.addField(NAMES[i & 1023]);
+                    record.addField(i % 100);
+                    sink += recordTable.insertRecord(record);
+                }
+            });
+
+            Table encodedTable = new Table("insert-encoded", true);
+            measure("insert: Table.insertRecord(RecordEncoder)", last, INSERT_ROWS, () -> {
+                for (int i = 0; i < INSERT_ROWS; i++) {
+                    sink += encodedTable.insertRecord(encodeRow(encoder, i));
+                }
+            });
+
+            measure("filter: Record predicate", last, ROWS, () ->
+                    sink += table.findRecordIds(r -> r.getFieldAsInt(3) == 7
+                            && r.getFieldAsString(2).compareTo("user-5") > 0).size());
+
+            measure("filter: RecordDecoder in place", last, ROWS, () ->
+                    sink += table.findRecordIdsInPlace(null, r -> r.getInt(3) == 7
+                            && r.compareString(2, "user-5") > 0).size());
+        }
+    }
+
+    private static RecordEncoder encodeRow(RecordEncoder encoder, int i) {
+        return encoder.reset()
+                .writeInt(i)
+                .writeLong((long) i * 31)
+                .writeString(NAMES[i & 1023])
+                .writeInt(i % 100);
+    }
+
+    private static void measure(String name, boolean report, int rows, Runnable body) {
+        long thread = Thread.currentThread().threadId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+
+        body.run();
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+        if (report) {
+            System.out.printf("%-44s %8.1f ns/row %8.2f bytes/field%n",
+                    name, (double) elapsed / rows, (double) allocated / ((long) rows * FIELDS));
+        }
+    }
+}
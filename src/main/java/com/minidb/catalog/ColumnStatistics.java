@@ -0,0 +1,30 @@
+package com.minidb.catalog;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Statistics of one column, as collected by ANALYZE
+ *
+ * @param min smallest value, null if the column has no values
+ * @param max largest value, null if the column has no values
+ * @param nullFraction fraction of rows without a value
+ * @param distinctCount HyperLogLog estimate of distinct values
+ */
+public record ColumnStatistics(
+    String name,
+    Object min,
+    Object max,
+    double nullFraction,
+    long distinctCount,
+    Histogram histogram
+) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    @Override
+    public String toString() {
+        return String.format("%s: min=%s, max=%s, nulls=%.1f%%, distinct~%d, buckets=%d",
+                name, min, max, nullFraction * 100, distinctCount, histogram.getBucketCount());
+    }
+}
@@ -0,0 +1,61 @@
+package com.minidb.catalog;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Equi-depth histogram: bucket boundaries chosen so every bucket
+ * holds about the same number of rows
+ * 
+ * Bucket i covers (bounds[i], bounds[i + 1]]; the first also includes bounds[0].
+ */
+public record Histogram(List<Object> bounds, long rowsPerBucket) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Build from a sorted sample standing in for {@code rowCount} rows
+     */
+    public static Histogram fromSortedSample(List<Object> sample, long rowCount, int bucketCount) {
+        if (sample.isEmpty()) {
+            return new Histogram(List.of(), 0);
+        }
+        
+        int buckets = Math.min(bucketCount, sample.size());
+        List<Object> bounds = new ArrayList<>(buckets + 1);
+        bounds.add(sample.get(0));
+        for (int b = 1; b <= buckets; b++) {
+            bounds.add(sample.get((int) ((long) sample.size() * b / buckets) - 1));
+        }
+        return new Histogram(List.copyOf(bounds), Math.max(1, rowCount / buckets));
+    }
+    
+    public int getBucketCount() {
+        return Math.max(0, bounds.size() - 1);
+    }
+    
+    /**
+     * Estimated fraction of rows with low <= value <= high (null = unbounded)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public double selectivity(Comparable low, Comparable high) {
+        int buckets = getBucketCount();
+        if (buckets == 0) return 0;
+        
+        double covered = 0;
+        for (int b = 0; b < buckets; b++) {
+            Comparable lower = (Comparable) bounds.get(b);
+            Comparable upper = (Comparable) bounds.get(b + 1);
+            boolean belowLow = low != null && upper.compareTo(low) < 0;
+            // Only the first bucket includes its lower bound
+            boolean aboveHigh = high != null && lower.compareTo(high) >= (b == 0 ? 1 : 0);
+            if (belowLow || aboveHigh) continue;
+            
+            boolean containsLow = low != null && lower.compareTo(low) < 0;
+            boolean containsHigh = high != null && upper.compareTo(high) > 0;
+            covered += containsLow || containsHigh ? 0.5 : 1.0; // Partial bucket
+        }
+        return covered / buckets;
+    }
+}
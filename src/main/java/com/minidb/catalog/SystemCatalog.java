@@ -67,4 +67,7 @@ record TableMetadata(
     List<CreateTableStatement.ColumnDefinition> columns,
     String primaryKeyColumn,
     int fileId
-) implements Serializable {}
\ No newline at end of file
+) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.minidb.catalog;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Statistics of a table, as collected by ANALYZE
+ *
+ * @param analyzedAt collection time, epoch milliseconds
+ */
+public record TableStatistics(
+    String tableName,
+    long rowCount,
+    int pageCount,
+    List<ColumnStatistics> columns,
+    long analyzedAt
+) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    public ColumnStatistics column(String name) {
+        for (ColumnStatistics column : columns) {
+            if (column.name().equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(tableName).append(": ").append(rowCount).append(" rows, ")
+          .append(pageCount).append(" pages");
+        for (ColumnStatistics column : columns) {
+            sb.append("\n  ").append(column);
+        }
+        return sb.toString();
+    }
+}
@@ -2,6 +2,7 @@ package com.minidb.network;
 
 import com.minidb.query.parser.*;
 import com.minidb.query.executor.*;
+import com.minidb.storage.table.RecordCursor;
 import com.minidb.transaction.*;
 
 import java.io.*;
@@ -13,6 +14,9 @@ import java.nio.charset.StandardCharsets;
  * Handles individual client connection (runs on virtual thread)
  */
 public class ClientHandler implements Runnable {
+    // Rows sent per STATUS_ROWS frame
+    private static final int ROW_BATCH_SIZE = 100;
+
     private final Socket clientSocket;
     private final Executor executor;
     private final TransactionManager txnManager;
@@ -78,7 +82,9 @@ public class ClientHandler implements Runnable {
 
                     ExecutionResult result = executor.execute(statement, currentTransaction);
 
-                    if (result.success()) {
+                    if (result.isStreaming()) {
+                        streamRows(out, result.rows());
+                    } else if (result.success()) {
                         String response = formatResult(result);
                         sendResponse(out, Protocol.STATUS_RESULT, response);
                     } else {
@@ -160,6 +166,32 @@ public class ClientHandler implements Runnable {
         return sb.toString();
     }
 
+    /**
+     * Send query rows in batches as the cursor produces them, then a summary
+     */
+    private void streamRows(OutputStream out, RecordCursor rows) throws IOException {
+        StringBuilder batch = new StringBuilder();
+        int count = 0;
+
+        try (rows) {
+            while (rows.hasNext()) {
+                count++;
+                batch.append("  ").append(count).append(". ")
+                        .append(rows.next()).append("\n");
+
+                if (count % ROW_BATCH_SIZE == 0) {
+                    sendResponse(out, Protocol.STATUS_ROWS, batch.toString());
+                    batch.setLength(0);
+                }
+            }
+        }
+        if (batch.length() > 0) {
+            sendResponse(out, Protocol.STATUS_ROWS, batch.toString());
+        }
+
+        sendResponse(out, Protocol.STATUS_RESULT, "Retrieved " + count + " rows");
+    }
+
     private void sendResponse(OutputStream out, byte status, String message)
             throws IOException {
         byte[] response = Protocol.encodeResponse(status, message);
@@ -11,12 +11,16 @@ import java.nio.charset.StandardCharsets;
  * 
  * Request: SQL statement as UTF-8 string
  * Response: Status byte + message
+ * 
+ * Query rows are streamed as any number of STATUS_ROWS batches
+ * followed by a final STATUS_RESULT (or STATUS_ERROR) summary.
  */
 public class Protocol {
     
     public static final byte STATUS_OK = 0;
     public static final byte STATUS_ERROR = 1;
     public static final byte STATUS_RESULT = 2;
+    public static final byte STATUS_ROWS = 3;
     
     /**
      * Encode request message
@@ -69,5 +73,6 @@ public class Protocol {
         public boolean isOk() { return status == STATUS_OK; }
         public boolean isError() { return status == STATUS_ERROR; }
         public boolean hasResult() { return status == STATUS_RESULT; }
+        public boolean hasMoreRows() { return status == STATUS_ROWS; }
     }
 }
\ No newline at end of file
@@ -62,26 +62,35 @@ public class SimpleClient {
     }
 
     private void readResponse(InputStream in) throws IOException {
-        byte[] statusByte = in.readNBytes(1);
-        if (statusByte.length < 1) {
-            System.out.println("Connection closed by server");
-            return;
-        }
+        while (true) {
+            byte[] statusByte = in.readNBytes(1);
+            if (statusByte.length < 1) {
+                System.out.println("Connection closed by server");
+                return;
+            }
 
-        byte status = statusByte[0];
-        byte[] lengthBytes = in.readNBytes(4);
-        int length = ByteBuffer.wrap(lengthBytes).getInt();
-        byte[] msgBytes = in.readNBytes(length);
-        String message = new String(msgBytes, StandardCharsets.UTF_8);
-
-        if (status == Protocol.STATUS_OK) {
-            System.out.println("✓ " + message);
-        } else if (status == Protocol.STATUS_ERROR) {
-            System.out.println("✗ Error: " + message);
-        } else if (status == Protocol.STATUS_RESULT) {
-            System.out.println(message);
+            byte status = statusByte[0];
+            byte[] lengthBytes = in.readNBytes(4);
+            int length = ByteBuffer.wrap(lengthBytes).getInt();
+            byte[] msgBytes = in.readNBytes(length);
+            String message = new String(msgBytes, StandardCharsets.UTF_8);
+
+            if (status == Protocol.STATUS_ROWS) {
+                // More frames follow
+                System.out.print(message);
+                continue;
+            }
+
+            if (status == Protocol.STATUS_OK) {
+                System.out.println("✓ " + message);
+            } else if (status == Protocol.STATUS_ERROR) {
+                System.out.println("✗ Error: " + message);
+            } else if (status == Protocol.STATUS_RESULT) {
+                System.out.println(message);
+            }
+            System.out.println();
+            return;
         }
-        System.out.println();
     }
 
     public static void main(String[] args) {
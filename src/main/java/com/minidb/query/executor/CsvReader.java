@@ -0,0 +1,120 @@
+package com.minidb.query.executor;
+
+import com.minidb.query.parser.CreateTableStatement;
+import com.minidb.storage.table.RecordEncoder;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams CSV lines as rows typed by a table schema. Every line is encoded
+ * into the same RecordEncoder, which next() returns.
+ */
+class CsvReader implements Iterator<RecordEncoder>, Closeable {
+    private final BufferedReader reader;
+    private final TableSchema schema;
+    private final RecordEncoder encoder = new RecordEncoder();
+    private String nextLine;
+    private int lineNumber;
+
+    CsvReader(Path file, TableSchema schema, boolean header) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.schema = schema;
+        this.lineNumber = 0;
+
+        if (header) {
+            readLine();
+        }
+        this.nextLine = readLine();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextLine != null;
+    }
+
+    @Override
+    public RecordEncoder next() {
+        if (nextLine == null) {
+            throw new NoSuchElementException();
+        }
+
+        List<String> values = split(nextLine);
+        if (values.size() != schema.columns().size()) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": expected "
+                    + schema.columns().size() + " values, got " + values.size());
+        }
+
+        encoder.reset();
+        for (int i = 0; i < values.size(); i++) {
+            CreateTableStatement.ColumnDefinition colDef = schema.columns().get(i);
+            String value = values.get(i);
+
+            try {
+                switch (colDef.type()) {
+                    case INT -> encoder.writeInt(Integer.parseInt(value.trim()));
+                    case LONG -> encoder.writeLong(Long.parseLong(value.trim()));
+                    case VARCHAR -> encoder.writeString(value);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid " + colDef.type()
+                        + " value for " + colDef.name() + ": " + value);
+            }
+        }
+
+        try {
+            nextLine = readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return encoder;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+        } while (line != null && line.isBlank());
+        return line;
+    }
+
+    /**
+     * Split one CSV line; quoted fields may contain commas and "" escapes
+     */
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+
+        return values;
+    }
+}
@@ -1,16 +1,55 @@
 package com.minidb.query.executor;
 
+import com.minidb.storage.table.RecordCursor;
 import java.util.List;
 
 /**
  * Execution result
+ *
+ * Query results are either materialised in {@code resultSet} or, for
+ * SELECT, streamed from {@code rows}; the consumer must drain or close it.
  */
 public record ExecutionResult(
         boolean success,
         int rowsAffected,
         List<com.minidb.storage.table.Record> resultSet,
-        String message) {
+        String message,
+        RecordCursor rows) {
+
+    public ExecutionResult(boolean success, int rowsAffected,
+            List<com.minidb.storage.table.Record> resultSet, String message) {
+        this(success, rowsAffected, resultSet, message, null);
+    }
+
+    /**
+     * Successful result whose rows are produced lazily by a cursor
+     */
+    public static ExecutionResult streaming(RecordCursor rows) {
+        return new ExecutionResult(true, 0, List.of(), "Query executed", rows);
+    }
+
+    public boolean isStreaming() {
+        return rows != null;
+    }
+
     public void print() {
+        if (isStreaming()) {
+            System.out.println("\nResults:");
+            int count = 0;
+            try (RecordCursor cursor = rows) {
+                while (cursor.hasNext()) {
+                    com.minidb.storage.table.Record row = cursor.next();
+                    System.out.println("  " + (++count) + ". " + row);
+                }
+            } catch (RuntimeException e) {
+                // Rows are read after execute() returned, so errors surface here
+                System.out.println("Error after " + count + " rows: " + e.getMessage());
+                return;
+            }
+            System.out.println("Retrieved " + count + " rows");
+            return;
+        }
+
         System.out.println(message);
 
         if (!resultSet.isEmpty()) {
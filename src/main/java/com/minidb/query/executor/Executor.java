@@ -1,21 +1,33 @@
 package com.minidb.query.executor;
 
+import com.minidb.catalog.TableStatistics;
 import com.minidb.query.parser.*;
+import com.minidb.storage.index.IndexKey;
 import com.minidb.storage.table.*;
 import com.minidb.transaction.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Query Executor - Executes parsed SQL statements
  */
 public class Executor {
+    // Filtered scans of tables with at least this many pages run in parallel
+    private static final int PARALLEL_SCAN_MIN_PAGES = 64;
+
     private final Map<String, TableSchema> catalog;
     private final Map<String, Table> tables;
+    private final Map<String, PartitionedTable> partitionedTables;
+    private final Map<String, TableStatistics> statistics; // as of the last ANALYZE
     private final TransactionManager txnManager;
 
     public Executor(TransactionManager txnManager) {
         this.catalog = new HashMap<>();
-        this.tables = new HashMap<>();
+        this.tables = new ConcurrentHashMap<>(); // also read by background maintenance
+        this.partitionedTables = new ConcurrentHashMap<>();
+        this.statistics = new HashMap<>();
         this.txnManager = txnManager;
     }
 
@@ -30,6 +42,10 @@ public class Executor {
                 case SELECT -> executeSelect((SelectStatement) statement, txn);
                 case UPDATE -> executeUpdate((UpdateStatement) statement, txn);
                 case DELETE -> executeDelete((DeleteStatement) statement, txn);
+                case COPY -> executeCopy((CopyStatement) statement);
+                case ANALYZE -> executeAnalyze((AnalyzeStatement) statement);
+                case ALTER_TABLE -> executeAlterTable((AlterTableStatement) statement);
+                case CREATE_INDEX -> executeCreateIndex((CreateIndexStatement) statement);
             };
         } catch (Exception e) {
             return new ExecutionResult(false, 0, List.of(), e.getMessage());
@@ -47,110 +63,694 @@ public class Executor {
                 stmt.tableName(),
                 stmt.columns(),
                 stmt.primaryKeyColumn());
-        catalog.put(stmt.tableName(), schema);
 
-        // Create table
-        boolean hasPK = stmt.primaryKeyColumn() != null;
-        Table table = new Table(stmt.tableName(), hasPK);
+        // Create table, or one table per partition
+        if (stmt.partitioning() != null) {
+            PartitionedTable table = new PartitionedTable(stmt.tableName(), partitioning(stmt, schema),
+                    i -> newTable(stmt.tableName() + "_p" + i, stmt));
+            catalog.put(stmt.tableName(), schema);
+            partitionedTables.put(stmt.tableName(), table);
+
+            return new ExecutionResult(true, 0, List.of(), "Table " + stmt.tableName()
+                    + " created with " + table.getPartitions().size() + " partitions");
+        }
+
+        Table table = newTable(stmt.tableName(), stmt);
+        catalog.put(stmt.tableName(), schema);
         tables.put(stmt.tableName(), table);
 
         return new ExecutionResult(true, 0, List.of(),
                 "Table " + stmt.tableName() + " created");
     }
 
+    private Table newTable(String name, CreateTableStatement stmt) {
+        boolean hasPK = stmt.primaryKeyColumn() != null;
+        Table table = new Table(name, hasPK ? primaryKey(stmt) : null,
+                storageMode(stmt.options()), stmt.columns().size(),
+                compressedColumns(stmt.options(), stmt.columns()),
+                zoneKinds(stmt.columns()));
+        table.setRowCache(rowCacheSize(stmt.options(), hasPK));
+        return table;
+    }
+
+    private KeyEncoder primaryKey(CreateTableStatement stmt) {
+        for (int i = 0; i < stmt.columns().size(); i++) {
+            CreateTableStatement.ColumnDefinition column = stmt.columns().get(i);
+            if (column.name().equals(stmt.primaryKeyColumn())) {
+                return new KeyEncoder(new int[] {i}, new KeyEncoder.Type[] {keyType(column)});
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + stmt.primaryKeyColumn());
+    }
+
+    private static KeyEncoder.Type keyType(CreateTableStatement.ColumnDefinition column) {
+        return switch (column.type()) {
+            case INT -> KeyEncoder.Type.INT;
+            case LONG -> KeyEncoder.Type.LONG;
+            case VARCHAR -> KeyEncoder.Type.STRING;
+        };
+    }
+
+    /**
+     * WITH (row_cache = n) caches up to n decoded rows for primary key lookups
+     */
+    private int rowCacheSize(Map<String, String> options, boolean hasPK) {
+        String size = options.get("row_cache");
+        if (size == null) {
+            return 0;
+        }
+        if (!hasPK) {
+            throw new IllegalArgumentException("Row cache requires a primary key");
+        }
+        try {
+            return Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid row cache size: " + size);
+        }
+    }
+
+    /**
+     * Every column gets a zone map: exact bounds for numbers, prefix bounds for text
+     */
+    private ZoneMap.Kind[] zoneKinds(List<CreateTableStatement.ColumnDefinition> columns) {
+        ZoneMap.Kind[] kinds = new ZoneMap.Kind[columns.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = switch (columns.get(i).type()) {
+                case INT -> ZoneMap.Kind.INT;
+                case LONG -> ZoneMap.Kind.LONG;
+                case VARCHAR -> ZoneMap.Kind.PREFIX;
+            };
+        }
+        return kinds;
+    }
+
+    /**
+     * The partition key must be an INT column, and the primary key if the
+     * table has one, so each key lives in exactly one partition's index
+     */
+    private Partitioning partitioning(CreateTableStatement stmt, TableSchema schema) {
+        CreateTableStatement.PartitionClause clause = stmt.partitioning();
+        int column = columnIndex(schema, clause.column());
+        if (schema.columns().get(column).type() != CreateTableStatement.ColumnDefinition.ColumnType.INT) {
+            throw new IllegalArgumentException("Partition key must be an INT column: " + clause.column());
+        }
+        if (stmt.primaryKeyColumn() != null && !stmt.primaryKeyColumn().equals(clause.column())) {
+            throw new IllegalArgumentException("Partition key must be the primary key: "
+                    + stmt.primaryKeyColumn());
+        }
+
+        return switch (clause.type()) {
+            case RANGE -> new Partitioning.Range(column,
+                    clause.bounds().stream().mapToInt(Integer::intValue).toArray());
+            case HASH -> new Partitioning.Hash(column, clause.partitionCount());
+        };
+    }
+
+    private StorageMode storageMode(Map<String, String> options) {
+        String storage = options.getOrDefault("storage", "row");
+        return switch (storage) {
+            case "row" -> StorageMode.ROW;
+            case "columnar" -> StorageMode.COLUMNAR;
+            case "index" -> StorageMode.INDEX_ORGANIZED;
+            default -> throw new IllegalArgumentException("Unknown storage mode: " + storage);
+        };
+    }
+
+    /**
+     * WITH (compression = dictionary) dictionary-encodes every VARCHAR column
+     */
+    private BitSet compressedColumns(Map<String, String> options,
+            List<CreateTableStatement.ColumnDefinition> columns) {
+        String compression = options.getOrDefault("compression", "none");
+        BitSet compressed = new BitSet();
+        switch (compression) {
+            case "none" -> { }
+            case "dictionary" -> {
+                for (int i = 0; i < columns.size(); i++) {
+                    if (columns.get(i).type() == CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR) {
+                        compressed.set(i);
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown compression: " + compression);
+        }
+        return compressed;
+    }
+
     private ExecutionResult executeInsert(InsertStatement stmt, Transaction txn) {
-        Table table = tables.get(stmt.tableName());
-        if (table == null) {
+        TableSchema schema = catalog.get(stmt.tableName());
+        if (schema == null) {
             return new ExecutionResult(false, 0, List.of(),
                     "Table " + stmt.tableName() + " does not exist");
         }
 
-        TableSchema schema = catalog.get(stmt.tableName());
-
-        // Create record from values
-        com.minidb.storage.table.Record record = new com.minidb.storage.table.Record();
+        // Encode the values straight into stored format
+        RecordEncoder encoder = new RecordEncoder();
         for (int i = 0; i < stmt.values().size() && i < schema.columns().size(); i++) {
             Object value = stmt.values().get(i);
             var colDef = schema.columns().get(i);
 
             switch (colDef.type()) {
-                case INT -> record.addField((Integer) value);
-                case LONG -> record.addField(((Integer) value).longValue());
-                case VARCHAR -> record.addField((String) value);
+                case INT -> encoder.writeInt((Integer) value);
+                case LONG -> encoder.writeLong(((Integer) value).longValue());
+                case VARCHAR -> encoder.writeString((String) value);
             }
         }
 
-        int recordId = table.insertRecord(record);
+        PartitionedTable partitioned = partitionedTables.get(stmt.tableName());
+        int recordId = partitioned != null
+                ? partitioned.insertRecord(encoder)
+                : tables.get(stmt.tableName()).insertRecord(encoder);
 
         return new ExecutionResult(true, 1, List.of(),
                 "Inserted 1 row with ID " + recordId);
     }
 
-    private ExecutionResult executeSelect(SelectStatement stmt, Transaction txn) {
+    private ExecutionResult executeCopy(CopyStatement stmt) throws IOException {
+        if (!catalog.containsKey(stmt.tableName())) {
+            return new ExecutionResult(false, 0, List.of(),
+                    "Table " + stmt.tableName() + " does not exist");
+        }
+
+        // Not atomic: rows loaded before a failing line are kept
+        boolean header = Boolean.parseBoolean(stmt.options().getOrDefault("header", "false"));
+        PartitionedTable partitioned = partitionedTables.get(stmt.tableName());
         Table table = tables.get(stmt.tableName());
-        if (table == null) {
+        int before = partitioned != null ? partitioned.getRecordCount() : table.getRecordCount();
+        try (CsvReader reader = new CsvReader(Path.of(stmt.filePath()),
+                catalog.get(stmt.tableName()), header)) {
+            int loaded = partitioned != null ? partitioned.bulkLoadEncoded(reader) : table.bulkLoadEncoded(reader);
+            return new ExecutionResult(true, loaded, List.of(),
+                    "Copied " + loaded + " rows into " + stmt.tableName());
+        } catch (RuntimeException e) {
+            int copied = (partitioned != null ? partitioned.getRecordCount() : table.getRecordCount()) - before;
+            return new ExecutionResult(false, copied, List.of(),
+                    e.getMessage() + " (" + copied + " rows before it were copied)");
+        }
+    }
+
+    private ExecutionResult executeAnalyze(AnalyzeStatement stmt) {
+        List<String> tableNames;
+        if (stmt.tableName() != null) {
+            if (!catalog.containsKey(stmt.tableName())) {
+                return new ExecutionResult(false, 0, List.of(),
+                        "Table " + stmt.tableName() + " does not exist");
+            }
+            tableNames = List.of(stmt.tableName());
+        } else {
+            tableNames = new ArrayList<>(catalog.keySet());
+            Collections.sort(tableNames);
+        }
+
+        StringBuilder message = new StringBuilder();
+        for (String tableName : tableNames) {
+            TableStatistics stats = new StatisticsCollector(catalog.get(tableName))
+                    .collect(tablesFor(tableName, null));
+            statistics.put(tableName, stats);
+            if (message.length() > 0) message.append("\n");
+            message.append("Analyzed ").append(stats);
+        }
+
+        return new ExecutionResult(true, tableNames.size(), List.of(),
+                tableNames.isEmpty() ? "No tables to analyze" : message.toString());
+    }
+
+    /**
+     * ADD COLUMN only changes the catalog: stored rows are not rewritten,
+     * older rows get the default when they are read
+     */
+    private ExecutionResult executeAlterTable(AlterTableStatement stmt) {
+        TableSchema schema = catalog.get(stmt.tableName());
+        if (schema == null) {
             return new ExecutionResult(false, 0, List.of(),
                     "Table " + stmt.tableName() + " does not exist");
         }
 
-        List<com.minidb.storage.table.Record> results;
+        CreateTableStatement.ColumnDefinition column = stmt.column();
+        for (CreateTableStatement.ColumnDefinition existing : schema.columns()) {
+            if (existing.name().equalsIgnoreCase(column.name())) {
+                return new ExecutionResult(false, 0, List.of(),
+                        "Column " + column.name() + " already exists");
+            }
+        }
+        byte[] defaultValue = stmt.defaultValue() != null ? encodeValue(column, stmt.defaultValue()) : null;
+        List<Table> targets = tablesFor(stmt.tableName(), null);
+        if (defaultValue != null && !targets.stream().allMatch(Table::acceptsColumnDefault)) {
+            return new ExecutionResult(false, 0, List.of(), "Column " + column.name()
+                    + " cannot have a default: existing rows lack an earlier added column that has none");
+        }
+
+        for (Table table : targets) {
+            table.addColumn(defaultValue);
+        }
+        List<CreateTableStatement.ColumnDefinition> columns = new ArrayList<>(schema.columns());
+        columns.add(column);
+        catalog.put(stmt.tableName(), new TableSchema(schema.name(), List.copyOf(columns), schema.primaryKeyColumn()));
+
+        return new ExecutionResult(true, 0, List.of(),
+                "Column " + column.name() + " added to " + stmt.tableName());
+    }
 
-        if (stmt.whereClause() == null) {
+    /**
+     * Each partition of a partitioned table is indexed on its own, so a
+     * unique index there must include the partition key: equal keys then
+     * always land in the same partition
+     */
+    private ExecutionResult executeCreateIndex(CreateIndexStatement stmt) {
+        TableSchema schema = catalog.get(stmt.tableName());
+        if (schema == null) {
+            return new ExecutionResult(false, 0, List.of(),
+                    "Table " + stmt.tableName() + " does not exist");
+        }
+        for (Table table : getTables()) {
+            for (SecondaryIndex index : table.getSecondaryIndexes()) {
+                if (index.getName().equals(stmt.indexName())) {
+                    return new ExecutionResult(false, 0, List.of(),
+                            "Index " + stmt.indexName() + " already exists");
+                }
+            }
+        }
+
+        List<String> names = stmt.columnNames();
+        int[] columns = new int[names.size()];
+        KeyEncoder.Type[] types = new KeyEncoder.Type[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            if (names.indexOf(names.get(i)) != i) {
+                throw new IllegalArgumentException("Column indexed twice: " + names.get(i));
+            }
+            columns[i] = columnIndex(schema, names.get(i));
+            types[i] = keyType(schema.columns().get(columns[i]));
+        }
+        KeyEncoder key = new KeyEncoder(columns, types);
+
+        PartitionedTable partitioned = partitionedTables.get(stmt.tableName());
+        if (stmt.unique() && partitioned != null && !key.hasColumn(partitioned.getPartitioning().column())) {
+            throw new IllegalArgumentException("Unique index on a partitioned table must include the partition key: "
+                    + schema.columns().get(partitioned.getPartitioning().column()).name());
+        }
+
+        List<Table> targets = tablesFor(stmt.tableName(), null);
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                targets.get(i).createIndex(stmt.indexName(), key, stmt.unique());
+            } catch (IllegalArgumentException e) {
+                // Undo the partitions already indexed
+                for (int j = 0; j < i; j++) {
+                    targets.get(j).dropIndex(stmt.indexName());
+                }
+                throw e;
+            }
+        }
+
+        return new ExecutionResult(true, 0, List.of(), "Index " + stmt.indexName() + " created on "
+                + stmt.tableName() + "(" + String.join(", ", names) + ")");
+    }
+
+    private byte[] encodeValue(CreateTableStatement.ColumnDefinition column, Object value) {
+        com.minidb.storage.table.Record field = new com.minidb.storage.table.Record();
+        switch (column.type()) {
+            case INT, LONG -> {
+                if (!(value instanceof Integer number)) {
+                    throw new IllegalArgumentException("Default for " + column.name() + " must be a number");
+                }
+                if (column.type() == CreateTableStatement.ColumnDefinition.ColumnType.INT) {
+                    field.addField(number);
+                } else {
+                    field.addField(number.longValue());
+                }
+            }
+            case VARCHAR -> {
+                if (!(value instanceof String text)) {
+                    throw new IllegalArgumentException("Default for " + column.name() + " must be a string");
+                }
+                field.addField(text);
+            }
+        }
+        return field.getField(0);
+    }
+
+    private ExecutionResult executeSelect(SelectStatement stmt, Transaction txn) {
+        TableSchema schema = catalog.get(stmt.tableName());
+        if (schema == null) {
+            return new ExecutionResult(false, 0, List.of(),
+                    "Table " + stmt.tableName() + " does not exist");
+        }
+
+        // Rows are read lazily, after this returns: fail now on a bad plan
+        checkCondition(schema, stmt.whereClause());
+        List<String> readColumns = new ArrayList<>(stmt.columns());
+        if (stmt.orderBy() != null) {
+            columnIndex(schema, stmt.orderBy().column());
+            readColumns.add(stmt.orderBy().column());
+        }
+        int[] scanColumns = stmt.isSelectAll() ? null
+                : scanColumns(schema, readColumns, stmt.whereClause());
+
+        List<Table> tables = tablesFor(stmt.tableName(), stmt.whereClause());
+        RecordCursor results;
+        if (stmt.orderBy() != null && tables.size() > 1) {
+            // Each partition gives its first rows in order; their union is sorted again
+            List<com.minidb.storage.table.Record> rows = new ArrayList<>();
+            for (Table table : tables) {
+                try (RecordCursor partition = select(table, schema, stmt, scanColumns)) {
+                    partition.forEachRemaining(rows::add);
+                }
+            }
+            results = sorted(RecordCursor.of(rows), schema, stmt.orderBy(), stmt.limit());
+        } else {
+            // Partitions are read one after another, in partition order
+            results = RecordCursor.concat(tables, table -> select(table, schema, stmt, scanColumns));
+        }
+        if (stmt.hasLimit()) {
+            results = results.limit(stmt.limit());
+        }
+
+        if (!stmt.isSelectAll()) {
+            results = project(results, stmt.columns(), schema);
+        }
+
+        return ExecutionResult.streaming(results);
+    }
+
+    /**
+     * Rows of one table or partition matching the WHERE clause, in ORDER BY
+     * order and cut to the LIMIT if the statement has them. An index that
+     * returns rows in the wanted order is read in that direction and only
+     * as far as the LIMIT, so ORDER BY id DESC LIMIT 10 touches the last
+     * leaf or two of the primary index; otherwise the rows are sorted.
+     */
+    private RecordCursor select(Table table, TableSchema schema, SelectStatement stmt, int[] scanColumns) {
+        Condition condition = stmt.whereClause();
+        SelectStatement.OrderBy order = stmt.orderBy();
+        int orderColumn = order != null ? columnIndex(schema, order.column()) : -1;
+
+        // Primary key or secondary index if one applies
+        IndexPlan plan = condition != null ? bestPlan(table, schema, condition) : null;
+        if (plan == null && order != null) {
+            plan = orderPlan(table, orderColumn, condition == null);
+        }
+
+        RecordCursor results;
+        if (plan != null) {
+            results = read(table, plan, order != null && order.descending() && plan.orders(orderColumn));
+            if (!plan.exact()) {
+                RecordDecoder decoder = new RecordDecoder();
+                results = results.filter(record -> evaluateCondition(decode(record, decoder), condition, schema));
+            }
+        } else if (condition != null) {
+            results = scanWithFilter(table, schema, condition, scanColumns);
+        } else {
             // Full table scan
-            results = table.fullScan();
-        } else if (stmt.whereClause() instanceof SimpleCondition simple) {
-            // Try to use index if primary key
-            TableSchema schema = catalog.get(stmt.tableName());
-            if (schema.primaryKeyColumn() != null &&
-                    simple.column().equals(schema.primaryKeyColumn()) &&
-                    simple.operator() == SimpleCondition.Operator.EQ) {
-
-                // Index lookup
-                int key = (Integer) simple.value();
-                com.minidb.storage.table.Record record = table.searchByPrimaryKey(key);
-                results = record != null ? List.of(record) : List.of();
-            } else {
-                // Scan with filter
-                results = scanWithFilter(table, stmt.whereClause());
-            }
-        } else if (stmt.whereClause() instanceof BetweenCondition between) {
-            // Range scan if primary key
-            TableSchema schema = catalog.get(stmt.tableName());
-            if (schema.primaryKeyColumn() != null &&
-                    between.column().equals(schema.primaryKeyColumn())) {
-
-                int start = (Integer) between.startValue();
-                int end = (Integer) between.endValue();
-                results = table.rangeScanByPrimaryKey(start, end);
+            results = table.scan(scanColumns);
+        }
+
+        if (order != null && (plan == null || !plan.orders(orderColumn))) {
+            results = sorted(results, schema, order, stmt.limit());
+        }
+        return stmt.hasLimit() ? results.limit(stmt.limit()) : results;
+    }
+
+    /**
+     * Key range an index scan reads: [low, high), null for an open end.
+     * {@code index} is null for the primary key. A plan binding every key
+     * column of the primary key by equality is a point lookup.
+     */
+    private record IndexPlan(SecondaryIndex index, KeyEncoder key, byte[] low, byte[] high,
+                             int equalities, boolean ranged, boolean exact, boolean pointLookup) {
+        int score() {
+            return 2 * equalities + (ranged ? 1 : 0);
+        }
+
+        /**
+         * Whether the scan returns rows ordered by the column: the key
+         * column after the equalities, or one the equalities fix
+         */
+        boolean orders(int column) {
+            if (pointLookup) return true;
+            for (int i = 0; i < equalities; i++) {
+                if (key.getColumn(i) == column) return true;
+            }
+            return equalities < key.size() && key.getColumn(equalities) == column;
+        }
+    }
+
+    /**
+     * Plan reading the rows matching the condition through the primary
+     * key or a secondary index, in key order; null if no index applies.
+     * The AND-ed conditions give an index equality on its leading key
+     * columns and at most one range, or LIKE 'prefix%', on the column
+     * after them; the index binding the most columns wins, ties going to
+     * the primary key. Conditions the key range does not capture are
+     * checked on each row.
+     */
+    private IndexPlan bestPlan(Table table, TableSchema schema, Condition condition) {
+        List<Condition> conjuncts = new ArrayList<>();
+        addConjuncts(condition, conjuncts);
+
+        IndexPlan best = table.getPrimaryKey() != null
+                ? plan(table.getPrimaryKey(), null, conjuncts, schema) : null;
+        for (SecondaryIndex index : table.getSecondaryIndexes()) {
+            IndexPlan plan = plan(index.getKey(), index, conjuncts, schema);
+            if (plan != null && (best == null || plan.score() > best.score())) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plan reading a whole index led by the ORDER BY column, which returns
+     * rows already in order; null if the table has no such index
+     */
+    private IndexPlan orderPlan(Table table, int column, boolean exact) {
+        KeyEncoder primaryKey = table.getPrimaryKey();
+        if (primaryKey != null && primaryKey.getColumn(0) == column) {
+            return new IndexPlan(null, primaryKey, null, null, 0, false, exact, false);
+        }
+        for (SecondaryIndex index : table.getSecondaryIndexes()) {
+            // Rows missing from the index would be missing from the result
+            if (index.getKey().getColumn(0) == column && index.coversAllRows()) {
+                return new IndexPlan(index, index.getKey(), null, null, 0, false, exact, false);
+            }
+        }
+        return null;
+    }
+
+    private RecordCursor read(Table table, IndexPlan plan, boolean descending) {
+        if (plan.pointLookup()) {
+            com.minidb.storage.table.Record record = table.searchByPrimaryKey(plan.low());
+            return RecordCursor.of(record != null ? List.of(record) : List.of());
+        }
+        if (plan.index() == null) {
+            return table.indexRangeScan(plan.low(), plan.high(), descending);
+        }
+        return table.indexScan(plan.index(), plan.low(), plan.high(), descending);
+    }
+
+    /**
+     * Rows in ORDER BY order; with a LIMIT only the first {@code limit}
+     * are kept, in a bounded heap, instead of sorting them all
+     */
+    private RecordCursor sorted(RecordCursor rows, TableSchema schema, SelectStatement.OrderBy order, int limit) {
+        Comparator<com.minidb.storage.table.Record> comparator = rowOrder(schema, columnIndex(schema, order.column()));
+        if (order.descending()) {
+            comparator = comparator.reversed();
+        }
+
+        List<com.minidb.storage.table.Record> result;
+        try (rows) {
+            if (limit < 0) {
+                result = new ArrayList<>();
+                rows.forEachRemaining(result::add);
             } else {
-                results = scanWithFilter(table, stmt.whereClause());
+                // Head is the last row kept, dropped when a better one arrives
+                PriorityQueue<com.minidb.storage.table.Record> first = new PriorityQueue<>(comparator.reversed());
+                while (rows.hasNext()) {
+                    first.add(rows.next());
+                    if (first.size() > limit) {
+                        first.poll();
+                    }
+                }
+                result = new ArrayList<>(first);
             }
+        }
+        result.sort(comparator);
+        return RecordCursor.of(result);
+    }
+
+    /**
+     * Ascending order of a column; rows written before the column was
+     * added, which lack it, come first
+     */
+    private Comparator<com.minidb.storage.table.Record> rowOrder(TableSchema schema, int column) {
+        Comparator<com.minidb.storage.table.Record> byValue = switch (schema.columns().get(column).type()) {
+            case INT -> Comparator.comparingInt(record -> record.getFieldAsInt(column));
+            case LONG -> Comparator.comparingLong(record -> record.getFieldAsLong(column));
+            case VARCHAR -> Comparator.comparing(record -> record.getFieldAsString(column));
+        };
+        return (a, b) -> {
+            boolean hasA = column < a.getFieldCount();
+            boolean hasB = column < b.getFieldCount();
+            return hasA && hasB ? byValue.compare(a, b) : Boolean.compare(hasA, hasB);
+        };
+    }
+
+    private void addConjuncts(Condition condition, List<Condition> conjuncts) {
+        if (condition instanceof CompoundCondition compound
+                && compound.operator() == CompoundCondition.LogicalOperator.AND) {
+            addConjuncts(compound.left(), conjuncts);
+            addConjuncts(compound.right(), conjuncts);
         } else {
-            results = scanWithFilter(table, stmt.whereClause());
+            conjuncts.add(condition);
+        }
+    }
+
+    /**
+     * Key range the conditions give an index with the {@code key} columns,
+     * or null if they bind none of its leading columns. A secondary index
+     * missing rows that lack a key column is only used when every key
+     * column is bound, since such rows then cannot match.
+     */
+    private IndexPlan plan(KeyEncoder key, SecondaryIndex index, List<Condition> conjuncts, TableSchema schema) {
+        IndexKey.Builder prefix = new IndexKey.Builder();
+        int used = 0;
+        int equalities = 0;
+        while (equalities < key.size()) {
+            SimpleCondition equality = null;
+            for (Condition conjunct : conjuncts) {
+                if (conjunct instanceof SimpleCondition simple && simple.operator() == SimpleCondition.Operator.EQ
+                        && isKeyColumn(schema, simple.column(), key, equalities)
+                        && fitsKey(key, equalities, simple.value())) {
+                    equality = simple;
+                    break;
+                }
+            }
+            if (equality == null) break;
+            key.append(prefix, equalities++, equality.value());
+            used++;
         }
 
-        return new ExecutionResult(true, results.size(), results,
-                "Retrieved " + results.size() + " rows");
+        byte[] base = prefix.build();
+        byte[] low = base;
+        byte[] high = IndexKey.successor(base);
+        boolean ranged = false;
+        boolean exact = true;
+        for (Condition conjunct : equalities < key.size() ? conjuncts : List.<Condition>of()) {
+            byte[][] bounds = rangeBounds(conjunct, key, equalities, base, schema);
+            if (bounds == null) continue;
+            if (IndexKey.compare(bounds[0], low) > 0) {
+                low = bounds[0];
+            }
+            if (bounds[1] != null && (high == null || IndexKey.compare(bounds[1], high) < 0)) {
+                high = bounds[1];
+            }
+            ranged = true;
+            used++;
+            if (conjunct instanceof LikeCondition like && !like.pattern().equals(like.prefix() + "%")) {
+                exact = false; // The range only holds the rows with the prefix
+            }
+        }
+
+        int bound = equalities + (ranged ? 1 : 0);
+        if (bound == 0) return null;
+        if (index != null && bound < key.size() && !index.coversAllRows()) return null;
+        return new IndexPlan(index, key, low, high, equalities, ranged, exact && used == conjuncts.size(),
+                index == null && equalities == key.size());
+    }
+
+    /**
+     * [low, high) bounds, high null for none, that a range condition on
+     * key column {@code position} puts on keys starting with {@code base};
+     * null if the condition is not such a range
+     */
+    private byte[][] rangeBounds(Condition condition, KeyEncoder key, int position, byte[] base, TableSchema schema) {
+        if (condition instanceof SimpleCondition simple && isKeyColumn(schema, simple.column(), key, position)
+                && fitsKey(key, position, simple.value())) {
+            byte[] value = key.append(new IndexKey.Builder().addBytes(base), position, simple.value()).build();
+            byte[] after = IndexKey.successor(value);
+            return switch (simple.operator()) {
+                case LT -> new byte[][] {base, value};
+                case LTE -> new byte[][] {base, after};
+                // Nothing is greater than a key of all 0xFF bytes
+                case GT -> after != null ? new byte[][] {after, null} : new byte[][] {value, value};
+                case GTE -> new byte[][] {value, null};
+                case EQ, NEQ -> null;
+            };
+        }
+        if (condition instanceof BetweenCondition between && isKeyColumn(schema, between.column(), key, position)
+                && fitsKey(key, position, between.startValue()) && fitsKey(key, position, between.endValue())) {
+            byte[] start = key.append(new IndexKey.Builder().addBytes(base), position, between.startValue()).build();
+            byte[] end = key.append(new IndexKey.Builder().addBytes(base), position, between.endValue()).build();
+            return new byte[][] {start, IndexKey.successor(end)};
+        }
+        if (condition instanceof LikeCondition like && isKeyColumn(schema, like.column(), key, position)
+                && key.getType(position) == KeyEncoder.Type.STRING && !like.prefix().isEmpty()) {
+            byte[] start = key.appendPrefix(new IndexKey.Builder().addBytes(base), position, like.prefix()).build();
+            return new byte[][] {start, IndexKey.successor(start)};
+        }
+        return null;
+    }
+
+    private boolean isKeyColumn(TableSchema schema, String column, KeyEncoder key, int position) {
+        return columnIndex(schema, column) == key.getColumn(position);
+    }
+
+    /**
+     * Whether a literal can be encoded for key column {@code position}
+     */
+    private static boolean fitsKey(KeyEncoder key, int position, Object value) {
+        return key.getType(position) == KeyEncoder.Type.STRING ? value instanceof String : value instanceof Integer;
+    }
+
+    /**
+     * Point the decoder at a record fetched through an index, its
+     * out-of-line values read back in
+     */
+    private static RecordDecoder decode(com.minidb.storage.table.Record record, RecordDecoder decoder) {
+        List<byte[]> fields = new ArrayList<>(record.getFieldCount());
+        for (int i = 0; i < record.getFieldCount(); i++) {
+            fields.add(record.getField(i));
+        }
+        return decoder.wrap(new com.minidb.storage.table.Record(fields).serialize());
     }
 
     private ExecutionResult executeUpdate(UpdateStatement stmt, Transaction txn) {
-        Table table = tables.get(stmt.tableName());
-        if (table == null) {
+        TableSchema schema = catalog.get(stmt.tableName());
+        if (schema == null) {
             return new ExecutionResult(false, 0, List.of(),
                     "Table " + stmt.tableName() + " does not exist");
         }
 
-        // Find records to update
-        List<com.minidb.storage.table.Record> toUpdate = stmt.whereClause() == null ? table.fullScan()
-                : scanWithFilter(table, stmt.whereClause());
+        // Find records to update in every partition first, so rows that
+        // move to another partition are not visited twice
+        List<Table> targets = tablesFor(stmt.tableName(), stmt.whereClause());
+        List<List<Integer>> toUpdate = new ArrayList<>(targets.size());
+        for (Table table : targets) {
+            toUpdate.add(findRecordIds(table, schema, stmt.whereClause()));
+        }
 
+        PartitionedTable partitioned = partitionedTables.get(stmt.tableName());
         int updated = 0;
-        for (com.minidb.storage.table.Record record : toUpdate) {
-            // Create updated record
-            com.minidb.storage.table.Record newRecord = updateRecord(record, stmt.assignments(),
-                    catalog.get(stmt.tableName()));
-            if (table.updateRecord(0, newRecord)) { // Simplified
-                updated++;
+        for (int i = 0; i < targets.size(); i++) {
+            Table table = targets.get(i);
+            for (int recordId : toUpdate.get(i)) {
+                // Create updated record
+                com.minidb.storage.table.Record newRecord = updateRecord(table.getRecord(recordId),
+                        stmt.assignments(), schema);
+                Table target = partitioned != null ? partitioned.partitionFor(newRecord) : table;
+                if (target == table) {
+                    if (table.updateRecord(recordId, newRecord)) {
+                        updated++;
+                    }
+                } else {
+                    // Partition key changed: move the row, once the target
+                    // is known to take it
+                    target.checkInsert(newRecord);
+                    if (table.deleteRecord(recordId)) {
+                        target.insertRecord(newRecord);
+                        updated++;
+                    }
+                }
             }
         }
 
@@ -159,19 +759,19 @@ public class Executor {
     }
 
     private ExecutionResult executeDelete(DeleteStatement stmt, Transaction txn) {
-        Table table = tables.get(stmt.tableName());
-        if (table == null) {
+        TableSchema schema = catalog.get(stmt.tableName());
+        if (schema == null) {
             return new ExecutionResult(false, 0, List.of(),
                     "Table " + stmt.tableName() + " does not exist");
         }
 
-        List<com.minidb.storage.table.Record> toDelete = stmt.whereClause() == null ? table.fullScan()
-                : scanWithFilter(table, stmt.whereClause());
-
         int deleted = 0;
-        for (com.minidb.storage.table.Record record : toDelete) {
-            if (table.deleteRecord(0)) { // Simplified
-                deleted++;
+        for (Table table : tablesFor(stmt.tableName(), stmt.whereClause())) {
+            List<Integer> toDelete = findRecordIds(table, schema, stmt.whereClause());
+            for (int recordId : toDelete) {
+                if (table.deleteRecord(recordId)) {
+                    deleted++;
+                }
             }
         }
 
@@ -179,42 +779,258 @@ public class Executor {
                 "Deleted " + deleted + " rows");
     }
 
-    private List<com.minidb.storage.table.Record> scanWithFilter(Table table, Condition condition) {
-        List<com.minidb.storage.table.Record> results = new ArrayList<>();
+    /**
+     * Scan with filter. Only {@code columns} (null = all) are read, which
+     * lets columnar tables skip the minipages of every other column.
+     * Large tables are scanned in parallel, streamed in page order a few
+     * ranges of pages ahead of the reader. Pages whose zone map bounds rule
+     * out the condition are skipped.
+     */
+    private RecordCursor scanWithFilter(Table table, TableSchema schema, Condition condition, int[] columns) {
+        ZoneMap.KeyRange range = zoneRange(table, schema, condition);
+        if (table.getPageCount() >= PARALLEL_SCAN_MIN_PAGES) {
+            return table.parallelCursor(columns, row -> evaluateCondition(row, condition, schema), range);
+        }
+        return table.scan(columns, row -> evaluateCondition(row, condition, schema), range);
+    }
 
-        for (com.minidb.storage.table.Record record : table.fullScan()) {
-            if (evaluateCondition(record, condition)) {
-                results.add(record);
-            }
+    /**
+     * IDs of records matching the condition; order does not matter to
+     * UPDATE and DELETE, so large tables are scanned unordered in parallel
+     */
+    private List<Integer> findRecordIds(Table table, TableSchema schema, Condition condition) {
+        if (condition == null) {
+            return table.findRecordIds(record -> true);
+        }
+        int[] columns = scanColumns(schema, List.of(), condition);
+        ZoneMap.KeyRange range = zoneRange(table, schema, condition);
+        if (table.getPageCount() >= PARALLEL_SCAN_MIN_PAGES) {
+            return table.parallelFindRecordIds(columns,
+                    row -> evaluateCondition(row, condition, schema), range);
         }
+        return table.findRecordIdsInPlace(columns, row -> evaluateCondition(row, condition, schema), range);
+    }
 
-        return results;
+    /**
+     * Key range a simple or BETWEEN condition implies for the table's
+     * zone map, or null if pages cannot be skipped for it
+     */
+    private ZoneMap.KeyRange zoneRange(Table table, TableSchema schema, Condition condition) {
+        ZoneMap zoneMap = table.getZoneMap();
+        if (zoneMap == null) return null;
+
+        if (condition instanceof SimpleCondition simple) {
+            int column = columnIndex(schema, simple.column());
+            Object value = simple.value();
+            return switch (simple.operator()) {
+                case EQ -> zoneMap.range(column, value, true, value, true);
+                case LT -> zoneMap.range(column, null, false, value, false);
+                case LTE -> zoneMap.range(column, null, false, value, true);
+                case GT -> zoneMap.range(column, value, false, null, false);
+                case GTE -> zoneMap.range(column, value, true, null, false);
+                case NEQ -> null;
+            };
+        }
+        if (condition instanceof BetweenCondition between) {
+            return zoneMap.range(columnIndex(schema, between.column()),
+                    between.startValue(), true, between.endValue(), true);
+        }
+        return null;
+    }
+
+    /**
+     * Tables a statement on {@code tableName} reads: the table itself, or
+     * the partitions whose key range the condition can match
+     */
+    private List<Table> tablesFor(String tableName, Condition condition) {
+        PartitionedTable partitioned = partitionedTables.get(tableName);
+        if (partitioned == null) {
+            return List.of(tables.get(tableName));
+        }
+
+        String keyColumn = catalog.get(tableName).columns()
+                .get(partitioned.getPartitioning().column()).name();
+        long[] range = keyRange(condition, keyColumn);
+        if (range == null) {
+            return partitioned.getPartitions();
+        }
+        if (range[0] > range[1]) {
+            return List.of();
+        }
+        return partitioned.partitionsFor((int) range[0], (int) range[1]);
+    }
+
+    /**
+     * Inclusive [low, high] bounds a condition puts on an INT column,
+     * or null if it does not bound it
+     */
+    private long[] keyRange(Condition condition, String column) {
+        if (condition instanceof SimpleCondition simple && simple.column().equals(column)
+                && simple.value() instanceof Integer value) {
+            return switch (simple.operator()) {
+                case EQ -> new long[] {value, value};
+                case LT -> new long[] {Integer.MIN_VALUE, value - 1L};
+                case LTE -> new long[] {Integer.MIN_VALUE, value};
+                case GT -> new long[] {value + 1L, Integer.MAX_VALUE};
+                case GTE -> new long[] {value, Integer.MAX_VALUE};
+                case NEQ -> null;
+            };
+        }
+        if (condition instanceof BetweenCondition between && between.column().equals(column)
+                && between.startValue() instanceof Integer start
+                && between.endValue() instanceof Integer end) {
+            return new long[] {start, end};
+        }
+        if (condition instanceof CompoundCondition compound
+                && compound.operator() == CompoundCondition.LogicalOperator.AND) {
+            long[] left = keyRange(compound.left(), column);
+            long[] right = keyRange(compound.right(), column);
+            if (left == null || right == null) return left != null ? left : right;
+            return new long[] {Math.max(left[0], right[0]), Math.min(left[1], right[1])};
+        }
+        return null; // OR is not pruned
+    }
+
+    /**
+     * Column indexes a query reads: its projection plus its WHERE columns
+     */
+    private int[] scanColumns(TableSchema schema, List<String> projection, Condition condition) {
+        Set<Integer> columns = new TreeSet<>();
+        for (String column : projection) {
+            columns.add(columnIndex(schema, column));
+        }
+        addConditionColumns(schema, condition, columns);
+        return columns.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void addConditionColumns(TableSchema schema, Condition condition, Set<Integer> columns) {
+        if (condition instanceof SimpleCondition simple) {
+            columns.add(columnIndex(schema, simple.column()));
+        } else if (condition instanceof BetweenCondition between) {
+            columns.add(columnIndex(schema, between.column()));
+        } else if (condition instanceof LikeCondition like) {
+            columns.add(columnIndex(schema, like.column()));
+        } else if (condition instanceof CompoundCondition compound) {
+            addConditionColumns(schema, compound.left(), columns);
+            addConditionColumns(schema, compound.right(), columns);
+        }
+    }
+
+    /**
+     * Fail if the condition names an unknown column or compares a number
+     * column with text, which evaluating it would otherwise only find row
+     * by row
+     */
+    private void checkCondition(TableSchema schema, Condition condition) {
+        if (condition instanceof SimpleCondition simple) {
+            checkLiteral(schema, simple.column(), simple.value());
+        } else if (condition instanceof BetweenCondition between) {
+            checkLiteral(schema, between.column(), between.startValue());
+            checkLiteral(schema, between.column(), between.endValue());
+        } else if (condition instanceof LikeCondition like) {
+            columnIndex(schema, like.column());
+        } else if (condition instanceof CompoundCondition compound) {
+            checkCondition(schema, compound.left());
+            checkCondition(schema, compound.right());
+        }
+    }
+
+    private void checkLiteral(TableSchema schema, String column, Object value) {
+        var type = schema.columns().get(columnIndex(schema, column)).type();
+        if (type != CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR && !(value instanceof Integer)) {
+            throw new IllegalArgumentException("Cannot compare " + type + " column " + column
+                    + " with '" + value + "'");
+        }
     }
 
-    private boolean evaluateCondition(com.minidb.storage.table.Record record, Condition condition) {
+    /**
+     * Evaluate a condition against a row read in place
+     */
+    private boolean evaluateCondition(RecordDecoder row, Condition condition, TableSchema schema) {
         if (condition instanceof SimpleCondition simple) {
-            // Simplified: assume first field is what we're comparing
-            Object recordValue = record.getFieldAsInt(0);
-            Object condValue = simple.value();
+            int index = columnIndex(schema, simple.column());
+            if (index >= row.getFieldCount()) return false; // Null matches nothing
+            boolean isText = schema.columns().get(index).type()
+                    == CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR;
+            if (isText && (simple.operator() == SimpleCondition.Operator.EQ
+                    || simple.operator() == SimpleCondition.Operator.NEQ)) {
+                // Matched on dictionary codes where the page has them
+                boolean equal = row.fieldEquals(index, simple.value().toString());
+                return equal == (simple.operator() == SimpleCondition.Operator.EQ);
+            }
+
+            int cmp = compareField(row, schema, simple.column(), simple.value());
 
             return switch (simple.operator()) {
-                case EQ -> recordValue.equals(condValue);
-                case NEQ -> !recordValue.equals(condValue);
-                case LT -> ((Integer) recordValue) < (Integer) condValue;
-                case GT -> ((Integer) recordValue) > (Integer) condValue;
-                case LTE -> ((Integer) recordValue) <= (Integer) condValue;
-                case GTE -> ((Integer) recordValue) >= (Integer) condValue;
+                case EQ -> cmp == 0;
+                case NEQ -> cmp != 0;
+                case LT -> cmp < 0;
+                case GT -> cmp > 0;
+                case LTE -> cmp <= 0;
+                case GTE -> cmp >= 0;
             };
         } else if (condition instanceof BetweenCondition between) {
-            int recordValue = record.getFieldAsInt(0);
-            int start = (Integer) between.startValue();
-            int end = (Integer) between.endValue();
-            return recordValue >= start && recordValue <= end;
+            if (columnIndex(schema, between.column()) >= row.getFieldCount()) return false;
+            return compareField(row, schema, between.column(), between.startValue()) >= 0
+                    && compareField(row, schema, between.column(), between.endValue()) <= 0;
+        } else if (condition instanceof LikeCondition like) {
+            int index = columnIndex(schema, like.column());
+            if (index >= row.getFieldCount()) return false;
+            // Numbers match on their decimal text
+            String text = switch (schema.columns().get(index).type()) {
+                case INT -> String.valueOf(row.getInt(index));
+                case LONG -> String.valueOf(row.getLong(index));
+                case VARCHAR -> row.getFieldAsString(index);
+            };
+            return like.matches(text);
+        } else if (condition instanceof CompoundCondition compound) {
+            boolean left = evaluateCondition(row, compound.left(), schema);
+            return compound.operator() == CompoundCondition.LogicalOperator.AND
+                    ? left && evaluateCondition(row, compound.right(), schema)
+                    : left || evaluateCondition(row, compound.right(), schema);
         }
 
         return true;
     }
 
+    /**
+     * Compare a row's column against a literal. Only the referenced field
+     * is read, so other (possibly out-of-line) columns are untouched.
+     */
+    private int compareField(RecordDecoder row, TableSchema schema, String column, Object value) {
+        int index = columnIndex(schema, column);
+        return switch (schema.columns().get(index).type()) {
+            case INT -> Integer.compare(row.getInt(index), (Integer) value);
+            case LONG -> Long.compare(row.getLong(index), ((Integer) value).longValue());
+            case VARCHAR -> row.compareString(index, value.toString());
+        };
+    }
+
+    private RecordCursor project(RecordCursor records, List<String> columns, TableSchema schema) {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columnIndex(schema, columns.get(i));
+        }
+
+        return records.map(record -> {
+            com.minidb.storage.table.Record row = new com.minidb.storage.table.Record();
+            for (int index : indexes) {
+                // Columns added without a default are empty in older rows
+                row.addField(index < record.getFieldCount() ? record.getField(index) : new byte[0]);
+            }
+            return row;
+        });
+    }
+
+    private int columnIndex(TableSchema schema, String column) {
+        for (int i = 0; i < schema.columns().size(); i++) {
+            if (schema.columns().get(i).name().equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + column);
+    }
+
     private com.minidb.storage.table.Record updateRecord(com.minidb.storage.table.Record oldRecord,
             Map<String, Object> assignments,
             TableSchema schema) {
@@ -230,20 +1046,58 @@ public class Executor {
                     case LONG -> newRecord.addField(((Integer) newValue).longValue());
                     case VARCHAR -> newRecord.addField((String) newValue);
                 }
-            } else {
+            } else if (i < oldRecord.getFieldCount()) {
                 // Keep old value
                 newRecord.addField(oldRecord.getField(i));
+            } else if (assignsAfter(assignments, schema, i)) {
+                // Missing column ahead of one being set: store its zero value
+                switch (colDef.type()) {
+                    case INT -> newRecord.addField(0);
+                    case LONG -> newRecord.addField(0L);
+                    case VARCHAR -> newRecord.addField("");
+                }
+            } else {
+                break; // Columns added without a default stay missing
             }
         }
 
         return newRecord;
     }
 
+    private boolean assignsAfter(Map<String, Object> assignments, TableSchema schema, int column) {
+        for (int i = column + 1; i < schema.columns().size(); i++) {
+            if (assignments.containsKey(schema.columns().get(i).name())) return true;
+        }
+        return false;
+    }
+
     public Table getTable(String name) {
         return tables.get(name);
     }
 
+    public PartitionedTable getPartitionedTable(String name) {
+        return partitionedTables.get(name);
+    }
+
+    /**
+     * Every stored table, counting each partition as a table
+     */
+    public Collection<Table> getTables() {
+        List<Table> all = new ArrayList<>(tables.values());
+        for (PartitionedTable partitioned : partitionedTables.values()) {
+            all.addAll(partitioned.getPartitions());
+        }
+        return all;
+    }
+
     public TableSchema getSchema(String name) {
         return catalog.get(name);
     }
+
+    /**
+     * Statistics from the last ANALYZE of the table, null if never analyzed
+     */
+    public TableStatistics getStatistics(String name) {
+        return statistics.get(name);
+    }
 }
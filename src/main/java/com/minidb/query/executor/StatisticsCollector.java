@@ -0,0 +1,141 @@
+package com.minidb.query.executor;
+
+import com.minidb.catalog.*;
+import com.minidb.query.parser.CreateTableStatement;
+import com.minidb.storage.table.RecordDecoder;
+import com.minidb.storage.table.Table;
+import java.util.*;
+
+/**
+ * Collects table statistics for ANALYZE in one pass over the rows
+ *
+ * Rows are read in place. Min, max, nulls and the distinct estimate see
+ * every value; histograms are built from a reservoir sample per column.
+ */
+class StatisticsCollector {
+    private static final int SAMPLE_SIZE = 10_000;
+    private static final int HISTOGRAM_BUCKETS = 32;
+
+    private final TableSchema schema;
+    private final ColumnCollector[] columns;
+    private final Random random;
+    private long rowCount;
+
+    StatisticsCollector(TableSchema schema) {
+        this.schema = schema;
+        this.columns = new ColumnCollector[schema.columns().size()];
+        this.random = new Random(SAMPLE_SIZE);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ColumnCollector(i, schema.columns().get(i).type());
+        }
+    }
+
+    /**
+     * @param tables the table, or every partition of a partitioned table
+     */
+    TableStatistics collect(List<Table> tables) {
+        int pageCount = 0;
+        for (Table table : tables) {
+            table.forEachRow(null, row -> {
+                rowCount++;
+                for (ColumnCollector column : columns) {
+                    column.accept(row);
+                }
+            });
+            pageCount += table.getPageCount();
+        }
+
+        List<ColumnStatistics> columnStatistics = new ArrayList<>(columns.length);
+        for (ColumnCollector column : columns) {
+            columnStatistics.add(column.finish(schema.columns().get(column.index).name()));
+        }
+        return new TableStatistics(schema.name(), rowCount, pageCount,
+                List.copyOf(columnStatistics), System.currentTimeMillis());
+    }
+
+    private class ColumnCollector {
+        private final int index;
+        private final CreateTableStatement.ColumnDefinition.ColumnType type;
+        private final HyperLogLog distinct = new HyperLogLog();
+        private final List<Object> sample = new ArrayList<>();
+        private long values;
+        private long minNumber = Long.MAX_VALUE;
+        private long maxNumber = Long.MIN_VALUE;
+        private String minString;
+        private String maxString;
+
+        ColumnCollector(int index, CreateTableStatement.ColumnDefinition.ColumnType type) {
+            this.index = index;
+            this.type = type;
+        }
+
+        void accept(RecordDecoder row) {
+            if (index >= row.getFieldCount()) return; // Null
+
+            values++;
+            switch (type) {
+                case INT, LONG -> {
+                    long value = type == CreateTableStatement.ColumnDefinition.ColumnType.INT
+                            ? row.getInt(index) : row.getLong(index);
+                    minNumber = Math.min(minNumber, value);
+                    maxNumber = Math.max(maxNumber, value);
+                    distinct.add(value);
+                    int slot = sampleSlot();
+                    if (slot >= 0) {
+                        sample(slot, type == CreateTableStatement.ColumnDefinition.ColumnType.INT
+                                ? (Object) (int) value : (Object) value);
+                    }
+                }
+                case VARCHAR -> {
+                    if (minString == null || row.compareString(index, minString) < 0) {
+                        minString = row.getFieldAsString(index);
+                    }
+                    if (maxString == null || row.compareString(index, maxString) > 0) {
+                        maxString = row.getFieldAsString(index);
+                    }
+                    distinct.addHash(HyperLogLog.mix(row.hashField(index)));
+                    int slot = sampleSlot();
+                    if (slot >= 0) {
+                        sample(slot, row.getFieldAsString(index));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reservoir slot for the current value, -1 to skip it
+         */
+        private int sampleSlot() {
+            if (values <= SAMPLE_SIZE) return (int) values - 1;
+            long slot = random.nextLong(values);
+            return slot < SAMPLE_SIZE ? (int) slot : -1;
+        }
+
+        private void sample(int slot, Object value) {
+            if (slot == sample.size()) {
+                sample.add(value);
+            } else {
+                sample.set(slot, value);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ColumnStatistics finish(String name) {
+            Object min = null;
+            Object max = null;
+            if (values > 0) {
+                switch (type) {
+                    case INT -> { min = (int) minNumber; max = (int) maxNumber; }
+                    case LONG -> { min = minNumber; max = maxNumber; }
+                    case VARCHAR -> { min = minString; max = maxString; }
+                }
+            }
+
+            sample.sort((a, b) -> ((Comparable) a).compareTo(b));
+            double nullFraction = rowCount == 0 ? 0 : (double) (rowCount - values) / rowCount;
+            return new ColumnStatistics(name, min, max, nullFraction,
+                    values == 0 ? 0 : distinct.estimate(),
+                    Histogram.fromSortedSample(sample, values, HISTOGRAM_BUCKETS));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.minidb.query.parser;
+
+/**
+ * ALTER TABLE ... ADD COLUMN statement
+ *
+ * @param defaultValue value rows written before the column existed read as
+ *                     (null = none, those rows read the column as missing)
+ */
+public record AlterTableStatement(
+        String tableName,
+        CreateTableStatement.ColumnDefinition column,
+        Object defaultValue) implements Statement {
+
+    @Override
+    public StatementType getType() {
+        return StatementType.ALTER_TABLE;
+    }
+}
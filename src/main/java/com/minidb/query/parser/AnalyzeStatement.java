@@ -0,0 +1,13 @@
+package com.minidb.query.parser;
+
+/**
+ * ANALYZE statement (collect table statistics)
+ *
+ * @param tableName table to analyze, or null for every table
+ */
+public record AnalyzeStatement(String tableName) implements Statement {
+    @Override
+    public StatementType getType() {
+        return StatementType.ANALYZE;
+    }
+}
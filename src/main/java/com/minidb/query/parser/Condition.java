@@ -3,5 +3,5 @@ package com.minidb.query.parser;
 /**
  * WHERE clause condition
  */
-public sealed interface Condition permits SimpleCondition, BetweenCondition, CompoundCondition {
+public sealed interface Condition permits SimpleCondition, BetweenCondition, LikeCondition, CompoundCondition {
 }
@@ -0,0 +1,16 @@
+package com.minidb.query.parser;
+
+import java.util.Map;
+
+/**
+ * COPY ... FROM statement (bulk load from CSV)
+ */
+public record CopyStatement(
+        String tableName,
+        String filePath,
+        Map<String, String> options) implements Statement {
+    @Override
+    public StatementType getType() {
+        return StatementType.COPY;
+    }
+}
@@ -0,0 +1,21 @@
+package com.minidb.query.parser;
+
+import java.util.List;
+
+/**
+ * CREATE [UNIQUE] INDEX statement
+ *
+ * @param columnNames the key columns, most significant first
+ * @param unique whether two rows may not share a value of the key
+ */
+public record CreateIndexStatement(
+        String indexName,
+        String tableName,
+        List<String> columnNames,
+        boolean unique) implements Statement {
+
+    @Override
+    public StatementType getType() {
+        return StatementType.CREATE_INDEX;
+    }
+}
@@ -1,6 +1,7 @@
 package com.minidb.query.parser;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * CREATE TABLE statement
@@ -8,7 +9,15 @@ import java.util.List;
 public record CreateTableStatement(
         String tableName,
         List<ColumnDefinition> columns,
-        String primaryKeyColumn) implements Statement {
+        String primaryKeyColumn,
+        Map<String, String> options,
+        PartitionClause partitioning) implements Statement {
+
+    public CreateTableStatement(String tableName, List<ColumnDefinition> columns,
+                                String primaryKeyColumn, Map<String, String> options) {
+        this(tableName, columns, primaryKeyColumn, options, null);
+    }
+
     @Override
     public StatementType getType() {
         return StatementType.CREATE_TABLE;
@@ -19,4 +28,16 @@ public record CreateTableStatement(
             INT, LONG, VARCHAR
         }
     }
+
+    /**
+     * PARTITION BY RANGE(column) (bound, ...) or PARTITION BY HASH(column) PARTITIONS n
+     *
+     * @param bounds ascending split points of a range partitioning
+     * @param partitionCount number of hash partitions
+     */
+    public record PartitionClause(PartitionType type, String column, List<Integer> bounds, int partitionCount) {
+        public enum PartitionType {
+            RANGE, HASH
+        }
+    }
 }
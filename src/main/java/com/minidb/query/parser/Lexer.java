@@ -29,7 +29,27 @@ public class Lexer {
         Map.entry("LONG", Token.TokenType.LONG),
         Map.entry("AND", Token.TokenType.AND),
         Map.entry("OR", Token.TokenType.OR),
-        Map.entry("BETWEEN", Token.TokenType.BETWEEN)
+        Map.entry("BETWEEN", Token.TokenType.BETWEEN),
+        Map.entry("WITH", Token.TokenType.WITH),
+        Map.entry("COPY", Token.TokenType.COPY),
+        Map.entry("ANALYZE", Token.TokenType.ANALYZE),
+        Map.entry("PARTITION", Token.TokenType.PARTITION),
+        Map.entry("PARTITIONS", Token.TokenType.PARTITIONS),
+        Map.entry("BY", Token.TokenType.BY),
+        Map.entry("RANGE", Token.TokenType.RANGE),
+        Map.entry("HASH", Token.TokenType.HASH),
+        Map.entry("ALTER", Token.TokenType.ALTER),
+        Map.entry("ADD", Token.TokenType.ADD),
+        Map.entry("COLUMN", Token.TokenType.COLUMN),
+        Map.entry("DEFAULT", Token.TokenType.DEFAULT),
+        Map.entry("INDEX", Token.TokenType.INDEX),
+        Map.entry("UNIQUE", Token.TokenType.UNIQUE),
+        Map.entry("ON", Token.TokenType.ON),
+        Map.entry("LIKE", Token.TokenType.LIKE),
+        Map.entry("ORDER", Token.TokenType.ORDER),
+        Map.entry("ASC", Token.TokenType.ASC),
+        Map.entry("DESC", Token.TokenType.DESC),
+        Map.entry("LIMIT", Token.TokenType.LIMIT)
     );
     
     public Lexer(String input) {
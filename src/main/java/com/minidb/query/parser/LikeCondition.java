@@ -0,0 +1,48 @@
+package com.minidb.query.parser;
+
+/**
+ * LIKE condition: % matches any run of characters, _ any one character
+ */
+public record LikeCondition(
+        String column,
+        String pattern) implements Condition {
+
+    /**
+     * Characters every match starts with: the pattern up to its first wildcard
+     */
+    public String prefix() {
+        int end = 0;
+        while (end < pattern.length() && pattern.charAt(end) != '%' && pattern.charAt(end) != '_') {
+            end++;
+        }
+        return pattern.substring(0, end);
+    }
+
+    /**
+     * Whether the value matches, backtracking only to the last % seen
+     */
+    public boolean matches(String value) {
+        int v = 0;
+        int p = 0;
+        int star = -1; // Pattern position after the last %
+        int resume = 0; // Where that % would next extend its match
+        while (v < value.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == '%') {
+                star = ++p;
+                resume = v;
+            } else if (p < pattern.length() && (pattern.charAt(p) == '_' || pattern.charAt(p) == value.charAt(v))) {
+                p++;
+                v++;
+            } else if (star != -1) {
+                p = star;
+                v = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '%') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+}
@@ -21,18 +21,31 @@ public class SQLParser {
      */
     public Statement parse() {
         return switch (currentToken.type()) {
-            case CREATE -> parseCreateTable();
+            case CREATE -> parseCreate();
             case INSERT -> parseInsert();
             case SELECT -> parseSelect();
             case UPDATE -> parseUpdate();
             case DELETE -> parseDelete();
+            case COPY -> parseCopy();
+            case ANALYZE -> parseAnalyze();
+            case ALTER -> parseAlterTable();
             default -> throw new ParseException("Unexpected token: " + currentToken);
         };
     }
     
+    private Statement parseCreate() {
+        consume(Token.TokenType.CREATE);
+        return switch (currentToken.type()) {
+            case TABLE -> parseCreateTable();
+            case INDEX, UNIQUE -> parseCreateIndex();
+            default -> throw new ParseException("Expected TABLE or INDEX, got: " + currentToken);
+        };
+    }
+    
     // CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR, email VARCHAR)
+    // CREATE TABLE events (id INT PRIMARY KEY, kind VARCHAR) WITH (storage = columnar)
+    // CREATE TABLE orders (id INT PRIMARY KEY, total LONG) PARTITION BY HASH(id) PARTITIONS 8
     private Statement parseCreateTable() {
-        consume(Token.TokenType.CREATE);
         consume(Token.TokenType.TABLE);
         
         String tableName = consume(Token.TokenType.IDENTIFIER).value();
@@ -46,41 +59,182 @@ public class SQLParser {
                 consume(Token.TokenType.COMMA);
             }
             
-            String colName = consume(Token.TokenType.IDENTIFIER).value();
-            Token typeToken = advance();
-            
-            CreateTableStatement.ColumnDefinition.ColumnType colType = switch (typeToken.type()) {
-                case INT -> CreateTableStatement.ColumnDefinition.ColumnType.INT;
-                case LONG -> CreateTableStatement.ColumnDefinition.ColumnType.LONG;
-                case VARCHAR -> CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR;
-                default -> throw new ParseException("Expected type, got: " + typeToken);
-            };
-            
-            int length = 0;
-            if (colType == CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR) {
-                if (currentToken.type() == Token.TokenType.LPAREN) {
-                    consume(Token.TokenType.LPAREN);
-                    length = Integer.parseInt(consume(Token.TokenType.NUMBER).value());
-                    consume(Token.TokenType.RPAREN);
-                } else {
-                    length = 255; // Default
-                }
-            }
-            
-            columns.add(new CreateTableStatement.ColumnDefinition(colName, colType, length));
+            CreateTableStatement.ColumnDefinition column = parseColumnDefinition();
+            columns.add(column);
             
             // Check for PRIMARY KEY
             if (currentToken.type() == Token.TokenType.PRIMARY) {
                 consume(Token.TokenType.PRIMARY);
                 consume(Token.TokenType.KEY);
-                primaryKey = colName;
+                primaryKey = column.name();
             }
-            
+        
         } while (currentToken.type() == Token.TokenType.COMMA);
         
         consume(Token.TokenType.RPAREN);
         
-        return new CreateTableStatement(tableName, columns, primaryKey);
+        Map<String, String> options = parseOptions();
+        CreateTableStatement.PartitionClause partitioning = parsePartitionClause();
+        
+        return new CreateTableStatement(tableName, columns, primaryKey, options, partitioning);
+    }
+    
+    // CREATE INDEX users_age ON users(age) or CREATE UNIQUE INDEX ...
+    // CREATE INDEX users_name ON users(last_name, first_name)
+    private Statement parseCreateIndex() {
+        boolean unique = currentToken.type() == Token.TokenType.UNIQUE;
+        if (unique) {
+            consume(Token.TokenType.UNIQUE);
+        }
+        consume(Token.TokenType.INDEX);
+        String indexName = consume(Token.TokenType.IDENTIFIER).value();
+        
+        consume(Token.TokenType.ON);
+        String tableName = consume(Token.TokenType.IDENTIFIER).value();
+        consume(Token.TokenType.LPAREN);
+        List<String> columns = new ArrayList<>();
+        columns.add(consume(Token.TokenType.IDENTIFIER).value());
+        while (currentToken.type() == Token.TokenType.COMMA) {
+            consume(Token.TokenType.COMMA);
+            columns.add(consume(Token.TokenType.IDENTIFIER).value());
+        }
+        consume(Token.TokenType.RPAREN);
+        
+        return new CreateIndexStatement(indexName, tableName, columns, unique);
+    }
+    
+    // name INT, name LONG or name VARCHAR(n)
+    private CreateTableStatement.ColumnDefinition parseColumnDefinition() {
+        String colName = consume(Token.TokenType.IDENTIFIER).value();
+        Token typeToken = advance();
+        
+        CreateTableStatement.ColumnDefinition.ColumnType colType = switch (typeToken.type()) {
+            case INT -> CreateTableStatement.ColumnDefinition.ColumnType.INT;
+            case LONG -> CreateTableStatement.ColumnDefinition.ColumnType.LONG;
+            case VARCHAR -> CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR;
+            default -> throw new ParseException("Expected type, got: " + typeToken);
+        };
+        
+        int length = 0;
+        if (colType == CreateTableStatement.ColumnDefinition.ColumnType.VARCHAR) {
+            if (currentToken.type() == Token.TokenType.LPAREN) {
+                consume(Token.TokenType.LPAREN);
+                length = Integer.parseInt(consume(Token.TokenType.NUMBER).value());
+                consume(Token.TokenType.RPAREN);
+            } else {
+                length = 255; // Default
+            }
+        }
+        
+        return new CreateTableStatement.ColumnDefinition(colName, colType, length);
+    }
+    
+    // ALTER TABLE users ADD COLUMN age INT DEFAULT 0
+    private Statement parseAlterTable() {
+        consume(Token.TokenType.ALTER);
+        consume(Token.TokenType.TABLE);
+        String tableName = consume(Token.TokenType.IDENTIFIER).value();
+        
+        consume(Token.TokenType.ADD);
+        if (currentToken.type() == Token.TokenType.COLUMN) {
+            consume(Token.TokenType.COLUMN);
+        }
+        CreateTableStatement.ColumnDefinition column = parseColumnDefinition();
+        
+        Object defaultValue = null;
+        if (currentToken.type() == Token.TokenType.DEFAULT) {
+            consume(Token.TokenType.DEFAULT);
+            defaultValue = parseValue();
+        }
+        
+        return new AlterTableStatement(tableName, column, defaultValue);
+    }
+    
+    // Optional PARTITION BY RANGE(id) (1000, 2000) or PARTITION BY HASH(id) PARTITIONS 4
+    private CreateTableStatement.PartitionClause parsePartitionClause() {
+        if (currentToken.type() != Token.TokenType.PARTITION) {
+            return null;
+        }
+        
+        consume(Token.TokenType.PARTITION);
+        consume(Token.TokenType.BY);
+        Token typeToken = advance();
+        CreateTableStatement.PartitionClause.PartitionType type = switch (typeToken.type()) {
+            case RANGE -> CreateTableStatement.PartitionClause.PartitionType.RANGE;
+            case HASH -> CreateTableStatement.PartitionClause.PartitionType.HASH;
+            default -> throw new ParseException("Expected RANGE or HASH, got: " + typeToken);
+        };
+        
+        consume(Token.TokenType.LPAREN);
+        String column = consume(Token.TokenType.IDENTIFIER).value();
+        consume(Token.TokenType.RPAREN);
+        
+        List<Integer> bounds = new ArrayList<>();
+        int partitionCount;
+        if (type == CreateTableStatement.PartitionClause.PartitionType.RANGE) {
+            consume(Token.TokenType.LPAREN);
+            do {
+                if (currentToken.type() == Token.TokenType.COMMA) {
+                    consume(Token.TokenType.COMMA);
+                }
+                bounds.add(Integer.parseInt(consume(Token.TokenType.NUMBER).value()));
+            } while (currentToken.type() == Token.TokenType.COMMA);
+            consume(Token.TokenType.RPAREN);
+            partitionCount = bounds.size() + 1;
+        } else {
+            consume(Token.TokenType.PARTITIONS);
+            partitionCount = Integer.parseInt(consume(Token.TokenType.NUMBER).value());
+        }
+        
+        return new CreateTableStatement.PartitionClause(type, column, List.copyOf(bounds), partitionCount);
+    }
+    
+    // COPY users FROM 'users.csv' WITH (header = true)
+    private Statement parseCopy() {
+        consume(Token.TokenType.COPY);
+        String tableName = consume(Token.TokenType.IDENTIFIER).value();
+        
+        consume(Token.TokenType.FROM);
+        String filePath = consume(Token.TokenType.STRING).value();
+        
+        Map<String, String> options = parseOptions();
+        
+        return new CopyStatement(tableName, filePath, options);
+    }
+    
+    // ANALYZE users, or ANALYZE for every table
+    private Statement parseAnalyze() {
+        consume(Token.TokenType.ANALYZE);
+        
+        String tableName = null;
+        if (currentToken.type() == Token.TokenType.IDENTIFIER) {
+            tableName = consume(Token.TokenType.IDENTIFIER).value();
+        }
+        
+        return new AnalyzeStatement(tableName);
+    }
+    
+    // Optional WITH (name = value, ...)
+    private Map<String, String> parseOptions() {
+        Map<String, String> options = new HashMap<>();
+        if (currentToken.type() != Token.TokenType.WITH) {
+            return options;
+        }
+        
+        consume(Token.TokenType.WITH);
+        consume(Token.TokenType.LPAREN);
+        do {
+            if (currentToken.type() == Token.TokenType.COMMA) {
+                consume(Token.TokenType.COMMA);
+            }
+            
+            String name = consume(Token.TokenType.IDENTIFIER).value();
+            consume(Token.TokenType.EQUALS);
+            options.put(name.toLowerCase(), advance().value().toLowerCase());
+        } while (currentToken.type() == Token.TokenType.COMMA);
+        consume(Token.TokenType.RPAREN);
+        
+        return options;
     }
     
     // INSERT INTO users VALUES (1, 'Alice', 'alice@example.com')
@@ -111,7 +265,7 @@ public class SQLParser {
             } else {
                 throw new ParseException("Expected value, got: " + currentToken);
             }
-            
+        
         } while (currentToken.type() == Token.TokenType.COMMA);
         
         consume(Token.TokenType.RPAREN);
@@ -146,7 +300,26 @@ public class SQLParser {
             whereClause = parseCondition();
         }
         
-        return new SelectStatement(columns, tableName, whereClause);
+        // ORDER BY id DESC LIMIT 10
+        SelectStatement.OrderBy orderBy = null;
+        if (currentToken.type() == Token.TokenType.ORDER) {
+            consume(Token.TokenType.ORDER);
+            consume(Token.TokenType.BY);
+            String column = consume(Token.TokenType.IDENTIFIER).value();
+            boolean descending = currentToken.type() == Token.TokenType.DESC;
+            if (descending || currentToken.type() == Token.TokenType.ASC) {
+                advance();
+            }
+            orderBy = new SelectStatement.OrderBy(column, descending);
+        }
+        
+        int limit = -1;
+        if (currentToken.type() == Token.TokenType.LIMIT) {
+            consume(Token.TokenType.LIMIT);
+            limit = Integer.parseInt(consume(Token.TokenType.NUMBER).value());
+        }
+        
+        return new SelectStatement(columns, tableName, whereClause, orderBy, limit);
     }
     
     // UPDATE users SET name = 'Bob' WHERE id = 1
@@ -177,7 +350,7 @@ public class SQLParser {
             }
             
             assignments.put(column, value);
-            
+        
         } while (currentToken.type() == Token.TokenType.COMMA);
         
         Condition whereClause = null;
@@ -205,9 +378,41 @@ public class SQLParser {
         return new DeleteStatement(tableName, whereClause);
     }
     
+    // a = 1 OR b = 2 AND c LIKE 'x%': AND binds tighter than OR
     private Condition parseCondition() {
+        Condition condition = parseConjunction();
+        while (currentToken.type() == Token.TokenType.OR) {
+            consume(Token.TokenType.OR);
+            condition = new CompoundCondition(condition, CompoundCondition.LogicalOperator.OR, parseConjunction());
+        }
+        return condition;
+    }
+    
+    private Condition parseConjunction() {
+        Condition condition = parsePredicate();
+        while (currentToken.type() == Token.TokenType.AND) {
+            consume(Token.TokenType.AND);
+            condition = new CompoundCondition(condition, CompoundCondition.LogicalOperator.AND, parsePredicate());
+        }
+        return condition;
+    }
+    
+    private Condition parsePredicate() {
+        if (currentToken.type() == Token.TokenType.LPAREN) {
+            consume(Token.TokenType.LPAREN);
+            Condition condition = parseCondition();
+            consume(Token.TokenType.RPAREN);
+            return condition;
+        }
+        
         String column = consume(Token.TokenType.IDENTIFIER).value();
         
+        // LIKE condition
+        if (currentToken.type() == Token.TokenType.LIKE) {
+            consume(Token.TokenType.LIKE);
+            return new LikeCondition(column, consume(Token.TokenType.STRING).value());
+        }
+        
         // BETWEEN condition
         if (currentToken.type() == Token.TokenType.BETWEEN) {
             consume(Token.TokenType.BETWEEN);
@@ -3,12 +3,14 @@ package com.minidb.query.parser;
 import java.util.List;
 
 /**
- * SELECT statement
+ * SELECT statement; orderBy is null and limit -1 when not given
  */
 public record SelectStatement(
         List<String> columns,
         String tableName,
-        Condition whereClause) implements Statement {
+        Condition whereClause,
+        OrderBy orderBy,
+        int limit) implements Statement {
     @Override
     public StatementType getType() {
         return StatementType.SELECT;
@@ -17,4 +19,14 @@ public record SelectStatement(
     public boolean isSelectAll() {
         return columns.size() == 1 && columns.get(0).equals("*");
     }
+
+    public boolean hasLimit() {
+        return limit >= 0;
+    }
+
+    /**
+     * ORDER BY column [ASC | DESC]
+     */
+    public record OrderBy(String column, boolean descending) {
+    }
 }
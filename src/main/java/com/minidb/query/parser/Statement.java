@@ -7,11 +7,12 @@ import java.util.*;
  */
 public sealed interface Statement permits
         CreateTableStatement, InsertStatement, SelectStatement,
-        UpdateStatement, DeleteStatement {
+        UpdateStatement, DeleteStatement, CopyStatement, AnalyzeStatement, AlterTableStatement,
+        CreateIndexStatement {
 
     StatementType getType();
 
     enum StatementType {
-        CREATE_TABLE, INSERT, SELECT, UPDATE, DELETE
+        CREATE_TABLE, INSERT, SELECT, UPDATE, DELETE, COPY, ANALYZE, ALTER_TABLE, CREATE_INDEX
     }
 }
@@ -8,7 +8,9 @@ public record Token(TokenType type, String value, int position) {
     public enum TokenType {
         // Keywords
         SELECT, INSERT, UPDATE, DELETE, CREATE, TABLE, INTO, FROM, WHERE, VALUES,
-        SET, PRIMARY, KEY, INT, VARCHAR, LONG, AND, OR, BETWEEN,
+        SET, PRIMARY, KEY, INT, VARCHAR, LONG, AND, OR, BETWEEN, WITH, COPY, ANALYZE,
+        PARTITION, PARTITIONS, BY, RANGE, HASH, ALTER, ADD, COLUMN, DEFAULT, INDEX, UNIQUE, ON, LIKE,
+        ORDER, ASC, DESC, LIMIT,
         
         // Operators
         EQUALS, NOT_EQUALS, LESS_THAN, GREATER_THAN, LESS_EQUALS, GREATER_EQUALS,
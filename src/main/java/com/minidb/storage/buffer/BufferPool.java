@@ -134,6 +134,17 @@ public class BufferPool {
         }
     }
     
+    /**
+     * Add a zeroed page at the end of the file; fetch it to use it
+     */
+    public PageId allocatePage(int fileId) throws IOException {
+        return pageManager.allocatePage(fileId);
+    }
+    
+    public int getPageCount(int fileId) throws IOException {
+        return pageManager.getPageCount(fileId);
+    }
+    
     /**
      * Find victim frame for eviction (LRU policy)
      */
@@ -1,195 +1,2168 @@
 package com.minidb.storage.index;
 
-import java.nio.ByteBuffer;
+import com.minidb.storage.buffer.BufferPool;
+import com.minidb.storage.page.Page;
+import java.io.Serial;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * BPlusTree - B+tree over byte-string keys with one node per page
+ *
+ * Keys are normalised (see IndexKey) and ordered as unsigned bytes, so
+ * keys of any type, composite ones included, are compared in place
+ * without being decoded. The int methods encode with IndexKey.ofInt.
+ *
+ * Nodes are kept in a binary layout on pages: on the heap, or in an index
+ * file read and written through the BufferPool, so a persistent index is
+ * not bounded by memory and reopens without a rebuild. Page 0 is a meta
+ * page: [4 bytes: magic][4 bytes: root page][4 bytes: free list head][4 bytes: fanout].
+ *
+ * Node layout:
+ * [1 byte: type][1 byte: level][2 bytes: prefix length][4 bytes: key count][4 bytes: right sibling][4 bytes: cell heap start]
+ * [cell directory: n x 2 bytes: cell offset, in key order]...free space...[cells, growing down][prefix]
+ * internal cell: [2 bytes: key length][key][4 bytes: child right of the key]
+ * leaf cell: [2 bytes: key length][2 bytes: value length][key minus prefix][value]
+ * Internal nodes keep their first child where leaves keep their sibling.
+ *
+ * Keys are truncated at both ends. A leaf stores the prefix all its keys
+ * share once, at the page end, and only the rest of each key in its
+ * cells; the prefix is recomputed whenever the leaf is rebuilt, and a key
+ * without it rebuilds the leaf with a shorter one. A leaf split, bulk
+ * load or redistribution passes up the shortest separator between the
+ * last key on the left and the first on the right rather than the whole
+ * right key, so internal nodes, searched on every lookup, hold more
+ * children. Composite and string keys gain the most; a leaf of INT keys
+ * still sheds the bytes its keys have in common.
+ *
+ * Keys are at most MAX_KEY_SIZE bytes. A value that would take its entry
+ * past a quarter page is stored on a chain of overflow pages
+ * ([4 bytes: next page][4 bytes: length][data]); the leaf keeps
+ * [4 bytes: first page][4 bytes: length] under the length word OVERFLOW.
+ * Freed pages are chained from the meta page and reused first.
+ *
+ * The fanout caps children per internal node and entries per leaf; nodes
+ * also split when their page runs out of bytes. A smaller fanout gives
+ * shorter nodes to search but a deeper tree. Keys are searched in place
+ * with a branch-free binary search.
+ *
+ * Writers use latch crabbing: every page has a read-write latch, and a
+ * descent latches a child before releasing its parent. A writer first
+ * descends with read latches and write latches just the leaf; if the leaf
+ * could split it starts again, write latching the path and releasing all
+ * ancestors of any node that cannot split. bulkLoad() and flush() wait
+ * for all other writers.
+ *
+ * Deletes work the same way, with "cannot underflow" in place of "cannot
+ * split". Underflow is handled lazily: a node is only rebalanced once it
+ * is under a quarter full (or empty), by merging it with a sibling when
+ * both fit in one page and otherwise borrowing entries to even them out.
+ * A sibling whose latch is busy, or a parent with no room for the new
+ * separator, leaves the node alone, so deleters never wait on a latch out
+ * of top-down, left-to-right order; the node is fixed by a later delete.
+ * Merged-away pages go back on the free list.
+ *
+ * Readers use optimistic lock coupling: each latch carries a version that
+ * is odd while the page is write latched and moves on when it is released.
+ * A reader records the version of every node on its path, takes no latch,
+ * and restarts if a version it depends on has changed, so readers write to
+ * no shared memory. A torn read may throw; that only counts if the version
+ * still holds. Values on overflow pages, and readers that keep restarting,
+ * fall back to read latches. Range iterators and cursors copy out one
+ * leaf at a time and hold nothing between leaves; cursors also move
+ * backwards, finding the previous leaf from the root.
+ */
 public class BPlusTree {
-    private static final int ORDER = 32; // Max keys per node
-    
-    private BTreeNode root;
+    private static final VarHandle INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final int PAGE_SIZE = Page.PAGE_SIZE;
+    private static final int NO_PAGE = -1;
+    private static final byte[] FIRST_KEY = new byte[0]; // Sorts before every key
+
+    // Meta page
+    private static final int META_PAGE = 0;
+    private static final int MAGIC = 0x42505432; // "BPT2"
+    private static final int META_ROOT = 4;
+    private static final int META_FREE = 8;
+    private static final int META_FANOUT = 12;
+
+    // Node header
+    private static final int HEADER_SIZE = 16;
+    private static final int TYPE = 0;
+    private static final int LEVEL = 1; // 0 for leaves
+    private static final int PREFIX = 2; // Leaves: length of the prefix their keys share
+    private static final int COUNT = 4;
+    private static final int NEXT = 8;
+    private static final int FIRST_CHILD = NEXT; // Internal nodes have no sibling link
+    private static final int DATA_START = 12;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+
+    // Cells
+    private static final int SLOT_SIZE = 2;
+    private static final int LEAF_CELL_HEADER = 4;
+    private static final int INTERNAL_CELL_HEADER = 2;
+    private static final int CHILD_SIZE = 4;
+    private static final int MAX_SLOTS = (PAGE_SIZE - HEADER_SIZE) / SLOT_SIZE;
+    private static final int OVERFLOW = 0xFFFF;
+    private static final int OVERFLOW_REF_SIZE = 8;
+    // A quarter page, so either half of a split node has room for one more entry
+    private static final int MAX_ENTRY = (PAGE_SIZE - HEADER_SIZE) / 4;
+
+    private static final int OVERFLOW_HEADER = 8;
+    private static final int OVERFLOW_DATA = PAGE_SIZE - OVERFLOW_HEADER;
+
+    private static final int OPTIMISTIC_ATTEMPTS = 16; // Before falling back to latches
+
+    /** Longest key: its entry fills a quarter page with the value on overflow pages */
+    public static final int MAX_KEY_SIZE = MAX_ENTRY - SLOT_SIZE - LEAF_CELL_HEADER - OVERFLOW_REF_SIZE;
+    private static final int MAX_INTERNAL_ENTRY = internalEntrySize(MAX_KEY_SIZE);
+
+    /** Largest fanout an internal node page can hold with int keys */
+    public static final int MAX_FANOUT = (PAGE_SIZE - HEADER_SIZE) / internalEntrySize(Integer.BYTES) + 1;
+    public static final int MIN_FANOUT = 4;
+
+    private final NodeStore store;
     private final int indexFileId;
-    
+    private final ReentrantReadWriteLock treeLatch; // Exclusive for whole-tree operations
+    private final NodeLatch rootLatch; // Guards root and rootLevel
+    private final Object allocationLock = new Object(); // Guards the meta page and latch table
+    private volatile NodeLatch[] pageLatches;
+    private int order; // Max keys per internal node
+    private int leafCapacity; // Max entries per leaf
+    private volatile int root;
+    private volatile int rootLevel;
+
+    /**
+     * In-memory tree
+     */
     public BPlusTree(int indexFileId) {
+        this(indexFileId, MAX_FANOUT);
+    }
+
+    public BPlusTree(int indexFileId, int fanout) {
+        this(indexFileId, new MemoryNodeStore(), fanout);
+    }
+
+    /**
+     * Tree stored in file {@code indexFileId}: opened if the file holds
+     * one, created otherwise
+     */
+    public BPlusTree(int indexFileId, BufferPool bufferPool) {
+        this(indexFileId, bufferPool, MAX_FANOUT);
+    }
+
+    /**
+     * Tree stored in file {@code indexFileId}; an existing tree keeps the
+     * fanout it was created with
+     */
+    public BPlusTree(int indexFileId, BufferPool bufferPool, int fanout) {
+        this(indexFileId, new BufferPoolNodeStore(indexFileId, bufferPool), fanout);
+    }
+
+    private BPlusTree(int indexFileId, NodeStore store, int fanout) {
+        if (fanout < MIN_FANOUT || fanout > MAX_FANOUT) {
+            throw new IllegalArgumentException(
+                    "Fanout must be between " + MIN_FANOUT + " and " + MAX_FANOUT + ": " + fanout);
+        }
         this.indexFileId = indexFileId;
-        this.root = new LeafNode();
+        this.store = store;
+        this.treeLatch = new ReentrantReadWriteLock();
+        this.rootLatch = new NodeLatch();
+        this.pageLatches = new NodeLatch[0];
+
+        if (store.getPageCount() == 0) {
+            create(fanout);
+        } else {
+            open();
+        }
+    }
+
+    private void create(int fanout) {
+        setFanout(fanout);
+        int metaPage = store.allocate();
+        ensureLatches(metaPage);
+        byte[] meta = store.pin(metaPage);
+        putInt(meta, 0, MAGIC);
+        putInt(meta, META_FREE, NO_PAGE);
+        putInt(meta, META_FANOUT, fanout);
+        store.unpin(metaPage, true);
+
+        int leaf = allocatePage();
+        initLeaf(leaf);
+        setRoot(leaf, 0);
+    }
+
+    private void open() {
+        byte[] meta = store.pin(META_PAGE);
+        try {
+            if (getInt(meta, 0) != MAGIC) {
+                throw new IllegalStateException("File " + indexFileId + " is not a B+tree index");
+            }
+            root = getInt(meta, META_ROOT);
+            setFanout(getInt(meta, META_FANOUT));
+        } finally {
+            store.unpin(META_PAGE, false);
+        }
+
+        ensureLatches(store.getPageCount() - 1);
+        byte[] node = store.pin(root);
+        rootLevel = node[LEVEL];
+        store.unpin(root, false);
+    }
+
+    private void setFanout(int fanout) {
+        this.order = fanout - 1;
+        this.leafCapacity = fanout;
+    }
+
+    public int getFanout() {
+        return order + 1;
     }
-    
+
+    public byte[] search(int key) {
+        return search(IndexKey.ofInt(key));
+    }
+
     /**
      * Search for a key
      */
-    public byte[] search(int key) {
-        return searchRecursive(root, key);
+    public byte[] search(byte[] key) {
+        OptimisticCursor cursor = new OptimisticCursor();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            if (!cursor.descend(key)) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            byte[] node = store.pin(cursor.page);
+            byte[] value = null;
+            boolean overflow = false;
+            RuntimeException torn = null;
+            try {
+                int index = leafSearch(node, optimisticCount(node), key);
+                if (index >= 0) {
+                    int cell = cell(node, index);
+                    overflow = valueLength(node, cell) == OVERFLOW;
+                    value = overflow ? null : value(node, cell);
+                }
+            } catch (RuntimeException e) {
+                torn = e;
+            } finally {
+                store.unpin(cursor.page, false);
+            }
+
+            if (cursor.validate()) {
+                if (torn != null) throw torn;
+                if (overflow) break; // Overflow chains are read under the leaf latch
+                return value;
+            }
+        }
+        return searchLatched(key);
+    }
+
+    private byte[] searchLatched(byte[] key) {
+        treeLatch.readLock().lock();
+        try {
+            int page = latchLeaf(key, false);
+            byte[] node = store.pin(page);
+            try {
+                int index = leafSearch(node, count(node), key);
+                return index >= 0 ? readValue(node, cell(node, index)) : null;
+            } finally {
+                store.unpin(page, false);
+                pageLatches[page].readLock().unlock();
+            }
+        } finally {
+            treeLatch.readLock().unlock();
+        }
+    }
+
+    public void insert(int key, byte[] value) {
+        insert(IndexKey.ofInt(key), value);
+    }
+
+    /**
+     * Insert key-value pair, replacing the value of an existing key
+     */
+    public void insert(byte[] key, byte[] value) {
+        checkKey(key);
+        treeLatch.readLock().lock();
+        try {
+            boolean overflow = leafEntrySize(key.length, value.length) > MAX_ENTRY;
+            byte[] stored = overflow ? writeOverflow(value) : value;
+
+            // Most inserts change only the leaf
+            int leaf = latchLeaf(key, true);
+            byte[] node = store.pin(leaf);
+            boolean safe = leafIsSafe(node, key, stored.length);
+            try {
+                if (safe) {
+                    insertIntoLeaf(node, key, stored, overflow);
+                }
+            } finally {
+                store.unpin(leaf, safe);
+                pageLatches[leaf].unlockExclusive();
+            }
+
+            if (!safe) {
+                insertWithSplits(key, stored, overflow);
+            }
+        } finally {
+            treeLatch.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert that may split nodes: the path is write latched from the top,
+     * releasing everything above a node with room for one more entry,
+     * since a split stops there
+     */
+    private void insertWithSplits(byte[] key, byte[] stored, boolean overflow) {
+        List<Integer> path = new ArrayList<>(); // Write latched, root side first
+        rootLatch.lockExclusive();
+        boolean rootLatched = true;
+        try {
+            int page = root;
+            int level = rootLevel;
+            while (true) {
+                pageLatches[page].lockExclusive();
+                byte[] node = store.pin(page);
+                int count = count(node);
+                boolean safe = level == 0 ? leafIsSafe(node, key, stored.length)
+                        : count < order && hasRoom(node, count, MAX_INTERNAL_ENTRY);
+                int child = level == 0 ? NO_PAGE : child(node, childIndex(node, count, key));
+                store.unpin(page, false);
+
+                if (safe) {
+                    unlatch(path);
+                    if (rootLatched) {
+                        rootLatch.unlockExclusive();
+                        rootLatched = false;
+                    }
+                }
+                path.add(page);
+                if (level == 0) break;
+                page = child;
+                level--;
+            }
+
+            Split split = null;
+            for (int i = path.size() - 1; i >= 0; i--) {
+                int current = path.get(i);
+                byte[] node = store.pin(current);
+                try {
+                    if (i == path.size() - 1) {
+                        split = insertIntoLeaf(node, key, stored, overflow);
+                    } else {
+                        split = insertIntoInternal(node, childIndex(node, count(node), key),
+                                split.key(), split.page());
+                    }
+                } finally {
+                    store.unpin(current, true);
+                }
+                if (split == null) break;
+            }
+
+            if (split != null) {
+                // Root split - create new root; only reached with rootLatch held
+                int newRoot = allocatePage();
+                byte[] node = store.pin(newRoot);
+                initInternal(node, rootLevel + 1);
+                putInt(node, FIRST_CHILD, root);
+                internalInsert(node, 0, 0, split.key(), split.page());
+                store.unpin(newRoot, true);
+                setRoot(newRoot, rootLevel + 1);
+            }
+        } finally {
+            unlatch(path);
+            if (rootLatched) {
+                rootLatch.unlockExclusive();
+            }
+        }
+    }
+
+    /**
+     * Whether the leaf takes an entry of key and a stored value of the
+     * given length without splitting. A key without the leaf's prefix
+     * shortens it, lengthening every cell.
+     */
+    private boolean leafIsSafe(byte[] node, byte[] key, int storedLength) {
+        int count = count(node);
+        int prefix = prefixLength(node);
+        int shared = sharedPrefix(node, key);
+        int grown = (count - 1) * (prefix - shared);
+        return count < leafCapacity
+                && usedSpace(node, count) + grown + leafEntrySize(key.length - shared, storedLength) <= PAGE_SIZE;
+    }
+
+    private void unlatch(List<Integer> pages) {
+        for (int page : pages) {
+            pageLatches[page].unlockExclusive();
+        }
+        pages.clear();
+    }
+
+    public boolean delete(int key) {
+        return delete(IndexKey.ofInt(key));
+    }
+
+    /**
+     * Delete a key; returns false if it was not in the tree
+     */
+    public boolean delete(byte[] key) {
+        treeLatch.readLock().lock();
+        try {
+            // Most deletes change only the leaf
+            int leaf = latchLeaf(key, true);
+            byte[] node = store.pin(leaf);
+            boolean found;
+            boolean removed = false;
+            try {
+                int count = count(node);
+                int index = leafSearch(node, count, key);
+                found = index >= 0;
+                if (found && !underfullWithout(node, count, index)) {
+                    removeEntry(node, count, index);
+                    removed = true;
+                }
+            } finally {
+                store.unpin(leaf, removed);
+                pageLatches[leaf].unlockExclusive();
+            }
+
+            return found && (removed || deleteWithMerges(key));
+        } finally {
+            treeLatch.readLock().unlock();
+        }
+    }
+
+    /**
+     * Delete that may leave nodes underfull: the path is write latched from
+     * the top, releasing everything above a node that stays at least a
+     * quarter full after losing an entry, since rebalancing stops there
+     */
+    private boolean deleteWithMerges(byte[] key) {
+        List<Integer> path = new ArrayList<>(); // Write latched, root side first
+        List<Integer> freed = new ArrayList<>(); // Freed once unreachable and unlatched
+        rootLatch.lockExclusive();
+        boolean rootLatched = true;
+        try {
+            int page = root;
+            int level = rootLevel;
+            boolean atRoot = true;
+            while (true) {
+                pageLatches[page].lockExclusive();
+                byte[] node = store.pin(page);
+                int count = count(node);
+                boolean safe;
+                int child = NO_PAGE;
+                if (level == 0) {
+                    int index = leafSearch(node, count, key);
+                    safe = atRoot || index < 0 || !underfullWithout(node, count, index);
+                } else {
+                    // Whichever key a merge below removes, the largest is the worst case
+                    safe = atRoot ? count > 1
+                            : count > 0 && !underfullWithout(node, count, largestEntry(node, count));
+                    child = child(node, childIndex(node, count, key));
+                }
+                store.unpin(page, false);
+
+                if (safe) {
+                    unlatch(path);
+                    if (rootLatched) {
+                        rootLatch.unlockExclusive();
+                        rootLatched = false;
+                    }
+                }
+                path.add(page);
+                if (level == 0) break;
+                page = child;
+                level--;
+                atRoot = false;
+            }
+
+            int leaf = path.get(path.size() - 1);
+            byte[] node = store.pin(leaf);
+            boolean found;
+            try {
+                int count = count(node);
+                int index = leafSearch(node, count, key);
+                found = index >= 0;
+                if (found) {
+                    removeEntry(node, count, index);
+                }
+            } finally {
+                store.unpin(leaf, true);
+            }
+            if (!found) return false;
+
+            for (int i = path.size() - 2; i >= 0; i--) {
+                if (!rebalance(path.get(i), path.get(i + 1), key, freed)) break;
+            }
+            if (rootLatched) {
+                collapseRoot(freed);
+            }
+            return true;
+        } finally {
+            unlatch(path);
+            if (rootLatched) {
+                rootLatch.unlockExclusive();
+            }
+            for (int page : freed) {
+                freePage(page);
+            }
+        }
+    }
+
+    /**
+     * Fix an underfull child by merging it with a sibling or borrowing from
+     * one. Returns whether the parent lost a key, and so may underflow too.
+     */
+    private boolean rebalance(int parentPage, int childPage, byte[] key, List<Integer> freed) {
+        byte[] parent = store.pin(parentPage);
+        byte[] child = store.pin(childPage);
+        try {
+            int parentCount = count(parent);
+            if (parentCount == 0) {
+                return true; // Lone child: the parent has no keys and takes it to a sibling
+            }
+            if (!underfull(child)) {
+                return false;
+            }
+
+            // Prefer the right sibling; the rightmost child uses its left one
+            int index = childIndex(parent, parentCount, key);
+            int separator = index < parentCount ? index : index - 1;
+            int leftPage = child(parent, separator);
+            int rightPage = child(parent, separator + 1);
+            int siblingPage = leftPage == childPage ? rightPage : leftPage;
+
+            NodeLatch siblingLatch = pageLatches[siblingPage];
+            if (!siblingLatch.tryLockExclusive()) {
+                return false; // Lazy: left underfull for a later delete
+            }
+            byte[] sibling = store.pin(siblingPage);
+            try {
+                byte[] left = leftPage == childPage ? child : sibling;
+                byte[] right = leftPage == childPage ? sibling : child;
+                boolean merged = child[LEVEL] == 0
+                        ? rebalanceLeaves(parent, separator, left, right)
+                        : rebalanceInternal(parent, separator, left, right);
+                if (merged) {
+                    internalRemove(parent, parentCount, separator);
+                    freed.add(rightPage);
+                }
+                return merged;
+            } finally {
+                store.unpin(siblingPage, true);
+                siblingLatch.unlockExclusive();
+            }
+        } finally {
+            store.unpin(childPage, true);
+            store.unpin(parentPage, true);
+        }
+    }
+
+    /**
+     * Merge right into left if both fit in one leaf, else share their
+     * entries evenly by bytes. Returns whether they merged.
+     */
+    private boolean rebalanceLeaves(byte[] parent, int separator, byte[] left, byte[] right) {
+        Entries entries = readEntries(left, right);
+        int leftNext = getInt(left, NEXT);
+        int rightNext = getInt(right, NEXT);
+
+        if (fitsLeaf(entries)) {
+            entries.writeLeaf(left, 0, entries.count, rightNext);
+            return true;
+        }
+
+        int split = balancedSplit(entries);
+        byte[] key = separator(entries.keys[split - 1], entries.keys[split]);
+        if (!canReplaceKey(parent, separator, key)) {
+            return false; // Lazy: the parent has no room for the new separator
+        }
+        entries.writeLeaf(left, 0, split, leftNext);
+        entries.writeLeaf(right, split, entries.count, rightNext);
+        replaceKey(parent, separator, key);
+        return false;
+    }
+
+    /**
+     * Split point that fits both leaves, with their byte sizes, prefixes
+     * factored out, closest. Points leaving neither leaf underfull come
+     * first, so a lopsided entry cannot strand a leaf with too few.
+     */
+    private int balancedSplit(Entries entries) {
+        int total = entries.bytes(0, entries.count);
+        int best = entries.count / 2;
+        int bestDifference = Integer.MAX_VALUE;
+        boolean bestFull = false;
+        int leftFull = 0;
+        for (int split = 1; split < entries.count; split++) {
+            leftFull += entries.bytes(split - 1, split);
+            int leftBytes = entries.packed(0, split, leftFull);
+            int rightBytes = entries.packed(split, entries.count, total - leftFull);
+            int rightCount = entries.count - split;
+            boolean fits = split <= leafCapacity && rightCount <= leafCapacity
+                    && HEADER_SIZE + Math.max(leftBytes, rightBytes) <= PAGE_SIZE;
+            boolean full = !underfull(LEAF, split, HEADER_SIZE + leftBytes)
+                    && !underfull(LEAF, rightCount, HEADER_SIZE + rightBytes);
+            int difference = Math.abs(leftBytes - rightBytes);
+            if (fits && (full && !bestFull || full == bestFull && difference < bestDifference)) {
+                best = split;
+                bestDifference = difference;
+                bestFull = full;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Merge right into left, pulling down the separator, if the keys fit
+     * one node; else rotate keys through the parent to even them out.
+     * Returns whether they merged.
+     */
+    private boolean rebalanceInternal(byte[] parent, int separator, byte[] left, byte[] right) {
+        int rightCount = count(right);
+        Separators separators = readSeparators(left, rightCount + 1);
+        separators.add(separators.count, key(parent, separator), child(right, 0));
+        for (int i = 0; i < rightCount; i++) {
+            separators.add(separators.count, key(right, i), child(right, i + 1));
+        }
+
+        int total = separators.count;
+        if (total <= order && HEADER_SIZE + separators.bytes(0, total) <= PAGE_SIZE) {
+            writeInternal(left, separators, 0, total);
+            return true;
+        }
+
+        int middle = balancedMiddle(separators);
+        if (!canReplaceKey(parent, separator, separators.keys[middle])) {
+            return false; // Lazy: the parent has no room for the new separator
+        }
+        writeInternal(left, separators, 0, middle);
+        writeInternal(right, separators, middle + 1, total);
+        replaceKey(parent, separator, separators.keys[middle]);
+        return false;
+    }
+
+    /**
+     * Key to move up when separators are split across two nodes: the
+     * halves either side fit a node each, with their byte sizes closest.
+     * As with leaves, keys leaving neither half underfull come first, then
+     * those leaving each half a key.
+     */
+    private int balancedMiddle(Separators separators) {
+        int total = separators.bytes(0, separators.count);
+        int best = separators.count / 2;
+        int bestDifference = Integer.MAX_VALUE;
+        int bestRank = -1;
+        int leftBytes = 0;
+        for (int middle = 0; middle < separators.count; middle++) {
+            int middleBytes = separators.bytes(middle, middle + 1);
+            int rightBytes = total - leftBytes - middleBytes;
+            int rightCount = separators.count - middle - 1;
+            boolean fits = middle <= order && rightCount <= order
+                    && HEADER_SIZE + Math.max(leftBytes, rightBytes) <= PAGE_SIZE;
+            int rank = !underfull(INTERNAL, middle, HEADER_SIZE + leftBytes)
+                    && !underfull(INTERNAL, rightCount, HEADER_SIZE + rightBytes) ? 2
+                    : middle > 0 && rightCount > 0 ? 1 : 0;
+            int difference = Math.abs(leftBytes - rightBytes);
+            if (fits && (rank > bestRank || rank == bestRank && difference < bestDifference)) {
+                best = middle;
+                bestDifference = difference;
+                bestRank = rank;
+            }
+            leftBytes += middleBytes;
+        }
+        return best;
+    }
+
+    /**
+     * Replace a root with no keys by its only child; callers hold rootLatch
+     * and the latches of the path below it
+     */
+    private void collapseRoot(List<Integer> freed) {
+        while (rootLevel > 0) {
+            byte[] node = store.pin(root);
+            int count = count(node);
+            int onlyChild = child(node, 0);
+            store.unpin(root, false);
+            if (count > 0) return;
+
+            freed.add(root);
+            setRoot(onlyChild, rootLevel - 1);
+        }
+    }
+
+    private void removeEntry(byte[] node, int count, int index) {
+        int cell = cell(node, index);
+        if (valueLength(node, cell) == OVERFLOW) {
+            freeOverflow(getInt(node, valueOffset(node, cell)));
+        }
+        removeSlot(node, count, index);
+    }
+
+    private boolean underfull(byte[] node) {
+        int count = count(node);
+        return underfull(node, count, usedSpace(node, count));
+    }
+
+    /**
+     * Whether the node would be underfull once entry index is removed
+     */
+    private boolean underfullWithout(byte[] node, int count, int index) {
+        int entryBytes = SLOT_SIZE + cellSize(node, cell(node, index));
+        return underfull(node, count - 1, usedSpace(node, count) - entryBytes);
+    }
+
+    private boolean underfull(byte[] node, int count, int usedBytes) {
+        return underfull(node[TYPE], count, usedBytes);
+    }
+
+    private boolean underfull(byte type, int count, int usedBytes) {
+        int capacity = type == LEAF ? leafCapacity : order;
+        return count <= 0 || (count < capacity / 4 && usedBytes < PAGE_SIZE / 4);
+    }
+
+    /**
+     * Index of the entry taking the most bytes
+     */
+    private static int largestEntry(byte[] node, int count) {
+        int largest = 0;
+        for (int i = 1; i < count; i++) {
+            if (cellSize(node, cell(node, i)) > cellSize(node, cell(node, largest))) {
+                largest = i;
+            }
+        }
+        return largest;
     }
-    
-    private byte[] searchRecursive(BTreeNode node, int key) {
-        if (node.isLeaf()) {
-            LeafNode leaf = (LeafNode) node;
-            return leaf.search(key);
+
+    private Split insertIntoLeaf(byte[] node, byte[] key, byte[] stored, boolean overflow) {
+        int count = count(node);
+        int index = leafSearch(node, count, key);
+
+        if (index >= 0) {
+            int cell = cell(node, index);
+            int oldLength = valueLength(node, cell);
+            if (oldLength == OVERFLOW) {
+                freeOverflow(getInt(node, valueOffset(node, cell)));
+            } else if (!overflow && stored.length <= oldLength) {
+                // Overwrite in place; the unused tail is reclaimed by compaction
+                System.arraycopy(stored, 0, node, valueOffset(node, cell), stored.length);
+                putUnsignedShort(node, cell + 2, stored.length);
+                return null;
+            }
+            removeSlot(node, count, index);
+            count--;
         } else {
-            InternalNode internal = (InternalNode) node;
-            BTreeNode child = internal.findChild(key);
-            return searchRecursive(child, key);
+            index = -(index + 1);
+        }
+
+        int prefix = prefixLength(node);
+        if (count < leafCapacity && sharedPrefix(node, key) == prefix
+                && freeSpace(node, count) >= leafEntrySize(key.length - prefix, stored.length)) {
+            leafInsert(node, count, index, key, stored, overflow);
+            return null;
+        }
+
+        // Out of free space, or the key lacks the prefix: rebuild the leaf
+        Entries entries = readEntries(node);
+        entries.add(index, key, stored, overflow ? OVERFLOW : stored.length);
+        if (fitsLeaf(entries)) {
+            entries.writeLeaf(node, 0, entries.count, getInt(node, NEXT));
+            return null;
         }
+        return splitLeaf(node, entries);
     }
-    
+
     /**
-     * Insert key-value pair
+     * Split a full leaf's entries, the new one included, across it and a
+     * new right sibling. Entries are divided by bytes, not count, so
+     * values of any size fit.
      */
-    public void insert(int key, byte[] value) {
-        SplitResult result = insertRecursive(root, key, value);
-        
-        if (result != null) {
-            // Root split - create new root
-            InternalNode newRoot = new InternalNode();
-            newRoot.keys.add(result.splitKey);
-            newRoot.children.add(root);
-            newRoot.children.add(result.rightNode);
-            root = newRoot;
-        }
-    }
-    
-    private SplitResult insertRecursive(BTreeNode node, int key, byte[] value) {
-        if (node.isLeaf()) {
-            LeafNode leaf = (LeafNode) node;
-            leaf.insert(key, value);
-            
-            if (leaf.keys.size() > ORDER) {
-                return splitLeaf(leaf);
+    private Split splitLeaf(byte[] node, Entries entries) {
+        int split = balancedSplit(entries);
+
+        int right = allocatePage();
+        byte[] rightNode = store.pin(right);
+        try {
+            entries.writeLeaf(rightNode, split, entries.count, getInt(node, NEXT));
+        } finally {
+            store.unpin(right, true);
+        }
+        entries.writeLeaf(node, 0, split, right); // Link leaves for range scan
+
+        return new Split(separator(entries.keys[split - 1], entries.keys[split]), right);
+    }
+
+    /**
+     * Add a separator and the child right of it at index, splitting the
+     * node if it is out of keys or bytes; returns the split or null
+     */
+    private Split insertIntoInternal(byte[] node, int index, byte[] key, int rightChild) {
+        int count = count(node);
+        int needed = internalEntrySize(key.length);
+        if (count < order && hasRoom(node, count, needed)) {
+            if (freeSpace(node, count) < needed) {
+                compactInternal(node);
             }
+            internalInsert(node, count, index, key, rightChild);
             return null;
-        } else {
-            InternalNode internal = (InternalNode) node;
-            int childIndex = internal.findChildIndex(key);
-            BTreeNode child = internal.children.get(childIndex);
-            
-            SplitResult childSplit = insertRecursive(child, key, value);
-            
-            if (childSplit != null) {
-                internal.keys.add(childIndex, childSplit.splitKey);
-                internal.children.add(childIndex + 1, childSplit.rightNode);
-                
-                if (internal.keys.size() > ORDER) {
-                    return splitInternal(internal);
+        }
+
+        Separators separators = readSeparators(node, 1);
+        separators.add(index, key, rightChild);
+        int middle = balancedMiddle(separators);
+
+        int right = allocatePage();
+        byte[] rightNode = store.pin(right);
+        try {
+            initInternal(rightNode, node[LEVEL]);
+            writeInternal(rightNode, separators, middle + 1, separators.count);
+        } finally {
+            store.unpin(right, true);
+        }
+
+        writeInternal(node, separators, 0, middle);
+        return new Split(separators.keys[middle], right);
+    }
+
+    public void bulkLoad(int[] keys, List<byte[]> values) {
+        List<byte[]> encoded = new ArrayList<>(keys.length);
+        for (int key : keys) {
+            encoded.add(IndexKey.ofInt(key));
+        }
+        bulkLoad(encoded, values);
+    }
+
+    /**
+     * Build the tree bottom-up from keys in ascending order, replacing its
+     * contents. Leaves are filled and internal nodes spread evenly, so
+     * every node ends up nearly full.
+     */
+    public void bulkLoad(List<byte[]> keys, List<byte[]> values) {
+        for (byte[] key : keys) {
+            checkKey(key);
+        }
+        Iterator<byte[]> valueIterator = values.iterator();
+        bulkLoad(keys.stream().map(key -> Map.entry(key, valueIterator.next())).iterator());
+    }
+
+    /**
+     * Bulk load from a stream of entries in ascending key order, as merged
+     * by an ExternalSorter; only the leaf being filled and the low keys of
+     * the level above are held in memory. If the stream fails, say on a
+     * key over MAX_KEY_SIZE, the pages built so far are freed and the tree
+     * keeps its old contents.
+     */
+    public void bulkLoad(Iterator<Map.Entry<byte[], byte[]>> entries) {
+        treeLatch.writeLock().lock();
+        rootLatch.lockExclusive(); // Optimistic readers wait for the new tree
+        try {
+            // Leaf level, chained for range scans. A leaf's entries are
+            // gathered until the next one would not fit with the prefix
+            // they share factored out, then written in one go.
+            List<Integer> level = new ArrayList<>();
+            List<byte[]> lowKeys = new ArrayList<>();
+            int leaf = allocatePage();
+            byte[] node = store.pin(leaf);
+            initLeaf(node);
+            level.add(leaf);
+            lowKeys.add(FIRST_KEY);
+            Entries pending = new Entries(leafCapacity);
+            int pendingBytes = 0; // Before factoring out the prefix
+
+            try {
+                while (entries.hasNext()) {
+                    Map.Entry<byte[], byte[]> entry = entries.next();
+                    byte[] key = entry.getKey();
+                    byte[] value = entry.getValue();
+                    checkKey(key);
+                    boolean overflow = leafEntrySize(key.length, value.length) > MAX_ENTRY;
+                    byte[] stored = overflow ? writeOverflow(value) : value;
+
+                    int count = pending.count;
+                    int entryBytes = leafEntrySize(key.length, stored.length);
+                    int packed = count == 0 ? entryBytes
+                            : pendingBytes + entryBytes - count * commonPrefix(pending.keys[0], key);
+                    if (count == leafCapacity || HEADER_SIZE + packed > PAGE_SIZE) {
+                        int next = allocatePage();
+                        pending.writeLeaf(node, 0, count, next);
+                        store.unpin(leaf, true);
+
+                        leaf = next;
+                        node = store.pin(leaf);
+                        initLeaf(node);
+                        level.add(leaf);
+                        lowKeys.add(separator(pending.keys[count - 1], key));
+                        pending = new Entries(leafCapacity);
+                        pendingBytes = 0;
+                    }
+                    pending.add(pending.count, key, stored, overflow ? OVERFLOW : stored.length);
+                    pendingBytes += entryBytes;
                 }
+                pending.writeLeaf(node, 0, pending.count, NO_PAGE);
+            } catch (RuntimeException e) {
+                // Gathered entries fit the leaf, which takes their overflow chains
+                pending.writeLeaf(node, 0, pending.count, NO_PAGE);
+                store.unpin(leaf, true);
+                for (int built : level) {
+                    freeTree(built);
+                }
+                throw e;
             }
-            return null;
+            store.unpin(leaf, true);
+            freeTree(root);
+
+            // Internal levels until a single root remains
+            int height = 0;
+            while (level.size() > 1) {
+                height++;
+                int nodeCount = (level.size() + order) / (order + 1);
+                int perNode = (level.size() + nodeCount - 1) / nodeCount; // Children, spread evenly
+                List<Integer> parents = new ArrayList<>(nodeCount);
+                List<byte[]> parentLowKeys = new ArrayList<>(nodeCount);
+
+                int parent = NO_PAGE;
+                byte[] parentNode = null;
+                for (int i = 0; i < level.size(); i++) {
+                    byte[] key = lowKeys.get(i);
+                    int count = parentNode != null ? count(parentNode) : 0;
+                    if (parentNode == null || count + 1 == perNode
+                            || freeSpace(parentNode, count) < internalEntrySize(key.length)) {
+                        if (parentNode != null) {
+                            store.unpin(parent, true);
+                        }
+                        parent = allocatePage();
+                        parentNode = store.pin(parent);
+                        initInternal(parentNode, height);
+                        putInt(parentNode, FIRST_CHILD, level.get(i));
+                        parents.add(parent);
+                        parentLowKeys.add(key);
+                    } else {
+                        internalInsert(parentNode, count, count, key, level.get(i));
+                    }
+                }
+                store.unpin(parent, true);
+
+                level = parents;
+                lowKeys = parentLowKeys;
+            }
+
+            setRoot(level.get(0), height);
+        } finally {
+            rootLatch.unlockExclusive();
+            treeLatch.writeLock().unlock();
         }
     }
-    
-    private SplitResult splitLeaf(LeafNode leaf) {
-        int midPoint = leaf.keys.size() / 2;
-        
-        LeafNode rightLeaf = new LeafNode();
-        rightLeaf.keys.addAll(leaf.keys.subList(midPoint, leaf.keys.size()));
-        rightLeaf.values.addAll(leaf.values.subList(midPoint, leaf.values.size()));
-        
-        leaf.keys.subList(midPoint, leaf.keys.size()).clear();
-        leaf.values.subList(midPoint, leaf.values.size()).clear();
-        
-        // Link leaves for range scan
-        rightLeaf.next = leaf.next;
-        leaf.next = rightLeaf;
-        
-        return new SplitResult(rightLeaf.keys.get(0), rightLeaf);
-    }
-    
-    private SplitResult splitInternal(InternalNode internal) {
-        int midPoint = internal.keys.size() / 2;
-        int splitKey = internal.keys.get(midPoint);
-        
-        InternalNode rightInternal = new InternalNode();
-        rightInternal.keys.addAll(internal.keys.subList(midPoint + 1, internal.keys.size()));
-        rightInternal.children.addAll(internal.children.subList(midPoint + 1, internal.children.size()));
-        
-        internal.keys.subList(midPoint, internal.keys.size()).clear();
-        internal.children.subList(midPoint + 1, internal.children.size()).clear();
-        
-        return new SplitResult(splitKey, rightInternal);
-    }
-    
+
     /**
      * Range scan [startKey, endKey]
      */
     public List<byte[]> rangeScan(int startKey, int endKey) {
         List<byte[]> results = new ArrayList<>();
-        LeafNode leaf = findLeaf(root, startKey);
-        
-        while (leaf != null) {
-            for (int i = 0; i < leaf.keys.size(); i++) {
-                int key = leaf.keys.get(i);
-                if (key >= startKey && key <= endKey) {
-                    results.add(leaf.values.get(i));
-                } else if (key > endKey) {
-                    return results;
+        rangeIterator(startKey, endKey).forEachRemaining(results::add);
+        return results;
+    }
+
+    /**
+     * Lazy range scan [startKey, endKey]
+     */
+    public Iterator<byte[]> rangeIterator(int startKey, int endKey) {
+        if (startKey > endKey) {
+            return Collections.emptyIterator();
+        }
+        return rangeIterator(IndexKey.ofInt(startKey),
+                endKey == Integer.MAX_VALUE ? null : IndexKey.ofInt(endKey + 1));
+    }
+
+    /**
+     * Lazy range scan of keys in [low, high); a null bound leaves that end
+     * open. Values are copied out a leaf at a time.
+     */
+    public Iterator<byte[]> rangeIterator(byte[] low, byte[] high) {
+        return rangeIterator(low, high, false);
+    }
+
+    /**
+     * Lazy range scan of keys in [low, high), in descending key order if
+     * {@code descending}; a null bound leaves that end open
+     */
+    public Iterator<byte[]> rangeIterator(byte[] low, byte[] high, boolean descending) {
+        Cursor cursor = cursor(low, true, high, false);
+        return new Iterator<>() {
+            private Boolean pending; // Whether the cursor moved onto an entry not yet returned
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null) {
+                    pending = descending ? cursor.prev() : cursor.next();
                 }
+                return pending;
             }
-            leaf = leaf.next;
-        }
-        
-        return results;
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                pending = null;
+                return cursor.value();
+            }
+        };
+    }
+
+    /**
+     * Cursor over the entries with keys between {@code low} and
+     * {@code high}, each included only if its flag is set; a null bound
+     * leaves that end open
+     */
+    public Cursor cursor(byte[] low, boolean lowInclusive, byte[] high, boolean highInclusive) {
+        return new Cursor(low, lowInclusive, high, highInclusive);
+    }
+
+    /**
+     * Two-way cursor over a key range. It sits between two entries,
+     * starting before the first: next() moves over the entry after it and
+     * prev() over the one before, after which key() and value() return
+     * that entry. Entries are copied out a leaf at a time, along with the
+     * key range the leaf covered; the neighbouring leaf is found again
+     * from the root by that range's bound, so leaves need no back links,
+     * splits neither skip nor repeat entries, and nothing is held between
+     * calls: a scan can be abandoned at any point.
+     */
+    public final class Cursor {
+        private final byte[] low;
+        private final boolean lowInclusive;
+        private final byte[] high;
+        private final boolean highInclusive;
+        private LeafCopy leaf; // null until positioned
+        private int position; // Entries of the leaf before the cursor
+        private byte[] key;
+        private byte[] value;
+
+        private Cursor(byte[] low, boolean lowInclusive, byte[] high, boolean highInclusive) {
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        /**
+         * Move before the first entry in range
+         */
+        public void seekToFirst() {
+            seek(low != null ? low : FIRST_KEY);
+        }
+
+        /**
+         * Move after the last entry in range
+         */
+        public void seekToLast() {
+            moveTo(high == null ? null : highInclusive ? after(high) : high, true);
+        }
+
+        /**
+         * Move before the first entry with a key >= {@code target}
+         */
+        public void seek(byte[] target) {
+            moveTo(low != null && IndexKey.compare(target, low) < 0 ? low : target, false);
+        }
+
+        /**
+         * Move over the next entry; false, without moving, past the range
+         */
+        public boolean next() {
+            if (leaf == null) {
+                seekToFirst();
+            }
+            while (true) {
+                if (position < leaf.keys().length) {
+                    byte[] candidate = leaf.keys()[position];
+                    if (aboveHigh(candidate)) return false;
+                    position++;
+                    if (belowLow(candidate)) continue;
+                    key = candidate;
+                    value = leaf.values()[position - 1];
+                    return true;
+                }
+                // The next leaf's keys are >= this one's high fence
+                byte[] fence = leaf.highFence();
+                if (fence == null || aboveHigh(fence)) return false;
+                leaf = readLeaf(fence, false);
+                position = countBelow(leaf, fence);
+            }
+        }
+
+        /**
+         * Move over the previous entry; false, without moving, before the range
+         */
+        public boolean prev() {
+            if (leaf == null) {
+                seekToLast();
+            }
+            while (true) {
+                if (position > 0) {
+                    byte[] candidate = leaf.keys()[position - 1];
+                    if (belowLow(candidate)) return false;
+                    position--;
+                    if (aboveHigh(candidate)) continue;
+                    key = candidate;
+                    value = leaf.values()[position];
+                    return true;
+                }
+                // The previous leaf's keys are < this one's low fence
+                byte[] fence = leaf.lowFence();
+                if (fence == null || (low != null && IndexKey.compare(fence, low) <= 0)) return false;
+                leaf = readLeaf(fence, true);
+                position = countBelow(leaf, fence);
+            }
+        }
+
+        /**
+         * Key of the entry last moved over
+         */
+        public byte[] key() {
+            if (key == null) throw new IllegalStateException("Cursor is not on an entry");
+            return key;
+        }
+
+        /**
+         * Value of the entry last moved over
+         */
+        public byte[] value() {
+            if (key == null) throw new IllegalStateException("Cursor is not on an entry");
+            return value;
+        }
+
+        /**
+         * Position before the first key >= target, or with {@code before}
+         * in the leaf holding the keys just below it; null is past all keys
+         */
+        private void moveTo(byte[] target, boolean before) {
+            leaf = readLeaf(target, before);
+            position = target != null ? countBelow(leaf, target) : leaf.keys().length;
+            key = null;
+            value = null;
+        }
+
+        private boolean belowLow(byte[] candidate) {
+            if (low == null) return false;
+            int cmp = IndexKey.compare(candidate, low);
+            return cmp < 0 || (cmp == 0 && !lowInclusive);
+        }
+
+        private boolean aboveHigh(byte[] candidate) {
+            if (high == null) return false;
+            int cmp = IndexKey.compare(candidate, high);
+            return cmp > 0 || (cmp == 0 && !highInclusive);
+        }
+
+        private static int countBelow(LeafCopy leaf, byte[] target) {
+            int index = Arrays.binarySearch(leaf.keys(), target, IndexKey::compare);
+            return index >= 0 ? index : -(index + 1);
+        }
+    }
+
+    /**
+     * Copy of the leaf holding {@code key}, or with {@code before} of the
+     * leaf holding the keys just below it (null: the last leaf)
+     */
+    private LeafCopy readLeaf(byte[] key, boolean before) {
+        OptimisticCursor cursor = new OptimisticCursor();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            LeafCopy copy = readLeafOptimistic(cursor, key, before);
+            if (copy == NEEDS_LATCH) break;
+            if (copy != null) return copy;
+            Thread.onSpinWait();
+        }
+        return readLeafLatched(key, before);
+    }
+
+    /**
+     * Null if a node changed under the read, NEEDS_LATCH if the leaf has
+     * values on overflow pages
+     */
+    private LeafCopy readLeafOptimistic(OptimisticCursor cursor, byte[] key, boolean before) {
+        if (!cursor.descend(key, before, true)) return null;
+
+        byte[] node = store.pin(cursor.page);
+        LeafCopy copy = null;
+        RuntimeException torn = null;
+        try {
+            copy = copyLeaf(node, optimisticCount(node), cursor.lowFence, cursor.highFence, false);
+        } catch (RuntimeException e) {
+            torn = e;
+        } finally {
+            store.unpin(cursor.page, false);
+        }
+
+        if (!cursor.validate()) return null;
+        if (torn != null) throw torn;
+        return copy;
+    }
+
+    private LeafCopy readLeafLatched(byte[] key, boolean before) {
+        treeLatch.readLock().lock();
+        try {
+            rootLatch.readLock().lock();
+            int page = root;
+            int level = rootLevel;
+            pageLatches[page].readLock().lock();
+            rootLatch.readLock().unlock();
+
+            byte[] lowFence = null;
+            byte[] highFence = null;
+            while (level > 0) {
+                byte[] node = store.pin(page);
+                int child;
+                try {
+                    int count = count(node);
+                    int index = before ? childIndexBefore(node, count, key) : childIndex(node, count, key);
+                    if (index > 0) {
+                        lowFence = key(node, index - 1);
+                    }
+                    if (index < count) {
+                        highFence = key(node, index);
+                    }
+                    child = child(node, index);
+                } finally {
+                    store.unpin(page, false);
+                }
+
+                level--;
+                pageLatches[child].readLock().lock();
+                pageLatches[page].readLock().unlock();
+                page = child;
+            }
+
+            try {
+                byte[] node = store.pin(page);
+                try {
+                    return copyLeaf(node, count(node), lowFence, highFence, true);
+                } finally {
+                    store.unpin(page, false);
+                }
+            } finally {
+                pageLatches[page].readLock().unlock();
+            }
+        } finally {
+            treeLatch.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keys and values of a leaf; without a latch, NEEDS_LATCH if a value
+     * is on overflow pages
+     */
+    private LeafCopy copyLeaf(byte[] node, int count, byte[] lowFence, byte[] highFence, boolean latched) {
+        byte[][] keys = new byte[count][];
+        byte[][] values = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            int cell = cell(node, i);
+            if (!latched && valueLength(node, cell) == OVERFLOW) return NEEDS_LATCH;
+            keys[i] = key(node, i);
+            values[i] = latched ? readValue(node, cell) : value(node, cell);
+        }
+        return new LeafCopy(keys, values, lowFence, highFence);
+    }
+
+    /**
+     * Write dirty pages of a file-backed tree to disk, once in-flight
+     * operations finish so the file holds a consistent tree
+     */
+    public void flush() {
+        treeLatch.writeLock().lock();
+        try {
+            store.flush();
+        } finally {
+            treeLatch.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Levels from the root to the leaves
+     */
+    public int getHeight() {
+        return rootLevel + 1;
+    }
+
+    /**
+     * Pages in use by the tree, including the meta page and free pages
+     */
+    public int getPageCount() {
+        return store.getPageCount();
+    }
+
+    private static void checkKey(byte[] key) {
+        if (key.length > MAX_KEY_SIZE) {
+            throw new IllegalArgumentException(
+                    "Index key of " + key.length + " bytes exceeds " + MAX_KEY_SIZE);
+        }
+    }
+
+    /**
+     * Smallest key greater than {@code key}
+     */
+    private static byte[] after(byte[] key) {
+        return Arrays.copyOf(key, key.length + 1);
+    }
+
+    /**
+     * Page number of the leaf that holds or would hold the key, returned
+     * latched for writing if {@code write} and for reading otherwise.
+     * Internal nodes are only read latched.
+     */
+    private int latchLeaf(byte[] key, boolean write) {
+        rootLatch.readLock().lock();
+        int page = root;
+        int level = rootLevel;
+        latchPage(page, write && level == 0);
+        rootLatch.readLock().unlock();
+
+        while (level > 0) {
+            byte[] node = store.pin(page);
+            int child = child(node, childIndex(node, count(node), key));
+            store.unpin(page, false);
+
+            level--;
+            latchPage(child, write && level == 0);
+            pageLatches[page].readLock().unlock();
+            page = child;
+        }
+        return page;
+    }
+
+    private void latchPage(int page, boolean write) {
+        NodeLatch pageLatch = pageLatches[page];
+        if (write) {
+            pageLatch.lockExclusive();
+        } else {
+            pageLatch.readLock().lock();
+        }
+    }
+
+    // Internal nodes
+
+    private static void initInternal(byte[] node, int level) {
+        Arrays.fill(node, 0, HEADER_SIZE, (byte) 0);
+        node[TYPE] = INTERNAL;
+        node[LEVEL] = (byte) level;
+        putInt(node, FIRST_CHILD, NO_PAGE);
+        putInt(node, DATA_START, PAGE_SIZE);
+    }
+
+    /**
+     * Index of the child to follow for key: the number of keys <= key
+     */
+    private static int childIndex(byte[] node, int count, byte[] key) {
+        if (count == 0) {
+            return 0;
+        }
+        int base = lastAtMost(node, count, key, 0);
+        return base + (compareKey(node, base, key, 0) <= 0 ? 1 : 0);
+    }
+
+    /**
+     * Index of the child holding the keys just below key: the number of
+     * keys < key, or of all keys for null
+     */
+    private static int childIndexBefore(byte[] node, int count, byte[] key) {
+        if (key == null) {
+            return count;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        int base = lastAtMost(node, count, key, 0);
+        return base + (compareKey(node, base, key, 0) < 0 ? 1 : 0);
+    }
+
+    private static int child(byte[] node, int index) {
+        if (index == 0) {
+            return getInt(node, FIRST_CHILD);
+        }
+        int cell = cell(node, index - 1);
+        return getInt(node, cell + INTERNAL_CELL_HEADER + keyLength(node, cell));
+    }
+
+    /**
+     * Remove the key at index and the child to its right
+     */
+    private static void internalRemove(byte[] node, int count, int index) {
+        removeSlot(node, count, index);
+    }
+
+    /**
+     * Insert key at index with its right child after the child at index;
+     * the caller has checked there is room
+     */
+    private static void internalInsert(byte[] node, int count, int index, byte[] key, int rightChild) {
+        int cell = getInt(node, DATA_START) - (INTERNAL_CELL_HEADER + key.length + CHILD_SIZE);
+        putUnsignedShort(node, cell, key.length);
+        System.arraycopy(key, 0, node, cell + INTERNAL_CELL_HEADER, key.length);
+        putInt(node, cell + INTERNAL_CELL_HEADER + key.length, rightChild);
+        putInt(node, DATA_START, cell);
+        insertSlot(node, count, index, cell);
+    }
+
+    /**
+     * Whether the separator at index can be swapped for {@code key}
+     */
+    private static boolean canReplaceKey(byte[] node, int index, byte[] key) {
+        int used = usedSpace(node, count(node));
+        return used - keyLength(node, cell(node, index)) + key.length <= PAGE_SIZE;
+    }
+
+    private static void replaceKey(byte[] node, int index, byte[] key) {
+        int count = count(node);
+        int rightChild = child(node, index + 1);
+        removeSlot(node, count, index);
+        if (freeSpace(node, count - 1) < internalEntrySize(key.length)) {
+            compactInternal(node);
+        }
+        internalInsert(node, count - 1, index, key, rightChild);
+    }
+
+    /**
+     * Rewrite a node with keys [from, to) and the children around them
+     */
+    private static void writeInternal(byte[] node, Separators separators, int from, int to) {
+        initInternal(node, node[LEVEL]);
+        putInt(node, FIRST_CHILD, separators.children[from]);
+        for (int i = from; i < to; i++) {
+            internalInsert(node, i - from, i - from, separators.keys[i], separators.children[i + 1]);
+        }
+    }
+
+    private static void compactInternal(byte[] node) {
+        Separators separators = readSeparators(node, 0);
+        writeInternal(node, separators, 0, separators.count);
+    }
+
+    /**
+     * Keys and children of the node, with room for {@code extra} more keys
+     */
+    private static Separators readSeparators(byte[] node, int extra) {
+        int count = count(node);
+        Separators separators = new Separators(count + extra);
+        separators.children[0] = child(node, 0);
+        for (int i = 0; i < count; i++) {
+            separators.add(i, key(node, i), child(node, i + 1));
+        }
+        return separators;
+    }
+
+    /**
+     * Copied-out keys and children of an internal node, for rebuilding
+     * nodes: children[i] is left of keys[i]
+     */
+    private static class Separators {
+        final byte[][] keys;
+        final int[] children;
+        int count;
+
+        Separators(int capacity) {
+            keys = new byte[capacity][];
+            children = new int[capacity + 1];
+        }
+
+        /**
+         * Insert key at index with its right child after the child at index
+         */
+        void add(int index, byte[] key, int rightChild) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            System.arraycopy(children, index + 1, children, index + 2, count - index);
+            keys[index] = key;
+            children[index + 1] = rightChild;
+            count++;
+        }
+
+        /**
+         * Node bytes taken by keys [from, to) and their right children
+         */
+        int bytes(int from, int to) {
+            int total = 0;
+            for (int i = from; i < to; i++) {
+                total += internalEntrySize(keys[i].length);
+            }
+            return total;
+        }
+    }
+
+    // Leaves
+
+    private void initLeaf(int page) {
+        byte[] node = store.pin(page);
+        initLeaf(node);
+        store.unpin(page, true);
+    }
+
+    private static void initLeaf(byte[] node) {
+        initLeaf(node, FIRST_KEY, 0);
+    }
+
+    /**
+     * Empty leaf whose keys all start with the first {@code prefixLength}
+     * bytes of {@code prefix}
+     */
+    private static void initLeaf(byte[] node, byte[] prefix, int prefixLength) {
+        Arrays.fill(node, 0, HEADER_SIZE, (byte) 0);
+        node[TYPE] = LEAF;
+        putUnsignedShort(node, PREFIX, prefixLength);
+        putInt(node, NEXT, NO_PAGE);
+        putInt(node, DATA_START, PAGE_SIZE - prefixLength);
+        System.arraycopy(prefix, 0, node, PAGE_SIZE - prefixLength, prefixLength);
+    }
+
+    /**
+     * Length of the prefix a leaf's keys share; internal nodes have none
+     */
+    private static int prefixLength(byte[] node) {
+        return node[TYPE] == LEAF ? getUnsignedShort(node, PREFIX) : 0;
+    }
+
+    /**
+     * Bytes of the leaf's prefix that key starts with
+     */
+    private static int sharedPrefix(byte[] node, byte[] key) {
+        int prefix = prefixLength(node);
+        int length = Math.min(prefix, key.length);
+        int mismatch = Arrays.mismatch(node, PAGE_SIZE - prefix, PAGE_SIZE - prefix + length, key, 0, length);
+        return mismatch < 0 ? length : mismatch;
+    }
+
+    /**
+     * Index of key, or -(insertion point + 1) if absent. The prefix is
+     * compared once; the search then compares only the rest of each key.
+     */
+    private static int leafSearch(byte[] node, int count, byte[] key) {
+        if (count == 0) {
+            return -1;
+        }
+        int prefix = prefixLength(node);
+        if (prefix > 0) {
+            int length = Math.min(prefix, key.length);
+            int cmp = Arrays.compareUnsigned(node, PAGE_SIZE - prefix, PAGE_SIZE - prefix + length, key, 0, length);
+            if (cmp > 0 || (cmp == 0 && key.length < prefix)) {
+                return -1; // Below every key
+            }
+            if (cmp < 0) {
+                return -(count + 1);
+            }
+        }
+        int base = lastAtMost(node, count, key, prefix);
+        int cmp = compareKey(node, base, key, prefix);
+        if (cmp == 0) {
+            return base;
+        }
+        return -(base + (cmp < 0 ? 1 : 0) + 1);
+    }
+
+    /**
+     * Index of the last key <= key, or 0 if there is none, comparing the
+     * stored keys with key from byte {@code from}. The loop runs
+     * log2(count) times whatever the keys, and each step picks its half
+     * with a conditional move rather than a branch the CPU has to predict.
+     */
+    private static int lastAtMost(byte[] node, int count, byte[] key, int from) {
+        int base = 0;
+        for (int n = count; n > 1; n -= n >>> 1) {
+            int half = n >>> 1;
+            base = compareKey(node, base + half, key, from) <= 0 ? base + half : base;
+        }
+        return base;
+    }
+
+    /**
+     * Insert entry at index, key in full; the caller has checked there is
+     * room and that key starts with the leaf's prefix
+     */
+    private static void leafInsert(byte[] node, int count, int index, byte[] key, byte[] stored, boolean overflow) {
+        int prefix = prefixLength(node);
+        int keyLength = key.length - prefix;
+        int cell = getInt(node, DATA_START) - (LEAF_CELL_HEADER + keyLength + stored.length);
+        putUnsignedShort(node, cell, keyLength);
+        putUnsignedShort(node, cell + 2, overflow ? OVERFLOW : stored.length);
+        System.arraycopy(key, prefix, node, cell + LEAF_CELL_HEADER, keyLength);
+        System.arraycopy(stored, 0, node, cell + LEAF_CELL_HEADER + keyLength, stored.length);
+        putInt(node, DATA_START, cell);
+        insertSlot(node, count, index, cell);
+    }
+
+    /**
+     * Whether the entries fit one leaf, their shared prefix factored out
+     */
+    private boolean fitsLeaf(Entries entries) {
+        return entries.count <= leafCapacity
+                && HEADER_SIZE + entries.packed(0, entries.count, entries.bytes(0, entries.count)) <= PAGE_SIZE;
+    }
+
+    /**
+     * Shortest key that is greater than {@code left} and at most
+     * {@code right}: right cut just past the first byte where they differ.
+     * Everything left of a split is <= left and everything right of it
+     * >= right, so this separates them as well as right itself does.
+     */
+    private static byte[] separator(byte[] left, byte[] right) {
+        return Arrays.copyOf(right, Math.min(commonPrefix(left, right) + 1, right.length));
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int mismatch = Arrays.mismatch(a, b);
+        return mismatch < 0 ? a.length : mismatch;
+    }
+
+    private static int valueLength(byte[] node, int cell) {
+        return getUnsignedShort(node, cell + 2);
+    }
+
+    private static int valueOffset(byte[] node, int cell) {
+        return cell + LEAF_CELL_HEADER + keyLength(node, cell);
+    }
+
+    /**
+     * Leaf bytes behind a value length word
+     */
+    private static int storedLength(int lengthWord) {
+        return lengthWord == OVERFLOW ? OVERFLOW_REF_SIZE : lengthWord;
+    }
+
+    /**
+     * Copy of an inline value
+     */
+    private static byte[] value(byte[] node, int cell) {
+        int offset = valueOffset(node, cell);
+        return Arrays.copyOfRange(node, offset, offset + valueLength(node, cell));
+    }
+
+    private byte[] readValue(byte[] node, int cell) {
+        int offset = valueOffset(node, cell);
+        int length = valueLength(node, cell);
+        if (length == OVERFLOW) {
+            return readOverflow(getInt(node, offset), getInt(node, offset + 4));
+        }
+        return Arrays.copyOfRange(node, offset, offset + length);
+    }
+
+    /**
+     * Entries of the leaves, in order, with room for one more
+     */
+    private static Entries readEntries(byte[]... nodes) {
+        int capacity = 1;
+        for (byte[] node : nodes) {
+            capacity += count(node);
+        }
+        Entries entries = new Entries(capacity);
+        for (byte[] node : nodes) {
+            int count = count(node);
+            for (int i = 0; i < count; i++) {
+                int cell = cell(node, i);
+                int offset = valueOffset(node, cell);
+                int length = valueLength(node, cell);
+                entries.add(entries.count, key(node, i),
+                        Arrays.copyOfRange(node, offset, offset + storedLength(length)), length);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Copied-out leaf entries in stored form, for rebuilding leaves
+     */
+    private static class Entries {
+        final byte[][] keys;
+        final byte[][] values;
+        final int[] lengths; // Length words: value length or OVERFLOW
+        int count;
+
+        Entries(int capacity) {
+            keys = new byte[capacity][];
+            values = new byte[capacity][];
+            lengths = new int[capacity];
+        }
+
+        void add(int index, byte[] key, byte[] value, int length) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            System.arraycopy(values, index, values, index + 1, count - index);
+            System.arraycopy(lengths, index, lengths, index + 1, count - index);
+            keys[index] = key;
+            values[index] = value;
+            lengths[index] = length;
+            count++;
+        }
+
+        /**
+         * Leaf bytes taken by entries [from, to) with whole keys
+         */
+        int bytes(int from, int to) {
+            int total = 0;
+            for (int i = from; i < to; i++) {
+                total += leafEntrySize(keys[i].length, values[i].length);
+            }
+            return total;
+        }
+
+        /**
+         * Leaf bytes taken by entries [from, to), {@code bytes} with whole
+         * keys, once the prefix they share is stored only once
+         */
+        int packed(int from, int to, int bytes) {
+            if (to - from < 2) return bytes;
+            return bytes - (to - from - 1) * commonPrefix(keys[from], keys[to - 1]);
+        }
+
+        /**
+         * Rebuild node as a leaf of entries [from, to), factoring out the
+         * prefix they share: that of the first and last, as keys are sorted
+         */
+        void writeLeaf(byte[] node, int from, int to, int next) {
+            int prefix = to - from < 2 ? 0 : commonPrefix(keys[from], keys[to - 1]);
+            initLeaf(node, prefix > 0 ? keys[from] : FIRST_KEY, prefix);
+            putInt(node, NEXT, next);
+            for (int i = from; i < to; i++) {
+                leafInsert(node, i - from, i - from, keys[i], values[i], lengths[i] == OVERFLOW);
+            }
+        }
+    }
+
+    // Cells, shared by both node types
+
+    private static int slotOffset(int index) {
+        return HEADER_SIZE + SLOT_SIZE * index;
+    }
+
+    private static int cell(byte[] node, int index) {
+        return getUnsignedShort(node, slotOffset(index));
+    }
+
+    private static void insertSlot(byte[] node, int count, int index, int cell) {
+        System.arraycopy(node, slotOffset(index), node, slotOffset(index + 1), SLOT_SIZE * (count - index));
+        putUnsignedShort(node, slotOffset(index), cell);
+        putInt(node, COUNT, count + 1);
+    }
+
+    /**
+     * Drop the entry at index; its cell stays until the node is compacted
+     */
+    private static void removeSlot(byte[] node, int count, int index) {
+        System.arraycopy(node, slotOffset(index + 1), node, slotOffset(index), SLOT_SIZE * (count - index - 1));
+        putInt(node, COUNT, count - 1);
+    }
+
+    private static int keyLength(byte[] node, int cell) {
+        return getUnsignedShort(node, cell);
+    }
+
+    private static int keyOffset(byte[] node, int cell) {
+        return cell + (node[TYPE] == LEAF ? LEAF_CELL_HEADER : INTERNAL_CELL_HEADER);
+    }
+
+    /**
+     * Whole key at index, a leaf's prefix included
+     */
+    private static byte[] key(byte[] node, int index) {
+        int cell = cell(node, index);
+        int offset = keyOffset(node, cell);
+        int length = keyLength(node, cell);
+        int prefix = prefixLength(node);
+        byte[] key = new byte[prefix + length];
+        System.arraycopy(node, PAGE_SIZE - prefix, key, 0, prefix);
+        System.arraycopy(node, offset, key, prefix, length);
+        return key;
+    }
+
+    /**
+     * Compare the stored key at index with {@code key} from byte
+     * {@code from} on as unsigned bytes, in place; leaves store their keys
+     * without the prefix, which the caller has already compared
+     */
+    private static int compareKey(byte[] node, int index, byte[] key, int from) {
+        int cell = cell(node, index);
+        int offset = keyOffset(node, cell);
+        return Arrays.compareUnsigned(node, offset, offset + keyLength(node, cell), key, from, key.length);
+    }
+
+    private static int cellSize(byte[] node, int cell) {
+        if (node[TYPE] == LEAF) {
+            return LEAF_CELL_HEADER + keyLength(node, cell) + storedLength(valueLength(node, cell));
+        }
+        return INTERNAL_CELL_HEADER + keyLength(node, cell) + CHILD_SIZE;
+    }
+
+    private static int leafEntrySize(int keyLength, int storedLength) {
+        return SLOT_SIZE + LEAF_CELL_HEADER + keyLength + storedLength;
+    }
+
+    private static int internalEntrySize(int keyLength) {
+        return SLOT_SIZE + INTERNAL_CELL_HEADER + keyLength + CHILD_SIZE;
+    }
+
+    /**
+     * Bytes between the cell directory and the cells
+     */
+    private static int freeSpace(byte[] node, int count) {
+        return getInt(node, DATA_START) - slotOffset(count);
+    }
+
+    /**
+     * Bytes the node would use once compacted
+     */
+    private static int usedSpace(byte[] node, int count) {
+        int used = slotOffset(count) + prefixLength(node);
+        for (int i = 0; i < count; i++) {
+            used += cellSize(node, cell(node, i));
+        }
+        return used;
+    }
+
+    /**
+     * Whether {@code needed} more bytes fit, compacting first if need be
+     */
+    private static boolean hasRoom(byte[] node, int count, int needed) {
+        return freeSpace(node, count) >= needed || usedSpace(node, count) + needed <= PAGE_SIZE;
+    }
+
+    // Overflow chains and page allocation
+
+    /**
+     * Write value to a chain of overflow pages, returns the in-leaf reference
+     */
+    private byte[] writeOverflow(byte[] value) {
+        int pageCount = (value.length + OVERFLOW_DATA - 1) / OVERFLOW_DATA;
+        int[] chain = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            chain[i] = allocatePage();
+        }
+
+        for (int i = 0; i < pageCount; i++) {
+            int from = i * OVERFLOW_DATA;
+            int length = Math.min(OVERFLOW_DATA, value.length - from);
+            byte[] page = store.pin(chain[i]);
+            putInt(page, 0, i + 1 < pageCount ? chain[i + 1] : NO_PAGE);
+            putInt(page, 4, length);
+            System.arraycopy(value, from, page, OVERFLOW_HEADER, length);
+            store.unpin(chain[i], true);
+        }
+
+        byte[] reference = new byte[OVERFLOW_REF_SIZE];
+        putInt(reference, 0, chain[0]);
+        putInt(reference, 4, value.length);
+        return reference;
+    }
+
+    private byte[] readOverflow(int firstPage, int length) {
+        byte[] value = new byte[length];
+        int offset = 0;
+        for (int pageNumber = firstPage; pageNumber != NO_PAGE && offset < length; ) {
+            byte[] page = store.pin(pageNumber);
+            int next = getInt(page, 0);
+            int chunk = getInt(page, 4);
+            System.arraycopy(page, OVERFLOW_HEADER, value, offset, chunk);
+            store.unpin(pageNumber, false);
+            offset += chunk;
+            pageNumber = next;
+        }
+        return value;
+    }
+
+    private void freeOverflow(int firstPage) {
+        for (int pageNumber = firstPage; pageNumber != NO_PAGE; ) {
+            byte[] page = store.pin(pageNumber);
+            int next = getInt(page, 0);
+            store.unpin(pageNumber, false);
+            freePage(pageNumber);
+            pageNumber = next;
+        }
+    }
+
+    /**
+     * Free every page of the subtree, overflow chains included. Leaves are
+     * freed left to right, so the same holds for a reader moving right.
+     */
+    private void freeTree(int page) {
+        byte[] node = store.pin(page);
+        int count = count(node);
+        List<Integer> children = new ArrayList<>();
+        if (node[TYPE] == LEAF) {
+            for (int i = 0; i < count; i++) {
+                int cell = cell(node, i);
+                if (valueLength(node, cell) == OVERFLOW) {
+                    freeOverflow(getInt(node, valueOffset(node, cell)));
+                }
+            }
+        } else {
+            for (int i = 0; i <= count; i++) {
+                children.add(child(node, i));
+            }
+        }
+        store.unpin(page, false);
+
+        // Parents go first: a reader that reached a freed child then fails
+        // to validate the parent it came through
+        freePage(page);
+        for (int child : children) {
+            freeTree(child);
+        }
+    }
+
+    /**
+     * Take a page from the free list, or add one to the store. Not yet
+     * linked into the tree, the page needs no latch until it is.
+     */
+    private int allocatePage() {
+        synchronized (allocationLock) {
+            byte[] meta = store.pin(META_PAGE);
+            try {
+                int page = getInt(meta, META_FREE);
+                if (page == NO_PAGE) {
+                    page = store.allocate();
+                    ensureLatches(page);
+                    return page;
+                }
+
+                byte[] free = store.pin(page);
+                putInt(meta, META_FREE, getInt(free, NEXT));
+                store.unpin(page, false);
+                return page;
+            } finally {
+                store.unpin(META_PAGE, true);
+            }
+        }
+    }
+
+    /**
+     * Put a page on the free list. Its version moves on, so an optimistic
+     * reader still on it restarts.
+     */
+    private void freePage(int page) {
+        synchronized (allocationLock) {
+            NodeLatch pageLatch = pageLatches[page];
+            pageLatch.lockExclusive();
+            byte[] meta = store.pin(META_PAGE);
+            byte[] node = store.pin(page);
+            Arrays.fill(node, 0, HEADER_SIZE, (byte) 0);
+            putInt(node, NEXT, getInt(meta, META_FREE));
+            putInt(meta, META_FREE, page);
+            store.unpin(page, true);
+            store.unpin(META_PAGE, true);
+            pageLatch.unlockExclusive();
+        }
+    }
+
+    /**
+     * Grow the latch table to cover pages up to {@code page}
+     */
+    private void ensureLatches(int page) {
+        synchronized (allocationLock) {
+            NodeLatch[] latches = pageLatches;
+            if (page < latches.length) return;
+
+            latches = Arrays.copyOf(latches, Math.max(page + 1, latches.length * 2));
+            for (int i = pageLatches.length; i < latches.length; i++) {
+                latches[i] = new NodeLatch();
+            }
+            pageLatches = latches;
+        }
+    }
+
+    /**
+     * Point the tree at a new root; callers hold rootLatch for writing or
+     * have the tree to themselves
+     */
+    private void setRoot(int page, int level) {
+        root = page;
+        rootLevel = level;
+        synchronized (allocationLock) {
+            byte[] meta = store.pin(META_PAGE);
+            putInt(meta, META_ROOT, page);
+            store.unpin(META_PAGE, true);
+        }
+    }
+
+    // Page access
+
+    private static int count(byte[] node) {
+        return getInt(node, COUNT);
+    }
+
+    private static int getInt(byte[] page, int offset) {
+        return (int) INT.get(page, offset);
+    }
+
+    private static void putInt(byte[] page, int offset, int value) {
+        INT.set(page, offset, value);
+    }
+
+    private static int getUnsignedShort(byte[] page, int offset) {
+        return ((page[offset] & 0xFF) << 8) | (page[offset + 1] & 0xFF);
+    }
+
+    private static void putUnsignedShort(byte[] page, int offset, int value) {
+        page[offset] = (byte) (value >>> 8);
+        page[offset + 1] = (byte) value;
+    }
+
+    /**
+     * Key count of a node read without its latch, kept within what the
+     * page can hold so a torn read cannot index past the directory
+     */
+    private static int optimisticCount(byte[] node) {
+        return Math.min(Math.max(count(node), 0), MAX_SLOTS);
+    }
+
+    private record Split(byte[] key, int page) {}
+
+    private enum Attempt { DONE, RESTART, LATCH }
+
+    /**
+     * Entries of one leaf copied out, with the keys the leaf covered when
+     * read: [lowFence, highFence), a null fence leaving that end open
+     */
+    private record LeafCopy(byte[][] keys, byte[][] values, byte[] lowFence, byte[] highFence) {}
+
+    private static final LeafCopy NEEDS_LATCH = new LeafCopy(null, null, null, null);
+
+    /**
+     * Page latch with a version for optimistic readers: odd while write
+     * latched, and changed by every write latch
+     */
+    private static final class NodeLatch extends ReentrantReadWriteLock {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private volatile long version;
+
+        void lockExclusive() {
+            writeLock().lock();
+            version++;
+            VarHandle.storeStoreFence(); // Odd version is visible before page writes
+        }
+
+        boolean tryLockExclusive() {
+            if (!writeLock().tryLock()) {
+                return false;
+            }
+            version++;
+            VarHandle.storeStoreFence();
+            return true;
+        }
+
+        void unlockExclusive() {
+            version++;
+            writeLock().unlock();
+        }
+
+        /**
+         * Current version, or -1 while a writer holds the latch
+         */
+        long optimisticVersion() {
+            long current = version;
+            return (current & 1) == 0 ? current : -1;
+        }
+
+        /**
+         * Whether nothing was written since {@code expected} was read
+         */
+        boolean validate(long expected) {
+            VarHandle.acquireFence(); // Page reads complete before the version check
+            return version == expected;
+        }
+    }
+
+    /**
+     * Position of a latch-free descent: a page and the version it had
+     * when the cursor arrived
+     */
+    private final class OptimisticCursor {
+        int page;
+        NodeLatch latch;
+        long version;
+        byte[] lowFence; // Keys the leaf covers, if tracked: [lowFence, highFence)
+        byte[] highFence;
+
+        /**
+         * Move to the leaf for key; false if a node changed on the way
+         */
+        boolean descend(byte[] key) {
+            return descend(key, false, false);
+        }
+
+        /**
+         * Move to the leaf for key, or with {@code before} to the leaf for
+         * the keys just below it, noting the leaf's fences if asked
+         */
+        boolean descend(byte[] key, boolean before, boolean fences) {
+            lowFence = null;
+            highFence = null;
+            long rootVersion = rootLatch.optimisticVersion();
+            if (rootVersion < 0) return false;
+            int current = root;
+            int level = rootLevel;
+            NodeLatch currentLatch = pageLatches[current];
+            long currentVersion = currentLatch.optimisticVersion();
+            if (currentVersion < 0 || !rootLatch.validate(rootVersion)) return false;
+
+            while (level > 0) {
+                byte[] node = store.pin(current);
+                int child;
+                try {
+                    int count = optimisticCount(node);
+                    int index = before ? childIndexBefore(node, count, key) : childIndex(node, count, key);
+                    if (fences && index > 0) {
+                        lowFence = key(node, index - 1);
+                    }
+                    if (fences && index < count) {
+                        highFence = key(node, index);
+                    }
+                    child = child(node, index);
+                } catch (RuntimeException e) {
+                    if (currentLatch.validate(currentVersion)) throw e;
+                    return false; // Torn read of a node being written
+                } finally {
+                    store.unpin(current, false);
+                }
+                // The child pointer is only trusted once its parent is unchanged
+                if (!currentLatch.validate(currentVersion)) return false;
+
+                NodeLatch childLatch = pageLatches[child];
+                long childVersion = childLatch.optimisticVersion();
+                if (childVersion < 0 || !currentLatch.validate(currentVersion)) return false;
+
+                current = child;
+                currentLatch = childLatch;
+                currentVersion = childVersion;
+                level--;
+            }
+
+            page = current;
+            latch = currentLatch;
+            version = currentVersion;
+            return true;
+        }
+
+        /**
+         * Move to the right sibling read from the current leaf
+         */
+        boolean moveRight(int next) {
+            if (!validate()) return false;
+            NodeLatch nextLatch = pageLatches[next];
+            long nextVersion = nextLatch.optimisticVersion();
+            if (nextVersion < 0 || !validate()) return false;
+
+            page = next;
+            latch = nextLatch;
+            version = nextVersion;
+            return true;
+        }
+
+        boolean validate() {
+            return latch.validate(version);
+        }
     }
-    
-    private LeafNode findLeaf(BTreeNode node, int key) {
-        if (node.isLeaf()) {
-            return (LeafNode) node;
-        }
-        
-        InternalNode internal = (InternalNode) node;
-        BTreeNode child = internal.findChild(key);
-        return findLeaf(child, key);
-    }
-    
-    // Inner classes
-    private abstract static class BTreeNode {
-        abstract boolean isLeaf();
-    }
-    
-    private static class InternalNode extends BTreeNode {
-        List<Integer> keys = new ArrayList<>();
-        List<BTreeNode> children = new ArrayList<>();
-        
-        @Override
-        boolean isLeaf() { return false; }
-        
-        int findChildIndex(int key) {
-            int i = 0;
-            while (i < keys.size() && key >= keys.get(i)) {
-                i++;
-            }
-            return i;
-        }
-        
-        BTreeNode findChild(int key) {
-            return children.get(findChildIndex(key));
-        }
-    }
-    
-    private static class LeafNode extends BTreeNode {
-        List<Integer> keys = new ArrayList<>();
-        List<byte[]> values = new ArrayList<>();
-        LeafNode next; // For range scans
-        
-        @Override
-        boolean isLeaf() { return true; }
-        
-        byte[] search(int key) {
-            int idx = Collections.binarySearch(keys, key);
-            return idx >= 0 ? values.get(idx) : null;
-        }
-        
-        void insert(int key, byte[] value) {
-            int idx = Collections.binarySearch(keys, key);
-            if (idx >= 0) {
-                // Update existing
-                values.set(idx, value);
-            } else {
-                // Insert new
-                int insertPos = -(idx + 1);
-                keys.add(insertPos, key);
-                values.add(insertPos, value);
-            }
-        }
-    }
-    
-    private record SplitResult(int splitKey, BTreeNode rightNode) {}
-}
\ No newline at end of file
+}
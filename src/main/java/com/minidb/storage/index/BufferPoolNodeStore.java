@@ -0,0 +1,63 @@
+package com.minidb.storage.index;
+
+import com.minidb.storage.buffer.BufferPool;
+import com.minidb.storage.page.Page;
+import com.minidb.storage.page.PageId;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * BufferPoolNodeStore - Node pages of an index file, read and written
+ * through the buffer pool
+ */
+class BufferPoolNodeStore implements NodeStore {
+    private final int fileId;
+    private final BufferPool bufferPool;
+    
+    BufferPoolNodeStore(int fileId, BufferPool bufferPool) {
+        this.fileId = fileId;
+        this.bufferPool = bufferPool;
+    }
+    
+    @Override
+    public byte[] pin(int pageNumber) {
+        try {
+            Page page = bufferPool.fetchPage(new PageId(fileId, pageNumber));
+            return page.getData().array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public void unpin(int pageNumber, boolean dirty) {
+        bufferPool.unpinPage(new PageId(fileId, pageNumber), dirty);
+    }
+    
+    @Override
+    public int allocate() {
+        try {
+            return bufferPool.allocatePage(fileId).pageNumber();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public int getPageCount() {
+        try {
+            return bufferPool.getPageCount(fileId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public void flush() {
+        try {
+            bufferPool.flushAllPages();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
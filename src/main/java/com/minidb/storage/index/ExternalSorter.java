@@ -0,0 +1,225 @@
+package com.minidb.storage.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * ExternalSorter - Sorts index keys in IndexKey order within a memory budget
+ *
+ * Keys are buffered until they pass the budget; the full buffer is then
+ * sorted with a parallel sort and written to a temporary file as a sorted
+ * run. sorted() merges the runs and whatever is still buffered through a
+ * heap, reading each run sequentially, so a load of any size needs the
+ * buffer plus one read block per run. Keys may be added from several
+ * threads: a thread that fills the buffer swaps in a fresh one and writes
+ * its run outside the lock, so runs are sorted and spilled concurrently.
+ *
+ * Run file: [4 bytes: key length][key]...
+ */
+public final class ExternalSorter implements AutoCloseable {
+    private static final int ENTRY_OVERHEAD = 32; // Array header and list slot per key
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    private final long memoryBudget;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<DataInputStream> openRuns = new ArrayList<>();
+    private List<byte[]> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private long size;
+    private boolean merging;
+
+    public ExternalSorter(long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public void add(byte[] key) {
+        addAll(List.of(key));
+    }
+
+    /**
+     * Add keys, spilling the buffer as a sorted run once it is over budget
+     */
+    public void addAll(Collection<byte[]> keys) {
+        List<byte[]> full;
+        synchronized (this) {
+            if (merging) {
+                throw new IllegalStateException("Sorter is already merging");
+            }
+            for (byte[] key : keys) {
+                buffer.add(key);
+                bufferedBytes += key.length + ENTRY_OVERHEAD;
+            }
+            size += keys.size();
+            if (bufferedBytes < memoryBudget) return;
+
+            full = buffer;
+            buffer = new ArrayList<>();
+            bufferedBytes = 0;
+        }
+
+        Path run = writeRun(sort(full));
+        synchronized (this) {
+            runs.add(run);
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Runs spilled to disk so far
+     */
+    public synchronized int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Every key added, in ascending order; no keys can be added after this
+     */
+    public synchronized Iterator<byte[]> sorted() {
+        if (merging) {
+            throw new IllegalStateException("Sorter is already merging");
+        }
+        merging = true;
+        byte[][] memory = sort(buffer);
+        buffer = null;
+        if (runs.isEmpty()) {
+            return Arrays.asList(memory).iterator();
+        }
+
+        PriorityQueue<Source> heads = new PriorityQueue<>((a, b) -> IndexKey.compare(a.head, b.head));
+        addSource(heads, new Source(Arrays.asList(memory).iterator()));
+        for (Path run : runs) {
+            addSource(heads, new Source(openRun(run)));
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public byte[] next() {
+                Source source = heads.poll();
+                if (source == null) throw new NoSuchElementException();
+                byte[] key = source.head;
+                addSource(heads, source);
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Delete the run files
+     */
+    @Override
+    public synchronized void close() {
+        for (DataInputStream in : openRuns) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // The file is deleted next anyway
+            }
+        }
+        openRuns.clear();
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ignored) {
+                // Left in the temp directory
+            }
+        }
+        runs.clear();
+    }
+
+    private static byte[][] sort(List<byte[]> keys) {
+        byte[][] sorted = keys.toArray(new byte[0][]);
+        Arrays.parallelSort(sorted, IndexKey::compare);
+        return sorted;
+    }
+
+    private static Path writeRun(byte[][] keys) {
+        Path run = null;
+        try {
+            run = Files.createTempFile("minidb-sort", ".run");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE))) {
+                for (byte[] key : keys) {
+                    out.writeInt(key.length);
+                    out.write(key);
+                }
+            }
+            return run;
+        } catch (IOException e) {
+            if (run != null) {
+                run.toFile().delete();
+            }
+            throw new UncheckedIOException("Failed to write sort run", e);
+        }
+    }
+
+    private Iterator<byte[]> openRun(Path run) {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open sort run", e);
+        }
+        openRuns.add(in);
+
+        return new Iterator<>() {
+            private byte[] next = read();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public byte[] next() {
+                if (next == null) throw new NoSuchElementException();
+                byte[] key = next;
+                next = read();
+                return key;
+            }
+
+            private byte[] read() {
+                try {
+                    byte[] key = new byte[in.readInt()];
+                    in.readFully(key);
+                    return key;
+                } catch (EOFException e) {
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read sort run", e);
+                }
+            }
+        };
+    }
+
+    private static void addSource(PriorityQueue<Source> heads, Source source) {
+        if (source.keys.hasNext()) {
+            source.head = source.keys.next();
+            heads.add(source);
+        }
+    }
+
+    /**
+     * One sorted input of the merge and its current smallest key
+     */
+    private static final class Source {
+        final Iterator<byte[]> keys;
+        byte[] head;
+
+        Source(Iterator<byte[]> keys) {
+            this.keys = keys;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.minidb.storage.index;
+
+import java.util.*;
+
+/**
+ * IndexKey - Normalised index keys that sort as unsigned bytes
+ *
+ * Values are encoded so that comparing the encodings byte by byte, as
+ * memcmp does, orders them like the values themselves; the tree never
+ * decodes a key. Encodings are self-delimiting, so a composite key is
+ * just its columns' encodings one after another.
+ *
+ * INT and LONG: big-endian with the sign bit flipped.
+ * String: each UTF-16 char as 1-3 bytes in the UTF-8 style (surrogates
+ * one at a time, so the order is String.compareTo's), NUL as 0x00 0xFF,
+ * ended by 0x00 0x00. Neither form produces a 0xFF byte elsewhere.
+ */
+public final class IndexKey {
+    private static final byte[] STRING_END = {0, 0};
+
+    private IndexKey() {
+    }
+
+    public static byte[] ofInt(int value) {
+        return new Builder().addInt(value).build();
+    }
+
+    public static byte[] ofLong(long value) {
+        return new Builder().addLong(value).build();
+    }
+
+    public static byte[] ofString(String value) {
+        return new Builder().addString(value).build();
+    }
+
+    /**
+     * memcmp order: unsigned bytes, a key before any longer key it prefixes
+     */
+    public static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /**
+     * Smallest key greater than every key starting with {@code prefix},
+     * or null if there is none
+     */
+    public static byte[] successor(byte[] prefix) {
+        int end = prefix.length;
+        while (end > 0 && prefix[end - 1] == (byte) 0xFF) {
+            end--;
+        }
+        if (end == 0) return null;
+
+        byte[] next = Arrays.copyOf(prefix, end);
+        next[end - 1]++;
+        return next;
+    }
+
+    /**
+     * Key built one column at a time
+     */
+    public static final class Builder {
+        private byte[] bytes = new byte[16];
+        private int length;
+
+        public Builder addInt(int value) {
+            ensure(4);
+            putInt(value ^ Integer.MIN_VALUE);
+            return this;
+        }
+
+        public Builder addLong(long value) {
+            ensure(8);
+            long flipped = value ^ Long.MIN_VALUE;
+            putInt((int) (flipped >>> 32));
+            putInt((int) flipped);
+            return this;
+        }
+
+        public Builder addString(String value) {
+            addStringPrefix(value);
+            ensure(2);
+            System.arraycopy(STRING_END, 0, bytes, length, 2);
+            length += 2;
+            return this;
+        }
+
+        /**
+         * A string without its end marker: the keys of every string
+         * starting with {@code value} begin with these bytes
+         */
+        public Builder addStringPrefix(String value) {
+            ensure(3 * value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == 0) {
+                    bytes[length++] = 0;
+                    bytes[length++] = (byte) 0xFF;
+                } else if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Raw bytes appended as they are, such as a record ID suffix
+         */
+        public Builder addBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+            return this;
+        }
+
+        public byte[] build() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        private void putInt(int value) {
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        private void ensure(int more) {
+            if (length + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+            }
+        }
+    }
+}
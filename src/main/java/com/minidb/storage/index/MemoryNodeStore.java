@@ -0,0 +1,44 @@
+package com.minidb.storage.index;
+
+import com.minidb.storage.page.Page;
+import java.util.*;
+
+/**
+ * MemoryNodeStore - Node pages held on the heap, for indexes of in-memory tables
+ *
+ * Pages may be pinned while another thread allocates: the page table is
+ * replaced, never resized in place.
+ */
+class MemoryNodeStore implements NodeStore {
+    private volatile byte[][] pages = new byte[16][];
+    private volatile int pageCount;
+
+    @Override
+    public byte[] pin(int pageNumber) {
+        return pages[pageNumber];
+    }
+
+    @Override
+    public void unpin(int pageNumber, boolean dirty) {
+    }
+
+    @Override
+    public synchronized int allocate() {
+        byte[][] current = pages;
+        if (pageCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[pageCount] = new byte[Page.PAGE_SIZE];
+        pages = current;
+        return pageCount++;
+    }
+
+    @Override
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,27 @@
+package com.minidb.storage.index;
+
+/**
+ * NodeStore - Pages a B+tree keeps its nodes on, addressed by page number
+ *
+ * A page must be pinned while it is read or written and unpinned after.
+ */
+interface NodeStore {
+    /**
+     * Pin the page and return its bytes
+     */
+    byte[] pin(int pageNumber);
+    
+    void unpin(int pageNumber, boolean dirty);
+    
+    /**
+     * Add a zeroed page, returns its page number
+     */
+    int allocate();
+    
+    int getPageCount();
+    
+    /**
+     * Write dirty pages to disk, if the store has one
+     */
+    void flush();
+}
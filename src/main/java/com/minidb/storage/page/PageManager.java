@@ -80,6 +80,13 @@ public class PageManager {
         }
     }
     
+    /**
+     * Number of pages in the file
+     */
+    public int getPageCount(int fileId) throws IOException {
+        return (int) (getFileChannel(fileId).size() / Page.PAGE_SIZE);
+    }
+    
     private FileChannel getFileChannel(int fileId) throws IOException {
         return fileChannels.computeIfAbsent(fileId, id -> {
             try {
@@ -0,0 +1,42 @@
+package com.minidb.storage.table;
+
+/**
+ * DataPage - Page of table rows addressed by slot ID
+ *
+ * Records passed in are in stored form: large values already moved
+ * to overflow pages by the table.
+ */
+interface DataPage {
+    /**
+     * Insert record, returns slot ID or -1 if no space
+     */
+    int insert(Record record);
+    
+    /**
+     * Insert record already encoded in stored form, returns slot ID or -1 if no space
+     */
+    int insert(byte[] data, int offset, int length);
+    
+    /**
+     * Read record at slot, or null if deleted.
+     * Columns not listed in {@code columns} may be left unloaded (null = all).
+     */
+    Record read(int slotId, int[] columns, OverflowStore overflowStore);
+    
+    /**
+     * Point the decoder at the record in slot, false if deleted.
+     * Columns not listed in {@code columns} may read as empty (null = all).
+     */
+    boolean read(int slotId, int[] columns, RecordDecoder decoder, OverflowStore overflowStore);
+    
+    /**
+     * Update record in place, false if the page cannot hold it
+     */
+    boolean update(int slotId, Record record);
+    
+    void delete(int slotId);
+    
+    int getSlotCount();
+    
+    int getFreeSpace();
+}
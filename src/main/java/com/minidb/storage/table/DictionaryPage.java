@@ -0,0 +1,233 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+
+/**
+ * DictionaryPage - Row page with per-page dictionary and prefix compression
+ * 
+ * Values of the compressed columns are replaced by a code into the page's
+ * dictionary, or by a prefix of a dictionary entry plus the remaining
+ * suffix. The dictionary itself is the record in slot 0 of the underlying
+ * SlottedPage; rows live in slots 1.. and are exposed as slots 0..
+ * 
+ * Compressed fields reuse the record format's length word (high bit set;
+ * -1 remains the overflow marker):
+ * DICT_FIELD   | code                       - no value bytes
+ * PREFIX_FIELD | code << 12 | prefix length - [2 bytes: suffix length][suffix]
+ */
+public class DictionaryPage implements DataPage {
+    static final int KIND_MASK = 0xF000_0000;
+    static final int DICT_FIELD = 0x8000_0000;
+    static final int PREFIX_FIELD = 0xC000_0000;
+    static final int MAX_PREFIX = 0xFFF;
+    static final int SUFFIX_LENGTH_SIZE = 2;
+    
+    // Largest record a fresh page holds next to its empty dictionary
+    public static final int MAX_RECORD_SIZE = SlottedPage.MAX_RECORD_SIZE - 12;
+    
+    // Shorter shared prefixes are not worth a reference
+    private static final int MIN_PREFIX = 4;
+    // Keep adding a column's values while at least half are reused
+    private static final int WARMUP_ADDS = 8;
+    
+    private static final int DICTIONARY_SLOT = 0;
+    
+    private final SlottedPage page;
+    private final BitSet compressedColumns;
+    private final PageDictionary dictionary;
+    private final Map<Integer, Integer> anchors; // column -> latest entry added for it
+    private final Map<Integer, int[]> stats; // column -> {entries added, values reused}
+    
+    public DictionaryPage(BitSet compressedColumns) {
+        this.page = new SlottedPage();
+        this.compressedColumns = compressedColumns;
+        this.dictionary = new PageDictionary();
+        this.anchors = new HashMap<>();
+        this.stats = new HashMap<>();
+        page.insertRecord(dictionary.toRecord().serialize());
+    }
+    
+    public DictionaryPage(byte[] pageData, BitSet compressedColumns) {
+        this.page = new SlottedPage(pageData);
+        this.compressedColumns = compressedColumns;
+        this.dictionary = PageDictionary.fromRecord(Record.deserialize(page.getRecord(DICTIONARY_SLOT)));
+        this.anchors = new HashMap<>();
+        this.stats = new HashMap<>();
+    }
+    
+    @Override
+    public int insert(Record record) {
+        int dictionarySize = dictionary.size();
+        byte[] row = compress(record, true);
+        if (dictionary.size() > dictionarySize && !saveDictionary()) {
+            // No room for the new entries: encode without them
+            dictionary.truncate(dictionarySize);
+            row = compress(record, false);
+        }
+        
+        int slotId = page.insertRecord(row);
+        if (slotId == -1) {
+            if (dictionary.size() > dictionarySize) {
+                dictionary.truncate(dictionarySize);
+                saveDictionary(); // Shrinking always fits
+            }
+            return -1;
+        }
+        return slotId - 1;
+    }
+    
+    @Override
+    public int insert(byte[] data, int offset, int length) {
+        return insert(new RecordDecoder().wrap(data, offset, null).toRecord());
+    }
+    
+    /**
+     * Read record with every compressed field expanded
+     */
+    @Override
+    public Record read(int slotId, int[] columns, OverflowStore overflowStore) {
+        RecordDecoder decoder = new RecordDecoder();
+        return read(slotId, columns, decoder, overflowStore) ? decoder.toRecord() : null;
+    }
+    
+    /**
+     * Decoder reads the row in place and resolves codes through the dictionary
+     */
+    @Override
+    public boolean read(int slotId, int[] columns, RecordDecoder decoder, OverflowStore overflowStore) {
+        if (slotId < 0 || !page.read(slotId + 1, columns, decoder, overflowStore)) return false;
+        
+        decoder.useDictionary(dictionary);
+        return true;
+    }
+    
+    @Override
+    public boolean update(int slotId, Record record) {
+        if (slotId < 0) return false;
+        
+        int dictionarySize = dictionary.size();
+        byte[] row = compress(record, true);
+        if (dictionary.size() > dictionarySize && !saveDictionary()) {
+            dictionary.truncate(dictionarySize);
+            row = compress(record, false);
+        }
+        
+        if (!page.updateRecord(slotId + 1, row)) {
+            if (dictionary.size() > dictionarySize) {
+                dictionary.truncate(dictionarySize);
+                saveDictionary();
+            }
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Delete row; its dictionary entries stay for the page's lifetime
+     */
+    @Override
+    public void delete(int slotId) {
+        if (slotId >= 0) page.deleteRecord(slotId + 1);
+    }
+    
+    @Override
+    public int getSlotCount() {
+        return page.getSlotCount() - 1;
+    }
+    
+    @Override
+    public int getFreeSpace() {
+        return page.getFreeSpace();
+    }
+    
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+    
+    public byte[] toBytes() {
+        return page.toBytes();
+    }
+    
+    private boolean saveDictionary() {
+        return page.updateRecord(DICTIONARY_SLOT, dictionary.toRecord().serialize());
+    }
+    
+    /**
+     * Encode a stored record, compressing the configured columns.
+     * With {@code allowAdd} new values may be added to the dictionary.
+     */
+    private byte[] compress(Record record, boolean allowAdd) {
+        int fieldCount = record.getFieldCount();
+        byte[] row = new byte[record.getSerializedSize() + fieldCount * SUFFIX_LENGTH_SIZE];
+        RecordEncoder.putInt(row, 0, fieldCount);
+        int position = RecordEncoder.HEADER_SIZE;
+        
+        for (int i = 0; i < fieldCount; i++) {
+            byte[] value = record.getStoredField(i);
+            if (record.isOverflowField(i) || !compressedColumns.get(i) || value.length == 0) {
+                RecordEncoder.putInt(row, position, record.isOverflowField(i)
+                        ? RecordEncoder.OVERFLOW_FIELD : value.length);
+                System.arraycopy(value, 0, row, position + RecordEncoder.LENGTH_SIZE, value.length);
+                position += RecordEncoder.LENGTH_SIZE + value.length;
+                continue;
+            }
+            
+            int[] counts = stats.computeIfAbsent(i, c -> new int[2]);
+            int code = dictionary.find(value);
+            if (code != -1) {
+                counts[1]++;
+                RecordEncoder.putInt(row, position, DICT_FIELD | code);
+                position += RecordEncoder.LENGTH_SIZE;
+                continue;
+            }
+            
+            // Sorted runs share a prefix with the column's latest entry
+            Integer anchor = anchors.get(i);
+            if (anchor != null && anchor >= dictionary.size()) {
+                anchor = null; // Rolled back
+            }
+            int prefix = anchor != null ? commonPrefix(dictionary.entry(anchor), value) : 0;
+            if (prefix >= MIN_PREFIX) {
+                counts[1]++;
+                int suffix = value.length - prefix;
+                RecordEncoder.putInt(row, position, PREFIX_FIELD | (anchor << 12) | prefix);
+                row[position + 4] = (byte) (suffix >> 8);
+                row[position + 5] = (byte) suffix;
+                System.arraycopy(value, prefix, row, position + 6, suffix);
+                position += RecordEncoder.LENGTH_SIZE + SUFFIX_LENGTH_SIZE + suffix;
+                continue;
+            }
+            
+            boolean worthAdding = counts[0] < WARMUP_ADDS || counts[1] >= counts[0];
+            if (allowAdd && worthAdding && dictionary.size() < PageDictionary.MAX_ENTRIES) {
+                counts[0]++;
+                code = dictionary.add(value);
+                anchors.put(i, code);
+                RecordEncoder.putInt(row, position, DICT_FIELD | code);
+                position += RecordEncoder.LENGTH_SIZE;
+                continue;
+            }
+            
+            RecordEncoder.putInt(row, position, value.length);
+            System.arraycopy(value, 0, row, position + RecordEncoder.LENGTH_SIZE, value.length);
+            position += RecordEncoder.LENGTH_SIZE + value.length;
+        }
+        
+        return Arrays.copyOf(row, position);
+    }
+    
+    /**
+     * Shared prefix length, cut back to a UTF-8 character boundary
+     */
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int limit = Math.min(MAX_PREFIX, Math.min(a.length, b.length));
+        int length = 0;
+        while (length < limit && a[length] == b[length]) {
+            length++;
+        }
+        while (length > 0 && length < b.length && (b[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+}
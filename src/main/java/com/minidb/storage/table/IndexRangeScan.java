@@ -0,0 +1,66 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * IndexRangeScan - Lazy primary key range scan
+ * 
+ * Walks index leaf entries one at a time. For heap tables each entry is
+ * a record ID and the record is fetched from the heap only when it is
+ * requested; index-organized tables hold the record in the entry itself,
+ * where an optional filter can test it in place.
+ */
+public class IndexRangeScan implements RecordCursor {
+    private final Iterator<byte[]> entries;
+    private final Table table;
+    private final Predicate<RecordDecoder> filter;
+    private final RecordDecoder decoder;
+    private Record next;
+    private int nextRecordId;
+    private int recordId;
+    private boolean closed;
+    
+    IndexRangeScan(Iterator<byte[]> entries, Table table, Predicate<RecordDecoder> filter) {
+        this.entries = entries;
+        this.table = table;
+        this.filter = filter;
+        this.decoder = filter != null ? new RecordDecoder() : null;
+        this.recordId = -1;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (next == null && !closed && entries.hasNext()) {
+            byte[] entry = entries.next();
+            if (filter != null && !filter.test(table.wrapEntry(entry, decoder))) continue;
+            
+            next = table.resolve(entry);
+            nextRecordId = table.recordIdOf(entry);
+        }
+        return next != null;
+    }
+    
+    @Override
+    public Record next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        
+        Record record = next;
+        recordId = nextRecordId;
+        next = null;
+        return record;
+    }
+    
+    /**
+     * ID of the record last returned by next()
+     */
+    public int getRecordId() {
+        return recordId;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        next = null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.minidb.storage.table;
+
+import com.minidb.storage.index.IndexKey;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+
+/**
+ * KeyEncoder - Turns the key columns of a row into a normalised index key
+ *
+ * The columns' values are encoded with IndexKey one after another, so
+ * keys compare as unsigned bytes in column order. Partial keys built from
+ * the first few columns are prefixes of the full keys, which is what lets
+ * an index serve equality on leading columns and ranges on the next one.
+ */
+public final class KeyEncoder {
+    public enum Type { INT, LONG, STRING }
+
+    private final int[] columns;
+    private final Type[] types;
+
+    public KeyEncoder(int[] columns, Type[] types) {
+        if (columns.length == 0 || columns.length != types.length) {
+            throw new IllegalArgumentException("Key needs one type per column");
+        }
+        this.columns = columns.clone();
+        this.types = types.clone();
+    }
+
+    /**
+     * Key of a single INT column
+     */
+    public static KeyEncoder ofInt(int column) {
+        return new KeyEncoder(new int[] {column}, new Type[] {Type.INT});
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    /**
+     * Row column of key column {@code position}
+     */
+    public int getColumn(int position) {
+        return columns[position];
+    }
+
+    public Type getType(int position) {
+        return types[position];
+    }
+
+    public boolean hasColumn(int column) {
+        for (int keyColumn : columns) {
+            if (keyColumn == column) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Key of a row whose stored fields {@code field} returns, null for a
+     * column the row lacks; the key is null then too
+     */
+    byte[] encode(IntFunction<byte[]> field) {
+        IndexKey.Builder key = new IndexKey.Builder();
+        for (int i = 0; i < columns.length; i++) {
+            byte[] value = field.apply(columns[i]);
+            if (value == null) return null;
+            switch (types[i]) {
+                case INT -> key.addInt(RecordDecoder.getInt(value, 0));
+                case LONG -> key.addLong(RecordDecoder.getLong(value, 0));
+                case STRING -> key.addString(new String(value, StandardCharsets.UTF_8));
+            }
+        }
+        return key.build();
+    }
+
+    /**
+     * Append a literal for key column {@code position}: an Integer for
+     * INT and LONG columns, a String for STRING ones
+     */
+    public IndexKey.Builder append(IndexKey.Builder key, int position, Object value) {
+        switch (types[position]) {
+            case INT -> key.addInt(number(value));
+            case LONG -> key.addLong(number(value));
+            case STRING -> key.addString(text(value));
+        }
+        return key;
+    }
+
+    /**
+     * Append the bytes every STRING key column value starting with
+     * {@code prefix} begins with
+     */
+    public IndexKey.Builder appendPrefix(IndexKey.Builder key, int position, String prefix) {
+        if (types[position] != Type.STRING) {
+            throw new IllegalArgumentException("Column " + columns[position] + " is not a string");
+        }
+        return key.addStringPrefix(prefix);
+    }
+
+    /**
+     * Key of literal values, one per key column
+     */
+    public byte[] encodeValues(Object... values) {
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Key has " + columns.length + " columns, got " + values.length);
+        }
+        IndexKey.Builder key = new IndexKey.Builder();
+        for (int i = 0; i < values.length; i++) {
+            append(key, i, values[i]);
+        }
+        return key.build();
+    }
+
+    private static int number(Object value) {
+        if (value instanceof Integer number) return number;
+        throw new IllegalArgumentException("Expected a number for key column: " + value);
+    }
+
+    private static String text(Object value) {
+        if (value instanceof String text) return text;
+        throw new IllegalArgumentException("Expected a string for key column: " + value);
+    }
+}
@@ -0,0 +1,110 @@
+package com.minidb.storage.table;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * OverflowStore - Chained pages holding field values too large to keep in-row
+ *
+ * Page layout: [4 bytes: next page][4 bytes: data length][data]
+ */
+public class OverflowStore {
+    private static final int PAGE_SIZE = 4096;
+    private static final int HEADER_SIZE = 8;
+    private static final int DATA_SIZE = PAGE_SIZE - HEADER_SIZE;
+    private static final int NO_PAGE = -1;
+    
+    private final List<ByteBuffer> pages;
+    private final Deque<Integer> freePages;
+    
+    public OverflowStore() {
+        this.pages = new ArrayList<>();
+        this.freePages = new ArrayDeque<>();
+    }
+    
+    /**
+     * Write value across a chain of pages, returns pointer to the chain
+     */
+    public OverflowPointer write(byte[] value) {
+        int pageCount = Math.max(1, (value.length + DATA_SIZE - 1) / DATA_SIZE);
+        int[] chain = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            chain[i] = allocatePage();
+        }
+        
+        int offset = 0;
+        for (int i = 0; i < pageCount; i++) {
+            int length = Math.min(DATA_SIZE, value.length - offset);
+            ByteBuffer page = pages.get(chain[i]);
+            page.position(0);
+            page.putInt(i + 1 < pageCount ? chain[i + 1] : NO_PAGE);
+            page.putInt(length);
+            page.put(value, offset, length);
+            offset += length;
+        }
+        
+        return new OverflowPointer(chain[0], value.length);
+    }
+    
+    /**
+     * Read value by following the page chain
+     */
+    public byte[] read(OverflowPointer pointer) {
+        byte[] value = new byte[pointer.length()];
+        int offset = 0;
+        int pageNumber = pointer.firstPage();
+        
+        while (pageNumber != NO_PAGE && offset < value.length) {
+            ByteBuffer page = pages.get(pageNumber);
+            int next = page.getInt(0);
+            int length = page.getInt(4);
+            page.get(HEADER_SIZE, value, offset, length);
+            offset += length;
+            pageNumber = next;
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Return all pages of the chain to the free list
+     */
+    public void free(OverflowPointer pointer) {
+        int pageNumber = pointer.firstPage();
+        while (pageNumber != NO_PAGE) {
+            ByteBuffer page = pages.get(pageNumber);
+            int next = page.getInt(0);
+            page.putInt(0, NO_PAGE);
+            freePages.push(pageNumber);
+            pageNumber = next;
+        }
+    }
+    
+    public int getPageCount() {
+        return pages.size() - freePages.size();
+    }
+    
+    private int allocatePage() {
+        if (!freePages.isEmpty()) {
+            return freePages.pop();
+        }
+        pages.add(ByteBuffer.allocate(PAGE_SIZE));
+        return pages.size() - 1;
+    }
+    
+    /**
+     * In-row reference to an overflow chain
+     */
+    public record OverflowPointer(int firstPage, int length) {
+        public static final int SIZE = 8;
+        
+        public byte[] toBytes() {
+            return ByteBuffer.allocate(SIZE).putInt(firstPage).putInt(length).array();
+        }
+        
+        public static OverflowPointer fromBytes(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new OverflowPointer(buffer.getInt(), buffer.getInt());
+        }
+    }
+}
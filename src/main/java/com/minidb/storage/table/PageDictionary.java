@@ -0,0 +1,76 @@
+package com.minidb.storage.table;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * PageDictionary - Distinct field values of one page, addressed by code
+ * 
+ * Stored in the page as a record whose fields are the entries.
+ */
+class PageDictionary {
+    // Codes must fit the 16 bits of a prefix reference
+    static final int MAX_ENTRIES = 1 << 16;
+    
+    private final List<byte[]> entries;
+    private final Map<String, Integer> codes; // Latin-1 keys map bytes 1:1
+    
+    PageDictionary() {
+        this.entries = new ArrayList<>();
+        this.codes = new HashMap<>();
+    }
+    
+    static PageDictionary fromRecord(Record record) {
+        PageDictionary dictionary = new PageDictionary();
+        for (int i = 0; i < record.getFieldCount(); i++) {
+            dictionary.add(record.getField(i));
+        }
+        return dictionary;
+    }
+    
+    Record toRecord() {
+        return new Record(entries);
+    }
+    
+    /**
+     * Code of the value, or -1 if absent
+     */
+    int find(byte[] value) {
+        return codes.getOrDefault(key(value), -1);
+    }
+    
+    /**
+     * Code of the string's UTF-8 form, or -1 if absent
+     */
+    int find(String value) {
+        return find(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    int add(byte[] value) {
+        int code = entries.size();
+        entries.add(value);
+        codes.put(key(value), code);
+        return code;
+    }
+    
+    byte[] entry(int code) {
+        return entries.get(code);
+    }
+    
+    int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Drop entries added after the dictionary had {@code size} entries
+     */
+    void truncate(int size) {
+        while (entries.size() > size) {
+            codes.remove(key(entries.remove(entries.size() - 1)));
+        }
+    }
+    
+    private static String key(byte[] value) {
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,196 @@
+package com.minidb.storage.table;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * ParallelScan - Fork/join full table scan
+ * 
+ * Splits the pages into ranges of {@link #PAGES_PER_TASK}; each worker reads
+ * and filters its own range. Ordered scans concatenate the range results in
+ * page order, unordered scans take them in whatever order workers finish.
+ * A streamed scan hands ranges over in page order while keeping only a
+ * few ranges ahead of its consumer, so its memory does not grow with the
+ * table.
+ */
+class ParallelScan<T> {
+    private static final int PAGES_PER_TASK = 16;
+    
+    /**
+     * Turns a matching slot into a result row; {@code row} still holds the
+     * columns the filter read
+     */
+    interface RowMapper<T> {
+        T map(DataPage page, int pageIndex, int slotId, RecordDecoder row);
+    }
+    
+    private final List<DataPage> pages;
+    private final int pageCount;
+    private final int[] columns; // Columns the filter reads (null = all)
+    private final OverflowStore overflowStore;
+    private final Predicate<RecordDecoder> filter;
+    private final IntPredicate pageFilter; // false = page cannot match, skip it (null = none)
+    private final RowMapper<T> mapper;
+    
+    ParallelScan(List<DataPage> pages, int[] columns, OverflowStore overflowStore,
+                 Predicate<RecordDecoder> filter, IntPredicate pageFilter, RowMapper<T> mapper) {
+        this.pages = pages;
+        this.pageCount = pages.size(); // Pages appended after this are not scanned
+        this.columns = columns;
+        this.overflowStore = overflowStore;
+        this.filter = filter;
+        this.pageFilter = pageFilter;
+        this.mapper = mapper;
+    }
+    
+    /**
+     * Run the scan on the pool, returns matching rows
+     */
+    List<T> run(ForkJoinPool pool, boolean ordered) {
+        int rangeCount = (pageCount + PAGES_PER_TASK - 1) / PAGES_PER_TASK;
+        if (rangeCount == 0) return new ArrayList<>();
+        
+        if (ordered) {
+            // One slot per range, concatenated once every worker is done
+            List<List<T>> ranges = new ArrayList<>(Collections.nCopies(rangeCount, null));
+            pool.invoke(new RangeTask(0, rangeCount, (range, rows) -> ranges.set(range, rows)));
+            return concat(ranges);
+        }
+        
+        Queue<List<T>> finished = new ConcurrentLinkedQueue<>();
+        pool.invoke(new RangeTask(0, rangeCount, (range, rows) -> finished.add(rows)));
+        return concat(finished);
+    }
+    
+    /**
+     * Run the scan on the pool, handing each range's rows to {@code sink}
+     * as soon as its worker finishes, so the rows of the whole table are
+     * never held at once. The sink is called from several threads.
+     */
+    void forEachRange(ForkJoinPool pool, Consumer<List<T>> sink) {
+        int rangeCount = (pageCount + PAGES_PER_TASK - 1) / PAGES_PER_TASK;
+        if (rangeCount == 0) return;
+        pool.invoke(new RangeTask(0, rangeCount, (range, rows) -> sink.accept(rows)));
+    }
+    
+    /**
+     * Ranges' rows in page order, scanned on the pool at most
+     * {@code window} ranges ahead of the consumer. Closing it cancels
+     * the ranges not yet started.
+     */
+    RangeStream stream(ForkJoinPool pool, int window) {
+        return new RangeStream(pool, window);
+    }
+    
+    final class RangeStream implements Iterator<List<T>>, AutoCloseable {
+        private final ForkJoinPool pool;
+        private final int rangeCount;
+        private final Deque<ForkJoinTask<List<T>>> pending = new ArrayDeque<>(); // In page order
+        private int submitted;
+        
+        private RangeStream(ForkJoinPool pool, int window) {
+            this.pool = pool;
+            this.rangeCount = (pageCount + PAGES_PER_TASK - 1) / PAGES_PER_TASK;
+            while (submitted < rangeCount && pending.size() < window) {
+                submitNext();
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !pending.isEmpty();
+        }
+        
+        @Override
+        public List<T> next() {
+            ForkJoinTask<List<T>> task = pending.poll();
+            if (task == null) throw new NoSuchElementException();
+            if (submitted < rangeCount) {
+                submitNext(); // Keep the window full while this range is consumed
+            }
+            return task.join();
+        }
+        
+        @Override
+        public void close() {
+            for (ForkJoinTask<List<T>> task : pending) {
+                task.cancel(false);
+            }
+            pending.clear();
+            submitted = rangeCount;
+        }
+        
+        private void submitNext() {
+            int range = submitted++;
+            pending.add(pool.submit(() -> scanRange(range)));
+        }
+    }
+    
+    private List<T> scanRange(int range) {
+        List<T> rows = new ArrayList<>();
+        RecordDecoder decoder = new RecordDecoder();
+        int end = Math.min(pageCount, (range + 1) * PAGES_PER_TASK);
+        
+        for (int pageIndex = range * PAGES_PER_TASK; pageIndex < end; pageIndex++) {
+            if (pageFilter != null && !pageFilter.test(pageIndex)) continue;
+            DataPage page = pages.get(pageIndex);
+            for (int slotId = 0; slotId < page.getSlotCount(); slotId++) {
+                if (page.read(slotId, columns, decoder, overflowStore) && filter.test(decoder)) {
+                    rows.add(mapper.map(page, pageIndex, slotId, decoder));
+                }
+            }
+        }
+        
+        return rows;
+    }
+    
+    private static <T> List<T> concat(Collection<List<T>> parts) {
+        int size = 0;
+        for (List<T> part : parts) {
+            size += part.size();
+        }
+        
+        List<T> result = new ArrayList<>(size);
+        for (List<T> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+    
+    private interface RangeSink<T> {
+        void accept(int range, List<T> rows);
+    }
+    
+    /**
+     * Scans ranges [from, to), splitting in half until one range is left
+     */
+    private class RangeTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        
+        private final int from;
+        private final int to;
+        private final transient RangeSink<T> sink; // Tasks are never serialized
+        
+        RangeTask(int from, int to, RangeSink<T> sink) {
+            this.from = from;
+            this.to = to;
+            this.sink = sink;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                sink.accept(from, scanRange(from));
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, sink), new RangeTask(mid, to, sink));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.minidb.storage.table;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * PartitionedTable - Table split by key into independent partitions
+ *
+ * Every partition is a Table with its own pages and primary index, so
+ * writes and scans on different partitions never touch shared state.
+ * The partition list is fixed when the table is created.
+ */
+public class PartitionedTable {
+    // COPY buffers this many rows per partition before spilling them
+    private static final int BULK_LOAD_BATCH_ROWS = 8192;
+    private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+    
+    private final String tableName;
+    private final Partitioning partitioning;
+    private final List<Table> partitions;
+    
+    /**
+     * @param partitionFactory creates the table for partition i
+     */
+    public PartitionedTable(String tableName, Partitioning partitioning, IntFunction<Table> partitionFactory) {
+        this.tableName = tableName;
+        this.partitioning = partitioning;
+        
+        List<Table> created = new ArrayList<>(partitioning.partitionCount());
+        for (int i = 0; i < partitioning.partitionCount(); i++) {
+            created.add(partitionFactory.apply(i));
+        }
+        this.partitions = List.copyOf(created);
+    }
+    
+    /**
+     * Partition a record belongs in, by its key column
+     */
+    public Table partitionFor(Record record) {
+        return partitions.get(partitionIndex(record));
+    }
+    
+    /**
+     * Partitions that can hold keys in [low, high], in partition order
+     */
+    public List<Table> partitionsFor(int low, int high) {
+        BitSet matching = partitioning.partitionsFor(low, high);
+        List<Table> result = new ArrayList<>(matching.cardinality());
+        for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+            result.add(partitions.get(i));
+        }
+        return result;
+    }
+    
+    public int insertRecord(Record record) {
+        return partitionFor(record).insertRecord(record);
+    }
+    
+    public int insertRecord(RecordEncoder encoded) {
+        return partitions.get(partitionIndex(encoded)).insertRecord(encoded);
+    }
+    
+    /**
+     * Bulk load records, routing each to its partition; returns rows loaded
+     */
+    public int bulkLoad(Iterator<Record> records) {
+        RecordEncoder encoder = new RecordEncoder();
+        return bulkLoadEncoded(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+            
+            @Override
+            public RecordEncoder next() {
+                byte[] row = records.next().serialize();
+                return encoder.load(row, 0, row.length);
+            }
+        });
+    }
+    
+    /**
+     * Bulk load encoded rows, routing each to its partition. Rows are
+     * spilled per partition to a temporary file first, so every partition
+     * gets a single bulk load over all of its rows; returns rows loaded.
+     */
+    public int bulkLoadEncoded(Iterator<RecordEncoder> rows) {
+        List<Spill> spills = new ArrayList<>(partitions.size());
+        try {
+            for (int i = 0; i < partitions.size(); i++) {
+                spills.add(new Spill());
+            }
+            while (rows.hasNext()) {
+                RecordEncoder row = rows.next();
+                spills.get(partitionIndex(row)).add(row);
+            }
+            
+            int loaded = 0;
+            for (int i = 0; i < partitions.size(); i++) {
+                Spill spill = spills.get(i);
+                if (spill.size() > 0) {
+                    loaded += partitions.get(i).bulkLoadEncoded(spill.rows());
+                }
+            }
+            return loaded;
+        } finally {
+            for (Spill spill : spills) {
+                spill.close();
+            }
+        }
+    }
+    
+    public String getTableName() {
+        return tableName;
+    }
+    
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+    
+    public List<Table> getPartitions() {
+        return partitions;
+    }
+    
+    public int getRecordCount() {
+        int count = 0;
+        for (Table partition : partitions) {
+            count += partition.getRecordCount();
+        }
+        return count;
+    }
+    
+    public int getPageCount() {
+        int count = 0;
+        for (Table partition : partitions) {
+            count += partition.getPageCount();
+        }
+        return count;
+    }
+    
+    private int partitionIndex(Record record) {
+        if (record.getFieldCount() <= partitioning.column()) {
+            throw new IllegalArgumentException("Record has no partition key");
+        }
+        return partitioning.partitionOf(record.getFieldAsInt(partitioning.column()));
+    }
+    
+    private int partitionIndex(RecordEncoder encoded) {
+        RecordDecoder row = new RecordDecoder().wrap(encoded.buffer(), 0, null);
+        if (row.getFieldCount() <= partitioning.column()) {
+            throw new IllegalArgumentException("Record has no partition key");
+        }
+        return partitioning.partitionOf(row.getInt(partitioning.column()));
+    }
+    
+    /**
+     * One partition's share of a bulk load, in arrival order. Rows are
+     * buffered and appended to a temporary file once the buffer is full.
+     *
+     * Spill file: [4 bytes: row length][encoded row]...
+     */
+    private static final class Spill implements AutoCloseable {
+        private final List<byte[]> buffer = new ArrayList<>();
+        private Path file;
+        private DataOutputStream out;
+        private DataInputStream in;
+        private int size;
+        
+        void add(RecordEncoder row) {
+            buffer.add(row.toByteArray());
+            size++;
+            if (buffer.size() >= BULK_LOAD_BATCH_ROWS) {
+                flush();
+            }
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        /**
+         * Every row added, the spilled ones then those still buffered,
+         * each loaded into the same encoder
+         */
+        Iterator<RecordEncoder> rows() {
+            if (file != null) {
+                try {
+                    out.close();
+                    in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), SPILL_BUFFER_SIZE));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read bulk load spill", e);
+                }
+            }
+            RecordEncoder encoder = new RecordEncoder();
+            Iterator<byte[]> buffered = buffer.iterator();
+            
+            return new Iterator<>() {
+                private int remaining = size - buffer.size();
+                private byte[] data = new byte[0];
+                
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0 || buffered.hasNext();
+                }
+                
+                @Override
+                public RecordEncoder next() {
+                    if (remaining == 0) {
+                        byte[] row = buffered.next();
+                        return encoder.load(row, 0, row.length);
+                    }
+                    try {
+                        int length = in.readInt();
+                        if (length > data.length) {
+                            data = new byte[length];
+                        }
+                        in.readFully(data, 0, length);
+                        remaining--;
+                        return encoder.load(data, 0, length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to read bulk load spill", e);
+                    }
+                }
+            };
+        }
+        
+        private void flush() {
+            try {
+                if (file == null) {
+                    file = Files.createTempFile("minidb-load", ".spill");
+                    out = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(file), SPILL_BUFFER_SIZE));
+                }
+                for (byte[] row : buffer) {
+                    out.writeInt(row.length);
+                    out.write(row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill bulk load rows", e);
+            }
+            buffer.clear();
+        }
+        
+        /**
+         * Delete the spill file
+         */
+        @Override
+        public void close() {
+            try {
+                if (out != null) out.close();
+                if (in != null) in.close();
+            } catch (IOException ignored) {
+                // The file is deleted next anyway
+            }
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Left in the temp directory
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+
+/**
+ * Partitioning - Maps an INT key column to the partition holding the row
+ */
+public sealed interface Partitioning permits Partitioning.Range, Partitioning.Hash {
+    
+    /**
+     * Index of the key column in each row
+     */
+    int column();
+    
+    int partitionCount();
+    
+    int partitionOf(int key);
+    
+    /**
+     * Partitions that can hold keys in [low, high]
+     */
+    BitSet partitionsFor(int low, int high);
+    
+    /**
+     * Partition i holds keys in [bounds[i - 1], bounds[i]); the first and
+     * last partitions are open-ended
+     */
+    record Range(int column, int[] bounds) implements Partitioning {
+        public Range {
+            for (int i = 1; i < bounds.length; i++) {
+                if (bounds[i] <= bounds[i - 1]) {
+                    throw new IllegalArgumentException("Range bounds must be ascending: "
+                            + Arrays.toString(bounds));
+                }
+            }
+            bounds = bounds.clone();
+        }
+        
+        @Override
+        public int partitionCount() {
+            return bounds.length + 1;
+        }
+        
+        @Override
+        public int partitionOf(int key) {
+            int index = Arrays.binarySearch(bounds, key);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+        
+        @Override
+        public BitSet partitionsFor(int low, int high) {
+            BitSet partitions = new BitSet();
+            if (low <= high) {
+                partitions.set(partitionOf(low), partitionOf(high) + 1);
+            }
+            return partitions;
+        }
+    }
+    
+    /**
+     * Rows spread over a fixed number of partitions by a hash of the key
+     */
+    record Hash(int column, int partitionCount) implements Partitioning {
+        // Key ranges up to this wide are pruned key by key
+        private static final int MAX_ENUMERATED_KEYS = 64;
+        
+        public Hash {
+            if (partitionCount <= 0) {
+                throw new IllegalArgumentException("Partition count must be positive: " + partitionCount);
+            }
+        }
+        
+        @Override
+        public int partitionOf(int key) {
+            // Fibonacci hashing spreads sequential keys evenly
+            return (int) (((key * 0x9E3779B97F4A7C15L) >>> 32) % partitionCount);
+        }
+        
+        @Override
+        public BitSet partitionsFor(int low, int high) {
+            BitSet partitions = new BitSet();
+            if (low > high) return partitions;
+            
+            if ((long) high - low >= MAX_ENUMERATED_KEYS) {
+                partitions.set(0, partitionCount);
+                return partitions;
+            }
+            for (long key = low; key <= high; key++) {
+                partitions.set(partitionOf((int) key));
+            }
+            return partitions;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.minidb.storage.table;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * PaxPage - Columnar (PAX) page: a page's rows stored column by column
+ *
+ * Each column's values live in their own minipage, so reading one column
+ * of every row touches only that minipage.
+ *
+ * Page layout:
+ * [2 bytes: row count][2 bytes: column count][deleted bitmap]
+ * [column count x 2 bytes: minipage start offsets]
+ * minipage: [row count x 2 bytes: value end offsets][values]
+ *
+ * The high bit of an end offset flags an overflow pointer value; with an
+ * empty value it marks a field the row lacks (a record with fewer fields
+ * than the page has columns).
+ *
+ * Rows of short values take only a few bytes, so a page is capped at the
+ * Table.MAX_SLOTS rows a record ID can address.
+ */
+public class PaxPage implements DataPage {
+    private static final int PAGE_SIZE = 4096;
+    private static final int HEADER_SIZE = 4;
+    private static final int OFFSET_SIZE = 2;
+    private static final int OVERFLOW_FLAG = 0x8000;
+    private static final byte[] EMPTY = new byte[0];
+    
+    private final int columnCount;
+    private final Minipage[] minipages;
+    private final BitSet deleted;
+    private int rowCount;
+    
+    public PaxPage(int columnCount) {
+        this.columnCount = columnCount;
+        this.minipages = new Minipage[columnCount];
+        this.deleted = new BitSet();
+        this.rowCount = 0;
+        
+        for (int i = 0; i < columnCount; i++) {
+            minipages[i] = new Minipage(0, 0);
+        }
+    }
+    
+    public PaxPage(byte[] pageData) {
+        ByteBuffer buffer = ByteBuffer.wrap(pageData);
+        this.rowCount = buffer.getShort() & 0xFFFF;
+        this.columnCount = buffer.getShort() & 0xFFFF;
+        
+        byte[] bitmap = new byte[bitmapSize(rowCount)];
+        buffer.get(bitmap);
+        this.deleted = BitSet.valueOf(bitmap);
+        
+        int[] starts = new int[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            starts[c] = buffer.getShort() & 0xFFFF;
+        }
+        
+        this.minipages = new Minipage[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            buffer.position(starts[c]);
+            int[] ends = new int[rowCount];
+            BitSet overflow = new BitSet();
+            for (int r = 0; r < rowCount; r++) {
+                int end = buffer.getShort() & 0xFFFF;
+                if ((end & OVERFLOW_FLAG) != 0) {
+                    overflow.set(r);
+                }
+                ends[r] = end & ~OVERFLOW_FLAG;
+            }
+            
+            int dataLength = rowCount > 0 ? ends[rowCount - 1] : 0;
+            Minipage minipage = new Minipage(rowCount, dataLength);
+            System.arraycopy(ends, 0, minipage.ends, 0, rowCount);
+            buffer.get(minipage.data, 0, dataLength);
+            minipage.size = dataLength;
+            minipage.rows = rowCount;
+            minipage.overflow.or(overflow);
+            minipages[c] = minipage;
+        }
+    }
+    
+    /**
+     * Insert record, returns slot ID or -1 if no space
+     */
+    @Override
+    public int insert(Record record) {
+        if (record.getFieldCount() > columnCount) {
+            return -1; // Has columns added after this page was created
+        }
+        
+        int rowId = allocateRow(valueBytes(record));
+        if (rowId != -1) {
+            writeRow(rowId, record);
+        }
+        return rowId;
+    }
+    
+    /**
+     * Encoded rows are split into minipages straight from their bytes
+     */
+    @Override
+    public int insert(byte[] data, int offset, int length) {
+        int fieldCount = RecordDecoder.getInt(data, offset);
+        if (fieldCount > columnCount) {
+            return -1; // Has columns added after this page was created
+        }
+        
+        // Overflow fields are encoded as their pointer, as minipages store them
+        int rowId = allocateRow(length - RecordEncoder.HEADER_SIZE - fieldCount * RecordEncoder.LENGTH_SIZE);
+        if (rowId == -1) return -1;
+        
+        int position = offset + RecordEncoder.HEADER_SIZE;
+        for (int c = 0; c < columnCount; c++) {
+            if (c >= fieldCount) {
+                minipages[c].replace(rowId, data, 0, 0, true); // Missing field
+                continue;
+            }
+            int word = RecordDecoder.getInt(data, position);
+            boolean overflow = word == RecordEncoder.OVERFLOW_FIELD;
+            int width = overflow ? OverflowStore.OverflowPointer.SIZE : word;
+            minipages[c].replace(rowId, data, position + RecordEncoder.LENGTH_SIZE, width, overflow);
+            position += RecordEncoder.LENGTH_SIZE + width;
+        }
+        return rowId;
+    }
+    
+    /**
+     * Row to store {@code valueBytes} of values in, or -1 if no space.
+     * Deleted rows are reused before a new row is appended.
+     */
+    private int allocateRow(int valueBytes) {
+        int rowId = deleted.nextSetBit(0);
+        boolean append = rowId == -1 || rowId >= rowCount;
+        if (append && rowCount >= Table.MAX_SLOTS) {
+            return -1; // Out of record IDs
+        }
+        
+        int required = valueBytes;
+        if (append) {
+            required += columnCount * OFFSET_SIZE + bitmapSize(rowCount + 1) - bitmapSize(rowCount);
+        }
+        if (getFreeSpace() < required) {
+            return -1; // No space
+        }
+        
+        if (append) {
+            rowId = rowCount++;
+            for (Minipage minipage : minipages) {
+                minipage.appendEmpty();
+            }
+        } else {
+            deleted.clear(rowId);
+        }
+        return rowId;
+    }
+    
+    /**
+     * Read record, loading only the requested columns.
+     * Unrequested fields are left null.
+     */
+    @Override
+    public Record read(int slotId, int[] columns, OverflowStore overflowStore) {
+        if (slotId < 0 || slotId >= rowCount || deleted.get(slotId)) return null;
+        
+        int fieldCount = fieldCount(slotId);
+        byte[][] values = new byte[fieldCount][];
+        BitSet overflow = new BitSet();
+        if (columns == null) {
+            for (int c = 0; c < fieldCount; c++) {
+                loadValue(c, slotId, values, overflow);
+            }
+        } else {
+            for (int c : columns) {
+                if (c < fieldCount) loadValue(c, slotId, values, overflow);
+            }
+        }
+        
+        return new Record(Arrays.asList(values), overflow, overflowStore);
+    }
+    
+    /**
+     * Rows are not stored contiguously, so the requested columns are
+     * encoded into the decoder's scratch buffer; other columns read as empty
+     */
+    @Override
+    public boolean read(int slotId, int[] columns, RecordDecoder decoder, OverflowStore overflowStore) {
+        if (slotId < 0 || slotId >= rowCount || deleted.get(slotId)) return false;
+        
+        int fieldCount = fieldCount(slotId);
+        int size = RecordEncoder.HEADER_SIZE + fieldCount * RecordEncoder.LENGTH_SIZE;
+        for (int c = 0; c < fieldCount; c++) {
+            if (columns == null || contains(columns, c)) size += minipages[c].length(slotId);
+        }
+        
+        byte[] row = decoder.scratch(size);
+        RecordEncoder.putInt(row, 0, fieldCount);
+        int position = RecordEncoder.HEADER_SIZE;
+        for (int c = 0; c < fieldCount; c++) {
+            Minipage minipage = minipages[c];
+            boolean load = columns == null || contains(columns, c);
+            int length = load ? minipage.length(slotId) : 0;
+            boolean overflow = load && minipage.overflow.get(slotId);
+            RecordEncoder.putInt(row, position, overflow ? RecordEncoder.OVERFLOW_FIELD : length);
+            System.arraycopy(minipage.data, minipage.start(slotId), row,
+                    position + RecordEncoder.LENGTH_SIZE, length);
+            position += RecordEncoder.LENGTH_SIZE + length;
+        }
+        
+        decoder.wrap(row, 0, overflowStore);
+        return true;
+    }
+    
+    @Override
+    public boolean update(int slotId, Record record) {
+        if (slotId < 0 || slotId >= rowCount || deleted.get(slotId)) return false;
+        if (record.getFieldCount() > columnCount) return false;
+        
+        int current = 0;
+        for (Minipage minipage : minipages) {
+            current += minipage.length(slotId);
+        }
+        if (getFreeSpace() + current < valueBytes(record)) {
+            return false;
+        }
+        
+        writeRow(slotId, record);
+        return true;
+    }
+    
+    /**
+     * Delete record; its values are cut out of every minipage
+     */
+    @Override
+    public void delete(int slotId) {
+        if (slotId < 0 || slotId >= rowCount || deleted.get(slotId)) return;
+        
+        for (Minipage minipage : minipages) {
+            minipage.replace(slotId, EMPTY, false);
+        }
+        deleted.set(slotId);
+    }
+    
+    @Override
+    public int getSlotCount() {
+        return rowCount;
+    }
+    
+    public int getColumnCount() {
+        return columnCount;
+    }
+    
+    /**
+     * Raw value of one column, read from its minipage only
+     */
+    public byte[] getValue(int column, int slotId) {
+        if (slotId < 0 || slotId >= rowCount || deleted.get(slotId)) return null;
+        return minipages[column].get(slotId);
+    }
+    
+    @Override
+    public int getFreeSpace() {
+        int used = HEADER_SIZE + bitmapSize(rowCount) + columnCount * OFFSET_SIZE;
+        for (Minipage minipage : minipages) {
+            used += rowCount * OFFSET_SIZE + minipage.size;
+        }
+        return PAGE_SIZE - used;
+    }
+    
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.putShort((short) rowCount);
+        buffer.putShort((short) columnCount);
+        buffer.put(Arrays.copyOf(deleted.toByteArray(), bitmapSize(rowCount)));
+        
+        int start = buffer.position() + columnCount * OFFSET_SIZE;
+        for (Minipage minipage : minipages) {
+            buffer.putShort((short) start);
+            start += rowCount * OFFSET_SIZE + minipage.size;
+        }
+        
+        for (Minipage minipage : minipages) {
+            for (int r = 0; r < rowCount; r++) {
+                int end = minipage.ends[r] | (minipage.overflow.get(r) ? OVERFLOW_FLAG : 0);
+                buffer.putShort((short) end);
+            }
+            buffer.put(minipage.data, 0, minipage.size);
+        }
+        
+        return buffer.array();
+    }
+    
+    private void writeRow(int rowId, Record record) {
+        for (int c = 0; c < columnCount; c++) {
+            if (c < record.getFieldCount()) {
+                minipages[c].replace(rowId, record.getStoredField(c), record.isOverflowField(c));
+            } else {
+                minipages[c].replace(rowId, EMPTY, true); // Missing field
+            }
+        }
+    }
+    
+    /**
+     * Fields the row has: its missing fields are always the trailing ones
+     */
+    private int fieldCount(int rowId) {
+        int count = columnCount;
+        while (count > 0 && minipages[count - 1].overflow.get(rowId)
+                && minipages[count - 1].length(rowId) == 0) {
+            count--;
+        }
+        return count;
+    }
+    
+    private void loadValue(int column, int rowId, byte[][] values, BitSet overflow) {
+        values[column] = minipages[column].get(rowId);
+        if (minipages[column].overflow.get(rowId)) {
+            overflow.set(column);
+        }
+    }
+    
+    private int valueBytes(Record record) {
+        int total = 0;
+        for (int c = 0; c < record.getFieldCount(); c++) {
+            total += record.getStoredLength(c);
+        }
+        return total;
+    }
+    
+    private static boolean contains(int[] columns, int column) {
+        for (int c : columns) {
+            if (c == column) return true;
+        }
+        return false;
+    }
+    
+    private static int bitmapSize(int rows) {
+        return (rows + 7) / 8;
+    }
+    
+    /**
+     * One column's values for every row of the page
+     */
+    private static class Minipage {
+        byte[] data;
+        int size;
+        int[] ends; // end offset of each row's value
+        int rows;
+        final BitSet overflow = new BitSet();
+        
+        Minipage(int rowCapacity, int dataCapacity) {
+            this.data = new byte[Math.max(16, dataCapacity)];
+            this.ends = new int[Math.max(16, rowCapacity)];
+        }
+        
+        int start(int rowId) {
+            return rowId == 0 ? 0 : ends[rowId - 1];
+        }
+        
+        int length(int rowId) {
+            return ends[rowId] - start(rowId);
+        }
+        
+        byte[] get(int rowId) {
+            return Arrays.copyOfRange(data, start(rowId), ends[rowId]);
+        }
+        
+        void appendEmpty() {
+            if (rows == ends.length) {
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+            ends[rows] = size;
+            rows++;
+        }
+        
+        /**
+         * Replace a row's value, shifting the values after it
+         */
+        void replace(int rowId, byte[] value, boolean isOverflow) {
+            replace(rowId, value, 0, value.length, isOverflow);
+        }
+        
+        /**
+         * Replace a row's value with {@code length} bytes of {@code source}
+         * from {@code offset}
+         */
+        void replace(int rowId, byte[] source, int offset, int length, boolean isOverflow) {
+            int start = start(rowId);
+            int delta = length - length(rowId);
+            
+            if (size + delta > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + delta));
+            }
+            System.arraycopy(data, ends[rowId], data, ends[rowId] + delta, size - ends[rowId]);
+            System.arraycopy(source, offset, data, start, length);
+            size += delta;
+            
+            for (int r = rowId; r < rows; r++) {
+                ends[r] += delta;
+            }
+            overflow.set(rowId, isOverflow);
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package com.minidb.storage.table;
 
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class Record {
     private final List<byte[]> fields;
+    private final BitSet overflowFields; // fields currently holding an overflow pointer
+    private OverflowStore overflowStore;
     
     public Record() {
         this.fields = new ArrayList<>();
+        this.overflowFields = new BitSet();
     }
     
     public Record(List<byte[]> fields) {
         this.fields = new ArrayList<>(fields);
+        this.overflowFields = new BitSet();
+    }
+    
+    /**
+     * Record in stored form, as read back from a page
+     */
+    Record(List<byte[]> fields, BitSet overflowFields, OverflowStore overflowStore) {
+        this.fields = new ArrayList<>(fields);
+        this.overflowFields = (BitSet) overflowFields.clone();
+        this.overflowStore = overflowStore;
     }
     
     // Add typed fields
@@ -25,74 +37,118 @@ public class Record {
     }
     
     public void addField(int value) {
-        ByteBuffer buf = ByteBuffer.allocate(4);
-        buf.putInt(value);
-        fields.add(buf.array());
+        byte[] field = new byte[4];
+        RecordEncoder.putInt(field, 0, value);
+        fields.add(field);
     }
     
     public void addField(long value) {
-        ByteBuffer buf = ByteBuffer.allocate(8);
-        buf.putLong(value);
-        fields.add(buf.array());
+        byte[] field = new byte[8];
+        RecordEncoder.putLong(field, 0, value);
+        fields.add(field);
     }
     
     // Get typed fields
     public byte[] getField(int index) {
+        if (overflowFields.get(index)) {
+            // Fetch out-of-line value on first access
+            OverflowStore.OverflowPointer pointer =
+                    OverflowStore.OverflowPointer.fromBytes(fields.get(index));
+            fields.set(index, overflowStore.read(pointer));
+            overflowFields.clear(index);
+        }
         return fields.get(index);
     }
     
     public String getFieldAsString(int index) {
-        return new String(fields.get(index), StandardCharsets.UTF_8);
+        return new String(getField(index), StandardCharsets.UTF_8);
     }
     
     public int getFieldAsInt(int index) {
-        return ByteBuffer.wrap(fields.get(index)).getInt();
+        return RecordDecoder.getInt(getField(index), 0);
     }
     
     public long getFieldAsLong(int index) {
-        return ByteBuffer.wrap(fields.get(index)).getLong();
+        return RecordDecoder.getLong(getField(index), 0);
     }
     
     public int getFieldCount() {
         return fields.size();
     }
     
+    public boolean isOverflowField(int index) {
+        return overflowFields.get(index);
+    }
+    
     /**
-     * Serialize to bytes
+     * Field as stored in-row: the pointer bytes for overflow fields
      */
-    public byte[] serialize() {
+    byte[] getStoredField(int index) {
+        return fields.get(index);
+    }
+    
+    /**
+     * Bytes the field occupies in-row (pointer size for overflow fields)
+     */
+    int getStoredLength(int index) {
+        return fields.get(index).length;
+    }
+    
+    /**
+     * Move field value to overflow pages, leaving a pointer in-row
+     */
+    void moveToOverflow(int index, OverflowStore store) {
+        OverflowStore.OverflowPointer pointer = store.write(getField(index));
+        fields.set(index, pointer.toBytes());
+        overflowFields.set(index);
+        overflowStore = store;
+    }
+    
+    /**
+     * Free the overflow chains this record points to
+     */
+    void releaseOverflow() {
+        for (int i = overflowFields.nextSetBit(0); i >= 0; i = overflowFields.nextSetBit(i + 1)) {
+            overflowStore.free(OverflowStore.OverflowPointer.fromBytes(fields.get(i)));
+        }
+    }
+    
+    public int getSerializedSize() {
         int totalSize = 4; // field count
         for (byte[] field : fields) {
             totalSize += 4 + field.length;
         }
-        
-        ByteBuffer buffer = ByteBuffer.allocate(totalSize);
-        buffer.putInt(fields.size());
-        
-        for (byte[] field : fields) {
-            buffer.putInt(field.length);
-            buffer.put(field);
-        }
-        
-        return buffer.array();
+        return totalSize;
+    }
+    
+    /**
+     * Serialize to bytes. Overflow fields are written as pointers.
+     */
+    public byte[] serialize() {
+        byte[] data = new byte[getSerializedSize()];
+        RecordEncoder.encode(this, data, 0);
+        return data;
+    }
+    
+    /**
+     * Serialize into a caller-provided buffer, returns bytes written
+     */
+    public int serialize(byte[] dest, int offset) {
+        return RecordEncoder.encode(this, dest, offset);
     }
     
     /**
      * Deserialize from bytes
      */
     public static Record deserialize(byte[] data) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        int fieldCount = buffer.getInt();
-        
-        List<byte[]> fields = new ArrayList<>();
-        for (int i = 0; i < fieldCount; i++) {
-            int len = buffer.getInt();
-            byte[] field = new byte[len];
-            buffer.get(field);
-            fields.add(field);
-        }
-        
-        return new Record(fields);
+        return deserialize(data, null);
+    }
+    
+    /**
+     * Deserialize from bytes. Overflow fields stay as pointers until read.
+     */
+    public static Record deserialize(byte[] data, OverflowStore store) {
+        return new RecordDecoder().wrap(data, 0, store).toRecord();
     }
     
     @Override
@@ -101,11 +157,13 @@ public class Record {
         for (int i = 0; i < fields.size(); i++) {
             if (i > 0) sb.append(", ");
             
-            byte[] field = fields.get(i);
-            if (field.length == 4) {
-                sb.append(ByteBuffer.wrap(field).getInt());
+            byte[] field = getField(i);
+            if (field == null) {
+                sb.append("?"); // Column not loaded
+            } else if (field.length == 4) {
+                sb.append(RecordDecoder.getInt(field, 0));
             } else if (field.length == 8) {
-                sb.append(ByteBuffer.wrap(field).getLong());
+                sb.append(RecordDecoder.getLong(field, 0));
             } else {
                 sb.append("'").append(new String(field, StandardCharsets.UTF_8)).append("'");
             }
@@ -0,0 +1,132 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lazy, closeable stream of records
+ */
+public interface RecordCursor extends Iterator<Record>, AutoCloseable {
+    
+    @Override
+    void close();
+    
+    /**
+     * Cursor over already materialised records
+     */
+    static RecordCursor of(List<Record> records) {
+        Iterator<Record> it = records.iterator();
+        return new RecordCursor() {
+            @Override public boolean hasNext() { return it.hasNext(); }
+            @Override public Record next() { return it.next(); }
+            @Override public void close() { }
+        };
+    }
+    
+    /**
+     * Cursor over each source's records in turn; a source is opened
+     * only once the one before it is exhausted
+     */
+    static <T> RecordCursor concat(List<T> sources, Function<T, RecordCursor> open) {
+        Iterator<T> remaining = sources.iterator();
+        return new RecordCursor() {
+            private RecordCursor current;
+            
+            @Override
+            public boolean hasNext() {
+                while ((current == null || !current.hasNext()) && remaining.hasNext()) {
+                    if (current != null) current.close();
+                    current = open.apply(remaining.next());
+                }
+                return current != null && current.hasNext();
+            }
+            
+            @Override
+            public Record next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+            
+            @Override
+            public void close() {
+                if (current != null) current.close();
+            }
+        };
+    }
+    
+    /**
+     * Cursor yielding only records that match the predicate
+     */
+    default RecordCursor filter(Predicate<Record> predicate) {
+        RecordCursor source = this;
+        return new RecordCursor() {
+            private Record next;
+            
+            @Override
+            public boolean hasNext() {
+                while (next == null && source.hasNext()) {
+                    Record candidate = source.next();
+                    if (predicate.test(candidate)) {
+                        next = candidate;
+                    }
+                }
+                return next != null;
+            }
+            
+            @Override
+            public Record next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Record result = next;
+                next = null;
+                return result;
+            }
+            
+            @Override
+            public void close() { source.close(); }
+        };
+    }
+    
+    /**
+     * Cursor stopping after {@code limit} records; the source is closed
+     * as soon as the last one is taken, so it reads no further
+     */
+    default RecordCursor limit(int limit) {
+        RecordCursor source = this;
+        return new RecordCursor() {
+            private int remaining = limit;
+            
+            @Override
+            public boolean hasNext() {
+                if (remaining <= 0) {
+                    source.close();
+                    return false;
+                }
+                return source.hasNext();
+            }
+            
+            @Override
+            public Record next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                remaining--;
+                return source.next();
+            }
+            
+            @Override
+            public void close() { source.close(); }
+        };
+    }
+    
+    /**
+     * Cursor transforming each record, e.g. to project columns
+     */
+    default RecordCursor map(UnaryOperator<Record> mapper) {
+        RecordCursor source = this;
+        return new RecordCursor() {
+            @Override public boolean hasNext() { return source.hasNext(); }
+            @Override public Record next() { return mapper.apply(source.next()); }
+            @Override public void close() { source.close(); }
+        };
+    }
+}
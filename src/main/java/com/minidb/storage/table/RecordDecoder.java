@@ -0,0 +1,358 @@
+package com.minidb.storage.table;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * RecordDecoder - Reads fields of a stored record in place
+ * 
+ * wrap() only parses the field directory; primitives are read straight
+ * from the underlying bytes and strings can be compared without being
+ * decoded. A decoder is reused from row to row, so reading allocates
+ * nothing once its directory has grown to the widest row.
+ * 
+ * Rows of a DictionaryPage are read in place too: their compressed
+ * fields are resolved through the page dictionary on access.
+ */
+public final class RecordDecoder {
+    private static final VarHandle INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    
+    // FNV-1a 64-bit, for hashField
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private byte[] data;
+    private int[] offsets; // value offset of each field
+    private int[] lengths; // value length, or OVERFLOW_FIELD / compressed field word
+    private int fieldCount;
+    private int rowOffset;
+    private int rowEnd;
+    private byte[] extended; // copy of a short row with its missing fields appended
+    private byte[] scratch; // row a page assembled for this decoder
+    private OverflowStore overflowStore;
+    private PageDictionary dictionary;
+    
+    // Dictionary code of the last literal looked up by fieldEquals
+    private PageDictionary lookupDictionary;
+    private String lookupValue;
+    private int lookupCode;
+    
+    private int matchedChars; // chars of the string matched by compareUtf8 so far
+    
+    public RecordDecoder() {
+        this.offsets = new int[16];
+        this.lengths = new int[16];
+    }
+    
+    public RecordDecoder wrap(byte[] data) {
+        return wrap(data, 0, null);
+    }
+    
+    /**
+     * Point the decoder at the record starting at {@code offset}
+     */
+    public RecordDecoder wrap(byte[] data, int offset, OverflowStore overflowStore) {
+        this.data = data;
+        this.overflowStore = overflowStore;
+        this.dictionary = null;
+        this.fieldCount = getInt(data, offset);
+        this.rowOffset = offset;
+        if (fieldCount > offsets.length) {
+            offsets = new int[fieldCount];
+            lengths = new int[fieldCount];
+        }
+        
+        int position = offset + RecordEncoder.HEADER_SIZE;
+        for (int i = 0; i < fieldCount; i++) {
+            int length = getInt(data, position);
+            position += RecordEncoder.LENGTH_SIZE;
+            offsets[i] = position;
+            lengths[i] = length;
+            position += storedWidth(length, position);
+        }
+        this.rowEnd = position;
+        return this;
+    }
+    
+    /**
+     * Give a row written before columns were added the values of those
+     * columns: fields from its field count on are taken from {@code values}
+     * until one is null. The row is copied; the wrapped bytes are untouched.
+     */
+    RecordDecoder appendMissing(byte[][] values) {
+        int count = fieldCount;
+        int size = rowEnd - rowOffset;
+        while (count < values.length && values[count] != null) {
+            size += RecordEncoder.LENGTH_SIZE + values[count].length;
+            count++;
+        }
+        if (count == fieldCount) return this;
+        
+        if (extended == null || extended.length < size) {
+            extended = new byte[Math.max(size, 256)];
+        }
+        byte[] row = extended;
+        int position = rowEnd - rowOffset;
+        System.arraycopy(data, rowOffset, row, 0, position);
+        RecordEncoder.putInt(row, 0, count);
+        for (int i = fieldCount; i < count; i++) {
+            RecordEncoder.putInt(row, position, values[i].length);
+            System.arraycopy(values[i], 0, row, position + RecordEncoder.LENGTH_SIZE, values[i].length);
+            position += RecordEncoder.LENGTH_SIZE + values[i].length;
+        }
+        
+        PageDictionary rowDictionary = dictionary;
+        wrap(row, 0, overflowStore);
+        dictionary = rowDictionary;
+        return this;
+    }
+    
+    /**
+     * Buffer of at least {@code size} bytes for a page that stores rows
+     * apart to assemble one in before wrapping it; reused from row to row
+     */
+    byte[] scratch(int size) {
+        if (scratch == null || scratch.length < size) {
+            scratch = new byte[Math.max(size, 256)];
+        }
+        return scratch;
+    }
+    
+    /**
+     * Resolve compressed fields of the wrapped row through this dictionary
+     */
+    void useDictionary(PageDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+    
+    public int getFieldCount() {
+        return fieldCount;
+    }
+    
+    public boolean isOverflowField(int index) {
+        return lengths[index] == RecordEncoder.OVERFLOW_FIELD;
+    }
+    
+    public int getInt(int index) {
+        return getInt(data, offsets[index]);
+    }
+    
+    public long getLong(int index) {
+        return getLong(data, offsets[index]);
+    }
+    
+    /**
+     * Field value; overflow fields are read from their page chain
+     */
+    public byte[] getField(int index) {
+        int word = lengths[index];
+        if (isCompressed(word)) {
+            byte[] entry = dictionary.entry(code(word));
+            if ((word & DictionaryPage.KIND_MASK) == DictionaryPage.DICT_FIELD) {
+                return entry.clone();
+            }
+            int prefix = word & DictionaryPage.MAX_PREFIX;
+            int suffix = suffixLength(index);
+            byte[] value = Arrays.copyOf(entry, prefix + suffix);
+            System.arraycopy(data, suffixOffset(index), value, prefix, suffix);
+            return value;
+        }
+        if (isOverflowField(index)) {
+            byte[] pointer = Arrays.copyOfRange(data, offsets[index],
+                    offsets[index] + OverflowStore.OverflowPointer.SIZE);
+            return overflowStore.read(OverflowStore.OverflowPointer.fromBytes(pointer));
+        }
+        return Arrays.copyOfRange(data, offsets[index], offsets[index] + lengths[index]);
+    }
+    
+    public String getFieldAsString(int index) {
+        if (isOverflowField(index) || isCompressed(lengths[index])) {
+            return new String(getField(index), StandardCharsets.UTF_8);
+        }
+        return new String(data, offsets[index], lengths[index], StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Compare a UTF-8 field with a string, ordered as String.compareTo.
+     * In-row and dictionary fields are compared without decoding them.
+     */
+    public int compareString(int index, String value) {
+        int word = lengths[index];
+        if (word == RecordEncoder.OVERFLOW_FIELD) {
+            return getFieldAsString(index).compareTo(value);
+        }
+        
+        matchedChars = 0;
+        if (isCompressed(word)) {
+            byte[] entry = dictionary.entry(code(word));
+            if ((word & DictionaryPage.KIND_MASK) == DictionaryPage.DICT_FIELD) {
+                return finishCompare(compareUtf8(entry, 0, entry.length, value), value);
+            }
+            int cmp = compareUtf8(entry, 0, word & DictionaryPage.MAX_PREFIX, value);
+            if (cmp != 0) return cmp;
+            int start = suffixOffset(index);
+            return finishCompare(compareUtf8(data, start, start + suffixLength(index), value), value);
+        }
+        
+        int start = offsets[index];
+        return finishCompare(compareUtf8(data, start, start + word, value), value);
+    }
+    
+    /**
+     * Whether a UTF-8 field equals the string. Dictionary fields are
+     * matched by code: the string is looked up once per page dictionary.
+     */
+    public boolean fieldEquals(int index, String value) {
+        int word = lengths[index];
+        if ((word & DictionaryPage.KIND_MASK) == DictionaryPage.DICT_FIELD) {
+            if (dictionary != lookupDictionary || !value.equals(lookupValue)) {
+                lookupDictionary = dictionary;
+                lookupValue = value;
+                lookupCode = dictionary.find(value);
+            }
+            return code(word) == lookupCode;
+        }
+        return compareString(index, value) == 0;
+    }
+    
+    /**
+     * Compare UTF-8 bytes [from, to) with the string from matchedChars on.
+     * Returns non-zero on a difference, 0 when the bytes ran out first or together.
+     */
+    private int compareUtf8(byte[] bytes, int from, int to, String value) {
+        int position = from;
+        int i = matchedChars;
+        while (position < to && i < value.length()) {
+            int b = bytes[position] & 0xFF;
+            int codePoint;
+            if (b < 0x80) {
+                codePoint = b;
+                position += 1;
+            } else if (b < 0xE0) {
+                codePoint = ((b & 0x1F) << 6) | (bytes[position + 1] & 0x3F);
+                position += 2;
+            } else if (b < 0xF0) {
+                codePoint = ((b & 0x0F) << 12) | ((bytes[position + 1] & 0x3F) << 6)
+                        | (bytes[position + 2] & 0x3F);
+                position += 3;
+            } else {
+                codePoint = ((b & 0x07) << 18) | ((bytes[position + 1] & 0x3F) << 12)
+                        | ((bytes[position + 2] & 0x3F) << 6) | (bytes[position + 3] & 0x3F);
+                position += 4;
+            }
+            
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                int cmp = (char) codePoint - value.charAt(i++);
+                if (cmp != 0) return cmp;
+            } else {
+                // Compare as a UTF-16 surrogate pair, like String does
+                int cmp = Character.highSurrogate(codePoint) - value.charAt(i++);
+                if (cmp != 0) return cmp;
+                if (i == value.length()) return 1;
+                cmp = Character.lowSurrogate(codePoint) - value.charAt(i++);
+                if (cmp != 0) return cmp;
+            }
+        }
+        
+        matchedChars = i;
+        return position < to ? 1 : 0;
+    }
+    
+    private int finishCompare(int cmp, String value) {
+        if (cmp != 0) return cmp;
+        return matchedChars < value.length() ? -1 : 0;
+    }
+    
+    /**
+     * 64-bit hash of the field's value bytes, computed in place for
+     * in-row and dictionary fields. Equal values hash equally whatever
+     * their encoding.
+     */
+    public long hashField(int index) {
+        int word = lengths[index];
+        if (word == RecordEncoder.OVERFLOW_FIELD) {
+            byte[] value = getField(index);
+            return hashBytes(FNV_OFFSET, value, 0, value.length);
+        }
+        if (isCompressed(word)) {
+            byte[] entry = dictionary.entry(code(word));
+            if ((word & DictionaryPage.KIND_MASK) == DictionaryPage.DICT_FIELD) {
+                return hashBytes(FNV_OFFSET, entry, 0, entry.length);
+            }
+            long hash = hashBytes(FNV_OFFSET, entry, 0, word & DictionaryPage.MAX_PREFIX);
+            int start = suffixOffset(index);
+            return hashBytes(hash, data, start, start + suffixLength(index));
+        }
+        return hashBytes(FNV_OFFSET, data, offsets[index], offsets[index] + word);
+    }
+    
+    private static long hashBytes(long hash, byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+    
+    /**
+     * Copy of the row as a Record in stored form
+     */
+    public Record toRecord() {
+        List<byte[]> fields = new ArrayList<>(fieldCount);
+        BitSet overflow = new BitSet();
+        for (int i = 0; i < fieldCount; i++) {
+            int length = lengths[i];
+            if (isCompressed(length)) {
+                fields.add(getField(i));
+                continue;
+            }
+            if (length == RecordEncoder.OVERFLOW_FIELD) {
+                length = OverflowStore.OverflowPointer.SIZE;
+                overflow.set(i);
+            }
+            fields.add(Arrays.copyOfRange(data, offsets[i], offsets[i] + length));
+        }
+        return new Record(fields, overflow, overflowStore);
+    }
+    
+    /**
+     * Bytes a field occupies after its length word
+     */
+    private int storedWidth(int word, int position) {
+        if (word == RecordEncoder.OVERFLOW_FIELD) return OverflowStore.OverflowPointer.SIZE;
+        if (word >= 0) return word;
+        if ((word & DictionaryPage.KIND_MASK) == DictionaryPage.DICT_FIELD) return 0;
+        return DictionaryPage.SUFFIX_LENGTH_SIZE + (((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF));
+    }
+    
+    private static boolean isCompressed(int word) {
+        return word < 0 && word != RecordEncoder.OVERFLOW_FIELD;
+    }
+    
+    private static int code(int word) {
+        return (word & DictionaryPage.KIND_MASK) == DictionaryPage.DICT_FIELD
+                ? word & ~DictionaryPage.KIND_MASK : (word >>> 12) & 0xFFFF;
+    }
+    
+    private int suffixLength(int index) {
+        int position = offsets[index];
+        return ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+    }
+    
+    private int suffixOffset(int index) {
+        return offsets[index] + DictionaryPage.SUFFIX_LENGTH_SIZE;
+    }
+    
+    public static int getInt(byte[] src, int offset) {
+        return (int) INT.get(src, offset);
+    }
+    
+    public static long getLong(byte[] src, int offset) {
+        return (long) LONG.get(src, offset);
+    }
+}
@@ -0,0 +1,205 @@
+package com.minidb.storage.table;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * RecordEncoder - Writes rows in stored record format into a reusable buffer
+ * 
+ * Fields are appended straight from primitives and strings, so once the
+ * buffer has grown to fit a row, encoding allocates nothing.
+ * Call reset() before each row.
+ * 
+ * Record format: [4 bytes: field count] then per field [4 bytes: length][value]
+ */
+public final class RecordEncoder {
+    private static final VarHandle INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    
+    static final int HEADER_SIZE = 4;
+    static final int LENGTH_SIZE = 4;
+    // Length prefix marking a field stored in overflow pages
+    static final int OVERFLOW_FIELD = -1;
+    
+    private byte[] buffer;
+    private int position;
+    private int fieldCount;
+    private int largestField;
+    
+    public RecordEncoder() {
+        this(256);
+    }
+    
+    public RecordEncoder(int initialCapacity) {
+        this.buffer = new byte[Math.max(HEADER_SIZE, initialCapacity)];
+        reset();
+    }
+    
+    /**
+     * Start a new row
+     */
+    public RecordEncoder reset() {
+        position = HEADER_SIZE;
+        fieldCount = 0;
+        largestField = 0;
+        return this;
+    }
+    
+    public RecordEncoder writeInt(int value) {
+        ensureCapacity(LENGTH_SIZE + 4);
+        putInt(buffer, position, 4);
+        putInt(buffer, position + LENGTH_SIZE, value);
+        return endField(4);
+    }
+    
+    public RecordEncoder writeLong(long value) {
+        ensureCapacity(LENGTH_SIZE + 8);
+        putInt(buffer, position, 8);
+        putLong(buffer, position + LENGTH_SIZE, value);
+        return endField(8);
+    }
+    
+    public RecordEncoder writeBytes(byte[] value) {
+        ensureCapacity(LENGTH_SIZE + value.length);
+        putInt(buffer, position, value.length);
+        System.arraycopy(value, 0, buffer, position + LENGTH_SIZE, value.length);
+        return endField(value.length);
+    }
+    
+    /**
+     * Append a string as UTF-8, encoded directly into the buffer
+     */
+    public RecordEncoder writeString(String value) {
+        ensureCapacity(LENGTH_SIZE + value.length() * 3); // At most 3 bytes per char
+        int start = position + LENGTH_SIZE;
+        int length = encodeUtf8(value, buffer, start) - start;
+        putInt(buffer, position, length);
+        return endField(length);
+    }
+    
+    /**
+     * Replace the current row with one in stored format, as returned by
+     * toByteArray(); the row may not hold overflow pointers
+     */
+    public RecordEncoder load(byte[] row, int offset, int length) {
+        position = 0;
+        ensureCapacity(length);
+        System.arraycopy(row, offset, buffer, 0, length);
+        fieldCount = RecordDecoder.getInt(buffer, 0);
+        position = length;
+        
+        largestField = 0;
+        for (int i = 0, field = HEADER_SIZE; i < fieldCount; i++) {
+            int fieldLength = RecordDecoder.getInt(buffer, field);
+            largestField = Math.max(largestField, fieldLength);
+            field += LENGTH_SIZE + fieldLength;
+        }
+        return this;
+    }
+    
+    public int getFieldCount() {
+        return fieldCount;
+    }
+    
+    /**
+     * Encoded size of the current row
+     */
+    public int length() {
+        return position;
+    }
+    
+    /**
+     * Buffer holding the encoded row in bytes [0, length())
+     */
+    public byte[] buffer() {
+        putInt(buffer, 0, fieldCount);
+        return buffer;
+    }
+    
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer(), position);
+    }
+    
+    /**
+     * Length of the largest field value in the current row
+     */
+    int getLargestField() {
+        return largestField;
+    }
+    
+    /**
+     * Encode a record into {@code dest} at {@code offset}, returns bytes written.
+     * Overflow fields are written as pointers.
+     */
+    public static int encode(Record record, byte[] dest, int offset) {
+        int position = offset;
+        putInt(dest, position, record.getFieldCount());
+        position += HEADER_SIZE;
+        
+        for (int i = 0; i < record.getFieldCount(); i++) {
+            byte[] field = record.getStoredField(i);
+            putInt(dest, position, record.isOverflowField(i) ? OVERFLOW_FIELD : field.length);
+            System.arraycopy(field, 0, dest, position + LENGTH_SIZE, field.length);
+            position += LENGTH_SIZE + field.length;
+        }
+        
+        return position - offset;
+    }
+    
+    public static void putInt(byte[] dest, int offset, int value) {
+        INT.set(dest, offset, value);
+    }
+    
+    public static void putLong(byte[] dest, int offset, long value) {
+        LONG.set(dest, offset, value);
+    }
+    
+    private RecordEncoder endField(int length) {
+        position += LENGTH_SIZE + length;
+        fieldCount++;
+        largestField = Math.max(largestField, length);
+        return this;
+    }
+    
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+    
+    /**
+     * Write UTF-8 bytes of {@code value} at {@code position}, returns end position.
+     * Unpaired surrogates become '?', as with String.getBytes.
+     */
+    private static int encodeUtf8(String value, byte[] dest, int position) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                dest[position++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[position++] = (byte) (0xC0 | (c >> 6));
+                dest[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    dest[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    dest[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    dest[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    dest[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    dest[position++] = '?';
+                }
+            } else {
+                dest[position++] = (byte) (0xE0 | (c >> 12));
+                dest[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dest[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,256 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+
+/**
+ * RowCache - Bounded cache of decoded records keyed by record ID
+ *
+ * Uses W-TinyLFU: new rows enter a small LRU window; a row evicted from
+ * the window is admitted to the main segmented LRU only if it has been
+ * accessed more often than the main segment's victim. Access frequencies
+ * come from a count-min sketch whose counters are halved periodically so
+ * old popularity fades.
+ *
+ * Main segment: rows hit once wait in probation, rows hit again move to
+ * the protected segment (80% of main).
+ *
+ * Cached records are shared between readers and must not be modified.
+ */
+public class RowCache {
+    private static final int ENTRY_OVERHEAD = 64; // map entries, key and record object
+
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+    private final LinkedHashMap<Integer, Record> window;
+    private final LinkedHashMap<Integer, Record> probation;
+    private final LinkedHashMap<Integer, Record> protectedSegment;
+    private final FrequencySketch sketch;
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long memoryBytes;
+
+    public RowCache(int maxEntries) {
+        if (maxEntries < 2) {
+            throw new IllegalArgumentException("Row cache needs at least 2 entries: " + maxEntries);
+        }
+        this.windowCapacity = Math.max(1, maxEntries / 100);
+        this.mainCapacity = maxEntries - windowCapacity;
+        this.protectedCapacity = mainCapacity * 4 / 5;
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<>(16, 0.75f, true);
+        this.protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Cached record, or null on a miss
+     */
+    public synchronized Record get(int recordId) {
+        sketch.increment(recordId);
+
+        Record record = window.get(recordId);
+        if (record == null) {
+            record = protectedSegment.get(recordId);
+        }
+        if (record == null) {
+            record = probation.remove(recordId);
+            if (record != null) {
+                promote(recordId, record);
+            }
+        }
+
+        if (record != null) hits++; else misses++;
+        return record;
+    }
+
+    /**
+     * Invalidation count; pass it to {@link #put} so a record read before
+     * a concurrent update or delete is not cached after it
+     */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Cache a record read after {@code stamp} was taken. Records with
+     * values still on overflow pages are not cached.
+     */
+    public synchronized void put(int recordId, Record record, long stamp) {
+        if (stamp != invalidations) return;
+        for (int i = 0; i < record.getFieldCount(); i++) {
+            if (record.isOverflowField(i)) return;
+        }
+
+        Record replaced = remove(recordId);
+        if (replaced != null) {
+            memoryBytes -= weigh(replaced);
+        }
+        window.put(recordId, record);
+        memoryBytes += weigh(record);
+
+        if (window.size() > windowCapacity) {
+            Map.Entry<Integer, Record> candidate = eldest(window);
+            window.remove(candidate.getKey());
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Drop the record, called when it is updated or deleted
+     */
+    public synchronized void invalidate(int recordId) {
+        invalidations++;
+        Record record = remove(recordId);
+        if (record != null) {
+            memoryBytes -= weigh(record);
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        memoryBytes = 0;
+    }
+
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Estimated heap bytes held by cached records
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RowCache{size=%d, hitRatio=%.1f%%, memory=%d bytes}",
+                size(), getHitRatio() * 100, memoryBytes);
+    }
+
+    /**
+     * A second hit moves a probation row to protected, demoting protected's
+     * least recent row back to probation when protected is full
+     */
+    private void promote(int recordId, Record record) {
+        protectedSegment.put(recordId, record);
+        if (protectedSegment.size() > protectedCapacity) {
+            Map.Entry<Integer, Record> demoted = eldest(protectedSegment);
+            protectedSegment.remove(demoted.getKey());
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    /**
+     * Row leaving the window enters probation if main has room or it is
+     * more popular than main's victim; otherwise it is dropped
+     */
+    private void admit(int recordId, Record record) {
+        if (probation.size() + protectedSegment.size() < mainCapacity) {
+            probation.put(recordId, record);
+            return;
+        }
+
+        LinkedHashMap<Integer, Record> victims = probation.isEmpty() ? protectedSegment : probation;
+        Map.Entry<Integer, Record> victim = eldest(victims);
+        if (sketch.frequency(recordId) > sketch.frequency(victim.getKey())) {
+            victims.remove(victim.getKey());
+            memoryBytes -= weigh(victim.getValue());
+            probation.put(recordId, record);
+        } else {
+            memoryBytes -= weigh(record);
+        }
+    }
+
+    private Record remove(int recordId) {
+        Record record = window.remove(recordId);
+        if (record == null) record = probation.remove(recordId);
+        if (record == null) record = protectedSegment.remove(recordId);
+        return record;
+    }
+
+    private static Map.Entry<Integer, Record> eldest(LinkedHashMap<Integer, Record> segment) {
+        return segment.entrySet().iterator().next();
+    }
+
+    private static long weigh(Record record) {
+        return ENTRY_OVERHEAD + record.getSerializedSize();
+    }
+
+    /**
+     * Count-min sketch of access frequencies: 4 rows of counters capped
+     * at 15, all halved once the sample of 10 accesses per entry is full
+     */
+    private static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxEntries) {
+            int width = Integer.highestOneBit(Math.max(16, maxEntries - 1)) << 1;
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * maxEntries;
+        }
+
+        void increment(int key) {
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(key, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                age();
+            }
+        }
+
+        int frequency(int key) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][index(key, row)]);
+            }
+            return frequency;
+        }
+
+        private void age() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+
+        private int index(int key, int row) {
+            long hash = (key ^ SEEDS[row]) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.minidb.storage.table;
+
+import com.minidb.storage.index.BPlusTree;
+import com.minidb.storage.index.IndexKey;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * SecondaryIndex - B+tree from the values of one or more columns to record IDs
+ *
+ * Each row has its own entry: the row's normalised key with its record ID
+ * appended, so rows sharing a value sit next to each other in record ID
+ * order and a value's rows are the keys starting with its encoding. The
+ * entry's value is the record ID. A unique index holds at most one entry
+ * per value. The owning table makes every change under its lock; scans
+ * read the tree without it.
+ */
+public class SecondaryIndex {
+    private static final int ID_SIZE = 4;
+
+    private final String name;
+    private final KeyEncoder key;
+    private final boolean unique;
+    private final BPlusTree tree;
+    private volatile int unindexedRows;
+
+    SecondaryIndex(String name, KeyEncoder key, boolean unique) {
+        this.name = name;
+        this.key = key;
+        this.unique = unique;
+        this.tree = new BPlusTree(1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The indexed columns and how their values are encoded
+     */
+    public KeyEncoder getKey() {
+        return key;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * Whether every row of the table has an entry. Rows lacking a key
+     * column have none, so a scan for a partial key would miss them.
+     */
+    public boolean coversAllRows() {
+        return unindexedRows == 0;
+    }
+
+    void countUnindexed(int delta) {
+        unindexedRows += delta;
+    }
+
+    /**
+     * Fail if a unique index maps {@code value}, an encoded key, to a
+     * record other than {@code recordIds}, the records the change replaces
+     */
+    void checkUnique(byte[] value, int... recordIds) {
+        if (!unique) return;
+
+        Iterator<byte[]> entries = tree.rangeIterator(value, IndexKey.successor(value));
+        while (entries.hasNext()) {
+            int existing = RecordDecoder.getInt(entries.next(), 0);
+            boolean replaced = false;
+            for (int recordId : recordIds) {
+                replaced |= existing == recordId;
+            }
+            if (!replaced) throw duplicate();
+        }
+    }
+
+    void add(byte[] value, int recordId) {
+        tree.insert(entryKey(value, recordId), idBytes(recordId));
+    }
+
+    void remove(byte[] value, int recordId) {
+        tree.delete(entryKey(value, recordId));
+    }
+
+    /**
+     * Fill the empty index bottom-up from entry keys, as made by
+     * {@link #entryKey}, in ascending order
+     */
+    void build(Iterator<byte[]> entries) {
+        tree.bulkLoad(new Iterator<>() {
+            private byte[] previous;
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<byte[], byte[]> next() {
+                byte[] entry = entries.next();
+                if (unique && previous != null && sameValue(previous, entry)) {
+                    throw duplicate();
+                }
+                previous = entry;
+                return Map.entry(entry, idBytes(recordIdOf(entry)));
+            }
+        });
+    }
+
+    /**
+     * Records whose encoded value lies in [low, high), in value order or
+     * with {@code descending} the reverse; a null bound leaves that end
+     * open. {@code fetch} resolves a record ID and returns null for rows
+     * deleted meanwhile.
+     */
+    RecordCursor scan(byte[] low, byte[] high, boolean descending, IntFunction<Record> fetch) {
+        Iterator<byte[]> entries = tree.rangeIterator(low, high, descending);
+        return new RecordCursor() {
+            private Record next;
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && !closed && entries.hasNext()) {
+                    next = fetch.apply(RecordDecoder.getInt(entries.next(), 0));
+                }
+                return next != null;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Record record = next;
+                next = null;
+                return record;
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+                next = null;
+            }
+        };
+    }
+
+    /**
+     * Tree key of a row's entry: its encoded value, then its record ID
+     */
+    static byte[] entryKey(byte[] value, int recordId) {
+        return new IndexKey.Builder().addBytes(value).addInt(recordId).build();
+    }
+
+    private static int recordIdOf(byte[] entryKey) {
+        return RecordDecoder.getInt(entryKey, entryKey.length - ID_SIZE) ^ Integer.MIN_VALUE;
+    }
+
+    private static boolean sameValue(byte[] a, byte[] b) {
+        return Arrays.equals(a, 0, a.length - ID_SIZE, b, 0, b.length - ID_SIZE);
+    }
+
+    private IllegalArgumentException duplicate() {
+        return new IllegalArgumentException("Duplicate value for unique index " + name);
+    }
+
+    private static byte[] idBytes(int recordId) {
+        byte[] bytes = new byte[ID_SIZE];
+        RecordEncoder.putInt(bytes, 0, recordId);
+        return bytes;
+    }
+}
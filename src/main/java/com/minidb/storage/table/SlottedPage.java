@@ -3,47 +3,70 @@ package com.minidb.storage.table;
 import java.nio.ByteBuffer;
 import java.util.*;
 
-public class SlottedPage {
+public class SlottedPage implements DataPage {
     private static final int PAGE_SIZE = 4096;
-    private static final int HEADER_SIZE = 8;
+    private static final int HEADER_SIZE = 12;
     private static final int SLOT_SIZE = 8;
     
-    private final ByteBuffer buffer;
+    // Largest record an empty page can hold
+    public static final int MAX_RECORD_SIZE = PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+    
+    // Compact once this fraction of the page is dead record bytes
+    private static final double COMPACTION_THRESHOLD = 0.25;
+    
+    private volatile ByteBuffer buffer; // Replaced, never rewritten, when compacted
     private int slotCount;
     private int freeSpacePointer;
+    private int fragmentedBytes;
+    private int freeSlotCount;
     
     public SlottedPage() {
         this.buffer = ByteBuffer.allocate(PAGE_SIZE);
         this.slotCount = 0;
         this.freeSpacePointer = PAGE_SIZE;
+        this.fragmentedBytes = 0;
+        this.freeSlotCount = 0;
         writeHeader();
     }
     
     public SlottedPage(byte[] pageData) {
         this.buffer = ByteBuffer.wrap(pageData);
         readHeader();
+        for (int i = 0; i < slotCount; i++) {
+            if (readSlot(i).length == 0) freeSlotCount++;
+        }
     }
     
     /**
-     * Insert record, returns slot ID or -1 if no space
+     * Insert record, returns slot ID or -1 if no space.
+     * Freed slots are reused before the slot directory grows.
      */
     public int insertRecord(byte[] record) {
-        int requiredSpace = record.length;
-        int headerSpace = HEADER_SIZE + (slotCount + 1) * SLOT_SIZE;
+        return insertRecord(record, 0, record.length);
+    }
+    
+    /**
+     * Insert record held in {@code data[offset, offset + length)}
+     */
+    public int insertRecord(byte[] data, int offset, int length) {
+        int slotId = findFreeSlot();
+        int slotSpace = slotId == -1 ? SLOT_SIZE : 0;
         
-        if (freeSpacePointer - headerSpace < requiredSpace) {
+        if (!ensureSpace(length + slotSpace)) {
             return -1; // No space
         }
         
         // Write record from end
-        freeSpacePointer -= record.length;
+        freeSpacePointer -= length;
         buffer.position(freeSpacePointer);
-        buffer.put(record);
+        buffer.put(data, offset, length);
         
-        // Add slot
-        int slotId = slotCount;
-        writeSlot(slotId, freeSpacePointer, record.length);
-        slotCount++;
+        if (slotId == -1) {
+            slotId = slotCount++;
+        } else {
+            freeSlotCount--;
+        }
+        writeSlot(slotId, freeSpacePointer, length);
         writeHeader();
         
         return slotId;
@@ -55,101 +78,270 @@ public class SlottedPage {
     public byte[] getRecord(int slotId) {
         if (slotId < 0 || slotId >= slotCount) return null;
         
-        Slot slot = readSlot(slotId);
+        // Absolute reads leave the buffer position alone, so scans can share the page
+        ByteBuffer page = buffer;
+        Slot slot = readSlot(page, slotId);
         if (slot.length == 0) return null; // Deleted
         
         byte[] record = new byte[slot.length];
-        buffer.position(slot.offset);
-        buffer.get(record);
+        page.get(slot.offset, record);
         return record;
     }
     
     /**
-     * Update record
+     * Update record in place, keeping its slot ID.
+     * Returns false if the page cannot hold the new version.
      */
     public boolean updateRecord(int slotId, byte[] newRecord) {
+        if (slotId < 0 || slotId >= slotCount) return false;
+        
         Slot slot = readSlot(slotId);
+        if (slot.length == 0) return false; // Deleted
         
-        if (newRecord.length == slot.length) {
-            // In-place update
+        if (newRecord.length <= slot.length) {
+            // Shrink in place, tail becomes dead space
             buffer.position(slot.offset);
             buffer.put(newRecord);
-            return true;
+            writeSlot(slotId, slot.offset, newRecord.length);
+            fragmentedBytes += slot.length - newRecord.length;
+        } else if (getFreeSpace() >= newRecord.length) {
+            // Append new version, old bytes become dead space
+            freeSpacePointer -= newRecord.length;
+            buffer.position(freeSpacePointer);
+            buffer.put(newRecord);
+            writeSlot(slotId, freeSpacePointer, newRecord.length);
+            fragmentedBytes += slot.length;
+        } else if (getFreeSpace() + fragmentedBytes + slot.length >= newRecord.length) {
+            // Compact without the old version, then append before the copy goes live
+            ByteBuffer copy = compacted(slotId);
+            freeSpacePointer -= newRecord.length;
+            copy.put(freeSpacePointer, newRecord);
+            writeSlot(copy, slotId, freeSpacePointer, newRecord.length);
+            buffer = copy;
+        } else {
+            return false;
         }
         
-        // Delete and reinsert
-        deleteRecord(slotId);
-        return insertRecord(newRecord) != -1;
+        writeHeader();
+        maybeCompact();
+        return true;
     }
     
     /**
      * Delete record (mark slot as free)
      */
     public void deleteRecord(int slotId) {
+        if (slotId < 0 || slotId >= slotCount) return;
+        
+        Slot slot = readSlot(slotId);
+        if (slot.length == 0) return; // Already deleted
+        
         writeSlot(slotId, 0, 0);
+        fragmentedBytes += slot.length;
+        freeSlotCount++;
+        writeHeader();
+        maybeCompact();
     }
     
     /**
-     * Compact page to reclaim space
+     * Compact page to reclaim space. Slot IDs are preserved. Records are
+     * packed into a fresh buffer that then replaces the old one, which is
+     * left as it was: a scan reading the page without the table's lock
+     * never sees a record half moved.
      */
     public void compact() {
-        List<byte[]> liveRecords = new ArrayList<>();
-        for (int i = 0; i < slotCount; i++) {
-            byte[] record = getRecord(i);
-            if (record != null) {
-                liveRecords.add(record);
-            }
-        }
+        buffer = compacted(-1);
+    }
+    
+    /**
+     * Copy of the buffer with live records packed at its end, leaving out
+     * slot {@code dropped} (-1 = none); the header fields describe the copy
+     */
+    private ByteBuffer compacted(int dropped) {
+        ByteBuffer page = buffer;
+        ByteBuffer copy = ByteBuffer.allocate(PAGE_SIZE);
         
-        // Reset page
-        buffer.clear();
-        slotCount = 0;
         freeSpacePointer = PAGE_SIZE;
-        writeHeader();
+        for (int i = 0; i < slotCount; i++) {
+            Slot slot = readSlot(page, i);
+            if (slot.length == 0 || i == dropped) continue;
+            
+            freeSpacePointer -= slot.length;
+            System.arraycopy(page.array(), slot.offset, copy.array(), freeSpacePointer, slot.length);
+            writeSlot(copy, i, freeSpacePointer, slot.length);
+        }
         
-        // Reinsert
-        for (byte[] record : liveRecords) {
-            insertRecord(record);
+        fragmentedBytes = 0;
+        writeHeader(copy);
+        return copy;
+    }
+    
+    /**
+     * Compact and drop deleted slots from the end of the slot directory,
+     * returns bytes reclaimed. Live records keep their slot IDs.
+     */
+    public int vacuum() {
+        int before = getFreeSpace();
+        while (slotCount > 0 && readSlot(slotCount - 1).length == 0) {
+            slotCount--;
+            freeSlotCount--;
+        }
+        compact();
+        return getFreeSpace() - before;
+    }
+    
+    /**
+     * Bytes vacuum() would reclaim
+     */
+    public int getVacuumableSpace() {
+        int trailing = 0;
+        while (trailing < slotCount && readSlot(slotCount - 1 - trailing).length == 0) {
+            trailing++;
         }
+        return fragmentedBytes + trailing * SLOT_SIZE;
+    }
+    
+    @Override
+    public int insert(Record record) {
+        return insertRecord(record.serialize());
+    }
+    
+    /**
+     * Row layout always decodes the whole record; column list is ignored
+     */
+    @Override
+    public Record read(int slotId, int[] columns, OverflowStore overflowStore) {
+        byte[] data = getRecord(slotId);
+        return data != null ? Record.deserialize(data, overflowStore) : null;
+    }
+    
+    @Override
+    public int insert(byte[] data, int offset, int length) {
+        return insertRecord(data, offset, length);
     }
     
+    /**
+     * Decoder reads the whole record straight from the page buffer
+     */
+    @Override
+    public boolean read(int slotId, int[] columns, RecordDecoder decoder, OverflowStore overflowStore) {
+        if (slotId < 0 || slotId >= slotCount) return false;
+        
+        ByteBuffer page = buffer;
+        int pos = HEADER_SIZE + slotId * SLOT_SIZE;
+        if (page.getInt(pos + 4) == 0) return false; // Deleted
+        
+        decoder.wrap(page.array(), page.getInt(pos), overflowStore);
+        return true;
+    }
+    
+    @Override
+    public boolean update(int slotId, Record record) {
+        return updateRecord(slotId, record.serialize());
+    }
+    
+    @Override
+    public void delete(int slotId) {
+        deleteRecord(slotId);
+    }
+    
+    @Override
     public int getFreeSpace() {
         return freeSpacePointer - (HEADER_SIZE + slotCount * SLOT_SIZE);
     }
     
+    /**
+     * Free space available after compaction
+     */
+    public int getReclaimableSpace() {
+        return getFreeSpace() + fragmentedBytes;
+    }
+    
+    public int getFragmentedBytes() {
+        return fragmentedBytes;
+    }
+    
+    public double getFragmentation() {
+        return (double) fragmentedBytes / PAGE_SIZE;
+    }
+    
+    @Override
     public int getSlotCount() {
         return slotCount;
     }
     
+    public int getDeadSlotCount() {
+        return freeSlotCount;
+    }
+    
+    public int getLiveSlotCount() {
+        return slotCount - freeSlotCount;
+    }
+    
     public byte[] toBytes() {
         return buffer.array();
     }
     
+    /**
+     * Make room for the requested bytes, compacting if that is enough
+     */
+    private boolean ensureSpace(int required) {
+        if (getFreeSpace() >= required) return true;
+        if (getReclaimableSpace() < required) return false;
+        
+        compact();
+        return true;
+    }
+    
+    private void maybeCompact() {
+        if (fragmentedBytes > PAGE_SIZE * COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+    
+    private int findFreeSlot() {
+        if (freeSlotCount == 0) return -1;
+        
+        for (int i = 0; i < slotCount; i++) {
+            if (readSlot(i).length == 0) return i;
+        }
+        return -1;
+    }
+    
     private void readHeader() {
         buffer.position(0);
         slotCount = buffer.getInt();
         freeSpacePointer = buffer.getInt();
+        fragmentedBytes = buffer.getInt();
     }
     
     private void writeHeader() {
-        buffer.position(0);
-        buffer.putInt(slotCount);
-        buffer.putInt(freeSpacePointer);
+        writeHeader(buffer);
+    }
+    
+    private void writeHeader(ByteBuffer page) {
+        page.putInt(0, slotCount);
+        page.putInt(4, freeSpacePointer);
+        page.putInt(8, fragmentedBytes);
     }
     
     private Slot readSlot(int slotId) {
+        return readSlot(buffer, slotId);
+    }
+    
+    private static Slot readSlot(ByteBuffer page, int slotId) {
         int pos = HEADER_SIZE + slotId * SLOT_SIZE;
-        buffer.position(pos);
-        int offset = buffer.getInt();
-        int length = buffer.getInt();
-        return new Slot(offset, length);
+        return new Slot(page.getInt(pos), page.getInt(pos + 4));
     }
     
     private void writeSlot(int slotId, int offset, int length) {
+        writeSlot(buffer, slotId, offset, length);
+    }
+    
+    private static void writeSlot(ByteBuffer page, int slotId, int offset, int length) {
         int pos = HEADER_SIZE + slotId * SLOT_SIZE;
-        buffer.position(pos);
-        buffer.putInt(offset);
-        buffer.putInt(length);
+        page.putInt(pos, offset);
+        page.putInt(pos + 4, length);
     }
     
     private record Slot(int offset, int length) {}
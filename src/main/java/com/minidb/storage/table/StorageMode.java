@@ -0,0 +1,10 @@
+package com.minidb.storage.table;
+
+/**
+ * Physical layout of a table's pages
+ */
+public enum StorageMode {
+    ROW,             // SlottedPage, whole records
+    COLUMNAR,        // PaxPage, column minipages
+    INDEX_ORGANIZED  // no heap pages: whole records in the primary index leaves
+}
@@ -1,167 +1,912 @@
 package com.minidb.storage.table;
 
 import com.minidb.storage.index.BPlusTree;
+import com.minidb.storage.index.ExternalSorter;
+import com.minidb.storage.index.IndexKey;
+import com.minidb.storage.page.Page;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 public class Table {
+    // Record ID = (page index << SLOT_BITS) | slot ID
+    private static final int SLOT_BITS = 10;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    static final int MAX_SLOTS = SLOT_MASK + 1; // Slots a page may use
+
+    // Field values larger than this are stored out-of-line
+    private static final int OVERFLOW_THRESHOLD = 1024;
+
+    // Bulk load: fill pages to 90%, publish them 256 at a time
+    private static final double DEFAULT_FILL_FACTOR = 0.9;
+    private static final int BULK_LOAD_BATCH_PAGES = 256;
+
+    // Index builds sort up to 64 MB of keys in memory, then spill sorted runs
+    private static final long INDEX_SORT_MEMORY = 64L << 20;
+    // Primary key sort items: key, then load position and record ID
+    private static final int SORT_SUFFIX_SIZE = 8;
+
+    // Vacuum rewrites pages with this fraction of dead slots or dead bytes
+    private static final double VACUUM_DEAD_SLOT_THRESHOLD = 0.2;
+    private static final double VACUUM_FRAGMENTATION_THRESHOLD = 0.1;
+
     private final String tableName;
-    private final List<SlottedPage> pages;
+    private final List<DataPage> pages;
+    private final OverflowStore overflowStore;
     private final BPlusTree primaryIndex;
-    private final boolean hasPrimaryKey;
-    private int nextRecordId;
+    private final KeyEncoder primaryKey; // null = no primary key
+    private final StorageMode storageMode;
+    private int columnCount;
+    private volatile byte[][] columnDefaults; // value of each added column for older rows (null = none)
+    private boolean columnWithoutDefault; // some stored row lacks an added column that has no default
+    private final BitSet compressedColumns;
+    private final ZoneMap zoneMap; // null = no page summaries
+    private final RecordDecoder zoneDecoder; // reads written rows for the zone map
+    private final RecordDecoder keyDecoder; // reads the key columns of encoded rows
+    private final BitSet freePages; // empty pages vacuum reclaimed, reused before the table grows
+    private volatile RowCache rowCache; // null = primary key lookups decode every time
+    private volatile List<SecondaryIndex> secondaryIndexes; // replaced, never changed in place
+    private int vacuumPosition;
+    private int recordCount;
 
     public Table(String tableName, boolean hasPrimaryKey) {
+        this(tableName, hasPrimaryKey, StorageMode.ROW, 0);
+    }
+
+    /**
+     * @param columnCount number of columns, needed for columnar pages
+     */
+    public Table(String tableName, boolean hasPrimaryKey, StorageMode storageMode, int columnCount) {
+        this(tableName, hasPrimaryKey, storageMode, columnCount, new BitSet());
+    }
+
+    /**
+     * @param compressedColumns columns whose values row pages dictionary-encode
+     */
+    public Table(String tableName, boolean hasPrimaryKey, StorageMode storageMode, int columnCount,
+                 BitSet compressedColumns) {
+        this(tableName, hasPrimaryKey, storageMode, columnCount, compressedColumns, null);
+    }
+
+    /**
+     * @param zoneKinds how each column is summarised in the per-page zone map
+     *                  (null = no zone map)
+     */
+    public Table(String tableName, boolean hasPrimaryKey, StorageMode storageMode, int columnCount,
+                 BitSet compressedColumns, ZoneMap.Kind[] zoneKinds) {
+        this(tableName, hasPrimaryKey ? KeyEncoder.ofInt(0) : null, storageMode, columnCount,
+                compressedColumns, zoneKinds);
+    }
+
+    /**
+     * @param primaryKey the primary key columns (null = no primary key);
+     *                   index-organized tables need a single INT column 0
+     */
+    public Table(String tableName, KeyEncoder primaryKey, StorageMode storageMode, int columnCount,
+                 BitSet compressedColumns, ZoneMap.Kind[] zoneKinds) {
+        if (!compressedColumns.isEmpty() && storageMode != StorageMode.ROW) {
+            throw new IllegalArgumentException("Compression requires row storage");
+        }
+        if (storageMode == StorageMode.INDEX_ORGANIZED && primaryKey == null) {
+            throw new IllegalArgumentException("Index-organized tables need a primary key");
+        }
+        if (storageMode == StorageMode.INDEX_ORGANIZED && (primaryKey.size() != 1
+                || primaryKey.getColumn(0) != 0 || primaryKey.getType(0) != KeyEncoder.Type.INT)) {
+            // The key doubles as the record ID
+            throw new IllegalArgumentException(
+                    "Index-organized tables need an INT primary key in the first column");
+        }
         this.tableName = tableName;
         this.pages = new ArrayList<>();
-        this.hasPrimaryKey = hasPrimaryKey;
-        this.primaryIndex = hasPrimaryKey ? new BPlusTree(1) : null;
-        this.nextRecordId = 1;
+        this.overflowStore = new OverflowStore();
+        this.primaryKey = primaryKey;
+        this.primaryIndex = primaryKey != null ? new BPlusTree(1) : null;
+        this.storageMode = storageMode;
+        this.columnCount = columnCount;
+        this.compressedColumns = (BitSet) compressedColumns.clone();
+        this.zoneMap = zoneKinds != null && storageMode != StorageMode.INDEX_ORGANIZED
+                ? new ZoneMap(zoneKinds) : null;
+        this.zoneDecoder = new RecordDecoder();
+        this.keyDecoder = new RecordDecoder();
+        this.freePages = new BitSet();
+        this.secondaryIndexes = List.of();
+        this.recordCount = 0;
 
         // Create first page
-        pages.add(new SlottedPage());
+        if (storageMode != StorageMode.INDEX_ORGANIZED) {
+            pages.add(newPage());
+        }
     }
 
+    /**
+     * Fail as insertRecord would, on a key too long or a repeated unique
+     * value, without storing anything
+     */
+    public synchronized void checkInsert(Record record) {
+        checkUnique(record);
+    }
+    
     /**
      * Insert record, returns record ID
      */
-    public int insertRecord(Record record) {
-        byte[] serialized = record.serialize();
+    public synchronized int insertRecord(Record record) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return insertIntoIndex(record);
+        }
 
-        // Try to insert in existing pages
-        for (SlottedPage page : pages) {
-            int slotId = page.insertRecord(serialized);
-            if (slotId != -1) {
-                int recordId = nextRecordId++;
+        checkUnique(record);
+        byte[] key = primaryKeyOf(record);
+        int recordId = storeRecord(externalize(record));
+        recordCount++;
+        addToIndexes(record, recordId);
+
+        // Add to index if primary key exists
+        if (key != null) {
+            primaryIndex.insert(key, intToBytes(recordId));
+        }
+
+        return recordId;
+    }
+
+    /**
+     * Insert a row encoded by a RecordEncoder without building a Record,
+     * returns record ID. Rows needing overflow pages, and tables with
+     * secondary indexes to maintain, take the Record path.
+     */
+    public synchronized int insertRecord(RecordEncoder encoded) {
+        if (!storesEncoded(encoded)) {
+            return insertRecord(decode(encoded));
+        }
+
+        byte[] data = encoded.buffer();
+        byte[] key = primaryKey != null ? primaryKeyOf(keyDecoder.wrap(data, 0, null)) : null;
+        checkKeyLength(key);
+        int recordId = storeEncoded(data, encoded.length());
+        recordCount++;
+
+        if (key != null) {
+            primaryIndex.insert(key, intToBytes(recordId));
+        }
+
+        return recordId;
+    }
+
+    /**
+     * Bulk load records at the default fill factor, returns rows loaded
+     */
+    public int bulkLoad(Iterator<Record> records) {
+        return bulkLoad(records, DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * Bulk load records into fresh pages filled sequentially up to
+     * {@code fillFactor}, leaving the rest of each page for later updates.
+     * Pages are built off to the side and appended in batches. On an empty
+     * table the primary index is built bottom-up from the sorted keys.
+     * Pages on the free list are filled in place before new ones are added.
+     * Primary keys go through an external sort, so they need not fit in memory.
+     * Index-organized tables have no pages to fill and ignore the fill factor.
+     * A row breaking a unique index stops the load; the rows before it stay.
+     */
+    public synchronized int bulkLoad(Iterator<Record> records, double fillFactor) {
+        checkFillFactor(fillFactor);
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return bulkLoadIndex(records);
+        }
+
+        BulkLoader loader = new BulkLoader(fillFactor);
+        try {
+            while (records.hasNext()) {
+                loader.add(records.next());
+            }
+        } finally {
+            loader.finish();
+        }
+        return loader.loaded;
+    }
+
+    /**
+     * Bulk load encoded rows at the default fill factor, returns rows loaded
+     */
+    public int bulkLoadEncoded(Iterator<RecordEncoder> rows) {
+        return bulkLoadEncoded(rows, DEFAULT_FILL_FACTOR);
+    }
 
-                // Add to index if primary key exists
-                if (hasPrimaryKey && record.getFieldCount() > 0) {
-                    int primaryKey = record.getFieldAsInt(0);
-                    primaryIndex.insert(primaryKey, intToBytes(recordId));
+    /**
+     * Bulk load rows encoded by a RecordEncoder, as bulkLoad does; the
+     * iterator may return one encoder refilled for every row. Rows are
+     * copied from the encoder's buffer into the pages, except those that
+     * insertRecord(RecordEncoder) also sends down the Record path.
+     */
+    public synchronized int bulkLoadEncoded(Iterator<RecordEncoder> rows, double fillFactor) {
+        checkFillFactor(fillFactor);
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return bulkLoadIndex(decoded(rows));
+        }
+
+        BulkLoader loader = new BulkLoader(fillFactor);
+        try {
+            while (rows.hasNext()) {
+                RecordEncoder row = rows.next();
+                if (storesEncoded(row)) {
+                    loader.add(row.buffer(), row.length());
+                } else {
+                    loader.add(decode(row));
                 }
+            }
+        } finally {
+            loader.finish();
+        }
+        return loader.loaded;
+    }
+
+    /**
+     * One bulk load in progress: the page being filled, new pages not yet
+     * appended to the table, and the primary keys awaiting their sort
+     */
+    private final class BulkLoader {
+        private final int reserve;
+        private final boolean emptyTable = recordCount == 0;
+        private final List<DataPage> batch = new ArrayList<>();
+        private final ExternalSorter keys;
+        private DataPage page;
+        private int pageIndex = -1;
+        private int loaded;
 
-                return recordId;
+        BulkLoader(double fillFactor) {
+            reserve = (int) (Page.PAGE_SIZE * (1 - fillFactor));
+
+            // Drop the initial page if nothing was ever stored in it
+            if (emptyTable && pages.size() == 1 && pages.get(0).getSlotCount() == 0) {
+                pages.clear();
+                freePages.clear();
             }
+            keys = primaryKey != null ? new ExternalSorter(INDEX_SORT_MEMORY) : null;
         }
 
-        // Need new page
-        SlottedPage newPage = new SlottedPage();
-        int slotId = newPage.insertRecord(serialized);
-        pages.add(newPage);
+        void add(Record record) {
+            checkUnique(record);
+            byte[] key = primaryKeyOf(record);
+            Record stored = externalize(record);
 
-        int recordId = nextRecordId++;
-        if (hasPrimaryKey && record.getFieldCount() > 0) {
-            int primaryKey = record.getFieldAsInt(0);
-            primaryIndex.insert(primaryKey, intToBytes(recordId));
+            int slotId = page != null ? page.insert(stored) : -1;
+            if (slotId == -1) {
+                slotId = nextPage().insert(stored);
+            }
+            int recordId = place(slotId);
+            addToIndexes(record, recordId);
+            addKey(key, recordId);
         }
 
-        return recordId;
+        void add(byte[] data, int length) {
+            byte[] key = primaryKey != null ? primaryKeyOf(keyDecoder.wrap(data, 0, null)) : null;
+            checkKeyLength(key);
+
+            int slotId = page != null ? page.insert(data, 0, length) : -1;
+            if (slotId == -1) {
+                slotId = nextPage().insert(data, 0, length);
+            }
+            addKey(key, place(slotId));
+        }
+
+        /**
+         * Move on to a page from the free list, else a new one
+         */
+        private DataPage nextPage() {
+            pageIndex = freePages.nextSetBit(0);
+            if (pageIndex != -1) {
+                freePages.clear(pageIndex);
+                page = pages.get(pageIndex);
+            } else {
+                page = newPage();
+                batch.add(page);
+                pageIndex = pages.size() + batch.size() - 1;
+            }
+            return page;
+        }
+
+        /**
+         * Bookkeeping for a row just stored in the page, returns its record ID
+         */
+        private int place(int slotId) {
+            int recordId = toRecordId(pageIndex, slotId);
+            summarize(pageIndex, page, slotId);
+
+            // Seal the page once it reaches the fill factor
+            if (page.getFreeSpace() < reserve) {
+                page = null;
+            }
+            if (batch.size() >= BULK_LOAD_BATCH_PAGES) {
+                pages.addAll(batch);
+                batch.clear();
+            }
+            return recordId;
+        }
+
+        private void addKey(byte[] key, int recordId) {
+            if (key != null) {
+                keys.add(new IndexKey.Builder()
+                        .addBytes(key).addInt(loaded).addBytes(intToBytes(recordId)).build());
+            }
+            loaded++;
+        }
+
+        /**
+         * Append the remaining pages and build the primary index
+         */
+        void finish() {
+            pages.addAll(batch);
+            if (pages.isEmpty()) {
+                pages.add(newPage());
+            }
+            recordCount += loaded;
+
+            if (keys != null) {
+                try {
+                    buildPrimaryIndex(keys, emptyTable);
+                } finally {
+                    keys.close();
+                }
+            }
+        }
     }
 
     /**
      * Get record by ID
      */
     public Record getRecord(int recordId) {
-        // Linear scan for now (in real DB, use page directory)
-        for (SlottedPage page : pages) {
-            for (int i = 0; i < page.getSlotCount(); i++) {
-                byte[] data = page.getRecord(i);
-                if (data != null) {
-                    Record rec = Record.deserialize(data);
-                    // Check if this is our record (simplified)
-                    return rec;
-                }
-            }
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return searchByPrimaryKey(recordId); // Record ID is the key
         }
-        return null;
+
+        int pageIndex = recordId >>> SLOT_BITS;
+        if (pageIndex >= pages.size()) return null;
+
+        return fill(pages.get(pageIndex).read(recordId & SLOT_MASK, null, overflowStore));
     }
 
     /**
-     * Search by primary key
+     * Search by a single-column numeric primary key
      */
     public Record searchByPrimaryKey(int primaryKey) {
-        if (!hasPrimaryKey) {
+        return searchByPrimaryKey(primaryKeyOf(primaryKey));
+    }
+
+    /**
+     * Search by primary key, encoded as the table's KeyEncoder does
+     */
+    public Record searchByPrimaryKey(byte[] key) {
+        if (primaryKey == null) {
             throw new UnsupportedOperationException("No primary key index");
         }
 
-        byte[] recordIdBytes = primaryIndex.search(primaryKey);
-        if (recordIdBytes == null)
+        RowCache cache = rowCache;
+        if (cache == null) {
+            return lookup(key);
+        }
+
+        long stamp = cache.stamp();
+        boolean keyIsRecordId = storageMode == StorageMode.INDEX_ORGANIZED;
+        if (keyIsRecordId) {
+            Record cached = cache.get(recordIdOfKey(key));
+            if (cached != null) return cached;
+        }
+
+        byte[] entry = primaryIndex.search(key);
+        if (entry == null)
             return null;
 
-        int recordId = bytesToInt(recordIdBytes);
-        return getRecord(recordId);
+        int recordId = recordIdOf(entry);
+        if (!keyIsRecordId) {
+            Record cached = cache.get(recordId);
+            if (cached != null) return cached;
+        }
+
+        Record record = resolve(entry);
+        if (record != null) {
+            cache.put(recordId, record, stamp);
+        }
+        return record;
     }
 
     /**
-     * Range scan by primary key
+     * Cache up to {@code maxEntries} decoded records for primary key
+     * lookups (0 = no cache)
+     */
+    public void setRowCache(int maxEntries) {
+        rowCache = maxEntries > 0 ? new RowCache(maxEntries) : null;
+    }
+
+    /**
+     * Row cache in front of primary key lookups, or null
+     */
+    public RowCache getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * Whether the primary index entry for key is the heap record's; with
+     * duplicate keys only the latest inserted is
+     */
+    private boolean indexes(byte[] key, int recordId) {
+        byte[] entry = primaryIndex.search(key);
+        return entry != null && bytesToInt(entry) == recordId;
+    }
+
+    private Record lookup(byte[] key) {
+        byte[] entry = primaryIndex.search(key);
+        if (entry == null)
+            return null;
+
+        return resolve(entry);
+    }
+
+    /**
+     * Called once a row's change is visible, so a lookup that read the old
+     * version cannot cache it afterwards
+     */
+    private void invalidateCachedRow(int recordId) {
+        RowCache cache = rowCache;
+        if (cache != null) {
+            cache.invalidate(recordId);
+        }
+    }
+
+    /**
+     * Range scan [startKey, endKey] by a single-column numeric primary key
      */
     public List<Record> rangeScanByPrimaryKey(int startKey, int endKey) {
-        if (!hasPrimaryKey) {
+        List<Record> results = new ArrayList<>();
+        try (IndexRangeScan scan = indexRangeScan(startKey, endKey)) {
+            scan.forEachRemaining(results::add);
+        }
+        return results;
+    }
+
+    /**
+     * Lazy range scan [startKey, endKey] by a single-column numeric
+     * primary key; records are fetched as the cursor advances
+     */
+    public IndexRangeScan indexRangeScan(int startKey, int endKey) {
+        byte[] low = primaryKeyOf(startKey);
+        return indexRangeScan(low, startKey <= endKey ? IndexKey.successor(primaryKeyOf(endKey)) : low);
+    }
+
+    /**
+     * Lazy scan of the encoded primary keys in [low, high), null bounds
+     * leaving that end open; records are fetched as the cursor advances
+     */
+    public IndexRangeScan indexRangeScan(byte[] low, byte[] high) {
+        return indexRangeScan(low, high, false);
+    }
+
+    /**
+     * Lazy scan of the encoded primary keys in [low, high), in descending
+     * key order if {@code descending}; leaves are read only as the cursor
+     * gets to them, so a scan stopped early touches just a few
+     */
+    public IndexRangeScan indexRangeScan(byte[] low, byte[] high, boolean descending) {
+        if (primaryKey == null) {
             throw new UnsupportedOperationException("No primary key index");
         }
 
-        List<byte[]> recordIds = primaryIndex.rangeScan(startKey, endKey);
-        List<Record> results = new ArrayList<>();
+        return new IndexRangeScan(primaryIndex.rangeIterator(low, high, descending), this, null);
+    }
+
+    /**
+     * Primary key columns, null if the table has no primary key
+     */
+    public KeyEncoder getPrimaryKey() {
+        return primaryKey;
+    }
 
-        for (byte[] recordIdBytes : recordIds) {
-            int recordId = bytesToInt(recordIdBytes);
-            Record record = getRecord(recordId);
-            if (record != null) {
-                results.add(record);
+    /**
+     * Index the values of the {@code key} columns, built bottom-up from
+     * the rows already stored: their entries are extracted in parallel and
+     * sorted externally. Rows lacking a key column are not indexed.
+     */
+    public synchronized SecondaryIndex createIndex(String name, KeyEncoder key, boolean unique) {
+        for (SecondaryIndex existing : secondaryIndexes) {
+            if (existing.getName().equals(name)) {
+                throw new IllegalArgumentException("Index " + name + " already exists");
             }
         }
 
-        return results;
+        SecondaryIndex index = new SecondaryIndex(name, key, unique);
+        try (ExternalSorter entries = new ExternalSorter(INDEX_SORT_MEMORY)) {
+            extractEntries(index, entries);
+            index.build(entries.sorted());
+        }
+
+        List<SecondaryIndex> indexes = new ArrayList<>(secondaryIndexes);
+        indexes.add(index);
+        secondaryIndexes = List.copyOf(indexes);
+        return index;
+    }
+
+    /**
+     * Drop the named index, returns false if the table has no such index
+     */
+    public synchronized boolean dropIndex(String name) {
+        List<SecondaryIndex> indexes = new ArrayList<>(secondaryIndexes);
+        if (!indexes.removeIf(index -> index.getName().equals(name))) return false;
+        secondaryIndexes = List.copyOf(indexes);
+        return true;
+    }
+
+    public List<SecondaryIndex> getSecondaryIndexes() {
+        return secondaryIndexes;
+    }
+
+    /**
+     * Lazy scan of the rows whose encoded index key lies in [low, high),
+     * in key order, null bounds leaving that end open; records are
+     * fetched as the cursor advances
+     */
+    public RecordCursor indexScan(SecondaryIndex index, byte[] low, byte[] high) {
+        return indexScan(index, low, high, false);
+    }
+
+    /**
+     * Lazy index scan of [low, high) in descending key order if
+     * {@code descending}
+     */
+    public RecordCursor indexScan(SecondaryIndex index, byte[] low, byte[] high, boolean descending) {
+        return index.scan(low, high, descending, this::getRecord);
     }
 
     /**
      * Full table scan
      */
     public List<Record> fullScan() {
+        return fullScan(null);
+    }
+
+    /**
+     * Full table scan reading only the given column indexes (null = all).
+     * Columnar tables leave the other fields of each record unloaded.
+     */
+    public List<Record> fullScan(int[] columns) {
         List<Record> results = new ArrayList<>();
+        try (RecordCursor scan = scan(columns)) {
+            scan.forEachRemaining(results::add);
+        }
+        return results;
+    }
 
-        for (SlottedPage page : pages) {
-            for (int i = 0; i < page.getSlotCount(); i++) {
-                byte[] data = page.getRecord(i);
-                if (data != null) {
-                    results.add(Record.deserialize(data));
+    /**
+     * Lazy full table scan reading only the given column indexes (null = all)
+     */
+    public RecordCursor scan(int[] columns) {
+        return scan(columns, null, null);
+    }
+
+    /**
+     * Lazy full table scan whose filter reads each row in place;
+     * only matching rows are decoded into Records
+     */
+    public RecordCursor scan(int[] columns, Predicate<RecordDecoder> filter) {
+        return scan(columns, filter, null);
+    }
+
+    /**
+     * Lazy filtered scan skipping pages whose zone map rules out
+     * {@code range}, a key range the filter implies (null = none).
+     * Index-organized tables are scanned in key order along the index leaves.
+     */
+    public RecordCursor scan(int[] columns, Predicate<RecordDecoder> filter, ZoneMap.KeyRange range) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return new IndexRangeScan(allEntries(), this, filter);
+        }
+        RecordCursor scan = new TableScan(pages, columns, overflowStore, fill(filter), pageFilter(range));
+        return columnDefaults != null ? scan.map(this::fill) : scan;
+    }
+
+    /**
+     * Full table scan returning the IDs of matching records
+     */
+    public List<Integer> findRecordIds(Predicate<Record> filter) {
+        return findRecordIds(null, filter);
+    }
+
+    /**
+     * Full table scan returning the IDs of matching records,
+     * reading only the given column indexes (null = all)
+     */
+    public List<Integer> findRecordIds(int[] columns, Predicate<Record> filter) {
+        List<Integer> results = new ArrayList<>();
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            try (IndexRangeScan scan = new IndexRangeScan(allEntries(), this, null)) {
+                while (scan.hasNext()) {
+                    if (filter.test(scan.next())) {
+                        results.add(scan.getRecordId());
+                    }
                 }
             }
+            return results;
         }
 
+        try (TableScan scan = new TableScan(pages, columns, overflowStore, null, null)) {
+            while (scan.hasNext()) {
+                if (filter.test(fill(scan.next()))) {
+                    results.add(scan.getRecordId());
+                }
+            }
+        }
         return results;
     }
 
     /**
-     * Update record
+     * Full table scan returning the IDs of matching records. The filter
+     * reads each row in place, so rows are never decoded into Records.
+     */
+    public List<Integer> findRecordIdsInPlace(int[] columns, Predicate<RecordDecoder> filter) {
+        return findRecordIdsInPlace(columns, filter, null);
+    }
+
+    /**
+     * Like {@link #findRecordIdsInPlace(int[], Predicate)}; pages whose
+     * zone map rules out {@code range} (null = none) are skipped.
      */
-    public boolean updateRecord(int recordId, Record newRecord) {
-        // Simplified: find and update
-        for (SlottedPage page : pages) {
+    public List<Integer> findRecordIdsInPlace(int[] columns, Predicate<RecordDecoder> filter,
+                                              ZoneMap.KeyRange range) {
+        List<Integer> results = new ArrayList<>();
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            forEachIndexRow(row -> {
+                if (filter.test(row)) results.add(row.getInt(0));
+            });
+            return results;
+        }
+
+        RecordDecoder decoder = new RecordDecoder();
+        Predicate<RecordDecoder> rowFilter = fill(filter);
+
+        for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+            if (zoneMap != null && !zoneMap.mayMatch(pageIndex, range)) continue;
+            DataPage page = pages.get(pageIndex);
             for (int i = 0; i < page.getSlotCount(); i++) {
-                byte[] data = page.getRecord(i);
-                if (data != null) {
-                    return page.updateRecord(i, newRecord.serialize());
+                if (page.read(i, columns, decoder, overflowStore) && rowFilter.test(decoder)) {
+                    results.add(toRecordId(pageIndex, i));
                 }
             }
         }
-        return false;
+
+        return results;
     }
 
     /**
-     * Delete record
+     * Visit every row in place; the decoder is only valid during the call
      */
-    public boolean deleteRecord(int recordId) {
-        for (SlottedPage page : pages) {
+    public void forEachRow(int[] columns, Consumer<RecordDecoder> action) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            forEachIndexRow(action);
+            return;
+        }
+
+        RecordDecoder decoder = new RecordDecoder();
+        for (DataPage page : pages) {
             for (int i = 0; i < page.getSlotCount(); i++) {
-                byte[] data = page.getRecord(i);
-                if (data != null) {
-                    page.deleteRecord(i);
-                    return true;
+                if (page.read(i, columns, decoder, overflowStore)) {
+                    action.accept(fill(decoder));
                 }
             }
         }
-        return false;
+    }
+
+    /**
+     * Parallel full table scan returning matching records. Pages are split
+     * into ranges that are read and filtered on the fork/join pool; with
+     * {@code ordered} the result keeps page order, otherwise ranges are
+     * merged as they finish. The filter reads rows in place and must be
+     * safe to call concurrently. Pages whose zone map rules out
+     * {@code range} (null = none) are skipped.
+     */
+    public List<Record> parallelScan(int[] columns, Predicate<RecordDecoder> filter,
+                                     ZoneMap.KeyRange range, boolean ordered) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            List<Record> results = new ArrayList<>();
+            scan(columns, filter, range).forEachRemaining(results::add);
+            return results;
+        }
+        return new ParallelScan<Record>(pages, columns, overflowStore, fill(filter), pageFilter(range),
+                (page, pageIndex, slotId, row) -> fill(page.read(slotId, columns, overflowStore)))
+                .run(ForkJoinPool.commonPool(), ordered);
+    }
+
+    /**
+     * Parallel full table scan streaming matching records in page order.
+     * Ranges of pages are read and filtered on the fork/join pool a few
+     * ranges ahead of the consumer, so only those ranges' rows are held.
+     * The filter reads rows in place and must be safe to call concurrently.
+     */
+    public RecordCursor parallelCursor(int[] columns, Predicate<RecordDecoder> filter,
+                                       ZoneMap.KeyRange range) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return scan(columns, filter, range);
+        }
+        ParallelScan<Record>.RangeStream ranges = new ParallelScan<Record>(pages, columns, overflowStore,
+                fill(filter), pageFilter(range),
+                (page, pageIndex, slotId, row) -> fill(page.read(slotId, columns, overflowStore)))
+                .stream(ForkJoinPool.commonPool(), 2 * ForkJoinPool.commonPool().getParallelism());
+        return new RecordCursor() {
+            private Iterator<Record> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && ranges.hasNext()) {
+                    current = ranges.next().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void close() {
+                ranges.close();
+                current = Collections.emptyIterator();
+            }
+        };
+    }
+
+    /**
+     * Parallel full table scan returning the IDs of matching records,
+     * in no particular order
+     */
+    public List<Integer> parallelFindRecordIds(int[] columns, Predicate<RecordDecoder> filter,
+                                               ZoneMap.KeyRange range) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return findRecordIdsInPlace(columns, filter, range);
+        }
+        return new ParallelScan<Integer>(pages, columns, overflowStore, fill(filter), pageFilter(range),
+                (page, pageIndex, slotId, row) -> toRecordId(pageIndex, slotId))
+                .run(ForkJoinPool.commonPool(), false);
+    }
+
+    /**
+     * Update record. The record keeps its ID unless its page is too full
+     * to hold the new version, in which case it moves to another page.
+     */
+    public synchronized boolean updateRecord(int recordId, Record newRecord) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return updateInIndex(recordId, newRecord);
+        }
+
+        int pageIndex = recordId >>> SLOT_BITS;
+        if (pageIndex >= pages.size()) return false;
+
+        DataPage page = pages.get(pageIndex);
+        int slotId = recordId & SLOT_MASK;
+        Record oldRecord = page.read(slotId, null, overflowStore);
+        if (oldRecord == null) return false;
+        checkUnique(newRecord, recordId);
+        byte[] oldKey = primaryKeyOf(oldRecord);
+        byte[] newKey = primaryKeyOf(newRecord);
+
+        Record stored = externalize(newRecord);
+        int newRecordId = recordId;
+        if (page.update(slotId, stored)) {
+            summarize(pageIndex, page, slotId);
+        } else {
+            page.delete(slotId);
+            newRecordId = storeRecord(stored);
+        }
+        updateIndexes(oldRecord, recordId, newRecord, newRecordId);
+        oldRecord.releaseOverflow();
+
+        // A stale duplicate of the key does not own its index entry
+        boolean ownsKey = oldKey != null && indexes(oldKey, recordId);
+        boolean keyChanged = !Arrays.equals(oldKey, newKey);
+        if (keyChanged && ownsKey) {
+            primaryIndex.delete(oldKey);
+        }
+        if (newKey != null && (keyChanged || (ownsKey && newRecordId != recordId))) {
+            primaryIndex.insert(newKey, intToBytes(newRecordId));
+        }
+
+        invalidateCachedRow(recordId);
+        return true;
+    }
+
+    /**
+     * Delete record
+     */
+    public synchronized boolean deleteRecord(int recordId) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            byte[] key = primaryKeyOf(recordId);
+            Record record = lookup(key);
+            if (record == null) return false;
+
+            primaryIndex.delete(key);
+            removeFromIndexes(record, recordId);
+            record.releaseOverflow();
+            recordCount--;
+            invalidateCachedRow(recordId);
+            return true;
+        }
+
+        int pageIndex = recordId >>> SLOT_BITS;
+        if (pageIndex >= pages.size()) return false;
+
+        DataPage page = pages.get(pageIndex);
+        int slotId = recordId & SLOT_MASK;
+        Record record = page.read(slotId, null, overflowStore);
+        if (record == null) return false;
+
+        byte[] key = primaryKeyOf(record);
+        if (key != null && indexes(key, recordId)) {
+            primaryIndex.delete(key);
+        }
+        removeFromIndexes(record, recordId);
+        record.releaseOverflow();
+        page.delete(slotId);
+        recordCount--;
+        invalidateCachedRow(recordId);
+        return true;
+    }
+
+    /**
+     * Reclaim dead space, examining at most {@code pageBudget} pages' worth
+     * of I/O (each page read and each page rewrite counts one). Row pages
+     * with many deleted slots or dead bytes are compacted and their trailing
+     * dead slots dropped; pages with no live rows go on the free list.
+     * Pages are rewritten as copies and swapped in, so running scans keep
+     * reading the version they started with. Successive calls resume where
+     * the last one stopped and wrap around the table; a page whose rewrite
+     * would overrun the budget is left for the next call.
+     */
+    public synchronized VacuumResult vacuum(int pageBudget) {
+        int pageCount = pages.size();
+        int scanned = 0;
+        int compacted = 0;
+        int freed = 0;
+        long reclaimed = 0;
+
+        while (scanned + compacted + freed < pageBudget && scanned < pageCount) {
+            if (vacuumPosition >= pageCount) vacuumPosition = 0;
+            int pageIndex = vacuumPosition++;
+            scanned++;
+
+            if (freePages.get(pageIndex) || !(pages.get(pageIndex) instanceof SlottedPage page)) {
+                continue;
+            }
+            if (page.getSlotCount() == 0) continue;
+
+            boolean emptied = page.getLiveSlotCount() == 0;
+            boolean worthCompacting = page.getVacuumableSpace() > 0
+                    && (page.getDeadSlotCount() >= page.getSlotCount() * VACUUM_DEAD_SLOT_THRESHOLD
+                        || page.getFragmentation() >= VACUUM_FRAGMENTATION_THRESHOLD);
+            if ((emptied || worthCompacting) && scanned + compacted + freed >= pageBudget) {
+                // No budget left for the write: the next call starts here
+                vacuumPosition = pageIndex;
+                break;
+            }
+
+            if (emptied) {
+                DataPage empty = newPage();
+                reclaimed += empty.getFreeSpace() - page.getFreeSpace();
+                pages.set(pageIndex, empty);
+                freePages.set(pageIndex);
+                if (zoneMap != null) zoneMap.reset(pageIndex);
+                freed++;
+            } else if (worthCompacting) {
+                SlottedPage copy = new SlottedPage(page.toBytes().clone());
+                reclaimed += copy.vacuum();
+                pages.set(pageIndex, copy);
+                rebuildZone(pageIndex, copy);
+                compacted++;
+            }
+        }
+
+        return new VacuumResult(scanned, compacted, freed, reclaimed);
     }
 
     public String getTableName() {
@@ -172,8 +917,608 @@ public class Table {
         return pages.size();
     }
 
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public boolean isCompressed() {
+        return !compressedColumns.isEmpty();
+    }
+
     public int getRecordCount() {
-        return nextRecordId - 1;
+        return recordCount;
+    }
+
+    /**
+     * Pages on the free list, empty and waiting for reuse
+     */
+    public int getFreePageCount() {
+        return freePages.cardinality();
+    }
+
+    /**
+     * Per-page column summaries, null if the table keeps none
+     */
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    public int getOverflowPageCount() {
+        return overflowStore.getPageCount();
+    }
+
+    /**
+     * Store a row in the primary index leaf under its key, replacing any
+     * row with that key; returns the record ID, which is the key
+     */
+    private int insertIntoIndex(Record record) {
+        int recordId = record.getFieldAsInt(0);
+        byte[] key = primaryKeyOf(recordId);
+        checkUnique(record, recordId);
+        Record existing = lookup(key);
+        if (existing != null) {
+            removeFromIndexes(existing, recordId);
+            existing.releaseOverflow();
+        } else {
+            recordCount++;
+        }
+
+        primaryIndex.insert(key, externalize(record).serialize());
+        addToIndexes(record, recordId);
+        invalidateCachedRow(recordId);
+        return recordId;
+    }
+
+    private boolean updateInIndex(int recordId, Record newRecord) {
+        byte[] key = primaryKeyOf(recordId);
+        Record oldRecord = lookup(key);
+        if (oldRecord == null) return false;
+
+        int newRecordId = newRecord.getFieldAsInt(0);
+        checkUnique(newRecord, recordId, newRecordId);
+        if (newRecordId != recordId) {
+            primaryIndex.delete(key);
+            removeFromIndexes(oldRecord, recordId);
+            oldRecord.releaseOverflow();
+            recordCount--;
+            invalidateCachedRow(recordId);
+        }
+        insertIntoIndex(newRecord); // Releases the old row's overflow on the same key
+        return true;
+    }
+
+    /**
+     * Bulk load an index-organized table. An empty table without secondary
+     * indexes is built bottom-up from the rows sorted by key; later
+     * duplicates win.
+     */
+    private int bulkLoadIndex(Iterator<Record> records) {
+        if (recordCount > 0 || !secondaryIndexes.isEmpty()) {
+            int loaded = 0;
+            while (records.hasNext()) {
+                insertIntoIndex(records.next());
+                loaded++;
+            }
+            return loaded;
+        }
+
+        List<Record> rows = new ArrayList<>();
+        records.forEachRemaining(rows::add);
+        // Stable sort keeps duplicates in load order
+        rows.sort(Comparator.comparingInt(record -> record.getFieldAsInt(0)));
+
+        List<byte[]> keys = new ArrayList<>(rows.size());
+        List<byte[]> values = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            int key = rows.get(i).getFieldAsInt(0);
+            if (i + 1 < rows.size() && rows.get(i + 1).getFieldAsInt(0) == key) {
+                continue; // Superseded by a later duplicate
+            }
+            keys.add(primaryKeyOf(key));
+            values.add(externalize(rows.get(i)).serialize());
+        }
+
+        primaryIndex.bulkLoad(keys, values);
+        recordCount = keys.size();
+        return rows.size();
+    }
+
+    private Iterator<byte[]> allEntries() {
+        return primaryIndex.rangeIterator((byte[]) null, null);
+    }
+
+    /**
+     * Visit every row of an index-organized table in place, in key order
+     */
+    private void forEachIndexRow(Consumer<RecordDecoder> action) {
+        RecordDecoder decoder = new RecordDecoder();
+        Iterator<byte[]> entries = allEntries();
+        while (entries.hasNext()) {
+            action.accept(wrapEntry(entries.next(), decoder));
+        }
+    }
+
+    /**
+     * Record a primary index entry refers to: the entry itself in an
+     * index-organized table, else the heap record its ID points at
+     */
+    Record resolve(byte[] entry) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return fill(Record.deserialize(entry, overflowStore));
+        }
+        return getRecord(bytesToInt(entry));
+    }
+
+    int recordIdOf(byte[] entry) {
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            return RecordDecoder.getInt(entry, RecordEncoder.HEADER_SIZE + RecordEncoder.LENGTH_SIZE);
+        }
+        return bytesToInt(entry);
+    }
+
+    /**
+     * Point the decoder at the row held in an index-organized table's entry
+     */
+    RecordDecoder wrapEntry(byte[] entry, RecordDecoder decoder) {
+        return fill(decoder.wrap(entry, 0, overflowStore));
+    }
+
+    /**
+     * Add a column after the existing ones without touching stored rows.
+     * Rows written before it existed are shorter; on read they get
+     * {@code defaultValue}, or still lack the column when it is null.
+     * A row's field count tells which columns it was written with, so
+     * once rows lack a column with no default, no later column may have one.
+     */
+    public synchronized void addColumn(byte[] defaultValue) {
+        if (columnCount == 0) {
+            throw new UnsupportedOperationException("Table " + tableName + " has no column count");
+        }
+        if (defaultValue != null && !acceptsColumnDefault()) {
+            throw new IllegalStateException("Table " + tableName
+                    + " has rows lacking an added column without a default");
+        }
+        if (defaultValue == null && recordCount > 0) {
+            columnWithoutDefault = true;
+        }
+
+        byte[][] defaults = columnDefaults != null
+                ? Arrays.copyOf(columnDefaults, columnCount + 1) : new byte[columnCount + 1][];
+        defaults[columnCount] = defaultValue;
+        columnCount++;
+        columnDefaults = defaults;
+
+        RowCache cache = rowCache;
+        if (cache != null) {
+            cache.clear(); // Cached rows lack the column
+        }
+    }
+
+    /**
+     * Whether a column added now may have a default: not once stored rows
+     * lack an added column that has none, as they could not carry both
+     */
+    public synchronized boolean acceptsColumnDefault() {
+        return !columnWithoutDefault;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    private Record fill(Record record) {
+        byte[][] defaults = columnDefaults;
+        if (defaults == null || record == null) return record;
+
+        for (int i = record.getFieldCount(); i < defaults.length && defaults[i] != null; i++) {
+            record.addField(defaults[i]);
+        }
+        return record;
+    }
+
+    private RecordDecoder fill(RecordDecoder row) {
+        byte[][] defaults = columnDefaults;
+        return defaults != null ? row.appendMissing(defaults) : row;
+    }
+
+    private Predicate<RecordDecoder> fill(Predicate<RecordDecoder> filter) {
+        if (filter == null || columnDefaults == null) return filter;
+        return row -> filter.test(fill(row));
+    }
+
+    /**
+     * Index bulk-loaded keys from their sort items: bottom-up build when
+     * the table was empty, per-key inserts in key order otherwise. Later
+     * duplicates win, as with insertRecord.
+     */
+    private void buildPrimaryIndex(ExternalSorter items, boolean emptyTable) {
+        Iterator<Map.Entry<byte[], byte[]>> entries = latestEntries(items.sorted());
+        if (emptyTable) {
+            primaryIndex.bulkLoad(entries);
+            return;
+        }
+        while (entries.hasNext()) {
+            Map.Entry<byte[], byte[]> entry = entries.next();
+            primaryIndex.insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Primary index entries from sorted (key, load position, record ID)
+     * items, keeping the last loaded of equal keys
+     */
+    private static Iterator<Map.Entry<byte[], byte[]>> latestEntries(Iterator<byte[]> items) {
+        return new Iterator<>() {
+            private byte[] next = items.hasNext() ? items.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<byte[], byte[]> next() {
+                if (next == null) throw new NoSuchElementException();
+                byte[] item;
+                do {
+                    item = next;
+                    next = items.hasNext() ? items.next() : null;
+                } while (next != null && Arrays.equals(item, 0, item.length - SORT_SUFFIX_SIZE,
+                        next, 0, next.length - SORT_SUFFIX_SIZE));
+
+                int keyLength = item.length - SORT_SUFFIX_SIZE;
+                return Map.entry(Arrays.copyOf(item, keyLength),
+                        Arrays.copyOfRange(item, keyLength + Integer.BYTES, item.length));
+            }
+        };
+    }
+
+    /**
+     * Add the entry key of every stored row holding all the key columns
+     * to the sorter, heap pages read in parallel; the other rows are
+     * counted as missing from the index
+     */
+    private void extractEntries(SecondaryIndex index, ExternalSorter sorter) {
+        KeyEncoder key = index.getKey();
+
+        if (storageMode == StorageMode.INDEX_ORGANIZED) {
+            RecordDecoder decoder = new RecordDecoder();
+            Iterator<byte[]> all = allEntries();
+            while (all.hasNext()) {
+                RecordDecoder row = wrapEntry(all.next(), decoder);
+                byte[] value = keyOf(key, row);
+                if (value != null) {
+                    sorter.add(SecondaryIndex.entryKey(value, row.getInt(0)));
+                } else {
+                    index.countUnindexed(1);
+                }
+            }
+            return;
+        }
+
+        int[] columns = new int[key.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = key.getColumn(i);
+        }
+        AtomicInteger unindexed = new AtomicInteger();
+        new ParallelScan<byte[]>(pages, columns, overflowStore, row -> true, null,
+                (page, pageIndex, slotId, row) -> {
+                    byte[] value = keyOf(key, fill(row));
+                    return value != null
+                            ? SecondaryIndex.entryKey(value, toRecordId(pageIndex, slotId))
+                            : null;
+                })
+                .forEachRange(ForkJoinPool.commonPool(), entries -> {
+                    int count = entries.size();
+                    entries.removeIf(Objects::isNull);
+                    unindexed.addAndGet(count - entries.size());
+                    sorter.addAll(entries);
+                });
+        index.countUnindexed(unindexed.get());
+    }
+
+    /**
+     * Fail before anything is stored if the row's keys are too long for
+     * their index, or it would repeat a value of a unique index; the value
+     * may belong to {@code replacing}, the records the change overwrites
+     */
+    private void checkUnique(Record record, int... replacing) {
+        checkKeyLength(primaryKeyOf(record));
+        for (SecondaryIndex index : secondaryIndexes) {
+            byte[] key = keyOf(index.getKey(), record);
+            if (key != null) {
+                checkKeyLength(SecondaryIndex.entryKey(key, 0));
+                index.checkUnique(key, replacing);
+            }
+        }
+    }
+
+    private static void checkFillFactor(double fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("Fill factor must be in (0, 1]: " + fillFactor);
+        }
+    }
+
+    private static void checkKeyLength(byte[] key) {
+        if (key != null && key.length > BPlusTree.MAX_KEY_SIZE) {
+            throw new IllegalArgumentException("Key of " + key.length + " bytes exceeds the index limit of "
+                    + BPlusTree.MAX_KEY_SIZE);
+        }
+    }
+
+    private void addToIndexes(Record record, int recordId) {
+        for (SecondaryIndex index : secondaryIndexes) {
+            byte[] key = keyOf(index.getKey(), record);
+            if (key != null) {
+                index.add(key, recordId);
+            } else {
+                index.countUnindexed(1);
+            }
+        }
+    }
+
+    private void removeFromIndexes(Record record, int recordId) {
+        for (SecondaryIndex index : secondaryIndexes) {
+            byte[] key = keyOf(index.getKey(), record);
+            if (key != null) {
+                index.remove(key, recordId);
+            } else {
+                index.countUnindexed(-1);
+            }
+        }
+    }
+
+    /**
+     * Move the row's index entries when its value or record ID changed
+     */
+    private void updateIndexes(Record oldRecord, int oldRecordId, Record newRecord, int newRecordId) {
+        for (SecondaryIndex index : secondaryIndexes) {
+            byte[] oldKey = keyOf(index.getKey(), oldRecord);
+            byte[] newKey = keyOf(index.getKey(), newRecord);
+            if (Arrays.equals(oldKey, newKey) && oldRecordId == newRecordId) continue;
+
+            if (oldKey != null) {
+                index.remove(oldKey, oldRecordId);
+            } else {
+                index.countUnindexed(-1);
+            }
+            if (newKey != null) {
+                index.add(newKey, newRecordId);
+            } else {
+                index.countUnindexed(1);
+            }
+        }
+    }
+
+    private byte[] primaryKeyOf(Record record) {
+        return primaryKey != null ? keyOf(primaryKey, record) : null;
+    }
+
+    private byte[] primaryKeyOf(RecordDecoder row) {
+        return keyOf(primaryKey, row);
+    }
+
+    /**
+     * Encoded primary key of a single-column numeric key value
+     */
+    private byte[] primaryKeyOf(int value) {
+        if (primaryKey == null) {
+            throw new UnsupportedOperationException("No primary key index");
+        }
+        if (primaryKey.size() != 1) {
+            throw new IllegalArgumentException("Primary key has " + primaryKey.size() + " columns");
+        }
+        return primaryKey.append(new IndexKey.Builder(), 0, value).build();
+    }
+
+    /**
+     * Record ID of an index-organized table's encoded key, the key itself
+     */
+    private static int recordIdOfKey(byte[] key) {
+        return RecordDecoder.getInt(key, 0) ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Encoded key of a row, counting the defaults of columns added after
+     * it was written; null if the row lacks a key column
+     */
+    private byte[] keyOf(KeyEncoder key, Record record) {
+        byte[][] defaults = columnDefaults;
+        return key.encode(column -> {
+            if (column < record.getFieldCount()) {
+                return record.getField(column);
+            }
+            for (int i = record.getFieldCount();
+                    defaults != null && i < defaults.length && defaults[i] != null; i++) {
+                if (i == column) return defaults[i];
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Encoded key of a row read in place, its defaults already filled in
+     */
+    private static byte[] keyOf(KeyEncoder key, RecordDecoder row) {
+        return key.encode(column -> column < row.getFieldCount() ? row.getField(column) : null);
+    }
+
+    /**
+     * Move large field values to overflow pages so the record fits in a page.
+     * Returns the record unchanged when nothing needs to move.
+     */
+    private Record externalize(Record record) {
+        boolean needsOverflow = record.getSerializedSize() > maxRecordSize();
+        for (int i = 0; i < record.getFieldCount() && !needsOverflow; i++) {
+            // Pointers into another chain are copied, never shared
+            needsOverflow = record.isOverflowField(i)
+                    || record.getStoredLength(i) > OVERFLOW_THRESHOLD;
+        }
+        if (!needsOverflow) {
+            return record;
+        }
+
+        Record stored = new Record();
+        for (int i = 0; i < record.getFieldCount(); i++) {
+            stored.addField(record.getField(i));
+        }
+        for (int i = 0; i < stored.getFieldCount(); i++) {
+            if (stored.getStoredLength(i) > OVERFLOW_THRESHOLD) {
+                stored.moveToOverflow(i, overflowStore);
+            }
+        }
+
+        // Still too large: move the largest remaining fields out
+        while (stored.getSerializedSize() > maxRecordSize()) {
+            int largest = -1;
+            for (int i = 0; i < stored.getFieldCount(); i++) {
+                if (!stored.isOverflowField(i)
+                        && stored.getStoredLength(i) > OverflowStore.OverflowPointer.SIZE
+                        && (largest == -1 || stored.getStoredLength(i) > stored.getStoredLength(largest))) {
+                    largest = i;
+                }
+            }
+            if (largest == -1) {
+                throw new IllegalArgumentException("Record too large for a page: "
+                        + record.getFieldCount() + " fields");
+            }
+            stored.moveToOverflow(largest, overflowStore);
+        }
+
+        return stored;
+    }
+
+    /**
+     * Place stored record in the first page with room, returns record ID
+     */
+    private int storeRecord(Record stored) {
+        // Try to insert in existing pages
+        for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+            int slotId = pages.get(pageIndex).insert(stored);
+            if (slotId != -1) {
+                return placed(pageIndex, slotId);
+            }
+        }
+
+        // Need new page
+        int pageIndex = allocatePage();
+        return placed(pageIndex, pages.get(pageIndex).insert(stored));
+    }
+
+    /**
+     * Whether an encoded row can be stored as it is: it fits a page with
+     * no overflow field, and no secondary index needs it as a Record
+     */
+    private boolean storesEncoded(RecordEncoder encoded) {
+        return encoded.length() <= maxRecordSize()
+                && encoded.getLargestField() <= OVERFLOW_THRESHOLD
+                && storageMode != StorageMode.INDEX_ORGANIZED
+                && secondaryIndexes.isEmpty();
+    }
+
+    private static Record decode(RecordEncoder encoded) {
+        return new RecordDecoder().wrap(encoded.buffer(), 0, null).toRecord();
+    }
+
+    private static Iterator<Record> decoded(Iterator<RecordEncoder> rows) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                return decode(rows.next());
+            }
+        };
+    }
+
+    /**
+     * Place encoded record in the first page with room, returns record ID
+     */
+    private int storeEncoded(byte[] data, int length) {
+        for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+            int slotId = pages.get(pageIndex).insert(data, 0, length);
+            if (slotId != -1) {
+                return placed(pageIndex, slotId);
+            }
+        }
+
+        int pageIndex = allocatePage();
+        return placed(pageIndex, pages.get(pageIndex).insert(data, 0, length));
+    }
+
+    /**
+     * Bookkeeping for a row just stored, returns its record ID
+     */
+    private int placed(int pageIndex, int slotId) {
+        freePages.clear(pageIndex);
+        summarize(pageIndex, pages.get(pageIndex), slotId);
+        return toRecordId(pageIndex, slotId);
+    }
+
+    /**
+     * Widen the page's zone map bounds to cover the row in slot
+     */
+    private void summarize(int pageIndex, DataPage page, int slotId) {
+        if (zoneMap != null && page.read(slotId, null, zoneDecoder, overflowStore)) {
+            zoneMap.add(pageIndex, zoneDecoder);
+        }
+    }
+
+    /**
+     * Recompute a page's zone map bounds from its live rows
+     */
+    private void rebuildZone(int pageIndex, DataPage page) {
+        if (zoneMap == null) return;
+        zoneMap.rebuild(pageIndex, rows -> {
+            for (int slotId = 0; slotId < page.getSlotCount(); slotId++) {
+                if (page.read(slotId, null, zoneDecoder, overflowStore)) {
+                    rows.accept(zoneDecoder);
+                }
+            }
+        });
+    }
+
+    private IntPredicate pageFilter(ZoneMap.KeyRange range) {
+        if (zoneMap == null || range == null) return null;
+        return pageIndex -> zoneMap.mayMatch(pageIndex, range);
+    }
+
+    /**
+     * Index of an empty page to fill: one from the free list, else a new one
+     */
+    private int allocatePage() {
+        int pageIndex = freePages.nextSetBit(0);
+        if (pageIndex != -1) {
+            freePages.clear(pageIndex);
+            return pageIndex;
+        }
+        pages.add(newPage());
+        return pages.size() - 1;
+    }
+
+    private int maxRecordSize() {
+        return compressedColumns.isEmpty() ? SlottedPage.MAX_RECORD_SIZE : DictionaryPage.MAX_RECORD_SIZE;
+    }
+
+    private DataPage newPage() {
+        return switch (storageMode) {
+            case ROW -> compressedColumns.isEmpty()
+                    ? new SlottedPage()
+                    : new DictionaryPage(compressedColumns);
+            case COLUMNAR -> new PaxPage(columnCount);
+            case INDEX_ORGANIZED ->
+                    throw new IllegalStateException("Index-organized tables have no heap pages");
+        };
+    }
+
+    static int toRecordId(int pageIndex, int slotId) {
+        if (slotId < 0 || slotId > SLOT_MASK) {
+            throw new IllegalStateException("Slot " + slotId + " of page " + pageIndex + " has no record ID");
+        }
+        return (pageIndex << SLOT_BITS) | slotId;
     }
 
     // Utility methods
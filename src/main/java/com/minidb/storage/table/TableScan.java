@@ -0,0 +1,104 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * TableScan - Lazy full table scan
+ * 
+ * Holds on to one page at a time and decodes records slot by slot,
+ * so memory use does not grow with the table. An optional filter is
+ * tested on the page bytes, and only matching rows become Records.
+ * An optional page filter skips pages the zone map rules out.
+ */
+public class TableScan implements RecordCursor {
+    private final List<DataPage> pages;
+    private final int[] columns;
+    private final OverflowStore overflowStore;
+    private final Predicate<RecordDecoder> filter;
+    private final IntPredicate pageFilter; // false = page cannot match, skip it
+    private final RecordDecoder decoder;
+    
+    private DataPage page; // page currently being read
+    private int pageIndex;
+    private int slotId;
+    private Record next;
+    private int nextRecordId;
+    private int recordId;
+    private boolean closed;
+    
+    TableScan(List<DataPage> pages, int[] columns, OverflowStore overflowStore,
+              Predicate<RecordDecoder> filter, IntPredicate pageFilter) {
+        this.pages = pages;
+        this.columns = columns;
+        this.overflowStore = overflowStore;
+        this.filter = filter;
+        this.pageFilter = pageFilter;
+        this.decoder = filter != null ? new RecordDecoder() : null;
+        this.pageIndex = -1;
+        this.recordId = -1;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            advance();
+        }
+        return next != null;
+    }
+    
+    @Override
+    public Record next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        
+        Record record = next;
+        recordId = nextRecordId;
+        next = null;
+        return record;
+    }
+    
+    /**
+     * ID of the record last returned by next()
+     */
+    public int getRecordId() {
+        return recordId;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        page = null;
+        next = null;
+    }
+    
+    private void advance() {
+        while (true) {
+            if (page != null && slotId < page.getSlotCount()) {
+                if (filter != null && !(page.read(slotId, columns, decoder, overflowStore) && filter.test(decoder))) {
+                    slotId++;
+                    continue;
+                }
+                Record record = page.read(slotId, columns, overflowStore);
+                if (record != null) {
+                    next = record;
+                    nextRecordId = Table.toRecordId(pageIndex, slotId++);
+                    return;
+                }
+                slotId++;
+                continue;
+            }
+            
+            // Move on to the next page
+            do {
+                pageIndex++;
+            } while (pageIndex < pages.size() && pageFilter != null && !pageFilter.test(pageIndex));
+            if (pageIndex >= pages.size()) {
+                page = null;
+                return;
+            }
+            page = pages.get(pageIndex);
+            slotId = 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.minidb.storage.table;
+
+/**
+ * Work done by a vacuum pass
+ *
+ * @param pagesScanned pages examined
+ * @param pagesCompacted pages rewritten without their dead space
+ * @param pagesFreed empty pages returned to the table's free list
+ * @param bytesReclaimed page bytes made free
+ */
+public record VacuumResult(int pagesScanned, int pagesCompacted, int pagesFreed, long bytesReclaimed) {
+    public static final VacuumResult NONE = new VacuumResult(0, 0, 0, 0);
+    
+    /**
+     * Page reads plus page writes, the unit of the vacuum I/O budget
+     */
+    public int ioCount() {
+        return pagesScanned + pagesCompacted + pagesFreed;
+    }
+    
+    public VacuumResult plus(VacuumResult other) {
+        return new VacuumResult(pagesScanned + other.pagesScanned,
+                pagesCompacted + other.pagesCompacted,
+                pagesFreed + other.pagesFreed,
+                bytesReclaimed + other.bytesReclaimed);
+    }
+}
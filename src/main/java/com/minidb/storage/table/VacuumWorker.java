@@ -0,0 +1,82 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * VacuumWorker - Background task reclaiming dead space in tables
+ *
+ * Every interval it vacuums the tables in turn, stopping once the round
+ * has spent its page budget. Capping the page reads and writes per
+ * interval keeps maintenance from competing with foreground queries.
+ */
+public class VacuumWorker implements Runnable, AutoCloseable {
+    public static final int DEFAULT_PAGE_BUDGET = 64;
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+    
+    private final Supplier<Collection<Table>> tables;
+    private final int pageBudget;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private int nextTable; // table the next round starts with
+    private volatile VacuumResult total;
+    
+    public VacuumWorker(Supplier<Collection<Table>> tables) {
+        this(tables, DEFAULT_PAGE_BUDGET, DEFAULT_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * @param pageBudget page reads plus writes allowed per interval
+     */
+    public VacuumWorker(Supplier<Collection<Table>> tables, int pageBudget, long intervalMillis) {
+        if (pageBudget <= 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Page budget and interval must be positive");
+        }
+        this.tables = tables;
+        this.pageBudget = pageBudget;
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "vacuum");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.total = VacuumResult.NONE;
+    }
+    
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * One round: vacuum tables until the page budget is spent or every
+     * table has had a turn. Later rounds start with the next table, so a
+     * large table cannot starve the others.
+     */
+    @Override
+    public void run() {
+        List<Table> snapshot = new ArrayList<>(tables.get());
+        if (snapshot.isEmpty()) return;
+        
+        int budget = pageBudget;
+        int start = nextTable % snapshot.size();
+        for (int i = 0; i < snapshot.size() && budget > 0; i++) {
+            VacuumResult result = snapshot.get((start + i) % snapshot.size()).vacuum(budget);
+            budget -= result.ioCount();
+            total = total.plus(result);
+        }
+        nextTable = start + 1;
+    }
+    
+    /**
+     * Work done since the worker was created
+     */
+    public VacuumResult getTotal() {
+        return total;
+    }
+    
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,178 @@
+package com.minidb.storage.table;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * ZoneMap - Per-page min/max summaries of a table's columns
+ *
+ * INT and LONG columns keep exact bounds; VARCHAR columns keep bounds on
+ * their first four chars. Bounds only widen as rows are written, so they
+ * stay correct, if loose, after deletes until vacuum rebuilds them.
+ * Scans skip pages whose bounds cannot satisfy their filter.
+ */
+public class ZoneMap {
+    private static final int PREFIX_CHARS = 4;
+    
+    /**
+     * How a column is summarised
+     */
+    public enum Kind {
+        INT, LONG, PREFIX
+    }
+    
+    /**
+     * Inclusive key range a filter on {@code column} can match
+     */
+    public record KeyRange(int column, long low, long high) {}
+    
+    private final Kind[] kinds; // null entry = column not summarised
+    private volatile Zone[] zones; // by page index, null = no summary yet
+    
+    public ZoneMap(Kind[] kinds) {
+        this.kinds = kinds.clone();
+        this.zones = new Zone[16];
+    }
+    
+    /**
+     * Key range of values between two literals (null = unbounded).
+     * Returns null if the column is not summarised or a literal has the
+     * wrong type; prefix bounds are always inclusive.
+     */
+    public KeyRange range(int column, Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        if (column >= kinds.length || kinds[column] == null) return null;
+        
+        Long lowKey = low != null ? key(column, low) : Long.valueOf(Long.MIN_VALUE);
+        Long highKey = high != null ? key(column, high) : Long.valueOf(Long.MAX_VALUE);
+        if (lowKey == null || highKey == null) return null;
+        
+        long lowBound = lowKey;
+        long highBound = highKey;
+        if (kinds[column] != Kind.PREFIX) {
+            if (low != null && !lowInclusive) {
+                if (lowBound == Long.MAX_VALUE) return new KeyRange(column, 1, 0); // Empty
+                lowBound++;
+            }
+            if (high != null && !highInclusive) {
+                if (highBound == Long.MIN_VALUE) return new KeyRange(column, 1, 0);
+                highBound--;
+            }
+        }
+        return new KeyRange(column, lowBound, highBound);
+    }
+    
+    /**
+     * Whether the page may hold a row with a key in range
+     */
+    public boolean mayMatch(int pageIndex, KeyRange range) {
+        if (range != null && range.low() > range.high()) return false;
+        Zone[] current = zones;
+        if (range == null || pageIndex >= current.length || current[pageIndex] == null) return true;
+        return current[pageIndex].mayMatch(range);
+    }
+    
+    /**
+     * Widen the page's bounds to cover a row written to it
+     */
+    void add(int pageIndex, RecordDecoder row) {
+        Zone zone = pageIndex < zones.length ? zones[pageIndex] : null;
+        if (zone != null) {
+            widen(zone, row);
+            return;
+        }
+        
+        // Publish a new zone only once it covers the row
+        zone = new Zone(kinds.length);
+        widen(zone, row);
+        set(pageIndex, zone);
+    }
+    
+    /**
+     * Replace the page's bounds with ones covering exactly the rows
+     * {@code rows} passes to its callback
+     */
+    void rebuild(int pageIndex, Consumer<Consumer<RecordDecoder>> rows) {
+        Zone zone = new Zone(kinds.length);
+        boolean[] empty = {true};
+        rows.accept(row -> {
+            widen(zone, row);
+            empty[0] = false;
+        });
+        set(pageIndex, empty[0] ? null : zone);
+    }
+    
+    /**
+     * Forget the page's bounds
+     */
+    void reset(int pageIndex) {
+        if (pageIndex < zones.length) {
+            set(pageIndex, null);
+        }
+    }
+    
+    private void set(int pageIndex, Zone zone) {
+        Zone[] current = zones;
+        if (pageIndex >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, pageIndex + 1));
+        }
+        current[pageIndex] = zone;
+        zones = current;
+    }
+    
+    private void widen(Zone zone, RecordDecoder row) {
+        for (int c = 0; c < kinds.length; c++) {
+            if (kinds[c] == null) continue;
+            if (c >= row.getFieldCount()) {
+                zone.unknown.set(c); // Value supplied on read, not stored
+                continue;
+            }
+            long key = switch (kinds[c]) {
+                case INT -> row.getInt(c);
+                case LONG -> row.getLong(c);
+                case PREFIX -> prefixKey(row.getFieldAsString(c));
+            };
+            zone.min[c] = Math.min(zone.min[c], key);
+            zone.max[c] = Math.max(zone.max[c], key);
+        }
+    }
+    
+    private Long key(int column, Object value) {
+        return switch (kinds[column]) {
+            case INT, LONG -> value instanceof Number number ? Long.valueOf(number.longValue()) : null;
+            case PREFIX -> prefixKey(value.toString());
+        };
+    }
+    
+    /**
+     * First chars of the string packed into a long, padded with 0, with
+     * the sign bit flipped so keys order like String.compareTo
+     */
+    static long prefixKey(String value) {
+        long key = 0;
+        for (int i = 0; i < PREFIX_CHARS; i++) {
+            key = (key << 16) | (i < value.length() ? value.charAt(i) : 0);
+        }
+        return key ^ Long.MIN_VALUE;
+    }
+    
+    /**
+     * Bounds of one page
+     */
+    private static class Zone {
+        final long[] min;
+        final long[] max;
+        final BitSet unknown = new BitSet(); // columns some row did not store
+        
+        Zone(int columnCount) {
+            this.min = new long[columnCount];
+            this.max = new long[columnCount];
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+        }
+        
+        boolean mayMatch(KeyRange range) {
+            int c = range.column();
+            return unknown.get(c) || (min[c] <= range.high() && max[c] >= range.low());
+        }
+    }
+}
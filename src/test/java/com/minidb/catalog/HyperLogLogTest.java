@@ -0,0 +1,57 @@
+package com.minidb.catalog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesStayWithinAFewPercent() {
+        for (int distinct : new int[] {10, 1_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(i);
+                sketch.add(i); // Repeats change nothing
+            }
+            assertEquals(distinct, sketch.estimate(), distinct * 0.05, distinct + " distinct values");
+        }
+    }
+
+    @Test
+    void mergingMatchesOneSketchOverBothInputs() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            left.add(i);
+            right.add(i + 25_000);
+            both.add(i);
+            both.add(i + 25_000);
+        }
+
+        left.merge(right);
+        assertEquals(both.estimate(), left.estimate());
+        assertThrows(IllegalArgumentException.class, () -> left.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void histogramBucketsHoldEqualShares() {
+        List<Object> sample = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            sample.add(i);
+        }
+        Histogram histogram = Histogram.fromSortedSample(sample, 100_000, 10);
+
+        assertEquals(10, histogram.getBucketCount());
+        assertEquals(10_000, histogram.rowsPerBucket());
+        assertEquals(1.0, histogram.selectivity(null, null), 1e-9);
+        assertEquals(0.5, histogram.selectivity(null, 500), 1e-9);
+        assertEquals(0.15, histogram.selectivity(301, 500), 1e-9); // Half of the partial bucket
+        assertEquals(0.05, histogram.selectivity(1, 1), 1e-9);
+        assertEquals(0.0, histogram.selectivity(2000, null), 1e-9);
+        assertEquals(0, Histogram.fromSortedSample(List.of(), 0, 10).getBucketCount());
+    }
+}
@@ -0,0 +1,73 @@
+package com.minidb.query.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.minidb.query.parser.Lexer;
+import com.minidb.query.parser.SQLParser;
+import com.minidb.query.parser.Statement;
+import com.minidb.storage.table.RecordCursor;
+import org.junit.jupiter.api.Test;
+
+class AlterTableTest {
+    private final Executor executor = new Executor(null);
+
+    @Test
+    void olderRowsReadAddedColumnsAsTheirDefaults() {
+        execute("CREATE TABLE t (id INT PRIMARY KEY, name VARCHAR(20))");
+        execute("INSERT INTO t VALUES (1, 'a')");
+        execute("ALTER TABLE t ADD COLUMN c1 INT DEFAULT 3");
+        execute("INSERT INTO t VALUES (2, 'b', 4)");
+        execute("ALTER TABLE t ADD COLUMN c2 INT DEFAULT 5");
+
+        assertEquals(1, count("SELECT * FROM t WHERE c1 = 3"));
+        assertEquals(2, count("SELECT * FROM t WHERE c2 = 5"));
+    }
+
+    @Test
+    void defaultAfterAColumnWithoutOneIsRejected() {
+        execute("CREATE TABLE t (id INT PRIMARY KEY, name VARCHAR(20))");
+        execute("INSERT INTO t VALUES (1, 'a')");
+        execute("ALTER TABLE t ADD COLUMN c1 INT");
+
+        ExecutionResult result = executor.execute(parse("ALTER TABLE t ADD COLUMN c2 INT DEFAULT 5"), null);
+        assertFalse(result.success());
+        assertTrue(result.message().contains("c2"), result.message());
+        assertEquals(3, executor.getTable("t").getColumnCount());
+
+        execute("ALTER TABLE t ADD COLUMN c2 INT");
+        assertEquals(4, executor.getTable("t").getColumnCount());
+    }
+
+    @Test
+    void emptyTableTakesADefaultAfterAColumnWithoutOne() {
+        execute("CREATE TABLE t (id INT PRIMARY KEY, name VARCHAR(20))");
+        execute("ALTER TABLE t ADD COLUMN c1 INT");
+        execute("ALTER TABLE t ADD COLUMN c2 INT DEFAULT 5");
+        execute("INSERT INTO t VALUES (1, 'a', 2, 5)");
+
+        assertEquals(1, count("SELECT * FROM t WHERE c2 = 5"));
+    }
+
+    private int count(String sql) {
+        ExecutionResult result = execute(sql);
+        if (!result.isStreaming()) return result.resultSet().size();
+        int count = 0;
+        try (RecordCursor rows = result.rows()) {
+            while (rows.hasNext()) {
+                rows.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private ExecutionResult execute(String sql) {
+        ExecutionResult result = executor.execute(parse(sql), null);
+        assertTrue(result.success(), result.message());
+        return result;
+    }
+
+    private static Statement parse(String sql) {
+        return new SQLParser(new Lexer(sql).tokenize()).parse();
+    }
+}
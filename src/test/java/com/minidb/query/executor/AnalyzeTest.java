@@ -0,0 +1,93 @@
+package com.minidb.query.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.minidb.catalog.ColumnStatistics;
+import com.minidb.catalog.TableStatistics;
+import com.minidb.query.parser.Lexer;
+import com.minidb.query.parser.SQLParser;
+import com.minidb.query.parser.Statement;
+import org.junit.jupiter.api.Test;
+
+class AnalyzeTest {
+    private final Executor executor = new Executor(null);
+
+    @Test
+    void analyzeCollectsCountsBoundsNullsAndDistinctValues() {
+        execute("CREATE TABLE t (id INT PRIMARY KEY, name VARCHAR(20), total LONG)");
+        for (int i = 0; i < 2000; i++) {
+            execute("INSERT INTO t VALUES (" + i + ", 'name" + (i % 10) + "', " + i * 3 + ")");
+        }
+        execute("ALTER TABLE t ADD COLUMN extra INT");
+        for (int i = 2000; i < 2500; i++) {
+            execute("INSERT INTO t VALUES (" + i + ", 'name" + (i % 10) + "', " + i * 3 + ", 7)");
+        }
+        assertNull(executor.getStatistics("t"));
+
+        execute("ANALYZE t");
+        TableStatistics stats = executor.getStatistics("t");
+        assertEquals(2500, stats.rowCount());
+        assertEquals(executor.getTable("t").getPageCount(), stats.pageCount());
+
+        ColumnStatistics id = stats.column("id");
+        assertEquals(0, id.min());
+        assertEquals(2499, id.max());
+        assertEquals(0.0, id.nullFraction(), 1e-9);
+        assertEquals(2500, id.distinctCount(), 125);
+        assertEquals(0.5, id.histogram().selectivity(null, 1249), 0.05);
+
+        ColumnStatistics name = stats.column("name");
+        assertEquals("name0", name.min());
+        assertEquals("name9", name.max());
+        assertEquals(10, name.distinctCount());
+
+        assertEquals(7497L, stats.column("total").max());
+        ColumnStatistics extra = stats.column("extra");
+        assertEquals(0.8, extra.nullFraction(), 1e-9);
+        assertEquals(7, extra.min());
+        assertEquals(1, extra.distinctCount());
+    }
+
+    @Test
+    void analyzeSumsPartitionsAndRefreshesOnRerun() {
+        execute("CREATE TABLE p (id INT PRIMARY KEY, name VARCHAR(20)) PARTITION BY RANGE(id) (100)");
+        for (int i = 0; i < 200; i++) {
+            execute("INSERT INTO p VALUES (" + i + ", 'n')");
+        }
+        execute("ANALYZE p");
+        assertEquals(200, executor.getStatistics("p").rowCount());
+        assertEquals(199, executor.getStatistics("p").column("id").max());
+        assertEquals(executor.getPartitionedTable("p").getPageCount(), executor.getStatistics("p").pageCount());
+
+        execute("DELETE FROM p WHERE id >= 150");
+        execute("ANALYZE p");
+        assertEquals(150, executor.getStatistics("p").rowCount());
+        assertEquals(149, executor.getStatistics("p").column("id").max());
+    }
+
+    @Test
+    void analyzeWithoutANameCoversEveryTable() {
+        execute("CREATE TABLE b (id INT PRIMARY KEY)");
+        execute("CREATE TABLE a (id INT PRIMARY KEY)");
+        execute("INSERT INTO a VALUES (1)");
+
+        ExecutionResult result = execute("ANALYZE");
+        assertEquals(2, result.rowsAffected());
+        assertTrue(result.message().indexOf("a:") < result.message().indexOf("b:"), result.message());
+        assertEquals(1, executor.getStatistics("a").rowCount());
+        assertEquals(0, executor.getStatistics("b").rowCount());
+        assertNull(executor.getStatistics("b").column("id").min());
+
+        assertFalse(executor.execute(parse("ANALYZE missing"), null).success());
+    }
+
+    private ExecutionResult execute(String sql) {
+        ExecutionResult result = executor.execute(parse(sql), null);
+        assertTrue(result.success(), result.message());
+        return result;
+    }
+
+    private static Statement parse(String sql) {
+        return new SQLParser(new Lexer(sql).tokenize()).parse();
+    }
+}
@@ -0,0 +1,84 @@
+package com.minidb.query.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.minidb.query.parser.Lexer;
+import com.minidb.query.parser.SQLParser;
+import com.minidb.query.parser.Statement;
+import com.minidb.storage.table.PartitionedTable;
+import com.minidb.storage.table.Record;
+import com.minidb.storage.table.Table;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CopyTest {
+    private final Executor executor = new Executor(null);
+
+    @Test
+    void badLineIsReportedAndEarlierRowsStayIndexed() throws IOException {
+        execute("CREATE TABLE c (id INT PRIMARY KEY, name VARCHAR(20))");
+        Path file = Files.createTempFile("copy", ".csv");
+        try {
+            Files.write(file, List.of("id,name", "1,a", "2,b", "oops,c", "4,d"));
+            ExecutionResult result = executor.execute(parse("COPY c FROM '" + file + "' WITH (header = true)"), null);
+
+            assertFalse(result.success());
+            assertTrue(result.message().startsWith("Line 4: "), result.message());
+            assertEquals(2, result.rowsAffected());
+        } finally {
+            Files.delete(file);
+        }
+
+        Table table = executor.getTable("c");
+        assertEquals(2, table.getRecordCount());
+        assertNotNull(table.searchByPrimaryKey(1));
+        assertNotNull(table.searchByPrimaryKey(2));
+        assertNull(table.searchByPrimaryKey(4));
+    }
+
+    @Test
+    void partitionsAreEachLoadedInOnePass() throws IOException {
+        execute("CREATE TABLE plain (id INT PRIMARY KEY, name VARCHAR(20))");
+        execute("CREATE TABLE split (id INT PRIMARY KEY, name VARCHAR(20)) PARTITION BY RANGE(id) (25000)");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            lines.add(i + ",name" + i);
+        }
+        Path file = Files.createTempFile("copy", ".csv");
+        try {
+            Files.write(file, lines);
+            execute("COPY plain FROM '" + file + "'");
+            execute("COPY split FROM '" + file + "'");
+        } finally {
+            Files.delete(file);
+        }
+
+        PartitionedTable split = executor.getPartitionedTable("split");
+        assertEquals(50_000, split.getRecordCount());
+        // Batched loads left a part-filled page behind every batch
+        assertTrue(split.getPageCount() <= executor.getTable("plain").getPageCount() + 1,
+                split.getPageCount() + " pages");
+        for (int i = 0; i < 50_000; i += 997) {
+            assertEquals("name" + i, split.partitionFor(row(i)).searchByPrimaryKey(i).getFieldAsString(1));
+        }
+    }
+
+    private static Record row(int id) {
+        Record record = new Record();
+        record.addField(id);
+        return record;
+    }
+
+    private void execute(String sql) {
+        ExecutionResult result = executor.execute(parse(sql), null);
+        assertTrue(result.success(), result.message());
+    }
+
+    private static Statement parse(String sql) {
+        return new SQLParser(new Lexer(sql).tokenize()).parse();
+    }
+}
@@ -0,0 +1,64 @@
+package com.minidb.query.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.minidb.query.parser.Lexer;
+import com.minidb.query.parser.SQLParser;
+import com.minidb.query.parser.Statement;
+import com.minidb.storage.table.Record;
+import com.minidb.storage.table.Table;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PartitionedUpdateTest {
+    private final Executor executor = new Executor(null);
+
+    @BeforeEach
+    void createTable() {
+        execute("CREATE TABLE pt (id INT, name VARCHAR(20)) PARTITION BY RANGE(id) (100, 200)");
+        execute("CREATE UNIQUE INDEX pt_id ON pt(id)");
+        execute("INSERT INTO pt VALUES (50, 'a')");
+        execute("INSERT INTO pt VALUES (250, 'b')");
+    }
+
+    @Test
+    void rowMovesToItsNewPartition() {
+        assertEquals(1, execute("UPDATE pt SET id = 150 WHERE id = 50").rowsAffected());
+
+        assertEquals(List.of(), ids(0));
+        assertEquals(List.of(150), ids(1));
+        assertEquals(List.of(250), ids(2));
+    }
+
+    @Test
+    void moveBreakingAUniqueIndexKeepsTheRow() {
+        ExecutionResult result = executor.execute(parse("UPDATE pt SET id = 250 WHERE id = 50"), null);
+
+        assertFalse(result.success());
+        assertEquals(List.of(50), ids(0));
+        assertEquals(List.of(250), ids(2));
+        assertEquals(2, executor.getPartitionedTable("pt").getRecordCount());
+    }
+
+    private List<Integer> ids(int partition) {
+        Table table = executor.getPartitionedTable("pt").getPartitions().get(partition);
+        List<Integer> ids = new ArrayList<>();
+        for (int recordId : table.findRecordIds(record -> true)) {
+            Record record = table.getRecord(recordId);
+            ids.add(record.getFieldAsInt(0));
+        }
+        return ids;
+    }
+
+    private ExecutionResult execute(String sql) {
+        ExecutionResult result = executor.execute(parse(sql), null);
+        assertTrue(result.success(), result.message());
+        return result;
+    }
+
+    private static Statement parse(String sql) {
+        return new SQLParser(new Lexer(sql).tokenize()).parse();
+    }
+}
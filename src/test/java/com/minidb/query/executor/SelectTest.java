@@ -0,0 +1,57 @@
+package com.minidb.query.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.minidb.query.parser.Lexer;
+import com.minidb.query.parser.SQLParser;
+import com.minidb.query.parser.Statement;
+import com.minidb.storage.table.Record;
+import com.minidb.storage.table.RecordCursor;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SelectTest {
+    private final Executor executor = new Executor(null);
+
+    @BeforeEach
+    void createTable() {
+        execute("CREATE TABLE t (id INT PRIMARY KEY, name VARCHAR(20), total LONG)");
+        execute("INSERT INTO t VALUES (1, 'a', 10)");
+        execute("INSERT INTO t VALUES (2, 'b', 20)");
+    }
+
+    @Test
+    void mistypedLiteralFailsBeforeAnyRowIsRead() {
+        for (String where : List.of("total = 'abc'", "id BETWEEN 1 AND 'z'", "name = 'a' OR total > 'x'")) {
+            ExecutionResult result = executor.execute(parse("SELECT * FROM t WHERE " + where), null);
+            assertFalse(result.success(), where);
+            assertFalse(result.isStreaming(), where);
+        }
+        ExecutionResult result = executor.execute(parse("SELECT * FROM t WHERE name = 1"), null);
+        assertTrue(result.success(), "text columns compare with any literal");
+    }
+
+    @Test
+    void unknownColumnFailsBeforeAnyRowIsRead() {
+        assertFalse(executor.execute(parse("SELECT * FROM t WHERE nope = 1"), null).success());
+        assertFalse(executor.execute(parse("SELECT * FROM t ORDER BY nope"), null).success());
+    }
+
+    @Test
+    void printReportsAnErrorWhileReading() {
+        RecordCursor failing = RecordCursor.of(List.of(new Record(), new Record())).map(record -> {
+            throw new IllegalStateException("broken page");
+        });
+        assertDoesNotThrow(() -> ExecutionResult.streaming(failing).print());
+    }
+
+    private void execute(String sql) {
+        ExecutionResult result = executor.execute(parse(sql), null);
+        assertTrue(result.success(), result.message());
+    }
+
+    private static Statement parse(String sql) {
+        return new SQLParser(new Lexer(sql).tokenize()).parse();
+    }
+}
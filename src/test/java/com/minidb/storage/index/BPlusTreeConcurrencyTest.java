@@ -0,0 +1,145 @@
+package com.minidb.storage.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class BPlusTreeConcurrencyTest {
+    private static final int KEYS = 100_000;
+    private static final int STABLE_STEP = 10; // Keys divisible by it are never written
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(6);
+
+    @AfterEach
+    void shutdown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    @Timeout(120)
+    void optimisticReadersSeeEveryStableKeyWhileNodesSplitAndMerge() throws Exception {
+        BPlusTree tree = new BPlusTree(1, 4);
+        for (int key = 0; key < KEYS; key += STABLE_STEP) {
+            tree.insert(key, value(key));
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            Random random = new Random(w);
+            writers.add(threads.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    int key = unstableKey(random);
+                    if (random.nextBoolean()) {
+                        tree.insert(key, value(key));
+                    } else {
+                        tree.delete(key);
+                    }
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Random random = new Random(100 + r);
+            readers.add(threads.submit(() -> {
+                while (!stop.get()) {
+                    int key = random.nextInt(KEYS / STABLE_STEP) * STABLE_STEP;
+                    assertEquals(key, valueOf(tree.search(key)));
+                    assertStableRange(tree, key, Math.min(key + 2000, KEYS - STABLE_STEP));
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            stop.set(true);
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        assertStableRange(tree, 0, KEYS - STABLE_STEP);
+    }
+
+    @Test
+    @Timeout(120)
+    void crabbingWritersOnDisjointKeysLoseNothing() throws Exception {
+        BPlusTree tree = new BPlusTree(1, 4);
+        int writers = 4;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int owner = w;
+            tasks.add(() -> {
+                // Interleaved keys, so writers share leaves and split and merge them together
+                for (int key = owner; key < KEYS; key += writers) {
+                    tree.insert(key, value(key));
+                }
+                for (int key = owner; key < KEYS; key += writers) {
+                    if (key % 3 != 0) {
+                        assertTrue(tree.delete(key));
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : threads.invokeAll(tasks)) {
+            result.get();
+        }
+
+        Iterator<byte[]> values = tree.rangeIterator(null, null);
+        for (int key = 0; key < KEYS; key += 3) {
+            assertTrue(values.hasNext());
+            assertEquals(key, valueOf(values.next()));
+        }
+        assertFalse(values.hasNext());
+    }
+
+    /**
+     * Every stable key of [low, high] is seen in order, among whatever
+     * unstable keys the writers have in place
+     */
+    private static void assertStableRange(BPlusTree tree, int low, int high) {
+        int expected = low;
+        Iterator<byte[]> values = tree.rangeIterator(low, high);
+        int previous = Integer.MIN_VALUE;
+        while (values.hasNext()) {
+            int key = valueOf(values.next());
+            assertTrue(key > previous, key + " after " + previous);
+            previous = key;
+            if (key % STABLE_STEP == 0) {
+                assertEquals(expected, key);
+                expected += STABLE_STEP;
+            }
+        }
+        assertEquals(high + STABLE_STEP, expected);
+    }
+
+    private static int unstableKey(Random random) {
+        int key = random.nextInt(KEYS);
+        return key % STABLE_STEP == 0 ? key + 1 : key;
+    }
+
+    private static byte[] value(int key) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(key).array();
+    }
+
+    private static int valueOf(byte[] value) {
+        return ByteBuffer.wrap(value).getInt();
+    }
+}
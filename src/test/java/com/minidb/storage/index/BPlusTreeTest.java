@@ -0,0 +1,268 @@
+package com.minidb.storage.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class BPlusTreeTest {
+
+    @Test
+    void randomChurnMatchesATreeMap() {
+        for (int fanout : new int[] {4, 9, 64, BPlusTree.MAX_FANOUT}) {
+            Random random = new Random(fanout);
+            BPlusTree tree = new BPlusTree(1, fanout);
+            TreeMap<byte[], byte[]> expected = new TreeMap<>(IndexKey::compare);
+            for (int i = 0; i < 30_000; i++) {
+                byte[] key = new IndexKey.Builder()
+                        .addString("k".repeat(random.nextInt(random.nextInt(20) == 0 ? 300 : 10)))
+                        .addInt(random.nextInt(2000)).build();
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key) != null, tree.delete(key), "fanout " + fanout);
+                } else {
+                    // Some values go to overflow pages
+                    byte[] value = new byte[random.nextInt(50) == 0 ? 3000 : random.nextInt(20)];
+                    random.nextBytes(value);
+                    tree.insert(key, value);
+                    expected.put(key, value);
+                }
+                if (i % 10_000 == 9_999) {
+                    assertSameEntries(expected, tree);
+                }
+            }
+
+            for (byte[] key : new ArrayList<>(expected.keySet())) {
+                assertTrue(tree.delete(key));
+            }
+            assertFalse(tree.rangeIterator(null, null).hasNext());
+        }
+    }
+
+    @Test
+    void deletingEveryCompositeKeyShrinksTheTree() {
+        Random random = new Random(2);
+        BPlusTree tree = new BPlusTree(1, 4);
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // Now and then a long first column, so splits balanced by bytes are lopsided by count
+            String name = "x".repeat(random.nextInt(random.nextInt(10) == 0 ? 400 : 20));
+            byte[] key = new IndexKey.Builder().addString(name + random.nextInt(1000))
+                    .addLong(random.nextLong()).addString("t" + random.nextInt(100)).build();
+            keys.add(key);
+            tree.insert(key, new byte[] {1, 2, 3, 4});
+        }
+
+        Collections.shuffle(keys, random);
+        for (byte[] key : keys) {
+            assertTrue(tree.delete(key));
+        }
+        assertFalse(tree.rangeIterator(null, null).hasNext());
+        assertEquals(1, tree.getHeight());
+    }
+
+    @Test
+    void cursorStopsAtItsBoundsBothWays() {
+        BPlusTree tree = evenKeys(1000);
+
+        BPlusTree.Cursor cursor = tree.cursor(IndexKey.ofInt(10), true, IndexKey.ofInt(20), false);
+        assertEquals(List.of(10, 12, 14, 16, 18), forward(cursor));
+        assertFalse(cursor.next());
+        assertEquals(List.of(18, 16, 14, 12, 10), backward(cursor));
+        assertFalse(cursor.prev());
+        assertEquals(10, valueOf(cursor.value()));
+
+        cursor = tree.cursor(IndexKey.ofInt(10), false, IndexKey.ofInt(20), true);
+        assertEquals(List.of(12, 14, 16, 18, 20), forward(cursor));
+        cursor = tree.cursor(IndexKey.ofInt(11), true, IndexKey.ofInt(19), true);
+        assertEquals(List.of(18, 16, 14, 12), backward(cursor));
+        cursor = tree.cursor(IndexKey.ofInt(20), true, IndexKey.ofInt(10), true);
+        assertFalse(cursor.next());
+        assertFalse(cursor.prev());
+    }
+
+    @Test
+    void cursorSeeksStayInRange() {
+        BPlusTree tree = evenKeys(1000);
+        BPlusTree.Cursor cursor = tree.cursor(IndexKey.ofInt(100), true, IndexKey.ofInt(200), true);
+        assertThrows(IllegalStateException.class, cursor::key);
+
+        cursor.seek(IndexKey.ofInt(0));
+        assertFalse(cursor.prev());
+        assertTrue(cursor.next());
+        assertEquals(100, valueOf(cursor.value()));
+
+        cursor.seek(IndexKey.ofInt(151));
+        assertTrue(cursor.prev());
+        assertEquals(150, valueOf(cursor.value()));
+
+        cursor.seekToLast();
+        assertTrue(cursor.prev());
+        assertEquals(200, valueOf(cursor.value()));
+        assertTrue(cursor.next()); // Back over the same entry
+        assertEquals(200, valueOf(cursor.value()));
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void cursorMatchesRandomSubMaps() {
+        Random random = new Random(49);
+        BPlusTree tree = new BPlusTree(1, 4);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(8000);
+            tree.insert(IndexKey.ofInt(key), value(key));
+            expected.put(key, key);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            int low = random.nextInt(8200) - 100;
+            int high = low + random.nextInt(500);
+            boolean lowInclusive = random.nextBoolean();
+            boolean highInclusive = random.nextBoolean();
+            NavigableMap<Integer, Integer> range = expected.subMap(low, lowInclusive, high, highInclusive);
+
+            BPlusTree.Cursor cursor = tree.cursor(IndexKey.ofInt(low), lowInclusive,
+                    IndexKey.ofInt(high), highInclusive);
+            List<Integer> keys = new ArrayList<>(range.keySet());
+            assertEquals(keys, forward(cursor));
+            Collections.reverse(keys);
+            assertEquals(keys, backward(cursor));
+        }
+    }
+
+    private static BPlusTree evenKeys(int count) {
+        BPlusTree tree = new BPlusTree(1, 4);
+        for (int key = 0; key < count; key += 2) {
+            tree.insert(IndexKey.ofInt(key), value(key));
+        }
+        return tree;
+    }
+
+    @Test
+    void keysSharingALongPrefixStoreItOncePerLeaf() {
+        BPlusTree tree = new BPlusTree(1);
+        int keys = 20_000;
+        int entryBytes = 0;
+        for (int i = 0; i < keys; i++) {
+            byte[] key = url(i);
+            entryBytes += key.length + Integer.BYTES + 6; // Key, value, lengths and directory slot
+            tree.insert(key, value(i));
+        }
+
+        // Untruncated entries alone would fill this many pages
+        assertTrue(tree.getPageCount() < entryBytes / 4096, tree.getPageCount() + " pages");
+        BPlusTree.Cursor cursor = tree.cursor(url(12_345), true, null, false);
+        assertTrue(cursor.next());
+        assertArrayEquals(url(12_345), cursor.key());
+        assertEquals(12_345, valueOf(cursor.value()));
+        for (int i = 0; i < keys; i += 7) {
+            assertEquals(i, valueOf(tree.search(url(i))));
+        }
+
+        // Keys without the shared prefix shorten it where they land
+        tree.insert(new IndexKey.Builder().addString("https://a").build(), value(-1));
+        tree.insert(new IndexKey.Builder().addString("https://example.com/users/zz").build(), value(-2));
+        assertEquals(-1, valueOf(tree.search(new IndexKey.Builder().addString("https://a").build())));
+        assertEquals(-2, valueOf(tree.search(new IndexKey.Builder().addString("https://example.com/users/zz").build())));
+        assertEquals(12_345, valueOf(tree.search(url(12_345))));
+    }
+
+    @Test
+    void separatorsKeepOnlyTheBytesThatDistinguishChildren() {
+        BPlusTree tree = new BPlusTree(1);
+        String tail = "t".repeat(400);
+        int keys = 20_000;
+        for (int i = 0; i < keys; i++) {
+            tree.insert(new IndexKey.Builder().addInt(i).addString(tail).build(), value(i));
+        }
+
+        // Whole keys as separators would fit ten per internal node
+        assertTrue(tree.getHeight() <= 3, "height " + tree.getHeight());
+        Iterator<byte[]> values = tree.rangeIterator(null, null);
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i, valueOf(values.next()));
+        }
+        assertFalse(values.hasNext());
+
+        for (int i = 0; i < keys; i += 2) {
+            assertTrue(tree.delete(new IndexKey.Builder().addInt(i).addString(tail).build()));
+        }
+        for (int i = 1; i < keys; i += 2) {
+            assertEquals(i, valueOf(tree.search(new IndexKey.Builder().addInt(i).addString(tail).build())));
+        }
+    }
+
+    @Test
+    void bulkLoadedLeavesFactorOutTheirPrefix() {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            keys.add(url(i));
+            values.add(value(i));
+        }
+        BPlusTree loaded = new BPlusTree(1);
+        loaded.bulkLoad(keys, values);
+        BPlusTree inserted = new BPlusTree(2);
+        for (int i = 0; i < keys.size(); i++) {
+            inserted.insert(keys.get(i), values.get(i));
+        }
+
+        assertTrue(loaded.getPageCount() <= inserted.getPageCount(),
+                loaded.getPageCount() + " vs " + inserted.getPageCount());
+        for (int i = 0; i < keys.size(); i += 13) {
+            assertEquals(i, valueOf(loaded.search(url(i))));
+        }
+    }
+
+    private static void assertSameEntries(TreeMap<byte[], byte[]> expected, BPlusTree tree) {
+        Iterator<byte[]> values = tree.rangeIterator(null, null);
+        for (Map.Entry<byte[], byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), tree.search(entry.getKey()));
+            assertTrue(values.hasNext());
+            assertArrayEquals(entry.getValue(), values.next());
+        }
+        assertFalse(values.hasNext());
+
+        Iterator<byte[]> descending = tree.rangeIterator(null, null, true);
+        for (byte[] value : expected.descendingMap().values()) {
+            assertArrayEquals(value, descending.next());
+        }
+        assertFalse(descending.hasNext());
+    }
+
+    private static List<Integer> forward(BPlusTree.Cursor cursor) {
+        List<Integer> keys = new ArrayList<>();
+        while (cursor.next()) {
+            keys.add(valueOf(cursor.value()));
+        }
+        return keys;
+    }
+
+    private static List<Integer> backward(BPlusTree.Cursor cursor) {
+        List<Integer> keys = new ArrayList<>();
+        while (cursor.prev()) {
+            keys.add(valueOf(cursor.value()));
+        }
+        return keys;
+    }
+
+    private static byte[] url(int i) {
+        return new IndexKey.Builder().addString(String.format("https://example.com/users/profile/%06d", i)).build();
+    }
+
+    private static byte[] value(int key) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(key).array();
+    }
+
+    private static int valueOf(byte[] value) {
+        return ByteBuffer.wrap(value).getInt();
+    }
+}
@@ -0,0 +1,114 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+
+class DictionaryPageTest {
+    private static final String[] COLORS = {"crimson-red", "forest-green", "midnight-blue"};
+
+    @Test
+    void repeatedValuesBecomeDictionaryCodes() {
+        DictionaryPage page = new DictionaryPage(nameColumn());
+        SlottedPage plain = new SlottedPage();
+        int rows = 0;
+        while (page.insert(TableTest.row(rows, COLORS[rows % 3])) != -1) {
+            rows++;
+        }
+        int plainRows = 0;
+        while (plain.insert(TableTest.row(plainRows, COLORS[plainRows % 3])) != -1) {
+            plainRows++;
+        }
+
+        assertEquals(3, page.getDictionarySize());
+        assertTrue(rows > plainRows, rows + " rows vs " + plainRows);
+        for (int i = 0; i < rows; i++) {
+            Record record = page.read(i, null, null);
+            assertEquals(i, record.getFieldAsInt(0));
+            assertEquals(COLORS[i % 3], record.getFieldAsString(1));
+        }
+    }
+
+    @Test
+    void sortedValuesShareAPrefixWithTheLatestEntry() {
+        DictionaryPage page = new DictionaryPage(nameColumn());
+        SlottedPage plain = new SlottedPage();
+        int rows = 0;
+        while (page.insert(TableTest.row(rows, email(rows))) != -1) {
+            rows++;
+        }
+        int plainRows = 0;
+        while (plain.insert(TableTest.row(plainRows, email(plainRows))) != -1) {
+            plainRows++;
+        }
+
+        assertTrue(rows > plainRows, rows + " rows vs " + plainRows);
+        assertTrue(page.getDictionarySize() < rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(email(i), page.read(i, null, null).getFieldAsString(1));
+        }
+    }
+
+    @Test
+    void decoderComparesCompressedFieldsInPlace() {
+        DictionaryPage page = new DictionaryPage(nameColumn());
+        for (int i = 0; i < 20; i++) {
+            page.insert(TableTest.row(i, i < 10 ? COLORS[i % 3] : email(i)));
+        }
+
+        RecordDecoder decoder = new RecordDecoder();
+        assertTrue(page.read(4, null, decoder, null));
+        assertTrue(decoder.fieldEquals(1, "forest-green"));
+        assertEquals(0, decoder.compareString(1, "forest-green"));
+        assertTrue(decoder.compareString(1, "forest") > 0);
+
+        assertTrue(page.read(15, null, decoder, null));
+        assertEquals(email(15), decoder.getFieldAsString(1));
+        assertTrue(decoder.compareString(1, email(16)) < 0);
+        assertArrayEquals(email(15).getBytes(StandardCharsets.UTF_8), decoder.getField(1));
+    }
+
+    @Test
+    void updatesDeletesAndPageBytesKeepTheDictionary() {
+        DictionaryPage page = new DictionaryPage(nameColumn());
+        for (int i = 0; i < 6; i++) {
+            page.insert(TableTest.row(i, COLORS[i % 3]));
+        }
+        assertTrue(page.update(1, TableTest.row(1, "sunset-orange")));
+        page.delete(2);
+
+        DictionaryPage copy = new DictionaryPage(page.toBytes().clone(), nameColumn());
+        assertEquals(page.getDictionarySize(), copy.getDictionarySize());
+        assertEquals("sunset-orange", copy.read(1, null, null).getFieldAsString(1));
+        assertNull(copy.read(2, null, null));
+        assertEquals(COLORS[2], copy.read(5, null, null).getFieldAsString(1));
+    }
+
+    @Test
+    void compressedTableUsesFewerPages() {
+        Table plain = new Table("p", true, StorageMode.ROW, 2);
+        Table compressed = new Table("c", true, StorageMode.ROW, 2, nameColumn());
+        for (int i = 0; i < 5000; i++) {
+            plain.insertRecord(TableTest.row(i, COLORS[i % 3]));
+            compressed.insertRecord(TableTest.row(i, COLORS[i % 3]));
+        }
+
+        assertTrue(compressed.isCompressed());
+        assertTrue(compressed.getPageCount() < plain.getPageCount(),
+                compressed.getPageCount() + " pages vs " + plain.getPageCount());
+        assertEquals(COLORS[4321 % 3], compressed.searchByPrimaryKey(4321).getFieldAsString(1));
+        assertEquals(1667, compressed.findRecordIdsInPlace(null, row -> row.fieldEquals(1, COLORS[0])).size());
+    }
+
+    private static BitSet nameColumn() {
+        BitSet columns = new BitSet();
+        columns.set(1);
+        return columns;
+    }
+
+    private static String email(int i) {
+        return String.format("customer%06d@example.com", i);
+    }
+}
@@ -0,0 +1,105 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IndexOrganizedTableTest {
+
+    @Test
+    void rowsLiveInTheIndexUnderTheirKey() {
+        Table table = indexOrganized();
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(i, table.insertRecord(TableTest.row(i, "name" + i)));
+        }
+        assertEquals(100, table.insertRecord(TableTest.row(100, "b".repeat(5000))));
+
+        assertEquals(101, table.getRecordCount());
+        assertEquals("name42", table.getRecord(42).getFieldAsString(1));
+        assertEquals("name42", table.searchByPrimaryKey(42).getFieldAsString(1));
+        assertEquals("b".repeat(5000), table.searchByPrimaryKey(100).getFieldAsString(1));
+        assertNull(table.searchByPrimaryKey(500));
+
+        List<Record> range = table.rangeScanByPrimaryKey(10, 19);
+        assertEquals(10, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertEquals(10 + i, range.get(i).getFieldAsInt(0));
+        }
+        try (IndexRangeScan scan = table.indexRangeScan(97, 99)) {
+            assertTrue(scan.hasNext());
+            assertEquals(97, scan.next().getFieldAsInt(0));
+            assertEquals(97, scan.getRecordId());
+        }
+        List<Record> all = table.fullScan();
+        assertEquals(101, all.size());
+        assertEquals(0, all.get(0).getFieldAsInt(0));
+        assertEquals(100, all.get(100).getFieldAsInt(0));
+    }
+
+    @Test
+    void aRepeatedKeyReplacesTheRow() {
+        Table table = indexOrganized();
+        table.insertRecord(TableTest.row(1, "first"));
+        table.insertRecord(TableTest.row(1, "second"));
+
+        assertEquals(1, table.getRecordCount());
+        assertEquals("second", table.searchByPrimaryKey(1).getFieldAsString(1));
+    }
+
+    @Test
+    void updatesMayMoveARowToAnotherKey() {
+        Table table = indexOrganized();
+        table.insertRecord(TableTest.row(1, "a"));
+        table.insertRecord(TableTest.row(2, "b"));
+
+        assertTrue(table.updateRecord(1, TableTest.row(1, "a2")));
+        assertEquals("a2", table.searchByPrimaryKey(1).getFieldAsString(1));
+        assertTrue(table.updateRecord(1, TableTest.row(5, "moved")));
+        assertNull(table.searchByPrimaryKey(1));
+        assertEquals("moved", table.getRecord(5).getFieldAsString(1));
+        assertEquals(2, table.getRecordCount());
+        assertFalse(table.updateRecord(1, TableTest.row(1, "gone")));
+
+        assertTrue(table.deleteRecord(5));
+        assertFalse(table.deleteRecord(5));
+        assertEquals(1, table.getRecordCount());
+    }
+
+    @Test
+    void bulkLoadSortsRowsAndKeepsTheLastDuplicate() {
+        Table table = indexOrganized();
+        List<Record> rows = new ArrayList<>();
+        for (int i = 999; i >= 0; i--) {
+            rows.add(TableTest.row(i, "v" + i));
+        }
+        rows.add(TableTest.row(7, "later"));
+
+        assertEquals(1001, table.bulkLoad(rows.iterator()));
+        assertEquals(1000, table.getRecordCount());
+        assertEquals("later", table.searchByPrimaryKey(7).getFieldAsString(1));
+        assertEquals(1000, table.rangeScanByPrimaryKey(0, 999).size());
+
+        // Into a table with rows: each goes in like an insert
+        RecordEncoder encoder = new RecordEncoder();
+        List<RecordEncoder> more = List.of(encoder);
+        assertEquals(1, table.bulkLoadEncoded(more.stream()
+                .map(row -> row.reset().writeInt(2000).writeString("encoded")).iterator()));
+        assertEquals("encoded", table.searchByPrimaryKey(2000).getFieldAsString(1));
+        assertEquals(1001, table.getRecordCount());
+    }
+
+    @Test
+    void onlyASingleLeadingIntKeyCanOrganizeATable() {
+        assertThrows(IllegalArgumentException.class, () -> new Table("i", null,
+                StorageMode.INDEX_ORGANIZED, 2, new BitSet(), null));
+        assertThrows(IllegalArgumentException.class, () -> new Table("i", KeyEncoder.ofInt(1),
+                StorageMode.INDEX_ORGANIZED, 2, new BitSet(), null));
+    }
+
+    private static Table indexOrganized() {
+        return new Table("i", KeyEncoder.ofInt(0), StorageMode.INDEX_ORGANIZED, 2, new BitSet(), null);
+    }
+}
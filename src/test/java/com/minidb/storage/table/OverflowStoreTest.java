@@ -0,0 +1,78 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class OverflowStoreTest {
+
+    @Test
+    void valuesSpanChainsAndFreedPagesAreReused() {
+        OverflowStore store = new OverflowStore();
+        byte[] large = new byte[10_000];
+        Arrays.fill(large, (byte) 7);
+        large[9_999] = 9;
+
+        OverflowStore.OverflowPointer pointer = store.write(large);
+        assertEquals(3, store.getPageCount());
+        assertArrayEquals(large, store.read(pointer));
+        assertEquals(pointer, OverflowStore.OverflowPointer.fromBytes(pointer.toBytes()));
+
+        store.free(pointer);
+        assertEquals(0, store.getPageCount());
+        OverflowStore.OverflowPointer small = store.write(new byte[] {1, 2, 3});
+        assertEquals(1, store.getPageCount());
+        assertArrayEquals(new byte[] {1, 2, 3}, store.read(small));
+    }
+
+    @Test
+    void largeValuesRoundTripThroughATable() {
+        Table table = new Table("o", true);
+        String big = "b".repeat(20_000);
+        int recordId = table.insertRecord(TableTest.row(1, big));
+        table.insertRecord(TableTest.row(2, "small"));
+
+        assertTrue(table.getOverflowPageCount() >= 5);
+        assertEquals(big, table.getRecord(recordId).getFieldAsString(1));
+        assertEquals(big, table.searchByPrimaryKey(1).getFieldAsString(1));
+        assertEquals(1, table.findRecordIdsInPlace(null, row -> row.fieldEquals(1, big)).size());
+    }
+
+    @Test
+    void deletesAndUpdatesFreeOverflowPages() {
+        Table table = new Table("o", true);
+        int recordId = table.insertRecord(TableTest.row(1, "d".repeat(9_000)));
+        int pages = table.getOverflowPageCount();
+        assertTrue(pages > 0);
+
+        // Same size again: the old chain is freed and its pages reused
+        assertTrue(table.updateRecord(recordId, TableTest.row(1, "e".repeat(9_000))));
+        assertEquals(pages, table.getOverflowPageCount());
+
+        assertTrue(table.updateRecord(recordId, TableTest.row(1, "short")));
+        assertEquals(0, table.getOverflowPageCount());
+        assertEquals("short", table.getRecord(recordId).getFieldAsString(1));
+
+        assertTrue(table.updateRecord(recordId, TableTest.row(1, "f".repeat(9_000))));
+        assertTrue(table.deleteRecord(recordId));
+        assertEquals(0, table.getOverflowPageCount());
+    }
+
+    @Test
+    void manyMidSizedFieldsMoveOutUntilTheRowFits() {
+        Table table = new Table("o", true);
+        Record record = new Record();
+        record.addField(1);
+        for (int i = 0; i < 6; i++) {
+            record.addField(String.valueOf((char) ('a' + i)).repeat(900)); // Each under the threshold
+        }
+        int recordId = table.insertRecord(record);
+
+        assertTrue(table.getOverflowPageCount() > 0);
+        Record read = table.getRecord(recordId);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(String.valueOf((char) ('a' + i)).repeat(900), read.getFieldAsString(i + 1));
+        }
+    }
+}
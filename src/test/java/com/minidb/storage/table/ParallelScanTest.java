@@ -0,0 +1,52 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ParallelScanTest {
+
+    @Test
+    void parallelCursorStreamsMatchesInPageOrder() {
+        Table table = new Table("t", true);
+        for (int i = 0; i < 20000; i++) {
+            Record record = new Record();
+            record.addField(i);
+            record.addField("row-" + i);
+            table.insertRecord(record);
+        }
+        assertTrue(table.getPageCount() >= 64, "spans several ranges of pages");
+
+        List<Integer> serial = ids(table.scan(null, row -> row.getInt(0) % 3 == 0));
+        List<Integer> parallel = ids(table.parallelCursor(null, row -> row.getInt(0) % 3 == 0, null));
+        assertEquals(serial, parallel);
+        assertEquals(6667, parallel.size());
+    }
+
+    @Test
+    void closingEarlyStopsTheScan() {
+        Table table = new Table("t", false);
+        for (int i = 0; i < 20000; i++) {
+            Record record = new Record();
+            record.addField(i);
+            table.insertRecord(record);
+        }
+
+        RecordCursor cursor = table.parallelCursor(null, row -> true, null);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, cursor.next().getFieldAsInt(0));
+        }
+        cursor.close();
+        assertFalse(cursor.hasNext());
+    }
+
+    private static List<Integer> ids(RecordCursor cursor) {
+        List<Integer> ids = new ArrayList<>();
+        try (cursor) {
+            cursor.forEachRemaining(record -> ids.add(record.getFieldAsInt(0)));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,83 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.minidb.query.executor.ExecutionResult;
+import com.minidb.query.executor.Executor;
+import com.minidb.query.parser.Lexer;
+import com.minidb.query.parser.SQLParser;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class PaxPageTest {
+
+    @Test
+    void pageStopsAtTheRowsARecordIdCanAddress() {
+        PaxPage page = new PaxPage(1);
+        Record empty = new Record();
+        empty.addField("");
+
+        int inserted = 0;
+        while (page.insert(empty) != -1) {
+            inserted++;
+        }
+        assertEquals(Table.MAX_SLOTS, inserted);
+        assertTrue(page.getFreeSpace() > 0, "the page ran out of record IDs, not bytes");
+
+        page.delete(7);
+        assertEquals(7, page.insert(empty), "deleted rows are still reused");
+    }
+
+    @Test
+    void encodedRowsAreStoredLikeRecords() {
+        PaxPage fromRecords = new PaxPage(4);
+        PaxPage fromBytes = new PaxPage(4);
+        RecordEncoder encoder = new RecordEncoder();
+        for (int i = 0; i < 50; i++) {
+            Record record = new Record();
+            record.addField(i);
+            record.addField("name-" + i);
+            record.addField((long) i * 1000);
+            fromRecords.insert(record);
+
+            encoder.reset().writeInt(i).writeString("name-" + i).writeLong((long) i * 1000);
+            byte[] encoded = Arrays.copyOf(encoder.buffer(), encoder.length());
+            fromBytes.insert(encoded, 0, encoded.length);
+        }
+        assertArrayEquals(fromRecords.toBytes(), fromBytes.toBytes());
+
+        RecordDecoder decoder = new RecordDecoder();
+        assertTrue(fromBytes.read(7, new int[] {1}, decoder, null));
+        assertEquals(3, decoder.getFieldCount(), "the fourth column is missing");
+        assertEquals("name-7", decoder.getFieldAsString(1));
+        assertTrue(fromBytes.read(8, null, decoder, null));
+        assertEquals(8000L, decoder.getLong(2));
+    }
+
+    @Test
+    void everyRowOfSmallColumnarRowsGetsItsOwnRecordId() {
+        Executor executor = new Executor(null);
+        execute(executor, "CREATE TABLE p (s VARCHAR(10)) WITH (storage = columnar)");
+        for (int i = 0; i < 3000; i++) {
+            execute(executor, "INSERT INTO p VALUES ('')");
+        }
+
+        Table table = executor.getTable("p");
+        List<Integer> recordIds = table.findRecordIds(record -> true);
+        Set<Integer> distinct = new HashSet<>(recordIds);
+        assertEquals(3000, recordIds.size());
+        assertEquals(3000, distinct.size());
+
+        assertEquals(3000, execute(executor, "UPDATE p SET s = 'x' WHERE s = ''").rowsAffected());
+        assertEquals(0, execute(executor, "DELETE FROM p WHERE s = ''").rowsAffected());
+    }
+
+    private static ExecutionResult execute(Executor executor, String sql) {
+        ExecutionResult result = executor.execute(new SQLParser(new Lexer(sql).tokenize()).parse(), null);
+        assertTrue(result.success(), result.message());
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+
+class RowCacheTest {
+
+    @Test
+    void repeatedLookupsShareOneDecodedRecord() {
+        Table table = loaded(new Table("c", true), 10);
+        table.setRowCache(100);
+
+        Record first = table.searchByPrimaryKey(3);
+        assertTrue(first == table.searchByPrimaryKey(3));
+        RowCache cache = table.getRowCache();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 1e-9);
+        assertEquals(1, cache.size());
+        assertTrue(cache.getMemoryBytes() > first.getSerializedSize());
+
+        table.setRowCache(0);
+        assertNull(table.getRowCache());
+        assertEquals("name3", table.searchByPrimaryKey(3).getFieldAsString(1));
+    }
+
+    @Test
+    void writesInvalidateCachedRows() {
+        Table table = new Table("c", true, StorageMode.ROW, 2);
+        int recordId = table.insertRecord(TableTest.row(1, "old"));
+        table.insertRecord(TableTest.row(2, "other"));
+        table.setRowCache(100);
+        table.searchByPrimaryKey(1);
+        table.searchByPrimaryKey(2);
+
+        assertTrue(table.updateRecord(recordId, TableTest.row(1, "new")));
+        assertEquals("new", table.searchByPrimaryKey(1).getFieldAsString(1));
+        assertTrue(table.deleteRecord(table.findRecordIds(record -> record.getFieldAsInt(0) == 2).get(0)));
+        assertNull(table.searchByPrimaryKey(2));
+
+        table.addColumn(null);
+        assertEquals(0, table.getRowCache().size());
+    }
+
+    @Test
+    void indexOrganizedRowsAreCachedByKey() {
+        Table table = loaded(new Table("c", KeyEncoder.ofInt(0), StorageMode.INDEX_ORGANIZED, 2,
+                new BitSet(), null), 10);
+        table.setRowCache(100);
+
+        Record first = table.searchByPrimaryKey(4);
+        assertTrue(first == table.searchByPrimaryKey(4));
+        table.insertRecord(TableTest.row(4, "replaced"));
+        assertEquals("replaced", table.searchByPrimaryKey(4).getFieldAsString(1));
+    }
+
+    @Test
+    void staleReadsAndOverflowRowsAreNotCached() {
+        RowCache cache = new RowCache(10);
+        long stamp = cache.stamp();
+        cache.invalidate(1); // A write lands between the read and the put
+        cache.put(1, TableTest.row(1, "stale"), stamp);
+        assertNull(cache.get(1));
+
+        Table table = new Table("c", true);
+        table.insertRecord(TableTest.row(1, "x".repeat(5000)));
+        table.setRowCache(10);
+        table.searchByPrimaryKey(1);
+        assertEquals(0, table.getRowCache().size());
+        assertThrows(IllegalArgumentException.class, () -> new RowCache(1));
+    }
+
+    @Test
+    void aScanOfOneOffRowsDoesNotFlushTheHotSet() {
+        Table table = loaded(new Table("c", true), 20_000);
+        table.setRowCache(200);
+        for (int round = 0; round < 10; round++) {
+            for (int key = 0; key < 100; key++) {
+                table.searchByPrimaryKey(key);
+            }
+        }
+        for (int key = 100; key < 20_000; key++) {
+            table.searchByPrimaryKey(key);
+        }
+
+        RowCache cache = table.getRowCache();
+        assertTrue(cache.size() <= 200, cache.toString());
+        long hitsBefore = cache.getHitCount();
+        for (int key = 0; key < 100; key++) {
+            table.searchByPrimaryKey(key);
+        }
+        assertTrue(cache.getHitCount() - hitsBefore >= 95, cache.toString());
+    }
+
+    private static Table loaded(Table table, int rows) {
+        for (int i = 0; i < rows; i++) {
+            table.insertRecord(TableTest.row(i, "name" + i));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,129 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class SlottedPageTest {
+
+    @Test
+    void compactionLeavesARowBeingReadInPlace() {
+        SlottedPage page = new SlottedPage();
+        for (int i = 0; i < 5; i++) {
+            page.insert(row(i, String.valueOf((char) ('a' + i)).repeat(600)));
+        }
+
+        RecordDecoder reading = new RecordDecoder();
+        assertTrue(page.read(2, null, reading, null));
+        page.deleteRecord(0);
+        page.deleteRecord(1); // Past the threshold: the page compacts
+        assertEquals(0, page.getFragmentedBytes());
+
+        assertEquals(2, reading.getInt(0));
+        assertEquals("c".repeat(600), reading.getFieldAsString(1));
+        assertEquals("c".repeat(600), page.read(2, null, null).getFieldAsString(1));
+    }
+
+    @Test
+    void growingUpdateCompactsWithoutDisturbingReaders() {
+        SlottedPage page = new SlottedPage();
+        for (int i = 0; i < 6; i++) {
+            page.insert(row(i, "x".repeat(600)));
+        }
+        page.deleteRecord(1);
+
+        RecordDecoder reading = new RecordDecoder();
+        assertTrue(page.read(5, null, reading, null));
+        // Fits only once the deleted row and the old version are reclaimed
+        assertTrue(page.updateRecord(0, row(0, "y".repeat(1000)).serialize()));
+
+        assertEquals("x".repeat(600), reading.getFieldAsString(1));
+        assertEquals("y".repeat(1000), page.read(0, null, null).getFieldAsString(1));
+        for (int i = 2; i < 6; i++) {
+            assertEquals(i, page.read(i, null, null).getFieldAsInt(0));
+        }
+    }
+
+    @Test
+    void deletedSlotsAreReusedBeforeTheDirectoryGrows() {
+        SlottedPage page = new SlottedPage();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, page.insert(row(i, "r")));
+        }
+        page.deleteRecord(1);
+        page.deleteRecord(3);
+        assertEquals(2, page.getDeadSlotCount());
+
+        assertEquals(1, page.insert(row(10, "r")));
+        assertEquals(3, page.insert(row(11, "r")));
+        assertEquals(4, page.insert(row(12, "r")));
+        assertEquals(5, page.getSlotCount());
+        assertEquals(10, page.read(1, null, null).getFieldAsInt(0));
+        assertNull(page.getRecord(7));
+    }
+
+    @Test
+    void compactionKeepsSlotIdsAndReclaimsDeadBytes() {
+        SlottedPage page = new SlottedPage();
+        for (int i = 0; i < 8; i++) {
+            page.insert(row(i, "z".repeat(100)));
+        }
+        page.deleteRecord(2);
+        page.deleteRecord(5);
+        assertTrue(page.updateRecord(6, row(6, "s").serialize())); // Shrinks in place
+        int dead = page.getFragmentedBytes();
+        assertTrue(dead > 0);
+        int free = page.getFreeSpace();
+
+        page.compact();
+        assertEquals(0, page.getFragmentedBytes());
+        assertEquals(free + dead, page.getFreeSpace());
+        for (int i = 0; i < 8; i++) {
+            Record record = page.read(i, null, null);
+            if (i == 2 || i == 5) {
+                assertNull(record);
+            } else {
+                assertEquals(i, record.getFieldAsInt(0));
+                assertEquals(i == 6 ? "s" : "z".repeat(100), record.getFieldAsString(1));
+            }
+        }
+    }
+
+    @Test
+    void insertCompactsAFullPageWhenDeadBytesMakeRoom() {
+        SlottedPage page = new SlottedPage();
+        int rows = 0;
+        while (page.insert(row(rows, "f".repeat(200))) != -1) {
+            rows++;
+        }
+        page.deleteRecord(0); // Below the threshold: no compaction yet
+        assertTrue(page.getFragmentedBytes() > 0);
+        assertTrue(page.getFreeSpace() < row(0, "f".repeat(200)).serialize().length);
+
+        assertEquals(0, page.insert(row(99, "f".repeat(200))));
+        assertEquals(rows, page.getLiveSlotCount());
+        assertEquals(99, page.read(0, null, null).getFieldAsInt(0));
+        assertEquals(rows - 1, page.read(rows - 1, null, null).getFieldAsInt(0));
+    }
+
+    @Test
+    void rowsSurviveARoundTripThroughPageBytes() {
+        SlottedPage page = new SlottedPage();
+        for (int i = 0; i < 3; i++) {
+            page.insert(row(i, "p" + i));
+        }
+        page.deleteRecord(1);
+
+        SlottedPage copy = new SlottedPage(page.toBytes().clone());
+        assertEquals(1, copy.getDeadSlotCount());
+        assertEquals(1, copy.insert(row(7, "q")));
+        assertEquals("p2", copy.read(2, null, null).getFieldAsString(1));
+    }
+
+    static Record row(int id, String name) {
+        Record record = new Record();
+        record.addField(id);
+        record.addField(name);
+        return record;
+    }
+}
@@ -0,0 +1,84 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TableTest {
+
+    @Test
+    void deletingAStaleDuplicateKeepsTheLatestIndexed() {
+        Table table = new Table("d", true);
+        int old = table.insertRecord(row(1, "old"));
+        table.insertRecord(row(1, "new"));
+
+        assertTrue(table.deleteRecord(old));
+        assertEquals("new", table.searchByPrimaryKey(1).getFieldAsString(1));
+    }
+
+    @Test
+    void rekeyingAStaleDuplicateKeepsTheLatestIndexed() {
+        Table table = new Table("d", true);
+        int old = table.insertRecord(row(1, "old"));
+        table.insertRecord(row(1, "new"));
+
+        assertTrue(table.updateRecord(old, row(2, "old")));
+        assertEquals("new", table.searchByPrimaryKey(1).getFieldAsString(1));
+        assertEquals("old", table.searchByPrimaryKey(2).getFieldAsString(1));
+
+        // Grown past its page, the stale row moves but leaves the entry alone
+        int stale = table.insertRecord(row(3, "stale"));
+        table.insertRecord(row(3, "latest"));
+        for (int i = 10; i < 200; i++) {
+            table.insertRecord(row(i, "filler"));
+        }
+        assertTrue(table.updateRecord(stale, row(3, "x".repeat(3000))));
+        assertEquals("latest", table.searchByPrimaryKey(3).getFieldAsString(1));
+    }
+
+    @Test
+    void encodedRowsLoadLikeRecords() {
+        Table table = new Table("e", true);
+        table.insertRecord(new RecordEncoder().writeInt(0).writeString("inserted"));
+
+        // One encoder refilled per row, with a duplicate and an overflowing value
+        RecordEncoder encoder = new RecordEncoder();
+        List<RecordEncoder> rows = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            rows.add(encoder);
+        }
+        int[] next = {1};
+        int loaded = table.bulkLoadEncoded(rows.stream().map(row -> {
+            int id = next[0]++;
+            String name = id == 7 ? "y".repeat(5000) : "name" + id;
+            return row.reset().writeInt(id == 500 ? 1 : id).writeString(name);
+        }).iterator());
+
+        assertEquals(500, loaded);
+        assertEquals(501, table.getRecordCount());
+        assertEquals("inserted", table.searchByPrimaryKey(0).getFieldAsString(1));
+        assertEquals("name500", table.searchByPrimaryKey(1).getFieldAsString(1));
+        assertEquals("y".repeat(5000), table.searchByPrimaryKey(7).getFieldAsString(1));
+        assertTrue(table.getOverflowPageCount() > 0);
+        assertEquals(500, table.rangeScanByPrimaryKey(0, 1000).size());
+    }
+
+    @Test
+    void encoderReloadsAStoredRow() {
+        byte[] stored = row(42, "answer").serialize();
+        RecordEncoder encoder = new RecordEncoder(4).load(stored, 0, stored.length);
+
+        assertArrayEquals(stored, encoder.toByteArray());
+        assertEquals(2, encoder.getFieldCount());
+        assertEquals(6, encoder.getLargestField());
+    }
+
+    static Record row(int id, String name) {
+        Record record = new Record();
+        record.addField(id);
+        record.addField(name);
+        return record;
+    }
+}
@@ -0,0 +1,119 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class VacuumTest {
+
+    @Test
+    void emptiedPagesAreFreedAndFilledBeforeTheTableGrows() {
+        Table table = new Table("v", true);
+        List<Integer> ids = load(table, 1000);
+        int pages = table.getPageCount();
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) >> 10 <= 1) table.deleteRecord(ids.get(i));
+        }
+
+        VacuumResult result = table.vacuum(1000);
+        assertEquals(2, result.pagesFreed());
+        assertEquals(pages, result.pagesScanned());
+        assertTrue(result.bytesReclaimed() > 0);
+        assertEquals(2, table.getFreePageCount());
+
+        int recordId = table.insertRecord(TableTest.row(5000, "again"));
+        assertTrue(recordId >> 10 <= 1, "record ID " + recordId);
+        assertEquals("again", table.searchByPrimaryKey(5000).getFieldAsString(1));
+        assertEquals(pages, table.getPageCount());
+    }
+
+    @Test
+    void pagesWithManyDeadSlotsAreCompactedInPlace() {
+        Table table = new Table("v", true);
+        List<Integer> ids = load(table, 1000);
+        for (int i = 0; i < 1000; i += 2) {
+            table.deleteRecord(ids.get(i));
+        }
+
+        VacuumResult result = table.vacuum(1000);
+        assertTrue(result.pagesCompacted() > 0);
+        assertEquals(0, result.pagesFreed());
+        assertTrue(result.bytesReclaimed() > 0);
+        assertEquals(VacuumResult.NONE.pagesCompacted(), table.vacuum(1000).pagesCompacted());
+
+        // Record IDs, the index and scans all still see the survivors
+        for (int i = 1; i < 1000; i += 2) {
+            assertEquals(i, table.getRecord(ids.get(i)).getFieldAsInt(0));
+            assertEquals("name" + i, table.searchByPrimaryKey(i).getFieldAsString(1));
+        }
+        assertEquals(500, table.fullScan().size());
+    }
+
+    @Test
+    void aPassStopsAtItsBudgetAndTheNextOneResumes() {
+        Table table = new Table("v", true);
+        List<Integer> ids = load(table, 2000);
+        for (int id : ids) {
+            table.deleteRecord(id);
+        }
+
+        int freed = 0;
+        for (int pass = 0; pass < 100 && table.getFreePageCount() < table.getPageCount(); pass++) {
+            VacuumResult result = table.vacuum(3);
+            assertTrue(result.ioCount() <= 3, result.toString());
+            freed += result.pagesFreed();
+        }
+        assertEquals(table.getPageCount(), freed);
+        assertEquals(0, table.getRecordCount());
+    }
+
+    @Test
+    void workerSharesItsBudgetAcrossTables() {
+        List<Table> tables = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            Table table = new Table("v" + t, true);
+            for (int id : load(table, 1000)) {
+                table.deleteRecord(id);
+            }
+            tables.add(table);
+        }
+
+        try (VacuumWorker worker = new VacuumWorker(() -> tables, 4, 1000)) {
+            worker.run();
+            assertTrue(worker.getTotal().ioCount() <= 4, worker.getTotal().toString());
+            for (int round = 0; round < 50; round++) {
+                worker.run();
+            }
+            assertEquals(tables.get(0).getPageCount(), tables.get(0).getFreePageCount());
+            assertEquals(tables.get(1).getPageCount(), tables.get(1).getFreePageCount());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new VacuumWorker(() -> tables, 0, 1000));
+    }
+
+    @Test
+    void pageVacuumDropsTrailingDeadSlots() {
+        SlottedPage page = new SlottedPage();
+        for (int i = 0; i < 5; i++) {
+            page.insert(TableTest.row(i, "t"));
+        }
+        page.deleteRecord(3);
+        page.deleteRecord(4);
+        page.deleteRecord(1);
+        int vacuumable = page.getVacuumableSpace();
+
+        assertEquals(vacuumable, page.vacuum());
+        assertEquals(3, page.getSlotCount());
+        assertEquals(1, page.getDeadSlotCount());
+        assertEquals(2, page.read(2, null, null).getFieldAsInt(0));
+    }
+
+    private static List<Integer> load(Table table, int rows) {
+        List<Integer> ids = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            ids.add(table.insertRecord(TableTest.row(i, "name" + i)));
+        }
+        return ids;
+    }
+}
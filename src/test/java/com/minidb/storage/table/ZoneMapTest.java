@@ -0,0 +1,101 @@
+package com.minidb.storage.table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ZoneMapTest {
+    private static final ZoneMap.Kind[] KINDS = {ZoneMap.Kind.INT, ZoneMap.Kind.LONG, ZoneMap.Kind.PREFIX};
+
+    @Test
+    void rangeFiltersSkipPagesOutsideTheirBounds() {
+        Table table = timeOrdered(3000);
+        ZoneMap zoneMap = table.getZoneMap();
+        ZoneMap.KeyRange range = zoneMap.range(1, 1000, true, 1050, true);
+
+        assertTrue(matchingPages(table, range) <= 2, matchingPages(table, range) + " pages");
+        assertTrue(table.getPageCount() > 10);
+        List<Integer> ids = table.findRecordIdsInPlace(null,
+                row -> row.getLong(1) >= 1000 && row.getLong(1) <= 1050, range);
+        assertEquals(51, ids.size());
+        assertEquals(51, table.parallelFindRecordIds(null,
+                row -> row.getLong(1) >= 1000 && row.getLong(1) <= 1050, range).size());
+    }
+
+    @Test
+    void rangesFollowComparisonsAndLiteralTypes() {
+        ZoneMap zoneMap = new ZoneMap(KINDS);
+
+        assertEquals(new ZoneMap.KeyRange(0, 6, Long.MAX_VALUE), zoneMap.range(0, 5, false, null, false));
+        assertEquals(new ZoneMap.KeyRange(1, Long.MIN_VALUE, 4), zoneMap.range(1, null, false, 5, false));
+        assertFalse(zoneMap.mayMatch(0, zoneMap.range(0, Long.MAX_VALUE, false, null, false)));
+        assertNull(zoneMap.range(0, "text", true, null, false));
+        assertNull(new ZoneMap(new ZoneMap.Kind[] {null}).range(0, 1, true, 1, true));
+        assertTrue(zoneMap.mayMatch(7, zoneMap.range(0, 1, true, 1, true))); // No summary yet
+
+        assertTrue(ZoneMap.prefixKey("abc") < ZoneMap.prefixKey("abd"));
+        assertTrue(ZoneMap.prefixKey("") < ZoneMap.prefixKey("a"));
+        assertEquals(ZoneMap.prefixKey("abcdX"), ZoneMap.prefixKey("abcdY"));
+    }
+
+    @Test
+    void prefixBoundsSkipPagesOfOtherStrings() {
+        Table table = timeOrdered(3000);
+        ZoneMap.KeyRange range = table.getZoneMap().range(2, "k0100", true, "k0100", true);
+
+        assertTrue(matchingPages(table, range) < table.getPageCount() / 2);
+        assertEquals(1, table.findRecordIdsInPlace(null, row -> row.fieldEquals(2, "k0100"), range).size());
+    }
+
+    @Test
+    void updatesWidenBoundsAndVacuumNarrowsThem() {
+        Table table = timeOrdered(3000);
+        ZoneMap zoneMap = table.getZoneMap();
+        ZoneMap.KeyRange late = zoneMap.range(1, 1_000_000, true, null, false);
+        assertEquals(0, matchingPages(table, late));
+
+        int first = table.findRecordIds(record -> record.getFieldAsInt(0) == 0).get(0);
+        assertTrue(table.updateRecord(first, row(0, 1_000_000)));
+        assertEquals(1, matchingPages(table, late));
+        assertEquals(1, table.findRecordIdsInPlace(null, row -> row.getLong(1) >= 1_000_000, late).size());
+
+        // Bounds stay wide after the delete, until vacuum rebuilds them
+        List<Integer> onFirstPage = new ArrayList<>();
+        for (int id : table.findRecordIds(record -> true)) {
+            if (id >> 10 == first >> 10) onFirstPage.add(id);
+        }
+        for (int i = 0; i < onFirstPage.size() / 2 + 1; i++) {
+            table.deleteRecord(onFirstPage.get(i));
+        }
+        assertEquals(1, matchingPages(table, late));
+        assertTrue(table.vacuum(1000).pagesCompacted() > 0);
+        assertEquals(0, matchingPages(table, late));
+    }
+
+    private static Table timeOrdered(int rows) {
+        Table table = new Table("z", true, StorageMode.ROW, 3, new BitSet(), KINDS);
+        for (int i = 0; i < rows; i++) {
+            table.insertRecord(row(i, i));
+        }
+        return table;
+    }
+
+    private static Record row(int id, long ts) {
+        Record record = new Record();
+        record.addField(id);
+        record.addField(ts);
+        record.addField(String.format("k%04d", id));
+        return record;
+    }
+
+    private static int matchingPages(Table table, ZoneMap.KeyRange range) {
+        int matching = 0;
+        for (int pageIndex = 0; pageIndex < table.getPageCount(); pageIndex++) {
+            if (table.getZoneMap().mayMatch(pageIndex, range)) matching++;
+        }
+        return matching;
+    }
+}